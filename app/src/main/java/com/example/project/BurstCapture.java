@@ -0,0 +1,197 @@
+package com.example.project;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+
+import com.example.project.detection.FrameStacker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Captures a burst of frames and stacks them as they arrive.
+ *
+ * Frames are taken one after another. Each one is decoded on the capture thread
+ * into a single reused bitmap at about STACK_DIMENSION on its longer side,
+ * converted to luminance, aligned and folded into a {@link FrameStacker}, then
+ * dropped before the next one is requested. Memory stays at the accumulator plus
+ * one frame whatever the burst length. The device orientation sampled when each
+ * frame is requested gives the stacker its rotation prior, and the first frame's
+ * orientation, which the stack is aligned to, goes to the callback. The stacked
+ * luminance is encoded once as PNG, so the faint signal stacking recovered is not
+ * quantised away again, and handed over through {@link CaptureStore} like a
+ * single in-memory capture.
+ */
+class BurstCapture {
+    private static final String TAG = "BurstCapture";
+    // Longer side frames are stacked at; keeps the sigma-clipped accumulator near 30 MB
+    static final int STACK_DIMENSION = 2048;
+
+    /**
+     * Current device orientation, read on the main thread
+     */
+    interface OrientationSource {
+        /**
+         * @return Rotation-vector quaternion {x, y, z, w}
+         */
+        float[] getQuaternion();
+    }
+
+    private final ImageCapture imageCapture;
+    private final Executor captureExecutor;
+    private final Executor mainExecutor;
+    private final int frames;
+    private final FrameStacker.Mode mode;
+    private final OrientationSource orientation;
+    private final CameraHelper.MemoryCaptureCallback callback;
+
+    // Touched on the capture thread only
+    private FrameStacker stacker;
+    private Bitmap frameBitmap;
+    private int sampleSize;
+    private byte[] gray;
+    private int[] rowPixels;
+    private float[] referenceQuaternion;
+    private int captured;
+
+    BurstCapture(ImageCapture imageCapture, Executor captureExecutor, Executor mainExecutor, int frames,
+                 FrameStacker.Mode mode, OrientationSource orientation,
+                 CameraHelper.MemoryCaptureCallback callback) {
+        this.imageCapture = imageCapture;
+        this.captureExecutor = captureExecutor;
+        this.mainExecutor = mainExecutor;
+        this.frames = Math.min(frames, FrameStacker.MAX_FRAMES);
+        this.mode = mode;
+        this.orientation = orientation;
+        this.callback = callback;
+    }
+
+    /**
+     * Requests the first frame. Call on the main thread.
+     */
+    void start() {
+        captureNext();
+    }
+
+    private void captureNext() {
+        float[] quaternion = orientation.getQuaternion().clone();
+        imageCapture.takePicture(captureExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                byte[] jpeg;
+                try {
+                    ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                    jpeg = new byte[buffer.remaining()];
+                    buffer.get(jpeg);
+                } finally {
+                    image.close();
+                }
+                try {
+                    addFrame(jpeg, quaternion);
+                } catch (IOException | RuntimeException e) {
+                    fail("Error stacking frame " + (captured + 1) + ": " + e.getMessage(), e);
+                    return;
+                }
+                captured++;
+                if (captured < frames) {
+                    mainExecutor.execute(BurstCapture.this::captureNext);
+                } else {
+                    finish();
+                }
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                fail("Error capturing frame " + (captured + 1) + ": " + exception.getMessage(), exception);
+            }
+        });
+    }
+
+    private void addFrame(byte[] jpeg, float[] quaternion) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (frameBitmap == null) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = DetectionImage.sampleSizeFor(
+                    Math.max(options.outWidth, options.outHeight), STACK_DIMENSION);
+        } else {
+            // Decode into the previous frame's pixels
+            options.inSampleSize = sampleSize;
+            options.inBitmap = frameBitmap;
+        }
+        options.inMutable = true;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode frame");
+        }
+
+        if (stacker == null) {
+            frameBitmap = bitmap;
+            sampleSize = options.inSampleSize;
+            stacker = new FrameStacker(bitmap.getWidth(), bitmap.getHeight(), mode);
+            gray = new byte[bitmap.getWidth() * bitmap.getHeight()];
+            rowPixels = new int[bitmap.getWidth()];
+            referenceQuaternion = quaternion;
+        } else if (bitmap.getWidth() != stacker.getWidth() || bitmap.getHeight() != stacker.getHeight()) {
+            throw new IOException("Frame size changed during the burst");
+        }
+
+        TiledStarDetector.toLuminance(bitmap, gray, rowPixels);
+        double roll = FrameStacker.relativeRoll(
+                referenceQuaternion[0], referenceQuaternion[1], referenceQuaternion[2], referenceQuaternion[3],
+                quaternion[0], quaternion[1], quaternion[2], quaternion[3]);
+        boolean stacked = stacker.add(gray, 0, stacker.getWidth(), roll);
+        Log.d(TAG, String.format(Locale.US, "Frame %d: %s, rotation %.4f rad, shift (%.1f, %.1f) px, %d stars",
+                captured + 1, stacked ? "stacked" : "not aligned", stacker.getRotation(),
+                stacker.getShiftX(), stacker.getShiftY(), stacker.getMatchCount()));
+    }
+
+    private void finish() {
+        if (stacker.getFrameCount() == 0) {
+            fail("No frame of the burst could be stacked", null);
+            return;
+        }
+        stacker.render(gray);
+        int width = stacker.getWidth();
+        for (int y = 0; y < stacker.getHeight(); y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                int value = gray[i] & 0xFF;
+                rowPixels[x] = 0xFF000000 | (value << 16) | (value << 8) | value;
+            }
+            frameBitmap.setPixels(rowPixels, 0, width, 0, y, width, 1);
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        // PNG ignores the quality argument
+        frameBitmap.compress(Bitmap.CompressFormat.PNG, 100, encoded);
+        release();
+
+        long captureId = CaptureStore.put(encoded.toByteArray());
+        Log.d(TAG, "Stacked " + stacker.getFrameCount() + " of " + frames + " frames, "
+                + stacker.getClippedSamples() + " samples clipped");
+        float[] quaternion = referenceQuaternion;
+        mainExecutor.execute(() -> callback.onImageCaptured(captureId, null, quaternion));
+    }
+
+    private void fail(String message, Exception error) {
+        Log.e(TAG, message, error);
+        release();
+        mainExecutor.execute(() -> callback.onError(message));
+    }
+
+    private void release() {
+        if (frameBitmap != null) {
+            frameBitmap.recycle();
+            frameBitmap = null;
+        }
+    }
+}
@@ -1,39 +1,68 @@
 package com.example.project;
 
 import android.content.ContentValues;
+import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.util.Size;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 
+import com.example.project.detection.FrameStacker;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CameraHelper {
     private final AppCompatActivity activity;
     private final PreviewView cameraPreview;
     private ImageCapture imageCapture;
+    private ImageAnalysis imageAnalysis;
+    private ImageAnalysis.Analyzer frameAnalyzer;
+    private Size analysisResolution = DEFAULT_ANALYSIS_RESOLUTION;
+    private ExecutorService analysisExecutor;
+    // Copies in-memory captures out of the camera buffer and saves them, off the main thread
+    private ExecutorService captureExecutor;
     private static final String TAG = "CameraHelper";
 
-    public interface CaptureCallback {
-        void onImageCaptured(Uri imageUri);
+    // Frames are analysed at preview rate, so this trades detection depth against frame rate
+    public static final Size DEFAULT_ANALYSIS_RESOLUTION = new Size(1280, 720);
+
+    /**
+     * Receives an in-memory capture, stored in {@link CaptureStore}, on the main thread
+     */
+    public interface MemoryCaptureCallback {
+        /**
+         * @param captureId Id of the capture in CaptureStore
+         * @param savedUri Gallery copy of the capture, written in the background; null if not saved
+         * @param quaternion Device orientation {x, y, z, w} the capture was taken at
+         */
+        void onImageCaptured(long captureId, Uri savedUri, float[] quaternion);
         void onError(String message);
     }
 
@@ -42,6 +71,22 @@ public class CameraHelper {
         this.cameraPreview = cameraPreview;
     }
 
+    /**
+     * Sets the analyzer run on live preview frames; takes effect on the next startCamera.
+     * Pass null to stop analysing frames.
+     */
+    public void setFrameAnalyzer(ImageAnalysis.Analyzer analyzer) {
+        this.frameAnalyzer = analyzer;
+    }
+
+    /**
+     * Sets the preferred size of analysed frames; the camera picks the closest supported
+     * size. Takes effect on the next startCamera.
+     */
+    public void setAnalysisResolution(Size resolution) {
+        this.analysisResolution = resolution;
+    }
+
     public void startCamera() {
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(activity);
         cameraProviderFuture.addListener(() -> {
@@ -56,6 +101,26 @@ public class CameraHelper {
                         .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
                         .build();
 
+                // Set up the live analysis use case. Keep-only-latest drops frames the analyzer
+                // is too slow for instead of queueing them, so results never lag the preview.
+                imageAnalysis = null;
+                if (frameAnalyzer != null) {
+                    if (analysisExecutor == null) {
+                        analysisExecutor = Executors.newSingleThreadExecutor(
+                                runnable -> new Thread(runnable, "FrameAnalysis"));
+                    }
+                    ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                            .setResolutionStrategy(new ResolutionStrategy(analysisResolution,
+                                    ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                            .build();
+                    imageAnalysis = new ImageAnalysis.Builder()
+                            .setResolutionSelector(resolutionSelector)
+                            .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                            .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                            .build();
+                    imageAnalysis.setAnalyzer(analysisExecutor, frameAnalyzer);
+                }
+
                 // Choose the camera and bind use cases
                 CameraSelector cameraSelector = new CameraSelector.Builder()
                         .requireLensFacing(CameraSelector.LENS_FACING_BACK)
@@ -65,7 +130,20 @@ public class CameraHelper {
                 cameraProvider.unbindAll();
 
                 // Bind use cases to camera
-                cameraProvider.bindToLifecycle(activity, cameraSelector, preview, imageCapture);
+                if (imageAnalysis != null) {
+                    try {
+                        cameraProvider.bindToLifecycle(activity, cameraSelector, preview, imageCapture, imageAnalysis);
+                    } catch (IllegalArgumentException e) {
+                        // Some devices cannot stream three use cases at once; keep preview and capture
+                        Log.w(TAG, "Live analysis not supported with capture, disabling it", e);
+                        imageAnalysis.clearAnalyzer();
+                        imageAnalysis = null;
+                        cameraProvider.unbindAll();
+                        cameraProvider.bindToLifecycle(activity, cameraSelector, preview, imageCapture);
+                    }
+                } else {
+                    cameraProvider.bindToLifecycle(activity, cameraSelector, preview, imageCapture);
+                }
 
                 // Connect the preview to the PreviewView
                 preview.setSurfaceProvider(cameraPreview.getSurfaceProvider());
@@ -76,87 +154,156 @@ public class CameraHelper {
         }, ContextCompat.getMainExecutor(activity));
     }
 
-    public void takePicture(CaptureCallback callback) {
+    /**
+     * Captures a frame straight into memory. The JPEG the camera produced is kept in
+     * {@link CaptureStore} and decoded from there, so detection does not wait for the
+     * frame to be written to storage and read back. Saving to the gallery, if asked
+     * for, happens afterwards in the background and does not delay the callback.
+     *
+     * @param saveToGallery Whether to also write the frame to the gallery
+     * @param orientation Device orientation, sampled when the frame is requested
+     */
+    public void takePictureInMemory(boolean saveToGallery, BurstCapture.OrientationSource orientation,
+                                    MemoryCaptureCallback callback) {
         if (imageCapture == null) {
             Toast.makeText(activity, "Camera not initialized", Toast.LENGTH_SHORT).show();
             return;
         }
+        ensureCaptureExecutor();
+        String fileName = "IMG_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".jpg";
+        float[] quaternion = orientation.getQuaternion().clone();
 
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
-        String fileName = "IMG_" + timestamp + ".jpg";
+        imageCapture.takePicture(captureExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                byte[] jpeg;
+                try {
+                    // ImageCapture delivers JPEG in a single plane
+                    ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                    jpeg = new byte[buffer.remaining()];
+                    buffer.get(jpeg);
+                } finally {
+                    image.close();
+                }
+                long captureId = CaptureStore.put(jpeg);
+                Log.d(TAG, "Image captured in memory, " + jpeg.length + " bytes");
+                // Reserve the gallery entry first so its Uri can go with the capture; the write follows
+                Uri savedUri = saveToGallery ? createGalleryEntry(fileName) : null;
+                ContextCompat.getMainExecutor(activity).execute(() -> callback.onImageCaptured(captureId, savedUri, quaternion));
 
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
-        contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+                if (savedUri != null) {
+                    writeGalleryEntry(savedUri, jpeg);
+                }
+            }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) { // Android 10+
-            contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/MyApp");
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                Log.e(TAG, "Error capturing image", exception);
+                ContextCompat.getMainExecutor(activity).execute(() ->
+                        callback.onError("Error capturing image: " + exception.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Captures a burst of frames and stacks them on the capture thread as they arrive,
+     * for stars too faint for one exposure. The stacked frame is kept in
+     * {@link CaptureStore} like an in-memory capture.
+     *
+     * @param frames Number of frames to capture
+     * @param mode How frames are combined
+     * @param orientation Device orientation, sampled as each frame is requested
+     */
+    public void takeBurst(int frames, FrameStacker.Mode mode, BurstCapture.OrientationSource orientation,
+                          MemoryCaptureCallback callback) {
+        if (imageCapture == null) {
+            Toast.makeText(activity, "Camera not initialized", Toast.LENGTH_SHORT).show();
+            return;
         }
+        ensureCaptureExecutor();
+        new BurstCapture(imageCapture, captureExecutor, ContextCompat.getMainExecutor(activity), frames,
+                mode, orientation, callback).start();
+    }
 
-        ImageCapture.OutputFileOptions outputOptions;
-        Uri outputUri = null;
+    private void ensureCaptureExecutor() {
+        if (captureExecutor == null) {
+            captureExecutor = Executors.newSingleThreadExecutor(
+                    runnable -> new Thread(runnable, "CaptureIO"));
+        }
+    }
 
+    /**
+     * Creates an empty gallery entry for a frame. On Android 10+ it stays pending, and
+     * hidden from other apps, until written. Runs on the capture thread.
+     *
+     * @return Uri of the entry, or null if the gallery refused it
+     */
+    private Uri createGalleryEntry(String fileName) {
         try {
-            Uri contentUri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) { // Android 10+
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+                contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+                contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/MyApp");
+                contentValues.put(MediaStore.MediaColumns.IS_PENDING, 1);
+                Uri uri = activity.getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, contentValues);
+                if (uri == null) {
+                    Log.e(TAG, "MediaStore refused " + fileName);
+                }
+                return uri;
+            }
+            File outputDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), "MyApp");
+            if (!outputDir.exists()) {
+                outputDir.mkdirs();
+            }
+            return Uri.fromFile(new File(outputDir, fileName));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error creating gallery entry", e);
+            return null;
+        }
+    }
 
+    /**
+     * Writes an encoded frame as is to an entry from createGalleryEntry and publishes
+     * it. Runs on the capture thread.
+     */
+    private void writeGalleryEntry(Uri uri, byte[] jpeg) {
+        try {
+            try (OutputStream outputStream = activity.getContentResolver().openOutputStream(uri)) {
+                if (outputStream == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                outputStream.write(jpeg);
+            }
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                outputOptions = new ImageCapture.OutputFileOptions.Builder(activity.getContentResolver(), contentUri, contentValues).build();
+                ContentValues published = new ContentValues();
+                published.put(MediaStore.MediaColumns.IS_PENDING, 0);
+                activity.getContentResolver().update(uri, published, null, null);
             } else {
-                File outputDir = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES), "MyApp");
-                if (!outputDir.exists()) {
-                    outputDir.mkdirs();
-                }
-                File photoFile = new File(outputDir, fileName);
-                outputOptions = new ImageCapture.OutputFileOptions.Builder(photoFile).build();
-
-                // Pre-create content URI for older Android versions
-                outputUri = Uri.fromFile(photoFile);
+                MediaScannerConnection.scanFile(activity, new String[]{uri.getPath()},
+                        new String[]{"image/jpeg"}, null);
             }
-
-            final Uri finalOutputUri = outputUri;
-
-            // Take the picture
-            imageCapture.takePicture(
-                    outputOptions,
-                    ContextCompat.getMainExecutor(activity),
-                    new ImageCapture.OnImageSavedCallback() {
-                        @Override
-                        public void onImageSaved(@NonNull ImageCapture.OutputFileResults output) {
-                            Uri savedUri = output.getSavedUri();
-                            if (savedUri == null && finalOutputUri != null) {
-                                savedUri = finalOutputUri; // Use pre-created URI as fallback
-                            }
-
-                            if (savedUri == null) {
-                                callback.onError("Image saved but URI is null");
-                                return;
-                            }
-
-                            // Add URI to the media store for visibility in gallery apps
-                            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                                activity.sendBroadcast(activity.getIntent().setAction(android.content.Intent.ACTION_MEDIA_SCANNER_SCAN_FILE).setData(savedUri));
-                            }
-
-                            // Log the URI for debugging
-                            Log.d(TAG, "Image saved, URI: " + savedUri.toString());
-
-                            callback.onImageCaptured(savedUri);
-                        }
-
-                        @Override
-                        public void onError(@NonNull ImageCaptureException exception) {
-                            Log.e(TAG, "Error capturing image", exception);
-                            callback.onError("Error capturing image: " + exception.getMessage());
-                        }
-                    }
-            );
-        } catch (Exception e) {
-            Log.e(TAG, "Error in photo capture setup", e);
-            callback.onError("Error in photo capture setup: " + e.getMessage());
+            Log.d(TAG, "Image saved, URI: " + uri);
+        } catch (IOException | RuntimeException e) {
+            // The capture is already in memory, so detection goes ahead without the gallery copy
+            Log.e(TAG, "Error saving captured image", e);
         }
     }
 
     public void release() {
         imageCapture = null;
+        if (imageAnalysis != null) {
+            imageAnalysis.clearAnalyzer();
+            imageAnalysis = null;
+        }
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdown();
+            analysisExecutor = null;
+        }
+        if (captureExecutor != null) {
+            // Pending gallery saves still complete
+            captureExecutor.shutdown();
+            captureExecutor = null;
+        }
     }
 }
\ No newline at end of file
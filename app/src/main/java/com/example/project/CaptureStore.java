@@ -0,0 +1,62 @@
+package com.example.project;
+
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.net.Uri;
+
+/**
+ * Hands in-memory captures from the camera screen to the detection screens.
+ *
+ * An Intent cannot carry a full-resolution frame, so the encoded frame stays here
+ * and only its id travels in the Intent. Only the latest capture is kept; taking
+ * another picture releases the previous one.
+ */
+public final class CaptureStore {
+    public static final String EXTRA_CAPTURE_ID = "capture_id";
+    public static final String EXTRA_IMAGE_URI = "image_uri";
+
+    private static long latestId = -1;
+    private static byte[] latest;
+
+    private CaptureStore() {
+    }
+
+    /**
+     * Stores a capture, replacing the previous one
+     *
+     * @param encoded Encoded frame, JPEG or PNG; not copied, so the caller must not modify it afterwards
+     * @return Id to pass to the detection screen
+     */
+    public static synchronized long put(byte[] encoded) {
+        latestId++;
+        latest = encoded;
+        return latestId;
+    }
+
+    /**
+     * @return The encoded capture, or null if it has been replaced or the process restarted
+     */
+    public static synchronized byte[] get(long id) {
+        return id == latestId ? latest : null;
+    }
+
+    /**
+     * Finds the image a detection screen was started for: the in-memory capture if
+     * it is still held, otherwise the saved file the Intent points to
+     *
+     * @return The image source, or null if the Intent names no image that is still available
+     */
+    public static DetectionImage.Source resolve(Intent intent, ContentResolver resolver) {
+        byte[] capture = get(intent.getLongExtra(EXTRA_CAPTURE_ID, -1));
+        if (capture != null) {
+            return DetectionImage.fromBytes(capture);
+        }
+        Uri uri;
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
+            uri = intent.getParcelableExtra(EXTRA_IMAGE_URI, Uri.class);
+        } else {
+            uri = intent.getParcelableExtra(EXTRA_IMAGE_URI);
+        }
+        return uri != null ? DetectionImage.fromUri(resolver, uri) : null;
+    }
+}
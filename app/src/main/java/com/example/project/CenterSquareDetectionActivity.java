@@ -6,24 +6,19 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.Rect;
-import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.CheckBox;
-import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.example.project.api.ApiClient;
-import com.example.project.api.CelestialApiService;
-import com.example.project.api.CelestialRequest;
 import com.example.project.api.CelestialResponse;
+import com.example.project.ephemeris.Ephemeris;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -39,8 +34,8 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
     private Button detectButton;
     private ProgressBar progressBar;
 
-    private Uri imageUri;
-    private Bitmap originalBitmap;
+    private DetectionImage.Source imageSource; // in-memory capture, or the saved file
+    private DetectionImage previewImage;
     private Bitmap processedBitmap;
 
     private float quaternionX;
@@ -52,11 +47,13 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
     private double altitude;
 
     private Rect centerSquare;
-    private PixelToCelestialConverter converter;
+    private final Ephemeris ephemeris = new Ephemeris();
+    private DetectionContext detectionContext;
     private CheckBox detectPlanetsCheckBox;
-    private EditText serverUrlEditText;
-    private View serverUrlContainer;
     private static final float SQUARE_SIZE_RATIO = 0.1f;
+    // Longer side of the decoded preview and of the decoded result area
+    private static final int PREVIEW_DIMENSION = 2048;
+    private static final int RESULT_DIMENSION = 1600;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -68,31 +65,12 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         detectedBodyTextView = findViewById(R.id.detectedBodyTextView);
         detectButton = findViewById(R.id.detectButton);
         progressBar = findViewById(R.id.progressBar);
-        // Initialize server URL and checkbox components
+        // Planets come from the on-device ephemeris, so this screen needs no server
         detectPlanetsCheckBox = findViewById(R.id.detectPlanetsCheckBox);
-        serverUrlEditText = findViewById(R.id.serverUrlEditText);
-        serverUrlContainer = findViewById(R.id.serverUrlContainer);
-
-        // Set initial visibility based on checkbox state
-        serverUrlContainer.setVisibility(detectPlanetsCheckBox.isChecked() ? View.VISIBLE : View.GONE);
-
-        // Initialize server URL field with current value from ApiClient
-        serverUrlEditText.setText(ApiClient.getBaseUrl(this));
-
-        // Add checkbox listener to toggle URL input visibility
-        detectPlanetsCheckBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            serverUrlContainer.setVisibility(isChecked ? View.VISIBLE : View.GONE);
-        });
-
 
         // Get data from intent
         if (getIntent() != null && getIntent().getExtras() != null) {
-            // Get image URI
-            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
-                imageUri = getIntent().getParcelableExtra("image_uri", Uri.class);
-            } else {
-                imageUri = getIntent().getParcelableExtra("image_uri");
-            }
+            imageSource = CaptureStore.resolve(getIntent(), getContentResolver());
 
             // Get sensor data
             latitude = getIntent().getDoubleExtra("latitude", 0.0);
@@ -114,11 +92,12 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
 
     private void loadImage() {
         try {
-            if (imageUri != null) {
-                originalBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                centerSquareImageView.setImageBitmap(originalBitmap);
+            if (imageSource != null) {
+                // Only a screen-sized preview is needed here; detection works from the full-resolution size
+                previewImage = DetectionImage.decodeSampled(imageSource, PREVIEW_DIMENSION);
+                centerSquareImageView.setImageBitmap(previewImage.getBitmap());
             } else {
-                Toast.makeText(this, "Error: Image URI is null", Toast.LENGTH_SHORT).show();
+                Toast.makeText(this, "Error: Image is no longer available", Toast.LENGTH_SHORT).show();
             }
         } catch (IOException e) {
             Log.e(TAG, "Error loading image", e);
@@ -131,68 +110,54 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         detectButton.setEnabled(false);
         detectPlanetsCheckBox.setEnabled(false);
-        serverUrlContainer.setEnabled(false);
-        serverUrlEditText.setEnabled(false);
         detectedBodyTextView.setVisibility(View.GONE);
 
-        // Save the server URL if planets detection is enabled
-        if (detectPlanetsCheckBox.isChecked()) {
-            String serverUrl = serverUrlEditText.getText().toString().trim();
-            if (!serverUrl.isEmpty()) {
-                ApiClient.setBaseUrl(this, serverUrl);
+        // Run detection once the star catalog is ready
+        StarDatabase.whenLoaded(this, new StarDatabase.LoadListener() {
+            @Override
+            public void onStarDataLoaded(int starCount) {
+                detectInSquare();
             }
-        }
 
-        try {
-            // Create a copy of the bitmap to draw on
-            processedBitmap = originalBitmap.copy(originalBitmap.getConfig(), true);
-            Canvas canvas = new Canvas(processedBitmap);
+            @Override
+            public void onStarDataFailed(IOException error) {
+                Toast.makeText(CenterSquareDetectionActivity.this, "Star database could not be loaded: "
+                        + error.getMessage(), Toast.LENGTH_LONG).show();
+                hideLoadingState();
+            }
+        });
+    }
 
-            // Draw center square
-            int width = processedBitmap.getWidth();
-            int height = processedBitmap.getHeight();
+    private void detectInSquare() {
+        try {
+            // Center square in full-resolution pixels
+            int width = previewImage.getFullWidth();
+            int height = previewImage.getFullHeight();
             int squareSize = (int) (Math.min(width, height) * SQUARE_SIZE_RATIO);
             int left = (width - squareSize) / 2;
             int top = (height - squareSize) / 2;
             centerSquare = new Rect(left, top, left + squareSize, top + squareSize);
 
-            Paint squarePaint = new Paint();
-            squarePaint.setColor(Color.RED);
-            squarePaint.setStyle(Paint.Style.STROKE);
-            squarePaint.setStrokeWidth(5);
-            canvas.drawRect(centerSquare, squarePaint);
-
             // Calculate center of the square
             Point squareCenter = new Point(centerSquare.centerX(), centerSquare.centerY());
 
-            // Get the celestial coordinates at the center of the image from quaternion
-            AstronomicalCalculator.CelestialCoordinates centerCoords =
-                    AstronomicalCalculator.calculateCoordinatesFromQuaternion(
-                            latitude, longitude, altitude,
-                            quaternionX, quaternionY, quaternionZ, quaternionW);
-
-            // Estimate field of view based on device camera
-            double fovDegrees = 66.0;
-
-            // Create the WCS converter
-            converter = new PixelToCelestialConverter(
-                    width, height, centerCoords, fovDegrees);
+            // Pose, WCS converter and projected candidate stars, computed once for this image
+            // (66 degree field of view estimated from the device camera)
+            detectionContext = DetectionContext.create(width, height,
+                    latitude, longitude, altitude,
+                    quaternionX, quaternionY, quaternionZ, quaternionW,
+                    66.0, 4.0);
 
             // First detect stars using the local database
-            List<CelestialBody> detectedBodies = new ArrayList<>();
-
-            // Get stars that should be visible in this field of view
-            List<StarDatabase.Star> visibleStars = StarDatabase.getStarsInFieldOfView(
-                    centerCoords.rightAscension, centerCoords.declination,
-                    fovDegrees, fovDegrees * height / width, 4.0);
-
-            // Add stars to the detected bodies list
-            for (StarDatabase.Star star : visibleStars) {
-                detectedBodies.add(new CelestialBody(star.name, star.rightAscension, star.declination, CelestialBodyType.STAR));
+            List<CelestialBody> detectedBodies = new ArrayList<>(detectionContext.getStarCount());
+            for (int i = 0; i < detectionContext.getStarCount(); i++) {
+                detectedBodies.add(new CelestialBody(detectionContext.getStarName(i),
+                        detectionContext.getStarRightAscension(i), detectionContext.getStarDeclination(i),
+                        CelestialBodyType.STAR, detectionContext.getStarX(i), detectionContext.getStarY(i)));
             }
 
             // Now get planets, sun, and moon using the API
-            fetchPlanetsSunMoon(detectedBodies, canvas, squareCenter);
+            fetchPlanetsSunMoon(detectedBodies, squareCenter);
 
         } catch (Exception e) {
             Log.e(TAG, "Error in celestial detection", e);
@@ -201,82 +166,39 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         }
     }
 
-    private void fetchPlanetsSunMoon(List<CelestialBody> detectedBodies, Canvas canvas, Point squareCenter) {
-        // Only fetch planets if the checkbox is checked
+    private void fetchPlanetsSunMoon(List<CelestialBody> detectedBodies, Point squareCenter) {
+        // Only add planets if the checkbox is checked
         if (!detectPlanetsCheckBox.isChecked()) {
-            // Skip API call and process with just stars
-            processDetectedBodies(detectedBodies, canvas, squareCenter);
+            processDetectedBodies(detectedBodies, squareCenter);
             return;
         }
 
-        try {
-            // Get current timestamp in seconds
-            long timestamp = System.currentTimeMillis() / 1000;
-
-            // Create request object
-            CelestialRequest request = new CelestialRequest(
-                    latitude, longitude, altitude, timestamp);
-
-            // Call API
-            CelestialApiService apiService = ApiClient.getCelestialApiService(this);
-            apiService.getCelestialCoordinates(request).enqueue(new retrofit2.Callback<CelestialResponse>() {
-                @Override
-                public void onResponse(retrofit2.Call<CelestialResponse> call, retrofit2.Response<CelestialResponse> response) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        Map<String, CelestialResponse.CelestialBodyPosition> bodies = response.body().getCelestialBodies();
-
-                        // Add planets, sun, and moon to the detected bodies list
-                        for (Map.Entry<String, CelestialResponse.CelestialBodyPosition> entry : bodies.entrySet()) {
-                            String bodyName = entry.getKey();
-                            CelestialResponse.CelestialBodyPosition position = entry.getValue();
-
-                            CelestialBodyType type;
-                            if ("sun".equals(bodyName)) {
-                                type = CelestialBodyType.SUN;
-                            } else if ("moon".equals(bodyName)) {
-                                type = CelestialBodyType.MOON;
-                            } else {
-                                type = CelestialBodyType.PLANET;
-                            }
-
-                            detectedBodies.add(new CelestialBody(
-                                    bodyName, position.ra.getHours(), position.dec.getDegrees(), type));
-                        }
-
-                        // Process all detected bodies
-                        processDetectedBodies(detectedBodies, canvas, squareCenter);
-                    } else {
-                        String errorMsg = "API error: " + (response.errorBody() != null ?
-                                response.errorBody().toString() : "Unknown error");
-                        Log.e(TAG, errorMsg);
-                        Toast.makeText(CenterSquareDetectionActivity.this,
-                                "Server error. Continuing with stars only.", Toast.LENGTH_LONG).show();
-
-                        // Continue with just stars, similar to ImageDetailsActivity
-                        processDetectedBodies(detectedBodies, canvas, squareCenter);
-                    }
-                }
-
-                @Override
-                public void onFailure(retrofit2.Call<CelestialResponse> call, Throwable t) {
-                    Log.e(TAG, "API call failed", t);
-                    Toast.makeText(CenterSquareDetectionActivity.this,
-                            "Server unavailable. Continuing with stars only.", Toast.LENGTH_LONG).show();
-
-                    // Continue with just stars, similar to ImageDetailsActivity
-                    processDetectedBodies(detectedBodies, canvas, squareCenter);
-                }
-            });
-        } catch (Exception e) {
-            Log.e(TAG, "Error fetching planets data", e);
-            Toast.makeText(this, "Error connecting to server. Using stars only.", Toast.LENGTH_LONG).show();
+        // Planets, Sun and Moon come from the on-device ephemeris, which takes microseconds
+        CelestialResponse positions = CelestialResponse.fromEphemeris(ephemeris, System.currentTimeMillis(),
+                latitude, longitude, altitude);
+        for (Map.Entry<String, CelestialResponse.CelestialBodyPosition> entry : positions.getCelestialBodies().entrySet()) {
+            String bodyName = entry.getKey();
+            CelestialResponse.CelestialBodyPosition position = entry.getValue();
+
+            CelestialBodyType type;
+            if ("sun".equals(bodyName)) {
+                type = CelestialBodyType.SUN;
+            } else if ("moon".equals(bodyName)) {
+                type = CelestialBodyType.MOON;
+            } else {
+                type = CelestialBodyType.PLANET;
+            }
 
-            // Continue with just stars if there's any exception
-            processDetectedBodies(detectedBodies, canvas, squareCenter);
+            double ra = position.ra.getHours();
+            double dec = position.dec.getDegrees();
+            double[] pixelCoords = detectionContext.getConverter().celestialToPixel(ra, dec);
+            detectedBodies.add(new CelestialBody(
+                    bodyName, ra, dec, type, pixelCoords[0], pixelCoords[1]));
         }
+        processDetectedBodies(detectedBodies, squareCenter);
     }
 
-    private void processDetectedBodies(List<CelestialBody> detectedBodies, Canvas canvas, Point squareCenter) {
+    private void processDetectedBodies(List<CelestialBody> detectedBodies, Point squareCenter) {
         CelestialBody bodyInSquare = null;
         CelestialBody closestBody = null;
         int minDistance = Integer.MAX_VALUE;
@@ -307,16 +229,12 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         textPaint.setTextSize(24);
 
         for (CelestialBody body : detectedBodies) {
-            double[] pixelCoords = converter.celestialToPixel(body.rightAscension, body.declination);
-
             // Skip if outside the image
-            if (Double.isNaN(pixelCoords[0]) || Double.isNaN(pixelCoords[1]) ||
-                    pixelCoords[0] < 0 || pixelCoords[0] >= originalBitmap.getWidth() ||
-                    pixelCoords[1] < 0 || pixelCoords[1] >= originalBitmap.getHeight()) {
+            if (!detectionContext.isInImage(body.projectedX, body.projectedY)) {
                 continue;
             }
 
-            Point bodyPosition = new Point((int)pixelCoords[0], (int)pixelCoords[1]);
+            Point bodyPosition = new Point((int) body.projectedX, (int) body.projectedY);
 
             // Choose appropriate paint based on body type
             Paint paint;
@@ -350,8 +268,6 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
                 bodyInSquare.paint = paint;
                 bodyInSquare.radius = radius;
 
-                canvas.drawCircle(bodyPosition.x, bodyPosition.y, radius, paint);
-                canvas.drawText(body.name, bodyPosition.x - 10, bodyPosition.y - radius - 5, textPaint);
                 // Found a body in the square, break out of the loop
                 break;
             } else {
@@ -368,21 +284,48 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
             }
         }
 
-// Draw only one celestial body - either the one in the square or the closest one
-        if (bodyInSquare != null) {
-            // Draw the body in the square
-            canvas.drawCircle(bodyInSquare.pixelX, bodyInSquare.pixelY, bodyInSquare.radius, bodyInSquare.paint);
-            canvas.drawText(bodyInSquare.name, bodyInSquare.pixelX - 10, bodyInSquare.pixelY - bodyInSquare.radius - 5, textPaint);
-        } else if (closestBody != null) {
-            // Draw the closest body
-            canvas.drawCircle(closestBody.pixelX, closestBody.pixelY, closestBody.radius, closestBody.paint);
-            canvas.drawText(closestBody.name, closestBody.pixelX - 10, closestBody.pixelY - closestBody.radius - 5, textPaint);
-        }
+        // Draw only one celestial body - either the one in the square or the closest one
+        drawResult(bodyInSquare != null ? bodyInSquare : closestBody, textPaint);
 
         // Update UI with results
         updateDetectionResults(bodyInSquare, closestBody, squareCenter, minDistance);
     }
 
+    /**
+     * Decodes only the part of the image covering the center square and the body
+     * to show, and draws both on it. Positions stay in full-resolution pixels.
+     */
+    private void drawResult(CelestialBody body, Paint textPaint) {
+        Rect area = new Rect(centerSquare);
+        if (body != null) {
+            area.union(body.pixelX, body.pixelY);
+        }
+        int margin = centerSquare.width();
+        area.inset(-margin, -margin);
+
+        DetectionImage resultImage;
+        try {
+            resultImage = DetectionImage.decodeRegion(imageSource, area, RESULT_DIMENSION);
+        } catch (IOException e) {
+            Log.e(TAG, "Error decoding result area", e);
+            processedBitmap = previewImage.getBitmap();
+            return;
+        }
+        processedBitmap = resultImage.getBitmap();
+        Canvas canvas = resultImage.createCanvas();
+
+        Paint squarePaint = new Paint();
+        squarePaint.setColor(Color.RED);
+        squarePaint.setStyle(Paint.Style.STROKE);
+        squarePaint.setStrokeWidth(5);
+        canvas.drawRect(centerSquare, squarePaint);
+
+        if (body != null) {
+            canvas.drawCircle(body.pixelX, body.pixelY, body.radius, body.paint);
+            canvas.drawText(body.name, body.pixelX - 10, body.pixelY - body.radius - 5, textPaint);
+        }
+    }
+
     private int calculateDistance(Point p1, Point p2) {
         return (int) Math.sqrt(Math.pow(p2.x - p1.x, 2) + Math.pow(p2.y - p1.y, 2));
     }
@@ -422,8 +365,6 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         progressBar.setVisibility(View.GONE);
         detectButton.setEnabled(true);
         detectPlanetsCheckBox.setEnabled(true);
-        serverUrlContainer.setEnabled(true);
-        serverUrlEditText.setEnabled(true);
     }
 
     // Helper class to represent celestial body types
@@ -439,14 +380,19 @@ public class CenterSquareDetectionActivity extends AppCompatActivity {
         double rightAscension;
         double declination;
         CelestialBodyType type;
+        double projectedX; // position from the WCS converter, NaN if not visible
+        double projectedY;
         int pixelX;
         int pixelY;
 
-        CelestialBody(String name, double rightAscension, double declination, CelestialBodyType type) {
+        CelestialBody(String name, double rightAscension, double declination, CelestialBodyType type,
+                      double projectedX, double projectedY) {
             this.name = name;
             this.rightAscension = rightAscension;
             this.declination = declination;
             this.type = type;
+            this.projectedX = projectedX;
+            this.projectedY = projectedY;
         }
     }
 }
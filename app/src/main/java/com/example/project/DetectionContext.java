@@ -0,0 +1,164 @@
+package com.example.project;
+
+import com.example.project.catalog.StarCatalog;
+
+/**
+ * Everything one detection run derives from the capture pose, computed once per image:
+ * the pointing, the WCS converter, the catalog stars in view and their pixel positions.
+ * Every stage of the run reads from here instead of redoing the trig and catalog scan.
+ */
+public class DetectionContext {
+    private static final int INITIAL_CANDIDATES = 256;
+
+    private final int imageWidth;
+    private final int imageHeight;
+    private final double fovDegrees;
+    private final AstronomicalCalculator.CelestialCoordinates centerCoordinates;
+    private final PixelToCelestialConverter converter;
+    private final StarCatalog catalog;
+    private final int[] starIndices;   // catalog indices of the candidate stars
+    private final int starCount;
+    private final double[] starX;      // projected pixel position of each candidate
+    private final double[] starY;
+
+    private DetectionContext(int imageWidth, int imageHeight, double fovDegrees,
+                             AstronomicalCalculator.CelestialCoordinates centerCoordinates,
+                             PixelToCelestialConverter converter, StarCatalog catalog,
+                             int[] starIndices, int starCount, double[] starX, double[] starY) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.fovDegrees = fovDegrees;
+        this.centerCoordinates = centerCoordinates;
+        this.converter = converter;
+        this.catalog = catalog;
+        this.starIndices = starIndices;
+        this.starCount = starCount;
+        this.starX = starX;
+        this.starY = starY;
+    }
+
+    /**
+     * Computes the pose, converter and projected candidate stars for one image.
+     * The star catalog must already be loaded.
+     *
+     * @param imageWidth Width of the image in pixels
+     * @param imageHeight Height of the image in pixels
+     * @param fovDegrees Camera field of view in degrees
+     * @param maxMagnitude Faintest catalog star to include
+     */
+    public static DetectionContext create(int imageWidth, int imageHeight,
+                                          double latitude, double longitude, double altitude,
+                                          float qx, float qy, float qz, float qw,
+                                          double fovDegrees, double maxMagnitude) {
+        AstronomicalCalculator.CelestialCoordinates centerCoordinates =
+                AstronomicalCalculator.calculateCoordinatesFromQuaternion(
+                        latitude, longitude, altitude, qx, qy, qz, qw);
+        PixelToCelestialConverter converter = new PixelToCelestialConverter(
+                imageWidth, imageHeight, centerCoordinates, fovDegrees);
+        return project(imageWidth, imageHeight, fovDegrees, centerCoordinates, converter, maxMagnitude);
+    }
+
+    /**
+     * Rebuilds the context around a refined converter, such as a plate solution.
+     * The catalog is queried again around the refined pointing and every candidate
+     * is projected with the new converter.
+     *
+     * @param maxMagnitude Faintest catalog star to include
+     */
+    public DetectionContext withConverter(PixelToCelestialConverter refined, double maxMagnitude) {
+        // The fit gives the pointing; azimuth and altitude stay as the sensors measured them
+        AstronomicalCalculator.CelestialCoordinates refinedCenter = new AstronomicalCalculator.CelestialCoordinates(
+                refined.getCrval1() / 15.0, refined.getCrval2(),
+                centerCoordinates.azimuth, centerCoordinates.altitude);
+        return project(imageWidth, imageHeight, refined.getFovDegrees(), refinedCenter, refined, maxMagnitude);
+    }
+
+    private static DetectionContext project(int imageWidth, int imageHeight, double fovDegrees,
+                                            AstronomicalCalculator.CelestialCoordinates centerCoordinates,
+                                            PixelToCelestialConverter converter, double maxMagnitude) {
+        // Query the catalog once, growing the buffer only if the first guess was too small
+        double fovHeight = fovDegrees * imageHeight / imageWidth;
+        int[] starIndices = new int[INITIAL_CANDIDATES];
+        int starCount = StarDatabase.queryFieldOfView(
+                centerCoordinates.rightAscension, centerCoordinates.declination,
+                fovDegrees, fovHeight, maxMagnitude, starIndices);
+        if (starCount > starIndices.length) {
+            starIndices = new int[starCount];
+            starCount = StarDatabase.queryFieldOfView(
+                    centerCoordinates.rightAscension, centerCoordinates.declination,
+                    fovDegrees, fovHeight, maxMagnitude, starIndices);
+        }
+
+        StarCatalog catalog = StarDatabase.getCatalog();
+        double[] starX = new double[starCount];
+        double[] starY = new double[starCount];
+        if (catalog != null) {
+            converter.unitVectorsToPixel(catalog.getUnitX(), catalog.getUnitY(), catalog.getUnitZ(),
+                    starIndices, starCount, starX, starY);
+        }
+
+        return new DetectionContext(imageWidth, imageHeight, fovDegrees, centerCoordinates,
+                converter, catalog, starIndices, starCount, starX, starY);
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public double getFovDegrees() {
+        return fovDegrees;
+    }
+
+    public PixelToCelestialConverter getConverter() {
+        return converter;
+    }
+
+    /**
+     * @return Number of catalog stars inside the field of view box
+     */
+    public int getStarCount() {
+        return starCount;
+    }
+
+    public String getStarName(int i) {
+        return catalog.getName(starIndices[i]);
+    }
+
+    public double getStarRightAscension(int i) {
+        return catalog.getRightAscension()[starIndices[i]];
+    }
+
+    public double getStarDeclination(int i) {
+        return catalog.getDeclination()[starIndices[i]];
+    }
+
+    public float getStarMagnitude(int i) {
+        return catalog.getMagnitude()[starIndices[i]];
+    }
+
+    public double getStarX(int i) {
+        return starX[i];
+    }
+
+    public double getStarY(int i) {
+        return starY[i];
+    }
+
+    /**
+     * @return Whether candidate i projects onto the image
+     */
+    public boolean isStarInImage(int i) {
+        return isInImage(starX[i], starY[i]);
+    }
+
+    /**
+     * @return Whether a projected position lies on the image (false for NaN)
+     */
+    public boolean isInImage(double x, double y) {
+        return x >= 0 && x < imageWidth && y >= 0 && y < imageHeight;
+    }
+}
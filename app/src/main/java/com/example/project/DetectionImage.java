@@ -0,0 +1,207 @@
+package com.example.project;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A decoded part of a captured image, possibly subsampled, together with the
+ * mapping back to full-resolution pixels.
+ *
+ * The WCS converter and the catalog projections always work in full-resolution
+ * coordinates, so results stay the same whatever resolution was decoded. Only
+ * pixel reads and drawing go through the mapping.
+ *
+ * Images come from a {@link Source}: a file behind a content Uri, or the encoded
+ * buffer of an in-memory capture, which is decoded without touching storage.
+ */
+public class DetectionImage {
+    /**
+     * Encoded image that can be read more than once
+     */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    public static Source fromUri(ContentResolver resolver, Uri uri) {
+        return new Source() {
+            @Override
+            public InputStream open() throws IOException {
+                InputStream stream = resolver.openInputStream(uri);
+                if (stream == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                return stream;
+            }
+
+            @Override
+            public String toString() {
+                return uri.toString();
+            }
+        };
+    }
+
+    public static Source fromBytes(byte[] encoded) {
+        return new Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(encoded);
+            }
+
+            @Override
+            public String toString() {
+                return "in-memory image (" + encoded.length + " bytes)";
+            }
+        };
+    }
+
+    private final Bitmap bitmap;
+    private final int fullWidth;
+    private final int fullHeight;
+    private final Rect region;    // decoded area in full-resolution pixels
+    private final double scaleX;  // full-resolution pixels per decoded pixel
+    private final double scaleY;
+
+    private DetectionImage(Bitmap bitmap, int fullWidth, int fullHeight, Rect region) {
+        this.bitmap = bitmap;
+        this.fullWidth = fullWidth;
+        this.fullHeight = fullHeight;
+        this.region = region;
+        // Decoders round the subsampled size, so use the real ratio rather than inSampleSize
+        this.scaleX = (double) region.width() / bitmap.getWidth();
+        this.scaleY = (double) region.height() / bitmap.getHeight();
+    }
+
+    /**
+     * Reads the full-resolution size of an image without decoding its pixels
+     *
+     * @return {width, height}
+     */
+    public static int[] readSize(Source source) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream stream = source.open()) {
+            BitmapFactory.decodeStream(stream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Could not read image size of " + source);
+        }
+        return new int[] {options.outWidth, options.outHeight};
+    }
+
+    /**
+     * Decodes the whole image at the smallest power-of-two subsampling that still
+     * keeps its longer side at least minDimension pixels. The bitmap is mutable so
+     * it can be drawn on directly.
+     *
+     * @param minDimension Longer side the caller needs, in decoded pixels
+     */
+    public static DetectionImage decodeSampled(Source source, int minDimension) throws IOException {
+        int[] size = readSize(source);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(Math.max(size[0], size[1]), minDimension);
+        options.inMutable = true;
+        Bitmap bitmap;
+        try (InputStream stream = source.open()) {
+            bitmap = BitmapFactory.decodeStream(stream, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Could not decode image " + source);
+        }
+        return new DetectionImage(bitmap, size[0], size[1], new Rect(0, 0, size[0], size[1]));
+    }
+
+    /**
+     * Decodes only the given area of the image, subsampled so that its longer side
+     * keeps at least minDimension pixels. Nothing outside the area is decoded.
+     *
+     * @param region Area to decode in full-resolution pixels; clipped to the image
+     * @param minDimension Longer side the caller needs, in decoded pixels
+     */
+    public static DetectionImage decodeRegion(Source source, Rect region, int minDimension)
+            throws IOException {
+        try (InputStream stream = source.open()) {
+            BitmapRegionDecoder decoder = newRegionDecoder(stream);
+            if (decoder == null) {
+                throw new IOException("Could not read image " + source);
+            }
+            try {
+                int fullWidth = decoder.getWidth();
+                int fullHeight = decoder.getHeight();
+                Rect clipped = new Rect(region);
+                if (!clipped.intersect(0, 0, fullWidth, fullHeight)) {
+                    throw new IOException("Region " + region + " lies outside the image");
+                }
+
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSizeFor(Math.max(clipped.width(), clipped.height()), minDimension);
+                options.inMutable = true;
+                Bitmap bitmap = decoder.decodeRegion(clipped, options);
+                if (bitmap == null) {
+                    throw new IOException("Could not decode region " + clipped + " of " + source);
+                }
+                return new DetectionImage(bitmap, fullWidth, fullHeight, clipped);
+            } finally {
+                decoder.recycle();
+            }
+        }
+    }
+
+    // The two-argument overload is deprecated from API 31, where its replacement first appears
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(InputStream stream) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return BitmapRegionDecoder.newInstance(stream);
+        }
+        return BitmapRegionDecoder.newInstance(stream, false);
+    }
+
+    static int sampleSizeFor(int longerSide, int minDimension) {
+        int sampleSize = 1;
+        while (longerSide / (sampleSize * 2) >= Math.max(minDimension, 1)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public int getFullWidth() {
+        return fullWidth;
+    }
+
+    public int getFullHeight() {
+        return fullHeight;
+    }
+
+    public double toFullX(double x) {
+        return region.left + x * scaleX;
+    }
+
+    public double toFullY(double y) {
+        return region.top + y * scaleY;
+    }
+
+    /**
+     * Returns a canvas on the bitmap that takes full-resolution coordinates, so
+     * overlays can be drawn straight from WCS positions
+     */
+    public Canvas createCanvas() {
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float) (1 / scaleX), (float) (1 / scaleY));
+        canvas.translate(-region.left, -region.top);
+        return canvas;
+    }
+}
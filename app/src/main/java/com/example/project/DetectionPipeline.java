@@ -0,0 +1,183 @@
+package com.example.project;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the stages of an image detection on a dedicated background thread.
+ *
+ * Each stage of a run is its own future. Stages execute in submission order on a
+ * single thread, so a stage can read the result of an earlier one with get()
+ * without blocking. Starting a new run or cancelling cancels every pending stage of
+ * the previous run and interrupts the one in progress; nothing from a cancelled run
+ * is posted back to the main thread.
+ */
+public class DetectionPipeline {
+    private static final String TAG = "DetectionPipeline";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "DetectionPipeline"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Run currentRun;
+    private boolean shutDown = false;
+
+    /**
+     * Receives the outcome of a run on the main thread
+     */
+    public interface Callback<T> {
+        void onComplete(T result);
+        void onError(Exception error);
+    }
+
+    /**
+     * Cancels any run in progress and starts a new one
+     */
+    public synchronized Run start() {
+        cancel();
+        currentRun = new Run();
+        if (shutDown) {
+            // Late callbacks after onDestroy get a run that does nothing
+            currentRun.cancel();
+        }
+        return currentRun;
+    }
+
+    /**
+     * Cancels the current run, if any
+     */
+    public synchronized void cancel() {
+        if (currentRun != null) {
+            currentRun.cancel();
+            currentRun = null;
+        }
+    }
+
+    /**
+     * Cancels the current run and stops the background thread. Call from onDestroy.
+     */
+    public synchronized void shutdown() {
+        cancel();
+        shutDown = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * One detection, made of stages submitted in order
+     */
+    public class Run {
+        private final List<Future<?>> stages = new ArrayList<>();
+        private final List<Runnable> cancelActions = new ArrayList<>();
+        private volatile boolean cancelled = false;
+
+        /**
+         * Queues a stage behind the stages already submitted to this run.
+         * Stages submitted after cancellation never run.
+         */
+        public synchronized <T> Future<T> submit(Callable<T> stage) {
+            if (cancelled) {
+                FutureTask<T> skipped = new FutureTask<>(stage);
+                skipped.cancel(false);
+                return skipped;
+            }
+            Future<T> future = executor.submit(stage);
+            stages.add(future);
+            return future;
+        }
+
+        /**
+         * Delivers the result of the final stage to the callback on the main thread,
+         * unless the run is cancelled first
+         */
+        public <T> void finish(Future<T> result, Callback<T> callback) {
+            submit(() -> {
+                try {
+                    T value = result.get();
+                    post(() -> callback.onComplete(value));
+                } catch (CancellationException | InterruptedException e) {
+                    // Cancelled runs report nothing
+                } catch (ExecutionException e) {
+                    Exception error = unwrap(e);
+                    Log.e(TAG, "Detection failed", error);
+                    post(() -> callback.onError(error));
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Runs the action on the main thread if this run is still current by then
+         */
+        public void post(Runnable action) {
+            mainHandler.post(() -> {
+                if (!cancelled) {
+                    action.run();
+                }
+            });
+        }
+
+        /**
+         * Stages call this between long steps so a cancelled run stops early
+         */
+        public void throwIfCancelled() {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Detection was cancelled");
+            }
+        }
+
+        /**
+         * Registers work that a stage cannot interrupt by itself, such as an
+         * in-flight network call, to be aborted when the run is cancelled
+         */
+        public void whenCancelled(Runnable action) {
+            synchronized (this) {
+                if (!cancelled) {
+                    cancelActions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void cancel() {
+            List<Runnable> actions;
+            synchronized (this) {
+                cancelled = true;
+                for (Future<?> stage : stages) {
+                    stage.cancel(true);
+                }
+                stages.clear();
+                actions = new ArrayList<>(cancelActions);
+                cancelActions.clear();
+            }
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Stages that read an earlier stage wrap its failure again; report the original
+     */
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e;
+        while (cause instanceof ExecutionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+    }
+}
@@ -23,19 +23,18 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.project.api.ApiClient;
 import com.example.project.api.CelestialApiService;
+import com.example.project.api.CelestialPositions;
 import com.example.project.api.CelestialRequest;
 import com.example.project.api.CelestialResponse;
-
-import org.opencv.android.Utils;
-import org.opencv.core.Core;
-import org.opencv.core.Mat;
-import org.opencv.core.MatOfDouble;
-import org.opencv.core.MatOfPoint;
-import org.opencv.core.Point;
-import org.opencv.core.Rect;
-import org.opencv.core.Scalar;
-import org.opencv.core.Size;
-import org.opencv.imgproc.Imgproc;
+import com.example.project.api.ChebyshevStore;
+import com.example.project.api.EphemerisCache;
+import com.example.project.api.LatencyHistogram;
+import com.example.project.catalog.PatternIndex;
+import com.example.project.catalog.StarCatalog;
+import com.example.project.detection.DetectedStar;
+import com.example.project.detection.StarIdentifier;
+import com.example.project.detection.StarMatcher;
+import com.example.project.ephemeris.Ephemeris;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -43,19 +42,39 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
 public class ImageDetailsActivity extends AppCompatActivity {
     private static final String TAG = "ImageDetailsActivity";
+    private static final double FOV_DEGREES = 66.0;
+    private static final double MAX_STAR_MAGNITUDE = 4.0;
+    // Longer image side to decode; the star detector's blob and spacing limits are tuned for ~12 MP frames
+    private static final int DETECTION_DIMENSION = 4000;
+    private static final int PREVIEW_DIMENSION = 2048;
+    // Farthest a detection may lie from its catalog body under the sensor pose, as a fraction
+    // of the longer image side
+    private static final double MAX_MATCH_DISTANCE_FRACTION = 0.1;
+    // Under a plate solution the match radius follows the fit residuals instead
+    private static final double REFINED_MATCH_SIGMA = 4.0;
+    private static final double MIN_REFINED_MATCH_PIXELS = 8.0;
+    // Plate solutions with a larger RMS residual, as a fraction of the longer side, are not trusted
+    private static final double MAX_FIT_RMS_FRACTION = 0.005;
+    // Keep two detections from claiming the same catalog body
+    private static final boolean ONE_TO_ONE_MATCHING = true;
+    // Write the annotated image to the gallery once the result is shown
+    private static final boolean SAVE_ANNOTATED_IMAGE = true;
     private Button detectButton;
     private ImageView resultImageView;
     private TextView detectedBodiesTextView;
 
-    private Uri imageUri;
+    private DetectionImage.Source imageSource; // in-memory capture, or the saved file
     private float quaternionX;
     private float quaternionY;
     private float quaternionZ;
@@ -65,10 +84,23 @@ public class ImageDetailsActivity extends AppCompatActivity {
     private double altitude;
     private Bitmap originalBitmap;
     private Bitmap starMapBitmap;
+    private DetectionImage detectionImage;
+    private DetectionContext detectionContext;
+    private List<DetectedStar> detectedStars; // brightest first, full-resolution pixels
+    private StarIdentifier.Result identification; // null if the star patterns were not recognized
+    private double matchDistance; // farthest a detection may lie from its catalog body, in pixels
+    private final Ephemeris ephemeris = new Ephemeris(); // used on the pipeline thread only
+    private CelestialResponse localEphemeris;
+    private long localEphemerisMillis;
+    private final DetectionPipeline pipeline = new DetectionPipeline();
+    // Used on the pipeline thread only; its buffers go away with the activity
+    private final TiledStarDetector starDetector = new TiledStarDetector();
     private ProgressBar progressBar;
     private CheckBox detectPlanetsCheckBox;
     private EditText serverUrlEditText;
     private View serverUrlContainer;
+    // Set from the server URL field when detection starts
+    private boolean validateWithServer;
     private boolean starsDetected = false;
     private StringBuilder allCelestialInfo = new StringBuilder();
     static {
@@ -121,27 +153,46 @@ public class ImageDetailsActivity extends AppCompatActivity {
                 resultImageView.setVisibility(View.GONE);
                 detectedBodiesTextView.setVisibility(View.GONE);
 
-                // Save the server URL if planets detection is enabled
+                // A server URL turns on checking the on-device ephemeris against the server; blank turns it off
+                validateWithServer = false;
                 if (detectPlanetsCheckBox.isChecked()) {
                     String serverUrl = serverUrlEditText.getText().toString().trim();
-                    if (!serverUrl.isEmpty()) {
+                    if (serverUrl.isEmpty()) {
                         ApiClient.setBaseUrl(ImageDetailsActivity.this, serverUrl);
+                    } else {
+                        String baseUrl = ApiClient.normalizeBaseUrl(serverUrl);
+                        validateWithServer = baseUrl != null;
+                        if (validateWithServer) {
+                            ApiClient.setBaseUrl(ImageDetailsActivity.this, baseUrl);
+                            serverUrlEditText.setText(baseUrl);
+                        } else {
+                            Toast.makeText(ImageDetailsActivity.this, "Invalid server URL, skipping the server check",
+                                    Toast.LENGTH_SHORT).show();
+                        }
                     }
                 }
 
-                detectCelestialBodies();
+                // Run detection once the star catalog is ready
+                StarDatabase.whenLoaded(ImageDetailsActivity.this, new StarDatabase.LoadListener() {
+                    @Override
+                    public void onStarDataLoaded(int starCount) {
+                        detectCelestialBodies();
+                    }
+
+                    @Override
+                    public void onStarDataFailed(IOException error) {
+                        Toast.makeText(ImageDetailsActivity.this, "Star database could not be loaded: "
+                                + error.getMessage(), Toast.LENGTH_LONG).show();
+                        hideLoadingState();
+                    }
+                });
             }
         });
 
         try {
             // Get data from intent
             if (getIntent() != null && getIntent().getExtras() != null) {
-                // Use getParcelableExtra with type token for Android 13+ compatibility
-                if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
-                    imageUri = getIntent().getParcelableExtra("image_uri", Uri.class);
-                } else {
-                    imageUri = getIntent().getParcelableExtra("image_uri");
-                }
+                imageSource = CaptureStore.resolve(getIntent(), getContentResolver());
 
                 latitude = getIntent().getDoubleExtra("latitude", 0.0);
                 longitude = getIntent().getDoubleExtra("longitude", 0.0);
@@ -154,19 +205,11 @@ public class ImageDetailsActivity extends AppCompatActivity {
                 quaternionW = getIntent().getFloatExtra("quaternion_w", 0.0f);
 
                 // Display image
-                if (imageUri != null) {
+                if (imageSource != null) {
                     try {
-                        Log.d(TAG, "Loading image from URI: " + imageUri);
-
-                        // More robust image loading
-                        detailImageView.setImageURI(null); // Clear any previous image
-                        detailImageView.setImageURI(imageUri);
-
-                        // If the above fails, try with bitmap as fallback
-                        if (detailImageView.getDrawable() == null) {
-                            Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
-                            detailImageView.setImageBitmap(bitmap);
-                        }
+                        Log.d(TAG, "Loading image from " + imageSource);
+                        Bitmap bitmap = DetectionImage.decodeSampled(imageSource, PREVIEW_DIMENSION).getBitmap();
+                        detailImageView.setImageBitmap(bitmap);
                     } catch (IOException e) {
                         Log.e(TAG, "Error loading image", e);
                         Toast.makeText(this, "Error loading image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -175,8 +218,8 @@ public class ImageDetailsActivity extends AppCompatActivity {
                         Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                     }
                 } else {
-                    Log.e(TAG, "Image URI is null");
-                    Toast.makeText(this, "Error: Image URI is null", Toast.LENGTH_SHORT).show();
+                    Log.e(TAG, "Image is no longer available");
+                    Toast.makeText(this, "Error: Image is no longer available", Toast.LENGTH_SHORT).show();
                 }
 
                 // Display sensor data with quaternion values
@@ -197,7 +240,19 @@ public class ImageDetailsActivity extends AppCompatActivity {
         }
     }
 
-    private void saveImageToGallery(Bitmap bitmap) {
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Stop any detection still running; nothing is delivered to a destroyed activity
+        pipeline.shutdown();
+    }
+
+    /**
+     * Writes the annotated image to the gallery. Runs on the pipeline thread.
+     *
+     * @return Whether the image was saved
+     */
+    private boolean saveImageToGallery(Bitmap bitmap) {
         try {
             // Create a filename with timestamp
             String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
@@ -215,7 +270,7 @@ public class ImageDetailsActivity extends AppCompatActivity {
                     try (OutputStream outputStream = getContentResolver().openOutputStream(uri)) {
                         assert outputStream != null;
                         bitmap.compress(Bitmap.CompressFormat.JPEG, 100, outputStream);
-                        Toast.makeText(this, "Image saved to gallery", Toast.LENGTH_SHORT).show();
+                        return true;
                     }
                 }
             }
@@ -239,202 +294,465 @@ public class ImageDetailsActivity extends AppCompatActivity {
                             new String[]{file.getAbsolutePath()},
                             new String[]{"image/jpeg"},
                             null);
-
-                    Toast.makeText(this, "Image saved to gallery", Toast.LENGTH_SHORT).show();
+                    return true;
                 }
             }
         } catch (Exception e) {
             Log.e(TAG, "Error saving image to gallery", e);
-            Toast.makeText(this, "Failed to save image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
+        return false;
     }
 
     private void detectCelestialBodies() {
-        try {
-            // Load the image
-            originalBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), imageUri);
+        final boolean detectPlanets = detectPlanetsCheckBox.isChecked();
+        final boolean validate = detectPlanets && validateWithServer;
+        final DetectionPipeline.Run run = pipeline.start();
+
+        // Load the image at the resolution detection needs and find the stars in it
+        Future<Canvas> decoded = run.submit(() -> {
+            detectionImage = DetectionImage.decodeSampled(imageSource, DETECTION_DIMENSION);
+            originalBitmap = detectionImage.getBitmap();
+            List<DetectedStar> found = starDetector.detectStars(originalBitmap);
+            detectedStars = new ArrayList<>(found.size());
+            for (DetectedStar star : found) {
+                detectedStars.add(new DetectedStar(detectionImage.toFullX(star.x),
+                        detectionImage.toFullY(star.y), star.flux));
+            }
+            Collections.sort(detectedStars, (a, b) -> Double.compare(b.flux, a.flux));
+
+            // Stars are found before anything is drawn, so the decoded bitmap doubles as the star map
+            starMapBitmap = originalBitmap;
+            return detectionImage.createCanvas();
+        });
+
+        // Pose, WCS converter and candidate stars are shared by every stage of this run
+        Future<DetectionContext> prepared = run.submit(() -> {
+            decoded.get();
+            run.throwIfCancelled();
+            detectionContext = DetectionContext.create(
+                    detectionImage.getFullWidth(), detectionImage.getFullHeight(),
+                    latitude, longitude, altitude,
+                    quaternionX, quaternionY, quaternionZ, quaternionW,
+                    FOV_DEGREES, MAX_STAR_MAGNITUDE);
+            return detectionContext;
+        });
 
-            // Create a copy of the bitmap to draw on
-            starMapBitmap = originalBitmap.copy(Objects.requireNonNull(originalBitmap.getConfig()), true);
-            Canvas canvas = new Canvas(starMapBitmap);
+        // Identify stars from their patterns alone, so a bad compass reading cannot mislabel them
+        Future<StarIdentifier.Result> identified = run.submit(() -> {
+            decoded.get();
+            run.throwIfCancelled();
+            identification = identifyStars();
+            return identification;
+        });
 
-            // First, detect stars using the existing system
-            detectStarsUsingLocalDatabase(canvas);
+        // Plate-solve from the matched stars; later stages project with the solution
+        Future<DetectionContext> refined = run.submit(() -> {
+            prepared.get();
+            identified.get();
+            run.throwIfCancelled();
+            detectionContext = refineContext();
+            return detectionContext;
+        });
 
-            // Then, if checkbox is checked, detect planets, Sun, and Moon using the API
-            if (detectPlanetsCheckBox.isChecked()) {
-                detectPlanetsSunMoonUsingApi(canvas);
+        // First, detect stars using the existing system
+        Future<Integer> stars = run.submit(() -> {
+            refined.get();
+            run.throwIfCancelled();
+            return detectStarsUsingLocalDatabase(decoded.get());
+        });
+
+        // Then, if checkbox is checked, add planets, Sun, and Moon from the on-device ephemeris
+        Future<Integer> matched = !detectPlanets ? stars : run.submit(() -> {
+            stars.get();
+            run.throwIfCancelled();
+            return detectPlanetsSunMoon(decoded.get());
+        });
+
+        run.finish(matched, new DetectionPipeline.Callback<Integer>() {
+            @Override
+            public void onComplete(Integer matchedStarsCount) {
+                updateDetectedBodiesTextView(matchedStarsCount);
+                finishDetection();
             }
-            finishDetection();
-        } catch (Exception e) {
-            Log.e(TAG, "Error identifying celestial bodies", e);
-            Toast.makeText(this, "Error identifying celestial bodies: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
-            hideLoadingState();
-        }
-    }
 
-    private void detectStarsUsingLocalDatabase(Canvas canvas) {
-        try {
-            if (!StarDatabase.isStarDataLoaded()) {
-                Toast.makeText(this, "Star database not loaded. Please try again later.",
-                        Toast.LENGTH_LONG).show();
+            @Override
+            public void onError(Exception error) {
+                Toast.makeText(ImageDetailsActivity.this, "Error identifying celestial bodies: "
+                        + error.getMessage(), Toast.LENGTH_SHORT).show();
                 hideLoadingState();
-                return;
             }
+        });
 
-            int width = originalBitmap.getWidth();
-            int height = originalBitmap.getHeight();
-
-            // Create paint for drawing stars
-            Paint starPaint = new Paint();
-            starPaint.setColor(Color.GREEN);
-            starPaint.setStyle(Paint.Style.STROKE);
-            starPaint.setStrokeWidth(2);
+        // Compare the local ephemeris with the server's once the result is shown
+        if (validate) {
+            run.submit(() -> {
+                matched.get();
+                run.throwIfCancelled();
+                validateEphemerisWithServer(run);
+                return null;
+            });
+        }
 
-            Paint textPaint = new Paint();
-            textPaint.setColor(Color.YELLOW);
-            textPaint.setTextSize(24);
+        // Save the annotated image after the result is shown, so the UI never waits for the write
+        if (SAVE_ANNOTATED_IMAGE) {
+            run.submit(() -> {
+                matched.get();
+                run.throwIfCancelled();
+                boolean saved = saveImageToGallery(starMapBitmap);
+                run.post(() -> Toast.makeText(ImageDetailsActivity.this,
+                        saved ? "Image saved to gallery" : "Failed to save image", Toast.LENGTH_SHORT).show());
+                return saved;
+            });
+        }
+    }
 
-            // Get the celestial coordinates at the center of the image from quaternion
-            AstronomicalCalculator.CelestialCoordinates centerCoords =
-                    AstronomicalCalculator.calculateCoordinatesFromQuaternion(
-                            latitude, longitude, altitude,
-                            quaternionX, quaternionY, quaternionZ, quaternionW);
+    /**
+     * Marks the catalog stars in view and matches them against the image. Runs on the pipeline thread.
+     *
+     * @return Number of stars detected in the image
+     */
+    private int detectStarsUsingLocalDatabase(Canvas canvas) {
+        // Create paint for drawing stars
+        Paint starPaint = new Paint();
+        starPaint.setColor(Color.GREEN);
+        starPaint.setStyle(Paint.Style.STROKE);
+        starPaint.setStrokeWidth(2);
 
-            // Estimate field of view based on device camera
-            double fovDegrees = 66.0;
+        Paint textPaint = new Paint();
+        textPaint.setColor(Color.YELLOW);
+        textPaint.setTextSize(24);
 
-            // Create the WCS converter
-            PixelToCelestialConverter converter = new PixelToCelestialConverter(
-                    width, height, centerCoords, fovDegrees);
+        // Build a string with star information
+        allCelestialInfo.append("Stars in view:\n");
+
+        // For each star that projects onto the image, mark it
+        for (int i = 0; i < detectionContext.getStarCount(); i++) {
+            if (detectionContext.isStarInImage(i)) {
+                float x = (float) detectionContext.getStarX(i);
+                float y = (float) detectionContext.getStarY(i);
+                String name = detectionContext.getStarName(i);
+                canvas.drawCircle(x, y, 20, starPaint);
+                canvas.drawText(name, x - 10, y - 25, textPaint);
+                allCelestialInfo.append(name).append("\n");
+            }
+        }
 
-            // Get stars that should be visible in this field of view
-            List<StarDatabase.Star> visibleStars = StarDatabase.getStarsInFieldOfView(
-                    centerCoords.rightAscension, centerCoords.declination,
-                    fovDegrees, fovDegrees * height / width, 4.0);
+        int matchedStarsCount = matchAndDrawStars(createStarBodies(), canvas);
+        drawIdentifiedStars(canvas);
 
-            // Build a string with star information
-            allCelestialInfo.append("Stars in view:\n");
+        starsDetected = true;
+        return matchedStarsCount;
+    }
 
-            // For each star, find its pixel position and mark it
-            for (StarDatabase.Star star : visibleStars) {
-                double[] pixelCoords = converter.celestialToPixel(star.rightAscension, star.declination);
+    /**
+     * Looks up the brightest detections in the star pattern index. Runs on the pipeline thread.
+     *
+     * @return The identification, or null if the patterns are unavailable or not recognized
+     */
+    private StarIdentifier.Result identifyStars() {
+        PatternIndex patterns = StarDatabase.getPatternIndex();
+        if (patterns == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        StarIdentifier.Result result = new StarIdentifier(patterns).identify(detectedStars,
+                detectionImage.getFullWidth(), detectionImage.getFullHeight(), FOV_DEGREES);
+        Log.i(TAG, (result != null ? "Identified " + result.matchCount : "Identified no")
+                + " stars from patterns in " + (System.nanoTime() - start) / 1000 + " us");
+        return result;
+    }
 
-                if (!Double.isNaN(pixelCoords[0]) && !Double.isNaN(pixelCoords[1]) &&
-                        pixelCoords[0] >= 0 && pixelCoords[0] < width &&
-                        pixelCoords[1] >= 0 && pixelCoords[1] < height) {
+    /**
+     * Fits the WCS to detections matched with catalog stars and rebuilds the context
+     * around it, so the rest of the run projects with the plate solution instead of the
+     * sensor pose. Pattern identifications are used when there are any; otherwise
+     * matches under the sensor pose seed the fit. Runs on the pipeline thread.
+     *
+     * @return The refined context, or the sensor-derived one if no trustworthy fit was found
+     */
+    private DetectionContext refineContext() {
+        int width = detectionContext.getImageWidth();
+        int height = detectionContext.getImageHeight();
+        matchDistance = MAX_MATCH_DISTANCE_FRACTION * Math.max(width, height);
+        StarCatalog catalog = StarDatabase.getCatalog();
+        if (catalog == null) {
+            return detectionContext;
+        }
 
-                    canvas.drawCircle((float)pixelCoords[0], (float)pixelCoords[1], 20, starPaint);
-                    canvas.drawText(star.name, (float)pixelCoords[0] - 10, (float)pixelCoords[1] - 25, textPaint);
-                    allCelestialInfo.append(star.name).append("\n");
+        int detectionCount = detectedStars.size();
+        double[] ra = new double[detectionCount];
+        double[] dec = new double[detectionCount];
+        double[] x = new double[detectionCount];
+        double[] y = new double[detectionCount];
+        int pairCount = 0;
+        PixelToCelestialConverter start = detectionContext.getConverter();
+        if (identification != null) {
+            for (int i = 0; i < detectionCount; i++) {
+                int star = identification.catalogIndex[i];
+                if (star >= 0) {
+                    ra[pairCount] = catalog.getRightAscension()[star];
+                    dec[pairCount] = catalog.getDeclination()[star];
+                    x[pairCount] = detectedStars.get(i).x;
+                    y[pairCount] = detectedStars.get(i).y;
+                    pairCount++;
                 }
             }
+            // Start from the identified boresight (third column of the camera-to-sky rotation)
+            double[] rotation = identification.cameraToSky;
+            double[] cd = start.getCdMatrix();
+            start = new PixelToCelestialConverter(width, height,
+                    (Math.toDegrees(Math.atan2(rotation[5], rotation[2])) + 360) % 360,
+                    Math.toDegrees(Math.asin(rotation[8])),
+                    cd[0], cd[1], cd[2], cd[3], start.getDistortion1(), start.getDistortion2());
+        } else {
+            pairCount = collectMatchedPairs(detectionContext, matchDistance, ra, dec, x, y);
+        }
 
-            List<CelestialBody> allBodies = new ArrayList<>();
-            for (StarDatabase.Star star : visibleStars) {
-                allBodies.add(new CelestialBody(star.name, star.rightAscension, star.declination, CelestialBodyType.STAR));
+        double maxRms = MAX_FIT_RMS_FRACTION * Math.max(width, height);
+        WcsFitter.Fit fit = WcsFitter.fit(start, ra, dec, x, y, pairCount);
+        if (fit == null || fit.rms > maxRms) {
+            Log.i(TAG, "No plate solution from " + pairCount + " pairs"
+                    + (fit != null ? ", RMS " + fit.rms + " px" : ""));
+            return detectionContext;
+        }
+
+        // The solution finds stars the first pairs missed; match again tightly and refit with them
+        DetectionContext refined = detectionContext.withConverter(fit.converter, MAX_STAR_MAGNITUDE);
+        double refinedDistance = Math.max(REFINED_MATCH_SIGMA * fit.rms, MIN_REFINED_MATCH_PIXELS);
+        int rematched = collectMatchedPairs(refined, refinedDistance, ra, dec, x, y);
+        WcsFitter.Fit refit = WcsFitter.fit(fit.converter, ra, dec, x, y, rematched);
+        if (refit != null && refit.rms <= maxRms && refit.pairCount > fit.pairCount) {
+            fit = refit;
+            refined = detectionContext.withConverter(fit.converter, MAX_STAR_MAGNITUDE);
+        }
+        matchDistance = Math.max(REFINED_MATCH_SIGMA * fit.rms, MIN_REFINED_MATCH_PIXELS);
+        Log.i(TAG, "Plate solution from " + fit.pairCount + " stars, RMS " + fit.rms + " px, FOV "
+                + fit.converter.getFovDegrees() + " deg");
+        return refined;
+    }
+
+    /**
+     * Matches detections to the catalog stars a context projects onto the image
+     *
+     * @return Number of pairs written to the arrays
+     */
+    private int collectMatchedPairs(DetectionContext context, double maxDistance,
+                                    double[] ra, double[] dec, double[] x, double[] y) {
+        int[] inImage = new int[context.getStarCount()];
+        int inImageCount = 0;
+        for (int i = 0; i < context.getStarCount(); i++) {
+            if (context.isStarInImage(i)) {
+                inImage[inImageCount++] = i;
+            }
+        }
+        Integer[] byMagnitude = new Integer[inImageCount];
+        for (int i = 0; i < inImageCount; i++) {
+            byMagnitude[i] = i;
+        }
+        Arrays.sort(byMagnitude, (a, b) -> Float.compare(
+                context.getStarMagnitude(inImage[a]), context.getStarMagnitude(inImage[b])));
+
+        double[] projectedX = new double[inImageCount];
+        double[] projectedY = new double[inImageCount];
+        int[] rank = new int[inImageCount];
+        for (int r = 0; r < inImageCount; r++) {
+            int index = byMagnitude[r];
+            projectedX[index] = context.getStarX(inImage[index]);
+            projectedY[index] = context.getStarY(inImage[index]);
+            rank[index] = r;
+        }
+        int[] matches = new StarMatcher(projectedX, projectedY, rank, inImageCount)
+                .match(detectedStars, maxDistance, true);
+
+        int pairCount = 0;
+        for (int i = 0; i < matches.length && pairCount < ra.length; i++) {
+            if (matches[i] != StarMatcher.NO_MATCH) {
+                int star = inImage[matches[i]];
+                ra[pairCount] = context.getStarRightAscension(star);
+                dec[pairCount] = context.getStarDeclination(star);
+                x[pairCount] = detectedStars.get(i).x;
+                y[pairCount] = detectedStars.get(i).y;
+                pairCount++;
             }
+        }
+        return pairCount;
+    }
 
-            matchAndDrawStars(allBodies, canvas);
+    /**
+     * Labels the detections that the pattern identification recognized, at their
+     * detected position
+     */
+    private void drawIdentifiedStars(Canvas canvas) {
+        StarCatalog catalog = StarDatabase.getCatalog();
+        if (identification == null || catalog == null) {
+            return;
+        }
+        Paint identifiedPaint = new Paint();
+        identifiedPaint.setColor(Color.MAGENTA);
+        identifiedPaint.setStyle(Paint.Style.STROKE);
+        identifiedPaint.setStrokeWidth(2);
 
-            starsDetected = true;
+        Paint textPaint = new Paint();
+        textPaint.setColor(Color.MAGENTA);
+        textPaint.setTextSize(24);
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error identifying stars", e);
-            Toast.makeText(this, "Error identifying stars: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
-            hideLoadingState();
+        allCelestialInfo.append("Identified from star patterns:\n");
+        for (int i = 0; i < detectedStars.size(); i++) {
+            int star = identification.catalogIndex[i];
+            if (star < 0) {
+                continue;
+            }
+            DetectedStar detected = detectedStars.get(i);
+            String name = catalog.getName(star);
+            canvas.drawCircle((float) detected.x, (float) detected.y, 12, identifiedPaint);
+            canvas.drawText(name, (float) detected.x + 15, (float) detected.y + 8, textPaint);
+            allCelestialInfo.append(name).append("\n");
         }
     }
 
-    private void detectPlanetsSunMoonUsingApi(final Canvas canvas) {
-        try {
-            // Show loading indicator
-            Toast.makeText(this, "Fetching celestial data...", Toast.LENGTH_SHORT).show();
-
-            // Get current timestamp in seconds
-            long timestamp = System.currentTimeMillis() / 1000;
+    /**
+     * Wraps the candidate catalog stars of this run, reusing their projected positions
+     */
+    private List<CelestialBody> createStarBodies() {
+        List<CelestialBody> starBodies = new ArrayList<>(detectionContext.getStarCount());
+        for (int i = 0; i < detectionContext.getStarCount(); i++) {
+            starBodies.add(new CelestialBody(detectionContext.getStarName(i),
+                    detectionContext.getStarRightAscension(i), detectionContext.getStarDeclination(i),
+                    CelestialBodyType.STAR, detectionContext.getStarMagnitude(i),
+                    detectionContext.getStarX(i), detectionContext.getStarY(i)));
+        }
+        return starBodies;
+    }
 
-            // Create request object
-            CelestialRequest request = new CelestialRequest(
-                    latitude, longitude, altitude, timestamp);
+    /**
+     * Computes planets, Sun and Moon on the device and matches them along with the stars.
+     * Runs on the pipeline thread.
+     *
+     * @return Number of stars detected in the image
+     */
+    private int detectPlanetsSunMoon(Canvas canvas) {
+        long start = System.nanoTime();
+        localEphemerisMillis = System.currentTimeMillis();
+        localEphemeris = CelestialResponse.fromEphemeris(ephemeris, localEphemerisMillis,
+                latitude, longitude, altitude);
+        Log.i(TAG, "Computed ephemeris in " + (System.nanoTime() - start) / 1000 + " us");
+        return processCelestialData(localEphemeris, canvas);
+    }
 
-            // Call API
+    /**
+     * Fetches planets, Sun and Moon from the server for the time and place of the local
+     * computation and logs how far apart the two are. A day of Chebyshev segments is
+     * fetched once and reused; a server without them is asked for this instant, through
+     * the response cache. Runs on the pipeline thread; requests are cancelled with the run.
+     */
+    private void validateEphemerisWithServer(DetectionPipeline.Run run) {
+        CelestialResponse local = localEphemeris;
+        if (local == null) {
+            return;
+        }
+        try {
+            // Call API, unless stored segments or a cached response already cover this place and time
             CelestialApiService apiService = ApiClient.getCelestialApiService(this);
-            ApiClient.setBaseUrl(this,"http://192.168.0.102:5000");
-            apiService.getCelestialCoordinates(request).enqueue(new retrofit2.Callback<CelestialResponse>() {
-                @Override
-                public void onResponse(retrofit2.Call<CelestialResponse> call, retrofit2.Response<CelestialResponse> response) {
-                    if (response.isSuccessful() && response.body() != null) {
-                        processCelestialData(response.body(), canvas);
-                    } else {
-                        String errorMsg = "API error: " + (response.errorBody() != null ?
-                                response.errorBody().toString() : "Unknown error");
-                        Log.e(TAG, errorMsg);
-                        Toast.makeText(ImageDetailsActivity.this, errorMsg, Toast.LENGTH_LONG).show();
-                    }
-                }
-
-                @Override
-                public void onFailure(retrofit2.Call<CelestialResponse> call, Throwable t) {
-                    Log.e(TAG, "API call failed", t);
-                    Toast.makeText(ImageDetailsActivity.this,
-                            "Failed to get celestial data: " + t.getMessage(), Toast.LENGTH_LONG).show();
+            CelestialPositions serverEphemeris;
+            ChebyshevStore store = ChebyshevStore.get(this);
+            try {
+                serverEphemeris = store.getOrFetch(latitude, longitude, altitude, localEphemerisMillis,
+                        request -> execute(run, ApiClient.withDeadline(
+                                apiService.getChebyshevCoefficients(request), ApiClient.SEGMENTS_DEADLINE_MS)));
+                Log.d(TAG, "Ephemeris segments: " + store.getHitCount() + " hits, "
+                        + store.getFetchCount() + " fetches");
+            } catch (IOException e) {
+                run.throwIfCancelled();
+                Log.w(TAG, "No ephemeris segments, asking for this instant", e);
+                EphemerisCache cache = EphemerisCache.get(this);
+                serverEphemeris = cache.getOrFetch(latitude, longitude, altitude, localEphemerisMillis,
+                        (lat, lon, alt, epochSeconds) -> execute(run, ApiClient.withDeadline(
+                                apiService.getCelestialPositions(new CelestialRequest(lat, lon, alt, epochSeconds)),
+                                ApiClient.CELESTIAL_DEADLINE_MS)));
+                Log.d(TAG, "Ephemeris cache: " + cache.getStats());
+            }
+            for (Map.Entry<String, LatencyHistogram> latency : ApiClient.getLatencies().entrySet()) {
+                Log.d(TAG, latency.getKey() + ": " + latency.getValue());
+            }
+            double worstArcminutes = 0;
+            Map<String, CelestialResponse.CelestialBodyPosition> bodies = local.getCelestialBodies();
+            for (int i = 0; i < serverEphemeris.getCount(); i++) {
+                int body = serverEphemeris.getBody(i);
+                CelestialResponse.CelestialBodyPosition position =
+                        body < Ephemeris.BODY_COUNT ? bodies.get(Ephemeris.BODY_NAMES[body]) : null;
+                if (position == null) {
+                    continue;
                 }
-            });
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error identifying celestial bodies", e);
-            Toast.makeText(this, "Error identifying celestial bodies: " + e.getMessage(),
-                    Toast.LENGTH_SHORT).show();
-            hideLoadingState();
+                double arcminutes = 60 * angularSeparation(position.ra.getHours(), position.dec.getDegrees(),
+                        serverEphemeris.getRightAscension(i), serverEphemeris.getDeclination(i));
+                Log.i(TAG, String.format(Locale.US, "Ephemeris validation: %s differs by %.2f'",
+                        Ephemeris.BODY_NAMES[body], arcminutes));
+                worstArcminutes = Math.max(worstArcminutes, arcminutes);
+            }
+            double worst = worstArcminutes;
+            run.post(() -> Toast.makeText(this, String.format(Locale.US,
+                    "Server ephemeris agrees within %.1f arcmin", worst), Toast.LENGTH_SHORT).show());
+        } catch (IOException e) {
+            run.throwIfCancelled();
+            Log.w(TAG, "Ephemeris validation failed", e);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Nobody waits on this task, so an exception left to the executor would be lost
+            run.throwIfCancelled();
+            Log.e(TAG, "Ephemeris validation failed", e);
         }
     }
 
-    private void processCelestialData(CelestialResponse celestialData, Canvas canvas) {
-        Map<String, CelestialResponse.CelestialBodyPosition> bodies = celestialData.getCelestialBodies();
-
-        // Get the celestial coordinates at the center of the image from quaternion
-        AstronomicalCalculator.CelestialCoordinates centerCoords =
-                AstronomicalCalculator.calculateCoordinatesFromQuaternion(
-                        latitude, longitude, altitude,
-                        quaternionX, quaternionY, quaternionZ, quaternionW);
+    /**
+     * Runs a call on the pipeline thread, cancelling it with the run
+     *
+     * @return The response body
+     */
+    private static <T> T execute(DetectionPipeline.Run run, retrofit2.Call<T> call) throws IOException {
+        run.whenCancelled(call::cancel);
+        retrofit2.Response<T> response = call.execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("server error " + response.code());
+        }
+        return response.body();
+    }
 
-        // Create the WCS converter
-        int width = originalBitmap.getWidth();
-        int height = originalBitmap.getHeight();
-        double fovDegrees = 66.0;
-        PixelToCelestialConverter converter = new PixelToCelestialConverter(
-                width, height, centerCoords, fovDegrees);
+    /**
+     * @return Angle between two positions given as RA hours and Dec degrees, in degrees
+     */
+    private static double angularSeparation(double ra1, double dec1, double ra2, double dec2) {
+        double d1 = Math.toRadians(dec1);
+        double d2 = Math.toRadians(dec2);
+        double cos = Math.sin(d1) * Math.sin(d2)
+                + Math.cos(d1) * Math.cos(d2) * Math.cos(Math.toRadians(15 * (ra1 - ra2)));
+        return Math.toDegrees(Math.acos(Math.min(1, cos)));
+    }
 
-        // Get stars that should be visible in this field of view
-        List<StarDatabase.Star> visibleStars = StarDatabase.getStarsInFieldOfView(
-                centerCoords.rightAscension, centerCoords.declination,
-                fovDegrees, fovDegrees * height / width, 4.0);
+    private int processCelestialData(CelestialResponse celestialData, Canvas canvas) {
+        Map<String, CelestialResponse.CelestialBodyPosition> bodies = celestialData.getCelestialBodies();
 
         // Combine all celestial bodies (stars and planets/sun/moon)
-        List<CelestialBody> allBodies = new ArrayList<>();
-
-        // Add stars
-        for (StarDatabase.Star star : visibleStars) {
-            allBodies.add(new CelestialBody(star.name, star.rightAscension, star.declination, CelestialBodyType.STAR));
-        }
+        List<CelestialBody> allBodies = createStarBodies();
 
-        // Add planets, sun, and moon
+        // Add planets, sun, and moon, projecting each once
+        PixelToCelestialConverter converter = detectionContext.getConverter();
         for (Map.Entry<String, CelestialResponse.CelestialBodyPosition> entry : bodies.entrySet()) {
             String bodyName = entry.getKey();
             CelestialResponse.CelestialBodyPosition position = entry.getValue();
             CelestialBodyType type = "sun".equals(bodyName) ? CelestialBodyType.SUN :
                     "moon".equals(bodyName) ? CelestialBodyType.MOON :
                             CelestialBodyType.PLANET;
-            allBodies.add(new CelestialBody(bodyName, position.ra.getHours(), position.dec.getDegrees(), type));
+            double ra = position.ra.getHours();
+            double dec = position.dec.getDegrees();
+            double[] pixelCoords = converter.celestialToPixel(ra, dec);
+            allBodies.add(new CelestialBody(bodyName, ra, dec, type, Double.NaN, pixelCoords[0], pixelCoords[1]));
         }
 
-        matchAndDrawStars(allBodies, canvas);
+        return matchAndDrawStars(allBodies, canvas);
     }
 
-    private void matchAndDrawStars(List<CelestialBody> allBodies, Canvas canvas) {
+    private int matchAndDrawStars(List<CelestialBody> allBodies, Canvas canvas) {
         Paint starPaint = new Paint();
         starPaint.setColor(Color.GREEN);
         starPaint.setStyle(Paint.Style.STROKE);
@@ -450,80 +768,75 @@ public class ImageDetailsActivity extends AppCompatActivity {
         linePaint.setStyle(Paint.Style.STROKE);
         linePaint.setAlpha(150);  // Semi-transparent
 
-        int width = originalBitmap.getWidth();
-        int height = originalBitmap.getHeight();
-
-        // Get the celestial coordinates at the center of the image from quaternion
-        AstronomicalCalculator.CelestialCoordinates centerCoords =
-                AstronomicalCalculator.calculateCoordinatesFromQuaternion(
-                        latitude, longitude, altitude,
-                        quaternionX, quaternionY, quaternionZ, quaternionW);
-
-        // Create the WCS converter
-        double fovDegrees = 66.0;
-        PixelToCelestialConverter converter = new PixelToCelestialConverter(
-                width, height, centerCoords, fovDegrees);
-
-        // Get actual detected stars
-        List<Point> actualStars = detectStarsInImage(originalBitmap);
-
-        // For each actual detected star, find the closest calculated celestial body
-        for (Point actualStar : actualStars) {
-            CelestialBody closestBody = null;
-            double minDistance = Double.MAX_VALUE;
-
-            for (CelestialBody body : allBodies) {
-                double[] pixelCoords = converter.celestialToPixel(body.rightAscension, body.declination);
+        // Stars detected in the image, brightest first, in full-resolution pixels
+        List<DetectedStar> actualStars = detectedStars;
 
-                if (!Double.isNaN(pixelCoords[0]) && !Double.isNaN(pixelCoords[1]) &&
-                        pixelCoords[0] >= 0 && pixelCoords[0] < width &&
-                        pixelCoords[1] >= 0 && pixelCoords[1] < height) {
+        // Bodies on the image, indexed once; catalog stars are ranked by brightness,
+        // planets, Sun and Moon are always candidates
+        List<CelestialBody> bodies = new ArrayList<>();
+        for (CelestialBody body : allBodies) {
+            if (detectionContext.isInImage(body.pixelX, body.pixelY)) {
+                bodies.add(body);
+            }
+        }
+        Integer[] byMagnitude = new Integer[bodies.size()];
+        for (int i = 0; i < byMagnitude.length; i++) {
+            byMagnitude[i] = i;
+        }
+        Arrays.sort(byMagnitude, (a, b) -> Double.compare(bodies.get(a).magnitude, bodies.get(b).magnitude));
+
+        double[] projectedX = new double[bodies.size()];
+        double[] projectedY = new double[bodies.size()];
+        int[] bodyRank = new int[bodies.size()];
+        int starRank = 0;
+        for (int index : byMagnitude) {
+            CelestialBody body = bodies.get(index);
+            projectedX[index] = body.pixelX;
+            projectedY[index] = body.pixelY;
+            bodyRank[index] = body.type == CelestialBodyType.STAR ? starRank++ : StarMatcher.UNRANKED;
+        }
 
-                    double distance = Math.hypot(pixelCoords[0] - actualStar.x, pixelCoords[1] - actualStar.y);
+        // For each actual detected star, find the closest calculated celestial body of similar brightness
+        int[] matches = new StarMatcher(projectedX, projectedY, bodyRank, bodies.size())
+                .match(actualStars, matchDistance, ONE_TO_ONE_MATCHING);
 
-                    if (distance < minDistance) {
-                        minDistance = distance;
-                        closestBody = body;
-                        closestBody.pixelX = (int) pixelCoords[0];
-                        closestBody.pixelY = (int) pixelCoords[1];
-                    }
-                }
-            }
+        for (int rank = 0; rank < actualStars.size(); rank++) {
+            DetectedStar actualStar = actualStars.get(rank);
+            CelestialBody closestBody = matches[rank] == StarMatcher.NO_MATCH ? null : bodies.get(matches[rank]);
 
             // If a closest body was found, draw it and connect to the actual star
             if (closestBody != null) {
+                float bodyX = (int) closestBody.pixelX;
+                float bodyY = (int) closestBody.pixelY;
+
                 // Draw the calculated celestial body
-                canvas.drawCircle(closestBody.pixelX, closestBody.pixelY, 20, starPaint);
-                canvas.drawText(closestBody.name, closestBody.pixelX - 10, closestBody.pixelY - 25, textPaint);
+                canvas.drawCircle(bodyX, bodyY, 20, starPaint);
+                canvas.drawText(closestBody.name, bodyX - 10, bodyY - 25, textPaint);
 
                 // Draw the line connecting the actual star to the calculated position
-                canvas.drawLine((float)actualStar.x, (float)actualStar.y, closestBody.pixelX, closestBody.pixelY, linePaint);
+                canvas.drawLine((float)actualStar.x, (float)actualStar.y, bodyX, bodyY, linePaint);
 
                 // Draw the actual detected star
                 canvas.drawCircle((float)actualStar.x, (float)actualStar.y, 5, starPaint);
             }
         }
 
-        updateDetectedBodiesTextView(actualStars.size());
+        return actualStars.size();
     }
 
     private void updateDetectedBodiesTextView(int matchedStarsCount) {
-
-        runOnUiThread(() -> {
-            String info = String.format("Detected %d stars in the image.\nMatched with closest calculated celestial bodies.", matchedStarsCount);
-            resultImageView.setImageBitmap(starMapBitmap);
-            resultImageView.setVisibility(View.VISIBLE);
-            detectedBodiesTextView.setText(info);
-            detectedBodiesTextView.setVisibility(View.VISIBLE);
-            hideLoadingState();
-        });
+        String info = String.format("Detected %d stars in the image.\nMatched with closest calculated celestial bodies.", matchedStarsCount);
+        resultImageView.setImageBitmap(starMapBitmap);
+        resultImageView.setVisibility(View.VISIBLE);
+        detectedBodiesTextView.setText(info);
+        detectedBodiesTextView.setVisibility(View.VISIBLE);
+        hideLoadingState();
     }
 
 
     private void finishDetection() {
         String message = starsDetected ? "Celestial bodies identified successfully" : "No celestial bodies detected";
         Toast.makeText(ImageDetailsActivity.this, message, Toast.LENGTH_SHORT).show();
-        saveImageToGallery(starMapBitmap);
     }
 
     private void hideLoadingState() {
@@ -536,79 +849,6 @@ public class ImageDetailsActivity extends AppCompatActivity {
         });
     }
 
-    private List<Point> detectStarsInImage(Bitmap bitmap) {
-        List<Point> starCentroids = new ArrayList<>();
-        Mat srcMat = new Mat();
-        Utils.bitmapToMat(bitmap, srcMat);
-
-        try {
-            // Convert to grayscale and blur
-            Mat grayMat = new Mat();
-            Imgproc.cvtColor(srcMat, grayMat, Imgproc.COLOR_RGB2GRAY);
-            Imgproc.GaussianBlur(grayMat, grayMat, new Size(3, 3), 0);
-
-            // Adaptive thresholding with MEAN_C
-            Mat thresholdMat = new Mat();
-            Imgproc.adaptiveThreshold(grayMat, thresholdMat, 255,
-                    Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 11, -10);
-
-            // Find contours
-            List<MatOfPoint> contours = new ArrayList<>();
-            Mat hierarchy = new Mat();
-            Imgproc.findContours(thresholdMat, contours, hierarchy,
-                    Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
-
-            // Process contours
-            for (MatOfPoint contour : contours) {
-                // Area filter
-                double area = Imgproc.contourArea(contour);
-                if (area < 0.8 || area > 25) continue;
-
-                // Bounding rectangle checks
-                Rect rect = Imgproc.boundingRect(contour);
-                double aspectRatio = Math.max(rect.width, rect.height) /
-                        (Math.min(rect.width, rect.height) + 1e-5);
-                if (aspectRatio > 4) continue;
-
-                // Region of interest analysis
-                int margin = 5;
-                int x1 = Math.max(rect.x - margin, 0);
-                int y1 = Math.max(rect.y - margin, 0);
-                int x2 = Math.min(rect.x + rect.width + margin, grayMat.cols());
-                int y2 = Math.min(rect.y + rect.height + margin, grayMat.rows());
-                Mat roi = grayMat.submat(y1, y2, x1, x2);
-
-                // Intensity analysis
-                Scalar meanVal = Core.mean(roi);
-                MatOfDouble stdDev = new MatOfDouble();
-                Core.meanStdDev(roi, new MatOfDouble(), stdDev);
-                double maxVal = Core.minMaxLoc(roi).maxVal;
-
-                // Heuristic checks
-                if (stdDev.toArray()[0] > 10 && maxVal > 160 && meanVal.val[0] < 100) {
-                    Point center = new Point(
-                            rect.x + rect.width/2.0,
-                            rect.y + rect.height/2.0
-                    );
-
-                    // Non-maximum suppression check
-                    boolean tooClose = false;
-                    for (Point existing : starCentroids) {
-                        if (Math.hypot(center.x - existing.x, center.y - existing.y) < 8) {
-                            tooClose = true;
-                            break;
-                        }
-                    }
-                    if (!tooClose) {
-                        starCentroids.add(center);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Star detection error", e);
-        }
-        return starCentroids;
-    }
     private enum CelestialBodyType {
         STAR, PLANET, SUN, MOON
     }
@@ -617,15 +857,19 @@ public class ImageDetailsActivity extends AppCompatActivity {
         double rightAscension;
         double declination;
         CelestialBodyType type;
-        int pixelX;
-
-        int pixelY;
+        double magnitude; // catalog magnitude, NaN for bodies without one
+        double pixelX; // projected position, NaN if not visible
+        double pixelY;
 
-        CelestialBody(String name, double rightAscension, double declination, CelestialBodyType type) {
+        CelestialBody(String name, double rightAscension, double declination, CelestialBodyType type,
+                      double magnitude, double pixelX, double pixelY) {
             this.name = name;
             this.rightAscension = rightAscension;
             this.declination = declination;
             this.type = type;
+            this.magnitude = magnitude;
+            this.pixelX = pixelX;
+            this.pixelY = pixelY;
         }
     }
 }
@@ -0,0 +1,200 @@
+package com.example.project;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.example.project.detection.DetectedStar;
+import com.example.project.detection.StarDetector;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Detects stars in live preview frames.
+ *
+ * Runs as the analyzer of an ImageAnalysis use case with the keep-only-latest
+ * backpressure strategy: while a frame is being analysed the camera keeps
+ * replacing the queued one, so the preview never stalls and results always
+ * describe a recent frame. The detector works directly on the Y plane of each
+ * YUV_420_888 frame; the plane is copied once into a reused array and its row
+ * stride is passed through, so there is no RGB or JPEG conversion.
+ *
+ * Frames the camera replaced before they reached the analyzer are counted from
+ * gaps in the sensor timestamps, against the shortest frame interval seen so
+ * far. Together with the analysis time and the number of frames over budget,
+ * this shows whether the analysis resolution is sustainable at the preview
+ * frame rate.
+ */
+public class LiveStarAnalyzer implements ImageAnalysis.Analyzer {
+    private static final String TAG = "LiveStarAnalyzer";
+
+    public static final long DEFAULT_FRAME_BUDGET_MS = 66; // about 15 fps
+    // Weight of the newest frame in the running average of analysis time
+    private static final double AVERAGE_WEIGHT = 0.1;
+
+    /**
+     * Receives the stars of each analysed frame on the main thread
+     */
+    public interface Listener {
+        void onFrameAnalyzed(Frame frame);
+    }
+
+    /**
+     * Stars found in one frame, in the frame's buffer coordinates (before rotation)
+     */
+    public static final class Frame {
+        public final List<DetectedStar> stars;
+        public final int width;
+        public final int height;
+        public final int rotationDegrees;
+        public final long timestampNanos;
+        public final Stats stats;
+
+        Frame(List<DetectedStar> stars, int width, int height, int rotationDegrees,
+              long timestampNanos, Stats stats) {
+            this.stars = stars;
+            this.width = width;
+            this.height = height;
+            this.rotationDegrees = rotationDegrees;
+            this.timestampNanos = timestampNanos;
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * Timing counters at the end of one frame
+     */
+    public static final class Stats {
+        public final long analyzedFrames;
+        public final long droppedFrames;
+        public final long overBudgetFrames;
+        public final double lastFrameMs;
+        public final double averageFrameMs;
+        public final double frameIntervalMs;
+        public final long frameBudgetMs;
+
+        Stats(long analyzedFrames, long droppedFrames, long overBudgetFrames, double lastFrameMs,
+              double averageFrameMs, double frameIntervalMs, long frameBudgetMs) {
+            this.analyzedFrames = analyzedFrames;
+            this.droppedFrames = droppedFrames;
+            this.overBudgetFrames = overBudgetFrames;
+            this.lastFrameMs = lastFrameMs;
+            this.averageFrameMs = averageFrameMs;
+            this.frameIntervalMs = frameIntervalMs;
+            this.frameBudgetMs = frameBudgetMs;
+        }
+    }
+
+    private final StarDetector detector = new StarDetector();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+    private volatile long frameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+
+    private byte[] luminance = new byte[0];
+
+    // Written on the analysis thread only
+    private long lastTimestamp = -1;
+    private long minFrameInterval = Long.MAX_VALUE;
+    private long analyzedFrames;
+    private long droppedFrames;
+    private long overBudgetFrames;
+    private double averageFrameMs;
+
+    private volatile Stats stats = new Stats(0, 0, 0, 0, 0, 0, DEFAULT_FRAME_BUDGET_MS);
+
+    public LiveStarAnalyzer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the analysis time a frame may take before it counts as over budget
+     */
+    public void setFrameBudgetMs(long frameBudgetMs) {
+        this.frameBudgetMs = frameBudgetMs;
+    }
+
+    public long getFrameBudgetMs() {
+        return frameBudgetMs;
+    }
+
+    /**
+     * @return Counters as of the last analysed frame; safe to call from any thread
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        try {
+            long start = SystemClock.elapsedRealtimeNanos();
+            long timestamp = image.getImageInfo().getTimestamp();
+            countDroppedFrames(timestamp);
+
+            int width = image.getWidth();
+            int height = image.getHeight();
+            ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+            ByteBuffer buffer = plane.getBuffer();
+            int stride = plane.getRowStride();
+
+            // The last row may stop at the image width, so the buffer can be shorter than stride * height
+            int length = buffer.remaining();
+            if (luminance.length < length) {
+                luminance = new byte[length];
+            }
+            buffer.get(luminance, 0, length);
+
+            int count = detector.detect(luminance, 0, stride, width, height);
+            List<DetectedStar> stars = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                stars.add(new DetectedStar(detector.getX(i), detector.getY(i), detector.getFlux(i)));
+            }
+
+            double frameMs = (SystemClock.elapsedRealtimeNanos() - start) / 1e6;
+            Stats current = updateStats(frameMs);
+            Frame frame = new Frame(Collections.unmodifiableList(stars), width, height,
+                    image.getImageInfo().getRotationDegrees(), timestamp, current);
+            mainHandler.post(() -> listener.onFrameAnalyzed(frame));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error analysing frame", e);
+        } finally {
+            // Closing releases the buffer so the camera can deliver the next frame
+            image.close();
+        }
+    }
+
+    private void countDroppedFrames(long timestamp) {
+        if (lastTimestamp >= 0 && timestamp > lastTimestamp) {
+            long interval = timestamp - lastTimestamp;
+            minFrameInterval = Math.min(minFrameInterval, interval);
+            // Round so that jitter in the frame interval is not counted as a drop
+            long missed = Math.round((double) interval / minFrameInterval) - 1;
+            if (missed > 0) {
+                droppedFrames += missed;
+            }
+        }
+        lastTimestamp = timestamp;
+    }
+
+    private Stats updateStats(double frameMs) {
+        long budget = frameBudgetMs;
+        analyzedFrames++;
+        if (frameMs > budget) {
+            overBudgetFrames++;
+        }
+        averageFrameMs = analyzedFrames == 1 ? frameMs
+                : averageFrameMs + AVERAGE_WEIGHT * (frameMs - averageFrameMs);
+        double intervalMs = minFrameInterval == Long.MAX_VALUE ? 0 : minFrameInterval / 1e6;
+        stats = new Stats(analyzedFrames, droppedFrames, overBudgetFrames, frameMs,
+                averageFrameMs, intervalMs, budget);
+        return stats;
+    }
+}
@@ -22,6 +22,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
 
+import com.example.project.detection.FrameStacker;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GoogleApiAvailability;
 import com.google.android.gms.location.DeviceOrientation;
@@ -33,6 +34,11 @@ import com.google.android.gms.tasks.Task;
 
 public class MainActivity extends AppCompatActivity implements SensorEventListener, GPSHelper.LocationListener {
     private static final String TAG = "MainActivity";
+    // Also keep the raw capture in the gallery; saved in the background while detection runs
+    private static final boolean SAVE_CAPTURES_TO_GALLERY = true;
+    // Long-pressing capture stacks a burst, for stars too faint for a single exposure
+    private static final int BURST_FRAMES = 8;
+    private static final FrameStacker.Mode BURST_MODE = FrameStacker.Mode.SIGMA_CLIPPED;
 
     private SensorManager sensorManager;
     private Sensor rotationVectorSensor;
@@ -54,6 +60,9 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private CenterSquareOverlayView centerSquareOverlay;
     private boolean centerSquareModeActive = false;
 
+    // Live star detection on preview frames
+    private String liveStatus = "";
+
     {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) { // Android 13+
             REQUIRED_PERMISSIONS = new String[]{
@@ -104,6 +113,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         centerSquareButton = findViewById(R.id.centerSquareButton);
 
         cameraHelper = new CameraHelper(this, cameraPreview);
+        cameraHelper.setFrameAnalyzer(new LiveStarAnalyzer(this::onFrameAnalyzed));
         gpsHelper = new GPSHelper(this, this);
 
         if (allPermissionsGranted()) {
@@ -119,6 +129,11 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             takePictureForFullDetection();
         });
 
+        captureButton.setOnLongClickListener(view -> {
+            takeBurstForFullDetection();
+            return true;
+        });
+
         centerSquareButton.setOnClickListener(view -> {
             takePictureForCenterSquareDetection();
         });
@@ -134,22 +149,44 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         takePicture(CenterSquareDetectionActivity.class);
     }
 
+    private void takeBurstForFullDetection() {
+        Toast.makeText(this, "Stacking " + BURST_FRAMES + " frames, hold still", Toast.LENGTH_SHORT).show();
+        cameraHelper.takeBurst(BURST_FRAMES, BURST_MODE, this::currentQuaternion,
+                detectionLauncher(ImageDetailsActivity.class));
+    }
+
     private void takePicture(Class<?> destinationActivity) {
-        cameraHelper.takePicture(new CameraHelper.CaptureCallback() {
+        cameraHelper.takePictureInMemory(SAVE_CAPTURES_TO_GALLERY, this::currentQuaternion,
+                detectionLauncher(destinationActivity));
+    }
+
+    private float[] currentQuaternion() {
+        return new float[] {qx, qy, qz, qw};
+    }
+
+    /**
+     * Opens the detection screen on a capture held in CaptureStore, with the orientation
+     * it was taken at rather than the current one
+     */
+    private CameraHelper.MemoryCaptureCallback detectionLauncher(Class<?> destinationActivity) {
+        return new CameraHelper.MemoryCaptureCallback() {
             @Override
-            public void onImageCaptured(Uri imageUri) {
+            public void onImageCaptured(long captureId, Uri savedUri, float[] quaternion) {
                 try {
                     Intent intent = new Intent(MainActivity.this, destinationActivity);
-                    intent.putExtra("image_uri", imageUri);
+                    intent.putExtra(CaptureStore.EXTRA_CAPTURE_ID, captureId);
+                    if (savedUri != null) {
+                        // Read from the gallery instead if the process dies before detection starts
+                        intent.putExtra(CaptureStore.EXTRA_IMAGE_URI, savedUri);
+                    }
                     intent.putExtra("latitude", latitude);
                     intent.putExtra("longitude", longitude);
                     intent.putExtra("altitude", altitude);
-                    intent.putExtra("quaternion_x", qx);
-                    intent.putExtra("quaternion_y", qy);
-                    intent.putExtra("quaternion_z", qz);
-                    intent.putExtra("quaternion_w", qw);
+                    intent.putExtra("quaternion_x", quaternion[0]);
+                    intent.putExtra("quaternion_y", quaternion[1]);
+                    intent.putExtra("quaternion_z", quaternion[2]);
+                    intent.putExtra("quaternion_w", quaternion[3]);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
                     startActivity(intent);
                 } catch (Exception e) {
                     Log.e(TAG, "Error launching activity", e);
@@ -161,7 +198,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             public void onError(String message) {
                 Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
             }
-        });
+        };
     }
 
     // The rest of your existing code remains unchanged
@@ -287,6 +324,15 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         updateDisplay();
     }
 
+    private void onFrameAnalyzed(LiveStarAnalyzer.Frame frame) {
+        LiveStarAnalyzer.Stats stats = frame.stats;
+        liveStatus = String.format(
+                "\nLive: %d stars (%dx%d)\n%.1f ms avg / %d ms budget, %d dropped, %d over",
+                frame.stars.size(), frame.width, frame.height, stats.averageFrameMs,
+                stats.frameBudgetMs, stats.droppedFrames, stats.overBudgetFrames);
+        updateDisplay();
+    }
+
     private void updateDisplay() {
         AstronomicalCalculator.CelestialCoordinates coords =
                 AstronomicalCalculator.calculateCoordinatesFromQuaternion(
@@ -294,9 +340,10 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
 
         String data = String.format(
                 "Celestial Coordinates:\nRA: %.2f hours\nDec: %.2f°\nAz: %.2f°\nAlt: %.2f°\n" +
-                        "Using: %s",
+                        "Using: %s%s",
                 coords.rightAscension, coords.declination, coords.azimuth, coords.altitude,
-                useFusedOrientation ? "Fused Orientation Provider" : "Standard Sensors"
+                useFusedOrientation ? "Fused Orientation Provider" : "Standard Sensors",
+                liveStatus
         );
         sensorData.setText(data);
     }
@@ -10,6 +10,9 @@ public class MyApplication extends Application {
     public void onCreate() {
         super.onCreate();
         context = getApplicationContext();
+
+        // Start reading the star catalog now so it is ready before the first detection
+        StarDatabase.preload(this);
     }
 
     public static Context getContext() {
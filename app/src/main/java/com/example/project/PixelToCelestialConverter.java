@@ -3,7 +3,12 @@ package com.example.project;
 import java.lang.Math;
 
 public class PixelToCelestialConverter {
+    // Radial distortion of the sensor-derived converter: 1 + 0.1 r^2, r in units of the half short side
+    public static final double DEFAULT_DISTORTION = 0.1;
+
     // WCS transformation parameters
+    private final int imageWidth;
+    private final int imageHeight;
     private final double crval1; // RA at reference pixel (degrees)
     private final double crval2; // Dec at reference pixel (degrees)
     private final double crpix1; // X reference pixel
@@ -12,8 +17,22 @@ public class PixelToCelestialConverter {
     private final double cd1_2;
     private final double cd2_1;
     private final double cd2_2;
+    private final double distortion1; // r^2 and r^4 coefficients of the radial correction
+    private final double distortion2;
     private final double fovDegrees; // Field of view in degrees
 
+    // Per-frame constants hoisted out of the projection
+    private final double ra0Rad;      // crval1 in radians
+    private final double sinDec0;     // sin(crval2)
+    private final double cosDec0;     // cos(crval2)
+    private final boolean singular;   // CD matrix cannot be inverted
+    private final double inv1_1;      // Inverse CD matrix, scaled from radians to pixels
+    private final double inv1_2;
+    private final double inv2_1;
+    private final double inv2_2;
+    private final double distortionK;  // distortion1 / maxDistance^2
+    private final double distortionK2; // distortion2 / maxDistance^4
+
     /**
      * Creates a WCS-based converter for mapping pixels to celestial coordinates
      * Optimized for a camera with 66-degree FOV
@@ -25,33 +44,65 @@ public class PixelToCelestialConverter {
     public PixelToCelestialConverter(int imageWidth, int imageHeight,
                                      AstronomicalCalculator.CelestialCoordinates centerCoordinates,
                                      double fovDegrees) {
-        this.fovDegrees = fovDegrees;
+        // Reference values are the center coordinates (RA converted from hours to degrees).
+        // The pixel scale (degrees per pixel) uses the smaller dimension so the FOV fits
+        // within the image, and the CD matrix is rotated to account for device orientation
+        // from azimuth.
+        this(imageWidth, imageHeight,
+                centerCoordinates.rightAscension * 15.0, centerCoordinates.declination,
+                -fovDegrees / Math.min(imageWidth, imageHeight) * Math.cos(Math.toRadians(centerCoordinates.azimuth)),
+                fovDegrees / Math.min(imageWidth, imageHeight) * Math.sin(Math.toRadians(centerCoordinates.azimuth)),
+                -fovDegrees / Math.min(imageWidth, imageHeight) * Math.sin(Math.toRadians(centerCoordinates.azimuth)),
+                -fovDegrees / Math.min(imageWidth, imageHeight) * Math.cos(Math.toRadians(centerCoordinates.azimuth)),
+                DEFAULT_DISTORTION, 0);
+    }
+
+    /**
+     * Creates a converter from explicit WCS parameters, such as a plate solution.
+     * The reference pixel is the image center.
+     *
+     * @param crval1 RA at the reference pixel (degrees)
+     * @param crval2 Dec at the reference pixel (degrees)
+     * @param cd1_1 CD matrix, degrees per pixel
+     * @param distortion1 r^2 coefficient of the radial correction, r in units of the half short side
+     * @param distortion2 r^4 coefficient of the radial correction
+     */
+    public PixelToCelestialConverter(int imageWidth, int imageHeight, double crval1, double crval2,
+                                     double cd1_1, double cd1_2, double cd2_1, double cd2_2,
+                                     double distortion1, double distortion2) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
 
         // Set reference pixel to center of image
         this.crpix1 = imageWidth / 2.0;
         this.crpix2 = imageHeight / 2.0;
 
-        // Calculate aspect ratio
-        // Image aspect ratio
-        double aspectRatio = (double) imageWidth / imageHeight;
+        this.crval1 = crval1;
+        this.crval2 = crval2;
+        this.cd1_1 = cd1_1;
+        this.cd1_2 = cd1_2;
+        this.cd2_1 = cd2_1;
+        this.cd2_2 = cd2_2;
+        this.distortion1 = distortion1;
+        this.distortion2 = distortion2;
 
-        // Set reference values to the center coordinates (convert RA from hours to degrees)
-        this.crval1 = centerCoordinates.rightAscension * 15.0; // Convert hours to degrees
-        this.crval2 = centerCoordinates.declination;
+        this.ra0Rad = Math.toRadians(crval1);
+        double dec0Rad = Math.toRadians(crval2);
+        this.sinDec0 = Math.sin(dec0Rad);
+        this.cosDec0 = Math.cos(dec0Rad);
 
-        // Calculate pixel scale (degrees per pixel)
-        // For a 66-degree FOV, we need to adjust the scale calculation
-        // Use the smaller dimension to ensure the FOV fits within the image
-        double scale = this.fovDegrees / Math.min(imageWidth, imageHeight);
-
-        // Account for device orientation from azimuth
-        double deviceRotation = Math.toRadians(centerCoordinates.azimuth);
+        double det = cd1_1 * cd2_2 - cd1_2 * cd2_1;
+        this.singular = Math.abs(det) < 1e-10;
+        double radToPixel = singular ? 0 : Math.toDegrees(1.0) / det;
+        this.inv1_1 = cd2_2 * radToPixel;
+        this.inv1_2 = -cd1_2 * radToPixel;
+        this.inv2_1 = -cd2_1 * radToPixel;
+        this.inv2_2 = cd1_1 * radToPixel;
+        this.fovDegrees = Math.sqrt(Math.abs(det)) * Math.min(imageWidth, imageHeight);
 
-        // Set up the CD matrix with rotation to account for device orientation
-        this.cd1_1 = -scale * Math.cos(deviceRotation);
-        this.cd1_2 = scale * Math.sin(deviceRotation);
-        this.cd2_1 = -scale * Math.sin(deviceRotation);
-        this.cd2_2 = -scale * Math.cos(deviceRotation);
+        double maxDistance = Math.min(crpix1, crpix2);
+        this.distortionK = distortion1 / (maxDistance * maxDistance);
+        this.distortionK2 = distortion2 / (maxDistance * maxDistance * maxDistance * maxDistance);
     }
 
     /**
@@ -112,7 +163,8 @@ public class PixelToCelestialConverter {
         // Only apply correction if point is not at center
         if (distanceFromCenter > 0) {
             // Correction increases with distance from center
-            double correctionFactor = 1.0 + 0.1 * Math.pow(distanceFromCenter / maxDistance, 2);
+            double r2 = Math.pow(distanceFromCenter / maxDistance, 2);
+            double correctionFactor = 1.0 + distortion1 * r2 + distortion2 * r2 * r2;
             double angle = Math.atan2(y - crpix2, x - crpix1);
 
             // Apply correction
@@ -123,6 +175,80 @@ public class PixelToCelestialConverter {
         return new double[] {x, y};
     }
 
+    /**
+     * Projects a batch of celestial positions into caller-owned arrays without allocating.
+     * Gives the same result as {@link #celestialToPixel(double, double)} for each point.
+     *
+     * @param ra Right Ascension of each point in hours
+     * @param dec Declination of each point in degrees
+     * @param count Number of points to project
+     * @param outX Receives the x pixel coordinate, NaN if the point is not visible
+     * @param outY Receives the y pixel coordinate, NaN if the point is not visible
+     */
+    public void celestialToPixel(double[] ra, double[] dec, int count, double[] outX, double[] outY) {
+        for (int i = 0; i < count; i++) {
+            double raRad = Math.toRadians(ra[i] * 15.0);
+            double decRad = Math.toRadians(dec[i]);
+            double cosDec = Math.cos(decRad);
+            double deltaRA = raRad - ra0Rad;
+            project(cosDec * Math.sin(deltaRA), cosDec * Math.cos(deltaRA), Math.sin(decRad),
+                    outX, outY, i);
+        }
+    }
+
+    /**
+     * Projects catalog stars from their precomputed unit vectors, so the batch
+     * needs no trigonometry at all. Does not allocate.
+     *
+     * @param unitX Unit vector x component of every catalog star
+     * @param unitY Unit vector y component of every catalog star
+     * @param unitZ Unit vector z component of every catalog star
+     * @param indices Catalog indices of the stars to project
+     * @param count Number of indices to project
+     * @param outX Receives the x pixel coordinate of indices[i] at i, NaN if not visible
+     * @param outY Receives the y pixel coordinate of indices[i] at i, NaN if not visible
+     */
+    public void unitVectorsToPixel(double[] unitX, double[] unitY, double[] unitZ,
+                                   int[] indices, int count, double[] outX, double[] outY) {
+        // Rotate the RA axis onto the reference meridian once for the whole batch
+        double sinRA0 = Math.sin(ra0Rad);
+        double cosRA0 = Math.cos(ra0Rad);
+        for (int i = 0; i < count; i++) {
+            int star = indices[i];
+            double x = unitX[star];
+            double y = unitY[star];
+            project(y * cosRA0 - x * sinRA0, x * cosRA0 + y * sinRA0, unitZ[star], outX, outY, i);
+        }
+    }
+
+    /**
+     * Stereographic projection, inverse CD matrix and radial correction of one point
+     *
+     * @param east cos(dec) * sin(ra - ra0)
+     * @param toward cos(dec) * cos(ra - ra0)
+     * @param sinDec sin(dec)
+     */
+    private void project(double east, double toward, double sinDec, double[] outX, double[] outY, int i) {
+        double cosC = sinDec * sinDec0 + toward * cosDec0;
+        if (cosC <= 0 || singular) {
+            outX[i] = Double.NaN;
+            outY[i] = Double.NaN;
+            return;
+        }
+        double scale = 2 / (1 + cosC);
+        double xStandard = scale * east;
+        double yStandard = scale * (sinDec * cosDec0 - toward * sinDec0);
+
+        double dx = inv1_1 * xStandard + inv1_2 * yStandard;
+        double dy = inv2_1 * xStandard + inv2_2 * yStandard;
+
+        // Same radial correction as the scalar path, without the sqrt/atan2/cos/sin round trip
+        double r2 = dx * dx + dy * dy;
+        double correctionFactor = 1.0 + distortionK * r2 + distortionK2 * r2 * r2;
+        outX[i] = crpix1 + dx * correctionFactor;
+        outY[i] = crpix2 + dy * correctionFactor;
+    }
+
     /**
      * Converts pixel position to celestial coordinates
      * Added for completeness and testing
@@ -143,8 +269,19 @@ public class PixelToCelestialConverter {
         double dx = x - crpix1;
         double dy = y - crpix2;
 
-        double x_intermediate = (cd1_1 * dx + cd1_2 * dy) / det;
-        double y_intermediate = (cd2_1 * dx + cd2_2 * dy) / det;
+        // Undo the radial correction; the fixed point converges quickly for the small
+        // coefficients a lens needs
+        double observedX = dx;
+        double observedY = dy;
+        for (int i = 0; i < 30; i++) {
+            double r2 = dx * dx + dy * dy;
+            double correctionFactor = 1.0 + distortionK * r2 + distortionK2 * r2 * r2;
+            dx = observedX / correctionFactor;
+            dy = observedY / correctionFactor;
+        }
+
+        double x_intermediate = cd1_1 * dx + cd1_2 * dy;
+        double y_intermediate = cd2_1 * dx + cd2_2 * dy;
 
         // Convert to radians
         double x_rad = Math.toRadians(x_intermediate);
@@ -180,4 +317,48 @@ public class PixelToCelestialConverter {
 
         return new double[] {ra_hours, dec_degrees};
     }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    /**
+     * @return RA at the reference pixel (degrees)
+     */
+    public double getCrval1() {
+        return crval1;
+    }
+
+    /**
+     * @return Dec at the reference pixel (degrees)
+     */
+    public double getCrval2() {
+        return crval2;
+    }
+
+    /**
+     * @return The CD matrix {cd1_1, cd1_2, cd2_1, cd2_2}, degrees per pixel
+     */
+    public double[] getCdMatrix() {
+        return new double[] {cd1_1, cd1_2, cd2_1, cd2_2};
+    }
+
+    public double getDistortion1() {
+        return distortion1;
+    }
+
+    public double getDistortion2() {
+        return distortion2;
+    }
+
+    /**
+     * @return Field of view across the shorter image side (degrees)
+     */
+    public double getFovDegrees() {
+        return fovDegrees;
+    }
 }
@@ -1,89 +1,222 @@
 package com.example.project;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
-import java.io.BufferedReader;
+import com.example.project.catalog.CatalogFormat;
+import com.example.project.catalog.PatternFormat;
+import com.example.project.catalog.PatternIndex;
+import com.example.project.catalog.SkyIndex;
+import com.example.project.catalog.StarCatalog;
+
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class StarDatabase {
-    private static final List<Star> stars = new ArrayList<>();
-    private static boolean isDataLoaded = false;
-    private static int totalLineCount = 0;
+    private static final String TAG = "StarDatabase";
+    private static final String CATALOG_ASSET = "stars.bin";
+    private static final String PATTERN_ASSET = "patterns.bin";
+
+    private static final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final List<LoadListener> pendingListeners = new ArrayList<>();
+
+    private static StarCatalog catalog;
+    private static Star[] stars;
+    private static SkyIndex skyIndex;
+    private static PatternIndex patternIndex;
+    private static Future<Boolean> loadFuture;
+    private static IOException loadError;
+    private static boolean loadFinished = false;
+    private static volatile boolean isDataLoaded = false;
 
-    // Load stars from the JSON file
-    static {
-        loadStarsFromFile("stars.json");
+    // Load timing, reported once the first query has run
+    private static long loadStartNanos;
+    private static long loadDurationNanos;
+    private static volatile long firstQueryLatencyNanos = -1;
+
+    /**
+     * Receives the outcome of the catalog load on the main thread
+     */
+    public interface LoadListener {
+        void onStarDataLoaded(int starCount);
+        void onStarDataFailed(IOException error);
     }
 
     /**
-     * Loads star data from the JSON file
+     * Starts loading the catalog on a background thread. Safe to call more than once.
      *
-     * @param filename The name of the file to read
+     * @param context Any context, used to reach the app assets
+     * @return Future that completes with true once the catalog is queryable
      */
-    private static void loadStarsFromFile(String filename) {
-        try {
-            // Read the JSON file from assets
-            StringBuilder jsonString = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    MyApplication.getContext().getAssets().open(filename)))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    totalLineCount++;
-                    jsonString.append(line);
-                }
-            }
+    public static synchronized Future<Boolean> preload(Context context) {
+        if (loadFuture == null) {
+            AssetManager assets = context.getApplicationContext().getAssets();
+            loadStartNanos = System.nanoTime();
+            loadFuture = loadExecutor.submit(() -> loadStarsFromFile(assets, CATALOG_ASSET));
+        }
+        return loadFuture;
+    }
 
-            // Parse JSON using Gson
-            Gson gson = new Gson();
-            Type starListType = new TypeToken<List<StarJson>>(){}.getType();
-            List<StarJson> starJsonList = gson.fromJson(jsonString.toString(), starListType);
-
-            // Convert StarJson objects to Star objects
-            for (StarJson starJson : starJsonList) {
-                Star star = new Star(
-                        starJson.Name,
-                        starJson.Ra,  // RA is already in hours in the JSON
-                        starJson.Dec,
-                        0  // Magnitude not provided in the file
-                );
-                stars.add(star);
+    /**
+     * Calls the listener on the main thread once the catalog has loaded (or failed to).
+     * Starts loading if nothing has requested it yet.
+     */
+    public static void whenLoaded(Context context, LoadListener listener) {
+        synchronized (StarDatabase.class) {
+            preload(context);
+            if (!loadFinished) {
+                pendingListeners.add(listener);
+                return;
             }
+        }
+        mainHandler.post(() -> notifyListener(listener));
+    }
 
+    private static void notifyListener(LoadListener listener) {
+        if (isDataLoaded) {
+            listener.onStarDataLoaded(catalog.size());
+        } else {
+            listener.onStarDataFailed(loadError);
+        }
+    }
+
+    /**
+     * Loads star data from the binary catalog asset
+     *
+     * @param assets Asset manager holding the catalog
+     * @param filename The name of the asset to read
+     * @return Whether the catalog loaded
+     */
+    private static boolean loadStarsFromFile(AssetManager assets, String filename) {
+        try {
+            ByteBuffer buffer = readAsset(assets, filename);
+            catalog = CatalogFormat.read(buffer);
+            stars = new Star[catalog.size()];
+            skyIndex = catalog.createIndex();
+            loadDurationNanos = System.nanoTime() - loadStartNanos;
+            loadPatterns(assets);
             isDataLoaded = true;
-            System.out.println("Read " + totalLineCount + " lines, loaded " + stars.size() + " stars.");
+            Log.i(TAG, "Loaded " + catalog.size() + " stars in " + loadDurationNanos / 1000 + " us");
         } catch (IOException e) {
-            System.err.println("Error reading star data file: " + e.getMessage());
-            e.printStackTrace();
+            Log.e(TAG, "Error reading star data file", e);
+            loadError = e;
             isDataLoaded = false;
-        } catch (Exception e) {
-            System.err.println("Error parsing JSON: " + e.getMessage());
-            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // A corrupt file can still trip a decoder check; listeners must hear about it either way
+            Log.e(TAG, "Error decoding star data file", e);
+            loadError = new IOException("Corrupt star data file " + filename, e);
             isDataLoaded = false;
+        } finally {
+            if (!isDataLoaded && loadError == null) {
+                // An Error such as OutOfMemoryError is on its way up; still give listeners a cause
+                loadError = new IOException("Could not load star data file " + filename);
+            }
+            List<LoadListener> listeners;
+            synchronized (StarDatabase.class) {
+                loadFinished = true;
+                listeners = new ArrayList<>(pendingListeners);
+                pendingListeners.clear();
+            }
+            for (LoadListener listener : listeners) {
+                mainHandler.post(() -> notifyListener(listener));
+            }
         }
+        return isDataLoaded;
     }
 
     /**
-     * Helper class for JSON deserialization
+     * Loads the star pattern index. Without it stars are only matched from the
+     * sensor pose, so a missing or stale index is logged rather than failing the load.
      */
-    private static class StarJson {
-        public double Ra;
-        public double Dec;
-        public String Name;
+    private static void loadPatterns(AssetManager assets) {
+        try {
+            patternIndex = PatternFormat.read(readAsset(assets, PATTERN_ASSET), catalog);
+            Log.i(TAG, "Loaded " + patternIndex.getTriangleCount() + " star patterns");
+        } catch (IOException | RuntimeException e) {
+            patternIndex = null;
+            Log.w(TAG, "Star pattern index unavailable, identification disabled", e);
+        }
+    }
+
+    /**
+     * Maps the asset when it is stored uncompressed, otherwise reads it in one go
+     */
+    private static ByteBuffer readAsset(AssetManager assets, String filename) throws IOException {
+        try (AssetFileDescriptor descriptor = assets.openFd(filename);
+             FileInputStream stream = descriptor.createInputStream();
+             FileChannel channel = stream.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            // openFd only works for uncompressed assets; fall back to a bulk read
+        }
+
+        try (InputStream stream = assets.open(filename)) {
+            byte[] bytes = new byte[Math.max(stream.available(), 8192)];
+            int length = 0;
+            int read;
+            while ((read = stream.read(bytes, length, bytes.length - length)) != -1) {
+                length += read;
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+            }
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Returns the star at a catalog index, creating its object on first use
+     */
+    private static Star getStar(int index) {
+        Star star = stars[index];
+        if (star == null) {
+            star = new Star(
+                    catalog.getName(index),
+                    catalog.getRightAscension()[index],
+                    catalog.getDeclination()[index],
+                    catalog.getMagnitude()[index]);
+            stars[index] = star;
+        }
+        return star;
     }
 
     public static int getLoadedStarCount() {
-        return stars.size();
+        return catalog != null ? catalog.size() : 0;
     }
 
     public static boolean isStarDataLoaded() {
         return isDataLoaded;
     }
 
+    /**
+     * @return The loaded catalog as parallel primitive arrays, or null before it has loaded
+     */
+    public static StarCatalog getCatalog() {
+        return isDataLoaded ? catalog : null;
+    }
+
+    /**
+     * @return The star pattern index, or null if it is not loaded
+     */
+    public static PatternIndex getPatternIndex() {
+        return isDataLoaded ? patternIndex : null;
+    }
+
     /**
      * Finds stars within a given field of view
      *
@@ -92,47 +225,73 @@ public class StarDatabase {
      * @param fovWidth Field of view width (degrees)
      * @param fovHeight Field of view height (degrees)
      * @param maxMagnitude Maximum magnitude to include (higher number = more stars)
-     * @return List of stars in the field of view
+     * @return List of stars in the field of view, empty until the catalog has loaded
      */
     public static List<Star> getStarsInFieldOfView(double centerRA, double centerDec,
                                                    double fovWidth, double fovHeight,
                                                    double maxMagnitude) {
-        // Existing implementation remains the same
         List<Star> visibleStars = new ArrayList<>();
+        if (!isDataLoaded) {
+            return visibleStars;
+        }
+        long queryStart = System.nanoTime();
 
         double fovWidthHours = fovWidth / 15.0;
-        double minRA = centerRA - (fovWidthHours / 2.0);
-        double maxRA = centerRA + (fovWidthHours / 2.0);
-        double minDec = centerDec - (fovHeight / 2.0);
-        double maxDec = centerDec + (fovHeight / 2.0);
+        skyIndex.forEachInBox(
+                fovMinRA(centerRA, fovWidthHours), fovMaxRA(centerRA, fovWidthHours),
+                centerDec - (fovHeight / 2.0), centerDec + (fovHeight / 2.0),
+                maxMagnitude, index -> visibleStars.add(getStar(index)));
 
-        boolean raWraps = minRA < 0 || maxRA >= 24;
+        recordQueryLatency(queryStart);
+        return visibleStars;
+    }
 
-        for (Star star : stars) {
-            if (star.declination < minDec || star.declination > maxDec) {
-                continue;
-            }
+    /**
+     * Finds stars within a given field of view without allocating. Star data for
+     * the returned indices is read from {@link #getCatalog()}.
+     *
+     * @param centerRA Right ascension of the center (hours)
+     * @param centerDec Declination of the center (degrees)
+     * @param fovWidth Field of view width (degrees)
+     * @param fovHeight Field of view height (degrees)
+     * @param maxMagnitude Maximum magnitude to include (higher number = more stars)
+     * @param out Receives catalog indices of the stars in view
+     * @return Number of stars in view, which may exceed out.length (extra matches are not stored)
+     */
+    public static int queryFieldOfView(double centerRA, double centerDec,
+                                       double fovWidth, double fovHeight,
+                                       double maxMagnitude, int[] out) {
+        if (!isDataLoaded) {
+            return 0;
+        }
+        long queryStart = System.nanoTime();
 
-            boolean inRARange;
-            if (raWraps) {
-                minRA = (minRA + 24) % 24;
-                maxRA = (maxRA + 24) % 24;
+        double fovWidthHours = fovWidth / 15.0;
+        int found = skyIndex.collectInBox(
+                fovMinRA(centerRA, fovWidthHours), fovMaxRA(centerRA, fovWidthHours),
+                centerDec - (fovHeight / 2.0), centerDec + (fovHeight / 2.0),
+                maxMagnitude, out);
 
-                if (minRA > maxRA) {
-                    inRARange = (star.rightAscension >= minRA || star.rightAscension <= maxRA);
-                } else {
-                    inRARange = (star.rightAscension >= minRA && star.rightAscension <= maxRA);
-                }
-            } else {
-                inRARange = (star.rightAscension >= minRA && star.rightAscension <= maxRA);
-            }
+        recordQueryLatency(queryStart);
+        return found;
+    }
 
-            if (inRARange) {
-                visibleStars.add(star);
-            }
-        }
+    // RA bounds (and any wrap through 0h) are resolved once per query, not per star
+    private static double fovMinRA(double centerRA, double fovWidthHours) {
+        return fovWidthHours >= 24 ? 0 : ((centerRA - fovWidthHours / 2.0) % 24 + 24) % 24;
+    }
 
-        return visibleStars;
+    private static double fovMaxRA(double centerRA, double fovWidthHours) {
+        return fovWidthHours >= 24 ? 24 : ((centerRA + fovWidthHours / 2.0) % 24 + 24) % 24;
+    }
+
+    private static void recordQueryLatency(long queryStart) {
+        if (firstQueryLatencyNanos < 0) {
+            firstQueryLatencyNanos = System.nanoTime() - queryStart;
+            Log.i(TAG, "First field-of-view query took " + firstQueryLatencyNanos / 1000
+                    + " us, " + (queryStart - loadStartNanos) / 1_000_000
+                    + " ms after loading started (load took " + loadDurationNanos / 1_000_000 + " ms)");
+        }
     }
 
     /**
@@ -0,0 +1,199 @@
+package com.example.project;
+
+import android.graphics.Bitmap;
+
+import com.example.project.detection.DetectedStar;
+import com.example.project.detection.NeighbourSuppressor;
+import com.example.project.detection.StarDetector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds star-like blobs in a bitmap.
+ *
+ * The frame is converted to luminance once and split into overlapping tiles. Each
+ * tile runs a {@link StarDetector} in parallel on a fork-join pool with one worker
+ * per core. The overlap covers the threshold window and the ROI margin, so each tile
+ * sees every blob whose center falls in its own core area exactly as a whole-frame
+ * pass would. A tile reports only those blobs, so a blob on a seam is found once;
+ * spacing suppression then runs over the merged list.
+ *
+ * An instance keeps its luminance buffer and the scratch of its tile detectors
+ * between calls, and nothing else holds on to them, so they are freed along with
+ * the instance. Calls on one instance are serialized.
+ */
+public class TiledStarDetector {
+    private static final int TILE_SIZE = 512;
+    // Threshold window radius (5) + blur radius (1) + ROI margin (5) + largest accepted blob
+    private static final int TILE_OVERLAP = 16;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Idle detectors, borrowed by one tile at a time so scratch buffers are reused across tiles and calls
+    private final ConcurrentLinkedQueue<StarDetector> detectors = new ConcurrentLinkedQueue<>();
+    private final NeighbourSuppressor suppressor = new NeighbourSuppressor();
+
+    private byte[] gray = new byte[0];
+    private int[] rowPixels = new int[0];
+
+    /**
+     * Detects stars in the image
+     *
+     * @param bitmap Image to search
+     * @return Stars with centroids in bitmap pixels
+     */
+    public synchronized List<DetectedStar> detectStars(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        toLuminance(bitmap, width, height);
+
+        List<int[]> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                tiles.add(new int[] {x, y, Math.min(x + TILE_SIZE, width), Math.min(y + TILE_SIZE, height)});
+            }
+        }
+        Candidates candidates = pool.invoke(new TileRange(width, height, tiles, 0, tiles.size()));
+
+        int kept = suppressor.suppress(candidates.x, candidates.y, candidates.flux,
+                candidates.count, StarDetector.MIN_STAR_SPACING);
+        List<DetectedStar> stars = new ArrayList<>(kept);
+        for (int i = 0; i < kept; i++) {
+            stars.add(new DetectedStar(candidates.x[i], candidates.y[i], candidates.flux[i]));
+        }
+        return stars;
+    }
+
+    /**
+     * Fills the instance buffer with 8-bit luminance
+     */
+    private void toLuminance(Bitmap bitmap, int width, int height) {
+        if (gray.length < width * height) {
+            gray = new byte[width * height];
+        }
+        if (rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+        toLuminance(bitmap, gray, rowPixels);
+    }
+
+    /**
+     * Converts a bitmap to 8-bit luminance, weighted as OpenCV's RGB2GRAY
+     *
+     * @param out Receives width x height pixels
+     * @param rowPixels Scratch row of at least width pixels
+     */
+    static void toLuminance(Bitmap bitmap, byte[] out, int[] rowPixels) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        for (int y = 0; y < height; y++) {
+            bitmap.getPixels(rowPixels, 0, width, 0, y, width, 1);
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                int pixel = rowPixels[x];
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                out[i] = (byte) ((r * 4899 + g * 9617 + b * 1868 + (1 << 13)) >> 14);
+            }
+        }
+    }
+
+    /**
+     * Growable candidate positions (full image coordinates) and fluxes
+     */
+    private static class Candidates {
+        int count;
+        double[] x = new double[16];
+        double[] y = new double[16];
+        double[] flux = new double[16];
+
+        void add(double px, double py, double pflux) {
+            if (count == x.length) {
+                x = Arrays.copyOf(x, count * 2);
+                y = Arrays.copyOf(y, count * 2);
+                flux = Arrays.copyOf(flux, count * 2);
+            }
+            x[count] = px;
+            y[count] = py;
+            flux[count] = pflux;
+            count++;
+        }
+
+        void addAll(Candidates other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.x[i], other.y[i], other.flux[i]);
+            }
+        }
+    }
+
+    /**
+     * Processes a run of tiles, halving it until a single tile is left.
+     * Results keep tile order, so the merged list is deterministic.
+     */
+    private class TileRange extends RecursiveTask<Candidates> {
+        private final int width;
+        private final int height;
+        private final List<int[]> tiles;
+        private final int from;
+        private final int to;
+
+        TileRange(int width, int height, List<int[]> tiles, int from, int to) {
+            this.width = width;
+            this.height = height;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Candidates compute() {
+            if (to - from == 1) {
+                return detectInTile(tiles.get(from));
+            }
+            int mid = (from + to) >>> 1;
+            TileRange left = new TileRange(width, height, tiles, from, mid);
+            TileRange right = new TileRange(width, height, tiles, mid, to);
+            right.fork();
+            Candidates merged = left.compute();
+            merged.addAll(right.join());
+            return merged;
+        }
+
+        /**
+         * Runs the detector on a tile plus its overlap and keeps the blobs
+         * centered inside the tile itself
+         */
+        private Candidates detectInTile(int[] tile) {
+            int x0 = Math.max(tile[0] - TILE_OVERLAP, 0);
+            int y0 = Math.max(tile[1] - TILE_OVERLAP, 0);
+            int x1 = Math.min(tile[2] + TILE_OVERLAP, width);
+            int y1 = Math.min(tile[3] + TILE_OVERLAP, height);
+
+            StarDetector detector = detectors.poll();
+            if (detector == null) {
+                detector = new StarDetector();
+            }
+            try {
+                int found = detector.findCandidates(gray, y0 * width + x0, width, x1 - x0, y1 - y0);
+
+                Candidates centers = new Candidates();
+                for (int i = 0; i < found; i++) {
+                    double x = x0 + detector.getX(i);
+                    double y = y0 + detector.getY(i);
+                    // Blobs centered in the overlap belong to the neighbouring tile
+                    if (x >= tile[0] && x < tile[2] && y >= tile[1] && y < tile[3]) {
+                        centers.add(x, y, detector.getFlux(i));
+                    }
+                }
+                return centers;
+            } finally {
+                detectors.add(detector);
+            }
+        }
+    }
+}
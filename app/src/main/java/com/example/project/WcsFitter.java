@@ -0,0 +1,317 @@
+package com.example.project;
+
+import java.util.Arrays;
+
+/**
+ * Refines a WCS from detected stars matched to catalog positions (plate solving).
+ *
+ * Starting from an initial converter, usually the sensor-derived one, the CD
+ * matrix is first re-estimated by linear least squares around the initial
+ * CRVAL. A Levenberg-Marquardt fit then refines CRVAL, the CD matrix and,
+ * given enough pairs, the r^2 and r^4 radial distortion coefficients, by
+ * minimising the pixel residuals of the projected catalog positions. Pairs
+ * far off the fit are dropped and the fit repeated, so a few wrong matches do
+ * not pull the solution.
+ */
+public final class WcsFitter {
+    // CRVAL and the CD matrix need three pairs; the extra pairs leave residuals to judge the fit by
+    public static final int MIN_PAIRS = 4;
+    private static final int MIN_DISTORTION_PAIRS = 10;
+    private static final int MAX_ITERATIONS = 30;
+    private static final int MAX_REJECTION_ROUNDS = 3;
+    private static final double OUTLIER_SIGMA = 3.0;
+    private static final double MIN_OUTLIER_PIXELS = 2.0;
+    // Residual given to a catalog star that falls behind the camera under a trial solution
+    private static final double INVISIBLE_RESIDUAL = 1e4;
+
+    /**
+     * A refined converter and how well it explains the pairs it kept
+     */
+    public static final class Fit {
+        public final PixelToCelestialConverter converter;
+        /** RMS pixel residual over the pairs kept */
+        public final double rms;
+        /** Number of pairs kept after outlier rejection */
+        public final int pairCount;
+        /** Whether each input pair was kept */
+        public final boolean[] inlier;
+
+        Fit(PixelToCelestialConverter converter, double rms, int pairCount, boolean[] inlier) {
+            this.converter = converter;
+            this.rms = rms;
+            this.pairCount = pairCount;
+            this.inlier = inlier;
+        }
+    }
+
+    private WcsFitter() {
+    }
+
+    /**
+     * @param initial Starting solution; its image size and CRVAL seed the fit
+     * @param ra Catalog right ascension of each pair (hours)
+     * @param dec Catalog declination of each pair (degrees)
+     * @param x Detected x of each pair (pixels)
+     * @param y Detected y of each pair (pixels)
+     * @param count Number of pairs
+     * @return The refined solution, or null if there are too few usable pairs
+     */
+    public static Fit fit(PixelToCelestialConverter initial, double[] ra, double[] dec,
+                          double[] x, double[] y, int count) {
+        if (count < MIN_PAIRS) {
+            return null;
+        }
+        int width = initial.getImageWidth();
+        int height = initial.getImageHeight();
+        double[] cd = initial.getCdMatrix();
+        double[] params = {initial.getCrval1(), initial.getCrval2(), cd[0], cd[1], cd[2], cd[3],
+                initial.getDistortion1(), initial.getDistortion2()};
+        boolean[] inlier = new boolean[count];
+        Arrays.fill(inlier, true);
+        estimateCd(params, width, height, ra, dec, x, y, count);
+
+        double[] residuals = new double[2 * count];
+        int kept = count;
+        for (int round = 0; round <= MAX_REJECTION_ROUNDS; round++) {
+            int fitted = kept >= MIN_DISTORTION_PAIRS ? 8 : 6;
+            levenbergMarquardt(params, fitted, width, height, ra, dec, x, y, count, inlier);
+            // The last round only fits, so the solution never includes a pair marked as an outlier
+            if (round == MAX_REJECTION_ROUNDS) {
+                break;
+            }
+
+            // Drop the pairs far outside the residual spread and fit again
+            computeResiduals(params, width, height, ra, dec, x, y, count, inlier, residuals);
+            double limit = Math.max(OUTLIER_SIGMA * Math.sqrt(sumOfSquares(residuals) / kept),
+                    MIN_OUTLIER_PIXELS);
+            int rejected = 0;
+            for (int i = 0; i < count; i++) {
+                if (inlier[i] && Math.hypot(residuals[2 * i], residuals[2 * i + 1]) > limit) {
+                    rejected++;
+                }
+            }
+            if (rejected == 0 || kept - rejected < MIN_PAIRS) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (inlier[i] && Math.hypot(residuals[2 * i], residuals[2 * i + 1]) > limit) {
+                    inlier[i] = false;
+                }
+            }
+            kept -= rejected;
+        }
+
+        computeResiduals(params, width, height, ra, dec, x, y, count, inlier, residuals);
+        double rms = Math.sqrt(sumOfSquares(residuals) / kept);
+        return new Fit(toConverter(params, width, height), rms, kept, inlier);
+    }
+
+    private static PixelToCelestialConverter toConverter(double[] params, int width, int height) {
+        return new PixelToCelestialConverter(width, height, params[0], params[1],
+                params[2], params[3], params[4], params[5], params[6], params[7]);
+    }
+
+    /**
+     * Linear least-squares CD matrix for the current CRVAL and distortion, which
+     * recovers the plate scale and roll even when the sensor azimuth is far off
+     */
+    private static void estimateCd(double[] params, int width, int height, double[] ra, double[] dec,
+                                   double[] x, double[] y, int count) {
+        double ra0 = Math.toRadians(params[0]);
+        double sinDec0 = Math.sin(Math.toRadians(params[1]));
+        double cosDec0 = Math.cos(Math.toRadians(params[1]));
+        double maxDistance = Math.min(width, height) / 2.0;
+
+        double sxx = 0, sxy = 0, syy = 0;
+        double sxu = 0, syu = 0, sxv = 0, syv = 0;
+        for (int i = 0; i < count; i++) {
+            double raRad = Math.toRadians(ra[i] * 15.0);
+            double decRad = Math.toRadians(dec[i]);
+            double cosDec = Math.cos(decRad);
+            double sinDec = Math.sin(decRad);
+            double cosDeltaRA = Math.cos(raRad - ra0);
+            double cosC = sinDec * sinDec0 + cosDec * cosDec0 * cosDeltaRA;
+            if (cosC <= 0) {
+                continue;
+            }
+            // Stereographic intermediate coordinates in degrees, as the converter computes them
+            double scale = Math.toDegrees(2 / (1 + cosC));
+            double u = scale * cosDec * Math.sin(raRad - ra0);
+            double v = scale * (sinDec * cosDec0 - cosDec * sinDec0 * cosDeltaRA);
+
+            // Detected offset from the center with the current radial correction divided out
+            double dx = x[i] - width / 2.0;
+            double dy = y[i] - height / 2.0;
+            double r2 = (dx * dx + dy * dy) / (maxDistance * maxDistance);
+            double correction = 1.0 + params[6] * r2 + params[7] * r2 * r2;
+            dx /= correction;
+            dy /= correction;
+
+            sxx += dx * dx;
+            sxy += dx * dy;
+            syy += dy * dy;
+            sxu += dx * u;
+            syu += dy * u;
+            sxv += dx * v;
+            syv += dy * v;
+        }
+        double det = sxx * syy - sxy * sxy;
+        if (Math.abs(det) < 1e-9 * (sxx * syy + 1)) {
+            return; // pairs on a line; keep the initial matrix
+        }
+        params[2] = (sxu * syy - syu * sxy) / det;
+        params[3] = (syu * sxx - sxu * sxy) / det;
+        params[4] = (sxv * syy - syv * sxy) / det;
+        params[5] = (syv * sxx - sxv * sxy) / det;
+    }
+
+    /**
+     * Minimises the squared pixel residuals of the inlier pairs over the first
+     * {@code fitted} parameters
+     */
+    private static void levenbergMarquardt(double[] params, int fitted, int width, int height,
+                                           double[] ra, double[] dec, double[] x, double[] y,
+                                           int count, boolean[] inlier) {
+        double cdScale = Math.sqrt(Math.abs(params[2] * params[5] - params[3] * params[4]));
+        // Finite difference step per parameter, relative to its typical size
+        double[] step = {1e-6, 1e-6, 1e-6 * cdScale, 1e-6 * cdScale, 1e-6 * cdScale, 1e-6 * cdScale, 1e-6, 1e-6};
+
+        double[] residuals = new double[2 * count];
+        double[] shifted = new double[2 * count];
+        double[][] jacobian = new double[fitted][2 * count];
+        double[] trial = new double[params.length];
+        double[][] normal = new double[fitted][fitted];
+        double[] gradient = new double[fitted];
+        double[] delta = new double[fitted];
+
+        computeResiduals(params, width, height, ra, dec, x, y, count, inlier, residuals);
+        double cost = sumOfSquares(residuals);
+        double lambda = 1e-3;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            for (int j = 0; j < fitted; j++) {
+                System.arraycopy(params, 0, trial, 0, params.length);
+                trial[j] += step[j];
+                computeResiduals(trial, width, height, ra, dec, x, y, count, inlier, shifted);
+                for (int k = 0; k < 2 * count; k++) {
+                    jacobian[j][k] = (shifted[k] - residuals[k]) / step[j];
+                }
+            }
+            for (int a = 0; a < fitted; a++) {
+                gradient[a] = dot(jacobian[a], residuals);
+                for (int b = 0; b <= a; b++) {
+                    normal[a][b] = dot(jacobian[a], jacobian[b]);
+                    normal[b][a] = normal[a][b];
+                }
+            }
+
+            // Raise the damping until a step lowers the cost
+            boolean improved = false;
+            double newCost = cost;
+            while (!improved && lambda < 1e12) {
+                double[][] damped = new double[fitted][];
+                for (int a = 0; a < fitted; a++) {
+                    damped[a] = normal[a].clone();
+                    damped[a][a] += lambda * Math.max(normal[a][a], 1e-30);
+                    delta[a] = -gradient[a];
+                }
+                if (solve(damped, delta)) {
+                    System.arraycopy(params, 0, trial, 0, params.length);
+                    for (int a = 0; a < fitted; a++) {
+                        trial[a] += delta[a];
+                    }
+                    computeResiduals(trial, width, height, ra, dec, x, y, count, inlier, shifted);
+                    newCost = sumOfSquares(shifted);
+                    improved = newCost < cost;
+                }
+                lambda = improved ? lambda / 10 : lambda * 10;
+            }
+            if (!improved) {
+                return;
+            }
+            System.arraycopy(trial, 0, params, 0, params.length);
+            System.arraycopy(shifted, 0, residuals, 0, residuals.length);
+            boolean converged = cost - newCost < 1e-10 * cost;
+            cost = newCost;
+            if (converged) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Projected minus detected position of each inlier pair; outliers get zero residuals
+     */
+    private static void computeResiduals(double[] params, int width, int height, double[] ra, double[] dec,
+                                         double[] x, double[] y, int count, boolean[] inlier,
+                                         double[] out) {
+        PixelToCelestialConverter converter = toConverter(params, width, height);
+        double[] projectedX = new double[count];
+        double[] projectedY = new double[count];
+        converter.celestialToPixel(ra, dec, count, projectedX, projectedY);
+        for (int i = 0; i < count; i++) {
+            if (!inlier[i]) {
+                out[2 * i] = 0;
+                out[2 * i + 1] = 0;
+            } else if (Double.isNaN(projectedX[i])) {
+                out[2 * i] = INVISIBLE_RESIDUAL;
+                out[2 * i + 1] = INVISIBLE_RESIDUAL;
+            } else {
+                out[2 * i] = projectedX[i] - x[i];
+                out[2 * i + 1] = projectedY[i] - y[i];
+            }
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double sumOfSquares(double[] values) {
+        return dot(values, values);
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting; the solution replaces b
+     *
+     * @return False if the matrix is singular
+     */
+    private static boolean solve(double[][] a, double[] b) {
+        int n = b.length;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1e-300) {
+                return false;
+            }
+            double[] swapRow = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swapRow;
+            double swap = b[col];
+            b[col] = b[pivot];
+            b[pivot] = swap;
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int k = col; k < n; k++) {
+                    a[row][k] -= factor * a[col][k];
+                }
+                b[row] -= factor * b[col];
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = b[row];
+            for (int k = row + 1; k < n; k++) {
+                sum -= a[row][k] * b[k];
+            }
+            b[row] = sum / a[row][row];
+        }
+        return true;
+    }
+}
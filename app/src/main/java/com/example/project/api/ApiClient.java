@@ -4,22 +4,67 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Call;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+/**
+ * Builds the Retrofit service for the celestial server.
+ *
+ * A single OkHttpClient lives for the whole process. Its connection pool,
+ * dispatcher and transparent gzip (OkHttp asks for gzip and inflates it itself)
+ * are shared by every Retrofit instance, so changing the base URL only rebuilds
+ * the thin Retrofit layer and the service proxy. Timeouts on the client are
+ * backstops. Each call should get a deadline for its whole duration through
+ * {@link #withDeadline}, sized for its endpoint. The time to response headers is
+ * recorded per endpoint in a {@link LatencyHistogram}.
+ */
 public class ApiClient {
     private static final String TAG = "ApiClient";
-    private static final String DEFAULT_URL = "http://192.168.0.102:5000";
+    // No server until the user enters one
+    private static final String DEFAULT_URL = "";
     private static final String PREFS_NAME = "ApiPrefs";
     private static final String BASE_URL_KEY = "base_url";
 
+    // Whole-call deadlines, from connecting to the last byte of the body
+    public static final long CELESTIAL_DEADLINE_MS = 5_000;
+    public static final long SEGMENTS_DEADLINE_MS = 15_000;
+
+    private static final long CONNECT_TIMEOUT_MS = 3_000;
+    private static final long READ_WRITE_TIMEOUT_MS = 10_000;
+    private static final long CALL_TIMEOUT_MS = 30_000;
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private static OkHttpClient httpClient = null;
     private static Retrofit retrofit = null;
+    private static String retrofitBaseUrl = null;
+    private static CelestialApiService celestialApiService = null;
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
 
-    public static void resetClient() {
+    /**
+     * Drops the Retrofit instance and service so they are rebuilt on next use. The HTTP
+     * client and its open connections are kept.
+     */
+    public static synchronized void resetClient() {
         retrofit = null;
+        retrofitBaseUrl = null;
+        celestialApiService = null;
     }
 
     public static String getBaseUrl(Context context) {
@@ -27,32 +72,112 @@ public class ApiClient {
         return prefs.getString(BASE_URL_KEY, DEFAULT_URL);
     }
 
+    /**
+     * Stores the server URL. The service is rebuilt on next use only if the URL changed.
+     * An empty URL is stored as well, meaning no server is used. Other URLs should go
+     * through {@link #normalizeBaseUrl} first.
+     */
     public static void setBaseUrl(Context context, String url) {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         prefs.edit().putString(BASE_URL_KEY, url).apply();
-        resetClient();
     }
 
-    public static Retrofit getClient(Context context) {
-        if (retrofit == null) {
-            String baseUrl = getBaseUrl(context);
+    /**
+     * Brings a URL typed by the user into the form Retrofit accepts as a base URL: an
+     * http or https URL whose path ends with "/", so that relative endpoint paths
+     * resolve below it rather than replacing its last segment
+     *
+     * @param url URL as entered, with or without a trailing slash
+     * @return The normalized URL, or null if it is not an http or https URL
+     */
+    public static String normalizeBaseUrl(String url) {
+        HttpUrl parsed = url != null ? HttpUrl.parse(url.trim()) : null;
+        if (parsed == null) {
+            return null;
+        }
+        List<String> segments = parsed.pathSegments();
+        if (!segments.get(segments.size() - 1).isEmpty()) {
+            parsed = parsed.newBuilder().addPathSegment("").build();
+        }
+        return parsed.toString();
+    }
+
+    /**
+     * @return The process-wide HTTP client
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
 
-            OkHttpClient okHttpClient = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .writeTimeout(60, TimeUnit.SECONDS)
+            httpClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .dispatcher(dispatcher)
+                    .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .readTimeout(READ_WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .writeTimeout(READ_WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .callTimeout(CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .retryOnConnectionFailure(true)
+                    .addInterceptor(ApiClient::recordLatency)
                     .build();
+        }
+        return httpClient;
+    }
 
+    public static synchronized Retrofit getClient(Context context) {
+        String baseUrl = getBaseUrl(context);
+        if (retrofit == null || !baseUrl.equals(retrofitBaseUrl)) {
             retrofit = new Retrofit.Builder()
                     .baseUrl(baseUrl)
-                    .client(okHttpClient)
+                    .client(getHttpClient())
+                    .addConverterFactory(new CelestialWireConverterFactory())
                     .addConverterFactory(GsonConverterFactory.create())
                     .build();
+            retrofitBaseUrl = baseUrl;
+            celestialApiService = null;
+            Log.d(TAG, "Using server " + baseUrl);
         }
         return retrofit;
     }
-    public static CelestialApiService getCelestialApiService(Context context) {
-        return getClient(context).create(CelestialApiService.class);
+
+    public static synchronized CelestialApiService getCelestialApiService(Context context) {
+        Retrofit client = getClient(context);
+        if (celestialApiService == null) {
+            celestialApiService = client.create(CelestialApiService.class);
+        }
+        return celestialApiService;
+    }
+
+    /**
+     * Limits the whole call, including connecting, retries and reading the body, to a
+     * deadline. Call before executing or enqueueing.
+     *
+     * @return The same call
+     */
+    public static <T> Call<T> withDeadline(Call<T> call, long millis) {
+        call.timeout().timeout(millis, TimeUnit.MILLISECONDS);
+        return call;
     }
 
-}
\ No newline at end of file
+    /**
+     * @return Latency histograms keyed by method and path, e.g. "POST /celestial"
+     */
+    public static Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
+
+    private static Response recordLatency(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        LatencyHistogram histogram = latencies.computeIfAbsent(
+                request.method() + " " + request.url().encodedPath(), key -> new LatencyHistogram());
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(request);
+            histogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        } catch (IOException e) {
+            histogram.recordFailure();
+            throw e;
+        }
+    }
+}
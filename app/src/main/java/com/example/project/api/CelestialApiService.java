@@ -2,9 +2,16 @@ package com.example.project.api;
 
 import retrofit2.Call;
 import retrofit2.http.Body;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 
 public interface CelestialApiService {
+    // The server may answer in the compact binary form; JSON remains the fallback
+    @Headers("Accept: " + CelestialWireFormat.MEDIA_TYPE + ", application/json;q=0.5")
     @POST("/celestial")
-    Call<CelestialResponse> getCelestialCoordinates(@Body CelestialRequest request);
+    Call<CelestialPositions> getCelestialPositions(@Body CelestialRequest request);
+
+    // Every body over a window as Chebyshev segments, evaluated on the device for any time inside it
+    @POST("/celestial/chebyshev")
+    Call<ChebyshevResponse> getChebyshevCoefficients(@Body ChebyshevRequest request);
 }
@@ -0,0 +1,155 @@
+package com.example.project.api;
+
+import com.example.project.ephemeris.ChebyshevEphemeris;
+import com.example.project.ephemeris.Ephemeris;
+
+import java.util.Arrays;
+
+/**
+ * Body positions for one observer and time in primitive arrays, as carried by
+ * {@link CelestialWireFormat}. Bodies are identified by their {@link Ephemeris}
+ * index. This is what the server calls return and what the response cache
+ * stores; formatted strings are only built, through {@link CelestialResponse},
+ * for display. An instance can be refilled, so decoding into it allocates
+ * nothing once the arrays are large enough.
+ */
+public final class CelestialPositions {
+    private long timestamp;
+    private double latitude;
+    private double longitude;
+    private double altitude;
+    private int count;
+    private int[] bodies = new int[Ephemeris.BODY_COUNT];
+    private double[] rightAscension = new double[Ephemeris.BODY_COUNT];
+    private double[] declination = new double[Ephemeris.BODY_COUNT];
+
+    /**
+     * Drops every body and sets the time and observer
+     *
+     * @param timestamp UTC seconds
+     */
+    public void reset(long timestamp, double latitude, double longitude, double altitude) {
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        count = 0;
+    }
+
+    /**
+     * @param body Ephemeris index of the body
+     * @param raHours J2000 right ascension
+     * @param decDegrees J2000 declination
+     */
+    public void add(int body, double raHours, double decDegrees) {
+        if (count == bodies.length) {
+            bodies = Arrays.copyOf(bodies, count * 2);
+            rightAscension = Arrays.copyOf(rightAscension, count * 2);
+            declination = Arrays.copyOf(declination, count * 2);
+        }
+        bodies[count] = body;
+        rightAscension[count] = raHours;
+        declination[count] = decDegrees;
+        count++;
+    }
+
+    /**
+     * Fills with every body from the last computation of an ephemeris
+     *
+     * @param timestamp UTC seconds the ephemeris was computed for
+     */
+    public void set(Ephemeris ephemeris, long timestamp, double latitude, double longitude, double altitude) {
+        reset(timestamp, latitude, longitude, altitude);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            add(body, ephemeris.getRightAscension(body), ephemeris.getDeclination(body));
+        }
+    }
+
+    /**
+     * Fills with every body evaluated from Chebyshev segments
+     *
+     * @param segments Segments covering the time; their previous results are overwritten
+     * @param epochMillis UTC time
+     */
+    public void set(ChebyshevEphemeris segments, long epochMillis) {
+        segments.compute(epochMillis);
+        reset(epochMillis / 1000, segments.getLatitude(), segments.getLongitude(), segments.getAltitude());
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            add(body, segments.getRightAscension(body), segments.getDeclination(body));
+        }
+    }
+
+    /**
+     * @return A new instance with the same time, observer and bodies
+     */
+    public CelestialPositions copy() {
+        CelestialPositions copy = new CelestialPositions();
+        copy.timestamp = timestamp;
+        copy.latitude = latitude;
+        copy.longitude = longitude;
+        copy.altitude = altitude;
+        copy.count = count;
+        copy.bodies = Arrays.copyOf(bodies, bodies.length);
+        copy.rightAscension = Arrays.copyOf(rightAscension, rightAscension.length);
+        copy.declination = Arrays.copyOf(declination, declination.length);
+        return copy;
+    }
+
+    /**
+     * Positions a fraction of the way from one set to the next, with right ascension
+     * interpolated across the 24 h wrap. Bodies missing from the second set keep their
+     * first position.
+     */
+    static CelestialPositions interpolate(CelestialPositions from, CelestialPositions to, double fraction) {
+        CelestialPositions result = new CelestialPositions();
+        result.reset(from.timestamp, from.latitude, from.longitude, from.altitude);
+        for (int i = 0; i < from.count; i++) {
+            double ra = from.rightAscension[i];
+            double dec = from.declination[i];
+            int j = to.indexOf(from.bodies[i]);
+            if (j >= 0) {
+                double raStep = to.rightAscension[j] - ra;
+                raStep -= 24 * Math.round(raStep / 24);
+                ra += fraction * raStep;
+                ra -= 24 * Math.floor(ra / 24);
+                dec += fraction * (to.declination[j] - dec);
+            }
+            result.add(from.bodies[i], ra, dec);
+        }
+        return result;
+    }
+
+    public long getTimestamp() { return timestamp; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getAltitude() { return altitude; }
+    public int getCount() { return count; }
+
+    /**
+     * @param body Ephemeris index of a body
+     * @return Position of the body in this set, or -1 if it is missing
+     */
+    public int indexOf(int body) {
+        for (int i = 0; i < count; i++) {
+            if (bodies[i] == body) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Ephemeris index of the i-th body
+     */
+    public int getBody(int i) { return bodies[i]; }
+
+    /**
+     * @return Right ascension of the i-th body (hours)
+     */
+    public double getRightAscension(int i) { return rightAscension[i]; }
+
+    /**
+     * @return Declination of the i-th body (degrees)
+     */
+    public double getDeclination(int i) { return declination[i]; }
+}
@@ -21,4 +21,9 @@ public class CelestialRequest {
         this.altitude = altitude;
         this.timestamp = timestamp;
     }
+
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getAltitude() { return altitude; }
+    public long getTimestamp() { return timestamp; }
 }
@@ -1,9 +1,23 @@
 package com.example.project.api;
 
+import com.example.project.ephemeris.Ephemeris;
 import com.google.gson.annotations.SerializedName;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CelestialResponse {
+    // Date and time to the second, an optional fraction, then Z or a +hh:mm / +hhmm offset
+    private static final Pattern TIMESTAMP = Pattern.compile(
+            "(\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?(Z|[+-]\\d{2}:?\\d{2})");
+
     @SerializedName("timestamp")
     private String timestamp;
 
@@ -30,6 +44,14 @@ public class CelestialResponse {
 
         @SerializedName("dec")
         public CoordinateData dec;
+
+        CelestialBodyPosition() {
+        }
+
+        CelestialBodyPosition(double raHours, double decDegrees) {
+            ra = new CoordinateData(raHours, raHours * 15, formatHours(raHours));
+            dec = new CoordinateData(decDegrees / 15, decDegrees, formatDegrees(decDegrees));
+        }
     }
 
     public static class CoordinateData {
@@ -42,12 +64,139 @@ public class CelestialResponse {
         @SerializedName("string")
         private String string;
 
+        CoordinateData() {
+        }
+
+        CoordinateData(double hours, double degrees, String string) {
+            this.hours = hours;
+            this.degrees = degrees;
+            this.string = string;
+        }
+
         // Add these getter methods
         public double getHours() { return hours; }
         public double getDegrees() { return degrees; }
         public String getString() { return string; }
     }
 
+    /**
+     * Builds the response the /celestial endpoint would give, from the on-device ephemeris
+     *
+     * @param ephemeris Engine to compute with; its previous results are overwritten
+     * @param epochMillis UTC time
+     */
+    public static CelestialResponse fromEphemeris(Ephemeris ephemeris, long epochMillis,
+                                                  double latitude, double longitude, double altitude) {
+        ephemeris.compute(epochMillis, latitude, longitude, altitude);
+
+        CelestialResponse response = header(epochMillis, latitude, longitude, altitude);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            response.celestialBodies.put(Ephemeris.BODY_NAMES[body], new CelestialBodyPosition(
+                    ephemeris.getRightAscension(body), ephemeris.getDeclination(body)));
+        }
+        return response;
+    }
+
+    /**
+     * Converts a JSON response to the positions callers work with, for servers
+     * without the binary form. Bodies with an unknown name are skipped.
+     *
+     * @throws IllegalArgumentException If the response has no observer, bodies or valid timestamp
+     */
+    public CelestialPositions toPositions() {
+        if (observer == null || celestialBodies == null) {
+            throw new IllegalArgumentException("Incomplete celestial response");
+        }
+        CelestialPositions positions = new CelestialPositions();
+        positions.reset(parseTimestamp(timestamp), observer.latitude, observer.longitude, observer.altitude);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            CelestialBodyPosition position = celestialBodies.get(Ephemeris.BODY_NAMES[body]);
+            if (position != null && position.ra != null && position.dec != null) {
+                positions.add(body, position.ra.hours, position.dec.degrees);
+            }
+        }
+        return positions;
+    }
+
+    private static SimpleDateFormat isoFormat() {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return iso;
+    }
+
+    /**
+     * Parses an ISO-8601 date and time as servers write it: seconds, optionally a
+     * fraction of them, and "Z" or an offset such as +01:00 or -0500
+     *
+     * @return UTC seconds, with any fraction dropped
+     * @throws IllegalArgumentException If the timestamp is missing or not in that form
+     */
+    static long parseTimestamp(String timestamp) {
+        Matcher matcher = timestamp != null ? TIMESTAMP.matcher(timestamp.trim()) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Invalid timestamp in celestial response: " + timestamp);
+        }
+        SimpleDateFormat local = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        local.setTimeZone(TimeZone.getTimeZone("UTC"));
+        local.setLenient(false);
+        long seconds;
+        try {
+            seconds = local.parse(matcher.group(1)).getTime() / 1000;
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp in celestial response: " + timestamp, e);
+        }
+        String zone = matcher.group(2);
+        if (!zone.equals("Z")) {
+            int hours = Integer.parseInt(zone.substring(1, 3));
+            int minutes = Integer.parseInt(zone.substring(zone.length() - 2));
+            int offset = 3600 * hours + 60 * minutes;
+            seconds -= zone.charAt(0) == '-' ? -offset : offset;
+        }
+        return seconds;
+    }
+
+    /**
+     * @return A response with timestamp and observer set and no bodies yet
+     */
+    private static CelestialResponse header(long epochMillis, double latitude, double longitude,
+                                            double altitude) {
+        CelestialResponse response = new CelestialResponse();
+        response.timestamp = isoFormat().format(new Date(epochMillis));
+        response.observer = new Observer();
+        response.observer.latitude = latitude;
+        response.observer.longitude = longitude;
+        response.observer.altitude = altitude;
+        response.celestialBodies = new LinkedHashMap<>();
+        return response;
+    }
+
+    // Built by hand rather than with String.format, which is several times slower
+    static String formatHours(double hours) {
+        long centiseconds = Math.round(hours * 360000);
+        StringBuilder text = new StringBuilder(14);
+        appendTwoDigits(text, centiseconds / 360000 % 24).append("h ");
+        appendTwoDigits(text, centiseconds / 6000 % 60).append("m ");
+        appendTwoDigits(text, centiseconds % 6000 / 100).append('.');
+        return appendTwoDigits(text, centiseconds % 100).append('s').toString();
+    }
+
+    static String formatDegrees(double degrees) {
+        long deciseconds = Math.round(Math.abs(degrees) * 36000);
+        StringBuilder text = new StringBuilder(14);
+        text.append(degrees < 0 ? '-' : '+');
+        appendTwoDigits(text, deciseconds / 36000).append("\u00b0 ");
+        appendTwoDigits(text, deciseconds / 600 % 60).append("' ");
+        appendTwoDigits(text, deciseconds % 600 / 10).append('.');
+        return text.append(deciseconds % 10).append('"').toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder text, long value) {
+        if (value < 10) {
+            text.append('0');
+        }
+        return text.append(value);
+    }
+
     public String getTimestamp() { return timestamp; }
     public Observer getObserver() { return observer; }
     public Map<String, CelestialBodyPosition> getCelestialBodies() { return celestialBodies; }
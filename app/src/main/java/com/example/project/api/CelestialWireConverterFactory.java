@@ -0,0 +1,51 @@
+package com.example.project.api;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Reads {@link CelestialPositions} bodies sent as {@link CelestialWireFormat}
+ * straight into their arrays. Anything else, such as JSON from a server without
+ * the binary form, is read as a {@link CelestialResponse} by the next converter
+ * and converted. Register it before the Gson converter.
+ */
+public class CelestialWireConverterFactory extends Converter.Factory {
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                            Retrofit retrofit) {
+        if (type != CelestialPositions.class) {
+            return null;
+        }
+        Converter<ResponseBody, CelestialResponse> json =
+                retrofit.nextResponseBodyConverter(this, CelestialResponse.class, annotations);
+        return body -> {
+            if (!isWireFormat(body.contentType())) {
+                CelestialResponse response = json.convert(body);
+                try {
+                    return response == null ? null : response.toPositions();
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            try {
+                CelestialPositions positions = new CelestialPositions();
+                CelestialWireFormat.read(ByteBuffer.wrap(body.bytes()), positions);
+                return positions;
+            } finally {
+                body.close();
+            }
+        };
+    }
+
+    private static boolean isWireFormat(MediaType contentType) {
+        return contentType != null
+                && CelestialWireFormat.MEDIA_TYPE.equals(contentType.type() + "/" + contentType.subtype());
+    }
+}
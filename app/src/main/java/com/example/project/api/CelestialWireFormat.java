@@ -0,0 +1,103 @@
+package com.example.project.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact binary form of a /celestial response, sent instead of JSON when the
+ * request accepts MEDIA_TYPE.
+ *
+ * Layout (little endian):
+ * <pre>
+ *   header   40 bytes   magic, version, body count (u16), timestamp (i64 UTC seconds),
+ *                       latitude, longitude, altitude (f64)
+ *   bodies   18 bytes   ephemeris index (u16), J2000 right ascension (f64 hours),
+ *                       J2000 declination (f64 degrees)
+ * </pre>
+ * Nine bodies take 202 bytes. The JSON form carries a preformatted string and
+ * two units per coordinate and is about eight times larger. Callers work with
+ * the decoded {@link CelestialPositions}; formatted strings are only built for
+ * display.
+ */
+public final class CelestialWireFormat {
+    public static final String MEDIA_TYPE = "application/x-celestial";
+    public static final int MAGIC = 0x4C454342; // "BCEL"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 40;
+    public static final int RECORD_SIZE = 18;
+    public static final int MAX_BODIES = 0xFFFF;
+
+    private CelestialWireFormat() {
+    }
+
+    /**
+     * Decodes a response into reusable arrays
+     *
+     * @param buffer The whole response body
+     * @param out Filled with the time, observer and bodies
+     * @throws IOException If the buffer does not hold a supported response
+     */
+    public static void read(ByteBuffer buffer, CelestialPositions out) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int base = in.position();
+        if (in.remaining() < HEADER_SIZE || in.getInt(base) != MAGIC) {
+            throw new IOException("Not a binary celestial response");
+        }
+        short version = in.getShort(base + 4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported celestial response version " + version);
+        }
+        int count = in.getShort(base + 6) & 0xFFFF;
+        if (in.remaining() < HEADER_SIZE + count * RECORD_SIZE) {
+            throw new IOException("Truncated celestial response");
+        }
+        out.reset(in.getLong(base + 8), in.getDouble(base + 16), in.getDouble(base + 24), in.getDouble(base + 32));
+        for (int i = 0, offset = base + HEADER_SIZE; i < count; i++, offset += RECORD_SIZE) {
+            out.add(in.getShort(offset) & 0xFFFF, in.getDouble(offset + 2), in.getDouble(offset + 10));
+        }
+    }
+
+    /**
+     * @return Size of the encoded positions in bytes
+     */
+    public static int size(CelestialPositions positions) {
+        return HEADER_SIZE + positions.getCount() * RECORD_SIZE;
+    }
+
+    /**
+     * Encodes positions into a buffer with at least {@link #size} bytes remaining
+     *
+     * @throws IOException If there are too many bodies
+     */
+    public static void write(ByteBuffer buffer, CelestialPositions positions) throws IOException {
+        int count = positions.getCount();
+        if (count > MAX_BODIES) {
+            throw new IOException("Too many bodies: " + count);
+        }
+        ByteBuffer out = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putShort((short) count);
+        out.putLong(positions.getTimestamp());
+        out.putDouble(positions.getLatitude());
+        out.putDouble(positions.getLongitude());
+        out.putDouble(positions.getAltitude());
+        for (int i = 0; i < count; i++) {
+            out.putShort((short) positions.getBody(i));
+            out.putDouble(positions.getRightAscension(i));
+            out.putDouble(positions.getDeclination(i));
+        }
+    }
+
+    /**
+     * @param out Destination stream
+     * @param positions The positions to write
+     */
+    public static void write(OutputStream out, CelestialPositions positions) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size(positions));
+        write(buffer, positions);
+        out.write(buffer.array());
+    }
+}
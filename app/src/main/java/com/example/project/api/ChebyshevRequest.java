@@ -0,0 +1,54 @@
+package com.example.project.api;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Asks /celestial/chebyshev for every body over a window, as polynomial segments
+ */
+public class ChebyshevRequest {
+    @SerializedName("latitude")
+    private double latitude;
+
+    @SerializedName("longitude")
+    private double longitude;
+
+    @SerializedName("altitude")
+    private double altitude;
+
+    @SerializedName("start")
+    private long start;
+
+    @SerializedName("span_seconds")
+    private long spanSeconds;
+
+    @SerializedName("segment_seconds")
+    private long segmentSeconds;
+
+    @SerializedName("degree")
+    private int degree;
+
+    /**
+     * @param start Start of the window, UTC seconds
+     * @param spanSeconds Length of the window
+     * @param segmentSeconds Length of one polynomial segment
+     * @param degree Highest polynomial degree per segment
+     */
+    public ChebyshevRequest(double latitude, double longitude, double altitude, long start,
+                            long spanSeconds, long segmentSeconds, int degree) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.start = start;
+        this.spanSeconds = spanSeconds;
+        this.segmentSeconds = segmentSeconds;
+        this.degree = degree;
+    }
+
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getAltitude() { return altitude; }
+    public long getStart() { return start; }
+    public long getSpanSeconds() { return spanSeconds; }
+    public long getSegmentSeconds() { return segmentSeconds; }
+    public int getDegree() { return degree; }
+}
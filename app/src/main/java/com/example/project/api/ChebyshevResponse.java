@@ -0,0 +1,92 @@
+package com.example.project.api;
+
+import com.example.project.ephemeris.ChebyshevEphemeris;
+import com.example.project.ephemeris.Ephemeris;
+import com.google.gson.annotations.SerializedName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chebyshev coefficients of every body over a window, as sent by /celestial/chebyshev.
+ * See {@link ChebyshevEphemeris} for the layout of the coefficients.
+ */
+public class ChebyshevResponse {
+    @SerializedName("start")
+    private long start;
+
+    @SerializedName("segment_seconds")
+    private long segmentSeconds;
+
+    @SerializedName("segment_count")
+    private int segmentCount;
+
+    @SerializedName("degree")
+    private int degree;
+
+    @SerializedName("latitude")
+    private double latitude;
+
+    @SerializedName("longitude")
+    private double longitude;
+
+    @SerializedName("altitude")
+    private double altitude;
+
+    @SerializedName("bodies")
+    private Map<String, BodyCoefficients> bodies;
+
+    public static class BodyCoefficients {
+        // Right ascension (hours), segment after segment
+        @SerializedName("ra")
+        double[] ra;
+
+        // Declination (degrees), segment after segment
+        @SerializedName("dec")
+        double[] dec;
+    }
+
+    /**
+     * Packs a fitted set for sending
+     */
+    public static ChebyshevResponse from(ChebyshevEphemeris segments) {
+        ChebyshevResponse response = new ChebyshevResponse();
+        response.start = segments.getStartMillis() / 1000;
+        response.segmentSeconds = segments.getSegmentMillis() / 1000;
+        response.segmentCount = segments.getSegmentCount();
+        response.degree = segments.getDegree();
+        response.latitude = segments.getLatitude();
+        response.longitude = segments.getLongitude();
+        response.altitude = segments.getAltitude();
+        response.bodies = new LinkedHashMap<>();
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            BodyCoefficients coefficients = new BodyCoefficients();
+            coefficients.ra = segments.getRaCoefficients(body);
+            coefficients.dec = segments.getDecCoefficients(body);
+            response.bodies.put(Ephemeris.BODY_NAMES[body], coefficients);
+        }
+        return response;
+    }
+
+    /**
+     * @return The segments, ready to evaluate
+     * @throws IllegalArgumentException If a body is missing or its coefficients do not fit the segments
+     */
+    public ChebyshevEphemeris toEphemeris() {
+        if (bodies == null) {
+            throw new IllegalArgumentException("No bodies in response");
+        }
+        double[][] ra = new double[Ephemeris.BODY_COUNT][];
+        double[][] dec = new double[Ephemeris.BODY_COUNT][];
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            BodyCoefficients coefficients = bodies.get(Ephemeris.BODY_NAMES[body]);
+            if (coefficients == null || coefficients.ra == null || coefficients.dec == null) {
+                throw new IllegalArgumentException("No coefficients for " + Ephemeris.BODY_NAMES[body]);
+            }
+            ra[body] = coefficients.ra;
+            dec[body] = coefficients.dec;
+        }
+        return new ChebyshevEphemeris(start * 1000, segmentSeconds * 1000, segmentCount, degree,
+                latitude, longitude, altitude, ra, dec);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.project.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.project.ephemeris.ChebyshevEphemeris;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Keeps the latest set of Chebyshev segments from /celestial/chebyshev, in memory
+ * and in the app's files directory so it outlives the process.
+ *
+ * A lookup is served from the set when it covers the time and was fitted for an
+ * observer within CELL_DEGREES; otherwise one window of DEFAULT_SPAN_SECONDS
+ * starting at the hour is fetched and replaces the stored set. A night of
+ * observing from one place therefore makes at most one request.
+ *
+ * Thread-safe. Fetches run outside the lock.
+ */
+public class ChebyshevStore {
+    private static final String TAG = "ChebyshevStore";
+    private static final String FILE_NAME = "ephemeris_segments.json";
+
+    public static final long DEFAULT_SPAN_SECONDS = 24 * 3600;
+    // 12 h segments of degree 8 reproduce the Moon within 0.01 arcsecond
+    public static final long DEFAULT_SEGMENT_SECONDS = 12 * 3600;
+    public static final int DEFAULT_DEGREE = 8;
+    // The Moon's parallax shifts by about 3 arcseconds over this distance
+    public static final double CELL_DEGREES = 0.05;
+
+    /**
+     * Gets a set of segments, typically from the server
+     */
+    public interface Fetcher {
+        ChebyshevResponse fetch(ChebyshevRequest request) throws IOException;
+    }
+
+    private static ChebyshevStore instance;
+
+    private final File file;
+    private final Gson gson = new Gson();
+    private ChebyshevEphemeris segments;
+    private boolean loaded;
+    private long hits;
+    private long fetches;
+
+    public ChebyshevStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The app-wide store in the app's files directory
+     */
+    public static synchronized ChebyshevStore get(Context context) {
+        if (instance == null) {
+            instance = new ChebyshevStore(new File(context.getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns positions for an observer at a time, evaluated from the stored segments,
+     * fetching a new window first if they do not cover the time and place
+     *
+     * @param epochMillis UTC time
+     */
+    public CelestialPositions getOrFetch(double latitude, double longitude, double altitude, long epochMillis,
+                                         Fetcher fetcher) throws IOException {
+        CelestialPositions stored = lookup(latitude, longitude, epochMillis);
+        if (stored != null) {
+            return stored;
+        }
+
+        long start = epochMillis / 1000 / 3600 * 3600;
+        ChebyshevResponse response = fetcher.fetch(new ChebyshevRequest(latitude, longitude, altitude,
+                start, DEFAULT_SPAN_SECONDS, DEFAULT_SEGMENT_SECONDS, DEFAULT_DEGREE));
+        ChebyshevEphemeris fetched;
+        try {
+            fetched = response.toEphemeris();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed segments: " + e.getMessage(), e);
+        }
+        if (!fetched.covers(epochMillis)) {
+            throw new IOException("Segments do not cover the requested time");
+        }
+
+        synchronized (this) {
+            fetches++;
+            segments = fetched;
+            loaded = true;
+            try (Writer writer = new FileWriter(file)) {
+                gson.toJson(response, writer);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not store segments", e);
+                file.delete();
+            }
+            return evaluate(epochMillis);
+        }
+    }
+
+    /**
+     * @return Positions from the stored segments, or null if they do not cover the time and place
+     */
+    public synchronized CelestialPositions lookup(double latitude, double longitude, long epochMillis) {
+        if (!loaded) {
+            segments = load();
+            loaded = true;
+        }
+        if (segments == null || !segments.covers(epochMillis)
+                || Math.abs(segments.getLatitude() - latitude) > CELL_DEGREES
+                || Math.abs(segments.getLongitude() - longitude) > CELL_DEGREES) {
+            return null;
+        }
+        hits++;
+        return evaluate(epochMillis);
+    }
+
+    /**
+     * @return Lookups served from stored segments
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Windows fetched since the store was created
+     */
+    public synchronized long getFetchCount() {
+        return fetches;
+    }
+
+    private CelestialPositions evaluate(long epochMillis) {
+        CelestialPositions positions = new CelestialPositions();
+        positions.set(segments, epochMillis);
+        return positions;
+    }
+
+    private ChebyshevEphemeris load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new FileReader(file)) {
+            ChebyshevResponse response = gson.fromJson(reader, ChebyshevResponse.class);
+            return response == null ? null : response.toEphemeris();
+        } catch (IOException | JsonParseException | IllegalArgumentException e) {
+            Log.w(TAG, "Dropping unreadable segments", e);
+            file.delete();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.project.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-level cache of /celestial responses: an in-memory LRU in front of a
+ * directory of JSON files.
+ *
+ * Bodies move by well under a pixel within a minute and a few kilometres, so
+ * entries are keyed by the observer's cell (latitude and longitude rounded to
+ * CELL_DEGREES) and a time bucket. Each entry is fetched for the start of its
+ * bucket. A lookup between two cached bucket starts interpolates the positions
+ * linearly; a lookup with only its own bucket cached uses that entry as is.
+ * Entries are dropped once the TTL has passed since they were fetched, and
+ * each level evicts its least recently used entries beyond its capacity. On
+ * disk the fetch time is stored in the entry itself; a file's modification
+ * time only records its last use, for eviction.
+ *
+ * Thread-safe. Fetches for a miss run outside the lock, so a slow server does
+ * not block lookups from other threads.
+ */
+public class EphemerisCache {
+    private static final String TAG = "EphemerisCache";
+
+    public static final double DEFAULT_CELL_DEGREES = 0.05;   // about 5 km
+    public static final long DEFAULT_BUCKET_SECONDS = 60;
+    public static final long DEFAULT_TTL_MILLIS = 7L * 24 * 3600 * 1000;
+    public static final int DEFAULT_MEMORY_ENTRIES = 64;
+    public static final int DEFAULT_DISK_ENTRIES = 1024;
+    private static final String DIRECTORY = "ephemeris";
+
+    /**
+     * Gets a response for an observer at the start of a time bucket, typically from the server
+     */
+    public interface Fetcher {
+        CelestialPositions fetch(double latitude, double longitude, double altitude, long epochSeconds)
+                throws IOException;
+    }
+
+    /**
+     * Counters since the cache was created
+     */
+    public static final class Stats {
+        public final long memoryHits;
+        public final long diskHits;
+        public final long interpolations;
+        public final long misses;
+        /** Entries dropped from memory, over capacity or expired */
+        public final long memoryEvictions;
+        /** Files deleted from disk, over capacity or expired */
+        public final long diskEvictions;
+        public final double averageLookupMicros;
+        public final double averageFetchMillis;
+
+        Stats(long memoryHits, long diskHits, long interpolations, long misses, long memoryEvictions,
+              long diskEvictions, double averageLookupMicros, double averageFetchMillis) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.interpolations = interpolations;
+            this.misses = misses;
+            this.memoryEvictions = memoryEvictions;
+            this.diskEvictions = diskEvictions;
+            this.averageLookupMicros = averageLookupMicros;
+            this.averageFetchMillis = averageFetchMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US,
+                    "memory hits %d, disk hits %d, interpolated %d, misses %d, "
+                            + "evicted %d from memory and %d from disk, lookup %.1f us, fetch %.1f ms",
+                    memoryHits, diskHits, interpolations, misses, memoryEvictions, diskEvictions,
+                    averageLookupMicros, averageFetchMillis);
+        }
+    }
+
+    private static EphemerisCache instance;
+
+    private final File directory;
+    private final double cellDegrees;
+    private final long bucketSeconds;
+    private final long ttlMillis;
+    private final int memoryEntries;
+    private final int diskEntries;
+    private final Gson gson = new Gson();
+    private final LinkedHashMap<String, Entry> memory;
+
+    private long memoryHits;
+    private long diskHits;
+    private long interpolations;
+    private long misses;
+    private long memoryEvictions;
+    private long diskEvictions;
+    private long lookups;
+    private long lookupNanos;
+    private long fetches;
+    private long fetchNanos;
+
+    /**
+     * A cached response, written to disk as is
+     */
+    private static final class Entry {
+        final CelestialPositions positions;
+        final long fetchedAt;
+
+        Entry(CelestialPositions positions, long fetchedAt) {
+            this.positions = positions;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * @param directory Where entries are stored; created if missing
+     * @param cellDegrees Size of an observer cell in latitude and longitude
+     * @param bucketSeconds Length of a time bucket
+     * @param ttlMillis Time since fetching after which an entry is no longer used
+     * @param memoryEntries Entries kept in memory
+     * @param diskEntries Entries kept on disk
+     */
+    public EphemerisCache(File directory, double cellDegrees, long bucketSeconds, long ttlMillis,
+                          int memoryEntries, int diskEntries) {
+        this.directory = directory;
+        this.cellDegrees = cellDegrees;
+        this.bucketSeconds = bucketSeconds;
+        this.ttlMillis = ttlMillis;
+        this.memoryEntries = memoryEntries;
+        this.diskEntries = diskEntries;
+        memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= EphemerisCache.this.memoryEntries) {
+                    return false;
+                }
+                memoryEvictions++;
+                return true;
+            }
+        };
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+        }
+    }
+
+    /**
+     * @return The app-wide cache in the app's cache directory, with default settings
+     */
+    public static synchronized EphemerisCache get(Context context) {
+        if (instance == null) {
+            instance = new EphemerisCache(new File(context.getCacheDir(), DIRECTORY), DEFAULT_CELL_DEGREES,
+                    DEFAULT_BUCKET_SECONDS, DEFAULT_TTL_MILLIS, DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns positions for an observer at a time, from the cache when possible and
+     * from the fetcher otherwise. A fetched response is cached for its bucket.
+     *
+     * @param epochMillis UTC time
+     */
+    public CelestialPositions getOrFetch(double latitude, double longitude, double altitude, long epochMillis,
+                                         Fetcher fetcher) throws IOException {
+        CelestialPositions cached = lookup(latitude, longitude, epochMillis);
+        if (cached != null) {
+            return cached;
+        }
+        long bucket = Math.floorDiv(epochMillis / 1000, bucketSeconds);
+        long start = System.nanoTime();
+        CelestialPositions fetched = fetcher.fetch(latitude, longitude, altitude, bucket * bucketSeconds);
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            fetches++;
+            fetchNanos += elapsed;
+        }
+        if (fetched != null && fetched.getCount() > 0) {
+            // The caller keeps the fetched instance, so the cache holds its own
+            put(key(latitude, longitude, bucket), fetched.copy());
+        }
+        return fetched;
+    }
+
+    /**
+     * @return Cached or interpolated positions, or null on a miss. The caller owns the
+     *         returned instance; refilling it leaves the cache alone.
+     */
+    public synchronized CelestialPositions lookup(double latitude, double longitude, long epochMillis) {
+        long start = System.nanoTime();
+        try {
+            double seconds = epochMillis / 1000.0;
+            long bucket = (long) Math.floor(seconds / bucketSeconds);
+            Entry current = load(key(latitude, longitude, bucket));
+            if (current == null) {
+                misses++;
+                return null;
+            }
+            Entry next = load(key(latitude, longitude, bucket + 1));
+            if (next == null) {
+                return current.positions.copy();
+            }
+            interpolations++;
+            double fraction = (seconds - bucket * bucketSeconds) / bucketSeconds;
+            return CelestialPositions.interpolate(current.positions, next.positions, fraction);
+        } finally {
+            lookups++;
+            lookupNanos += System.nanoTime() - start;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(memoryHits, diskHits, interpolations, misses, memoryEvictions, diskEvictions,
+                lookups == 0 ? 0 : lookupNanos / 1e3 / lookups,
+                fetches == 0 ? 0 : fetchNanos / 1e6 / fetches);
+    }
+
+    /**
+     * Drops every entry from both levels
+     */
+    public synchronized void clear() {
+        memory.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private String key(double latitude, double longitude, long bucket) {
+        return Math.round(latitude / cellDegrees) + "_" + Math.round(longitude / cellDegrees) + "_" + bucket;
+    }
+
+    /**
+     * Finds a live entry in memory, then on disk, promoting disk hits to memory
+     */
+    private Entry load(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            if (now - entry.fetchedAt <= ttlMillis) {
+                memoryHits++;
+                return entry;
+            }
+            memory.remove(key);
+            memoryEvictions++;
+        }
+
+        File file = new File(directory, key + ".json");
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new FileReader(file)) {
+            entry = gson.fromJson(reader, Entry.class);
+        } catch (IOException | JsonParseException e) {
+            Log.w(TAG, "Dropping unreadable entry " + file, e);
+            file.delete();
+            return null;
+        }
+        if (entry == null || entry.positions == null || entry.positions.getCount() == 0) {
+            file.delete();
+            return null;
+        }
+        if (now - entry.fetchedAt > ttlMillis) {
+            file.delete();
+            diskEvictions++;
+            return null;
+        }
+        memory.put(key, entry);
+        diskHits++;
+        // Touch the file so disk eviction sees it as recently used; the TTL does not depend on it
+        file.setLastModified(now);
+        return entry;
+    }
+
+    private synchronized void put(String key, CelestialPositions positions) {
+        Entry entry = new Entry(positions, System.currentTimeMillis());
+        memory.put(key, entry);
+
+        File file = new File(directory, key + ".json");
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(entry, writer);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store " + file, e);
+            file.delete();
+            return;
+        }
+        evictFromDisk();
+    }
+
+    /**
+     * Deletes the least recently used files beyond the disk capacity
+     */
+    private void evictFromDisk() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= diskEntries) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - diskEntries; i++) {
+            if (files[i].delete()) {
+                diskEvictions++;
+            }
+        }
+    }
+}
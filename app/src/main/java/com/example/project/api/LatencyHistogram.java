@@ -0,0 +1,92 @@
+package com.example.project.api;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call latencies of one endpoint in fixed, roughly logarithmic buckets.
+ *
+ * Recording is lock-free, so it can run on any OkHttp thread. Percentiles are
+ * the upper bound of the bucket they fall in, which is as precise as the
+ * buckets.
+ */
+public class LatencyHistogram {
+    // Upper bounds of the buckets in milliseconds; a last bucket holds everything slower
+    private static final long[] BOUNDS_MS = {5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    /**
+     * Records a completed call, whatever its HTTP status
+     */
+    public void record(long millis) {
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    /**
+     * Records a call that failed without a response: timeout, cancellation or I/O error
+     */
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    public double getMeanMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalMillis.get() / count;
+    }
+
+    /**
+     * @param fraction Between 0 and 1, e.g. 0.95
+     * @return Upper bound of the bucket holding that fraction of calls, the maximum for the
+     *         last bucket, or 0 if nothing was recorded
+     */
+    public long getPercentileMillis(double fraction) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        // At least the first call, so fraction 0 is the fastest occupied bucket
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return maxMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d calls, %d failed, mean %.0f ms, p50 <= %d ms, p95 <= %d ms, max %d ms",
+                getCount(), getFailureCount(), getMeanMillis(), getPercentileMillis(0.5),
+                getPercentileMillis(0.95), getMaxMillis());
+    }
+}
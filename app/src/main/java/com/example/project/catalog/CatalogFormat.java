@@ -0,0 +1,240 @@
+package com.example.project.catalog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary star catalog format.
+ *
+ * Layout (little endian):
+ * <pre>
+ *   header   48 bytes   magic, version, flags, star count, record size,
+ *                       records offset, name table offset, name table length,
+ *                       name count, index offset, index cell count,
+ *                       index zone height (f64)
+ *   records  24 bytes   RA (f64 hours), Dec (f64 degrees), magnitude (f32),
+ *                       name id (i32, -1 if unnamed)
+ *   names               unique names as length-prefixed (u8) UTF-8 strings,
+ *                       in name id order
+ *   index               optional (FLAG_INDEXED): cell start offsets (i32),
+ *                       cell count + 1 entries
+ * </pre>
+ * Records are fixed width, so a reader can pull every field straight out of a
+ * mapped buffer without tokenizing anything. An indexed catalog stores its
+ * records in SkyIndex cell order, brightest first within each cell, so the
+ * index can be rebuilt from the cell offsets alone.
+ */
+public final class CatalogFormat {
+    public static final int MAGIC = 0x52415453; // "STAR"
+    public static final short VERSION = 3;
+    public static final short FLAG_INDEXED = 1;
+    public static final int HEADER_SIZE = 48;
+    public static final int RECORD_SIZE = 24;
+    public static final int MAX_NAME_LENGTH = 255;
+
+    private CatalogFormat() {
+    }
+
+    /**
+     * Decodes a catalog from a buffer holding the whole file
+     *
+     * @param buffer Catalog bytes, typically a mapped asset
+     * @return The decoded catalog
+     * @throws IOException If the buffer does not hold a supported catalog
+     */
+    public static StarCatalog read(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a star catalog");
+        }
+        short version = in.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported star catalog version " + version);
+        }
+        short flags = in.getShort(6);
+        int count = in.getInt(8);
+        int recordSize = in.getInt(12);
+        int recordsOffset = in.getInt(16);
+        int namesOffset = in.getInt(20);
+        int namesLength = in.getInt(24);
+        int nameCount = in.getInt(28);
+        int indexOffset = in.getInt(32);
+        int indexCellCount = in.getInt(36);
+        double indexZoneHeight = in.getDouble(40);
+        boolean indexed = (flags & FLAG_INDEXED) != 0;
+        if (recordSize < RECORD_SIZE || count < 0 || nameCount < 0 || recordsOffset < 0
+                || namesOffset < 0 || namesLength < 0 || (indexed && indexOffset < 0)
+                || (long) recordsOffset + (long) count * recordSize > in.limit()
+                || (long) namesOffset + namesLength > in.limit()
+                || (indexed && (indexCellCount < 0
+                        || (long) indexOffset + 4L * (indexCellCount + 1) > in.limit()))) {
+            throw new IOException("Truncated star catalog");
+        }
+
+        double[] rightAscension = new double[count];
+        double[] declination = new double[count];
+        float[] magnitude = new float[count];
+        int[] nameId = new int[count];
+        for (int i = 0, pos = recordsOffset; i < count; i++, pos += recordSize) {
+            rightAscension[i] = in.getDouble(pos);
+            declination[i] = in.getDouble(pos + 8);
+            magnitude[i] = in.getFloat(pos + 16);
+            nameId[i] = in.getInt(pos + 20);
+            if (nameId[i] < -1 || nameId[i] >= nameCount) {
+                throw new IOException("Invalid name id " + nameId[i] + " for star " + i);
+            }
+        }
+
+        byte[] nameTable = new byte[namesLength];
+        in.position(namesOffset);
+        in.get(nameTable);
+        checkNameTable(nameTable, nameCount);
+
+        StarCatalog catalog = new StarCatalog(rightAscension, declination, magnitude,
+                nameId, nameTable, nameCount);
+        if (indexed) {
+            int[] cellStart = new int[indexCellCount + 1];
+            in.position(indexOffset);
+            in.asIntBuffer().get(cellStart);
+            catalog.setPrebuiltIndex(indexZoneHeight, cellStart);
+        }
+        return catalog;
+    }
+
+    /**
+     * Checks that nameCount length-prefixed names fit in the table
+     */
+    private static void checkNameTable(byte[] nameTable, int nameCount) throws IOException {
+        int offset = 0;
+        for (int id = 0; id < nameCount; id++) {
+            if (offset >= nameTable.length) {
+                throw new IOException("Truncated star catalog name table at name " + id);
+            }
+            offset += 1 + (nameTable[offset] & 0xFF);
+            if (offset > nameTable.length) {
+                throw new IOException("Truncated star catalog name table at name " + id);
+            }
+        }
+    }
+
+    /**
+     * Encodes a catalog without a prebuilt index
+     *
+     * @param out Destination stream
+     * @param rightAscension Right ascension of each star (hours)
+     * @param declination Declination of each star (degrees)
+     * @param magnitude Apparent magnitude of each star
+     * @param names Name of each star, null if unnamed
+     */
+    public static void write(OutputStream out, double[] rightAscension, double[] declination,
+                             float[] magnitude, String[] names) throws IOException {
+        write(out, rightAscension, declination, magnitude, names, null, 0);
+    }
+
+    /**
+     * Encodes a catalog with a prebuilt SkyIndex. Records are written in cell
+     * order, so star indices in the written catalog differ from the input order.
+     *
+     * @param out Destination stream
+     * @param rightAscension Right ascension of each star (hours)
+     * @param declination Declination of each star (degrees)
+     * @param magnitude Apparent magnitude of each star
+     * @param names Name of each star, null if unnamed
+     * @param zoneHeight Declination zone height of the index (degrees)
+     */
+    public static void writeIndexed(OutputStream out, double[] rightAscension, double[] declination,
+                                    float[] magnitude, String[] names, double zoneHeight)
+            throws IOException {
+        SkyIndex index = new SkyIndex(rightAscension, declination, magnitude, zoneHeight);
+        int[] order = index.getEntries();
+        int count = order.length;
+
+        double[] sortedRA = new double[count];
+        double[] sortedDec = new double[count];
+        float[] sortedMagnitude = new float[count];
+        String[] sortedNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            int star = order[i];
+            sortedRA[i] = rightAscension[star];
+            sortedDec[i] = declination[star];
+            sortedMagnitude[i] = magnitude[star];
+            sortedNames[i] = names[star];
+        }
+        write(out, sortedRA, sortedDec, sortedMagnitude, sortedNames, index.getCellStart(), zoneHeight);
+    }
+
+    private static void write(OutputStream out, double[] rightAscension, double[] declination,
+                              float[] magnitude, String[] names, int[] cellStart, double zoneHeight)
+            throws IOException {
+        int count = rightAscension.length;
+
+        // Build the table of unique names first so records can refer to it
+        ByteBuffer nameTable = ByteBuffer.allocate(16 * count + 16);
+        Map<String, Integer> nameIds = new HashMap<>();
+        int[] nameId = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (names[i] == null) {
+                nameId[i] = -1;
+                continue;
+            }
+            Integer existing = nameIds.get(names[i]);
+            if (existing != null) {
+                nameId[i] = existing;
+                continue;
+            }
+            byte[] bytes = names[i].getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_NAME_LENGTH) {
+                throw new IOException("Star name too long: " + names[i]);
+            }
+            if (nameTable.remaining() < bytes.length + 1) {
+                ByteBuffer grown = ByteBuffer.allocate(nameTable.capacity() * 2 + bytes.length + 1);
+                nameTable.flip();
+                grown.put(nameTable);
+                nameTable = grown;
+            }
+            nameId[i] = nameIds.size();
+            nameIds.put(names[i], nameId[i]);
+            nameTable.put((byte) bytes.length);
+            nameTable.put(bytes);
+        }
+        int namesLength = nameTable.position();
+        int recordsOffset = HEADER_SIZE;
+        int namesOffset = recordsOffset + count * RECORD_SIZE;
+        // Keep the index 4-byte aligned so it can be read as an int view
+        int indexOffset = (namesOffset + namesLength + 3) & ~3;
+        int indexLength = cellStart != null ? 4 * cellStart.length : 0;
+
+        ByteBuffer file = ByteBuffer.allocate(indexOffset + indexLength).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(MAGIC);
+        file.putShort(VERSION);
+        file.putShort(cellStart != null ? FLAG_INDEXED : 0);
+        file.putInt(count);
+        file.putInt(RECORD_SIZE);
+        file.putInt(recordsOffset);
+        file.putInt(namesOffset);
+        file.putInt(namesLength);
+        file.putInt(nameIds.size());
+        file.putInt(cellStart != null ? indexOffset : 0);
+        file.putInt(cellStart != null ? cellStart.length - 1 : 0);
+        file.putDouble(cellStart != null ? zoneHeight : 0);
+        for (int i = 0; i < count; i++) {
+            file.putDouble(rightAscension[i]);
+            file.putDouble(declination[i]);
+            file.putFloat(magnitude[i]);
+            file.putInt(nameId[i]);
+        }
+        file.put(nameTable.array(), 0, namesLength);
+        if (cellStart != null) {
+            file.position(indexOffset);
+            for (int start : cellStart) {
+                file.putInt(start);
+            }
+        }
+        out.write(file.array());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.project.catalog;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary format of the star pattern index.
+ *
+ * Layout (little endian):
+ * <pre>
+ *   header     40 bytes   magic, version, flags, catalog star count,
+ *                         catalog fingerprint (i64), pattern star count,
+ *                         triangle count, ratio bins, max edge (f64 degrees)
+ *   stars      4 bytes    catalog index (i32) of each pattern star
+ *   bins       4 bytes    first triangle of each bin (i32), bins^2 + 1 entries
+ *   triangles  6 bytes    pattern star (u16) of each vertex, in bin order
+ * </pre>
+ * Pattern stars refer to catalog records by index, so the file is only valid
+ * for the catalog it was built from. The fingerprint of that catalog is stored
+ * and checked on read; star vectors come from the catalog rather than the file.
+ */
+public final class PatternFormat {
+    public static final int MAGIC = 0x4E525450; // "PTRN"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 40;
+    public static final int MAX_PATTERN_STARS = 0xFFFF;
+
+    private PatternFormat() {
+    }
+
+    /**
+     * Decodes a pattern index from a buffer holding the whole file
+     *
+     * @param buffer Index bytes, typically a mapped asset
+     * @param catalog The catalog the index was built from
+     * @return The decoded index
+     * @throws IOException If the buffer does not hold a supported index for this catalog
+     */
+    public static PatternIndex read(ByteBuffer buffer, StarCatalog catalog) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC) {
+            throw new IOException("Not a star pattern index");
+        }
+        short version = in.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported star pattern index version " + version);
+        }
+        int catalogSize = in.getInt(8);
+        long fingerprint = in.getLong(12);
+        if (catalogSize != catalog.size() || fingerprint != fingerprint(catalog)) {
+            throw new IOException("Star pattern index was built for a different catalog");
+        }
+        int starCount = in.getInt(20);
+        int triangleCount = in.getInt(24);
+        int ratioBins = in.getInt(28);
+        double maxEdgeDegrees = in.getDouble(32);
+        int binCount = ratioBins * ratioBins + 1;
+        long length = HEADER_SIZE + 4L * starCount + 4L * binCount + 6L * triangleCount;
+        if (starCount < 0 || starCount > MAX_PATTERN_STARS || triangleCount < 0 || ratioBins <= 0
+                || ratioBins > 1024 || length > in.limit()) {
+            throw new IOException("Truncated star pattern index");
+        }
+
+        in.position(HEADER_SIZE);
+        int[] catalogIndex = new int[starCount];
+        in.asIntBuffer().get(catalogIndex);
+        for (int star : catalogIndex) {
+            if (star < 0 || star >= catalogSize) {
+                throw new IOException("Star pattern index refers to missing star " + star);
+            }
+        }
+
+        in.position(HEADER_SIZE + 4 * starCount);
+        int[] binStart = new int[binCount];
+        in.asIntBuffer().get(binStart);
+        if (binStart[0] != 0 || binStart[binCount - 1] != triangleCount) {
+            throw new IOException("Corrupt star pattern index");
+        }
+
+        int[] vertices = new int[3 * triangleCount];
+        int pos = HEADER_SIZE + 4 * starCount + 4 * binCount;
+        for (int i = 0; i < vertices.length; i++, pos += 2) {
+            vertices[i] = in.getShort(pos) & 0xFFFF;
+            if (vertices[i] >= starCount) {
+                throw new IOException("Corrupt star pattern index");
+            }
+        }
+        return new PatternIndex(catalog, catalogIndex, maxEdgeDegrees, ratioBins, binStart, vertices);
+    }
+
+    /**
+     * Encodes a pattern index
+     *
+     * @param out Destination stream
+     * @param index The index to write
+     * @param catalog The catalog the index was built from
+     */
+    public static void write(OutputStream out, PatternIndex index, StarCatalog catalog) throws IOException {
+        int starCount = index.getStarCount();
+        if (starCount > MAX_PATTERN_STARS) {
+            throw new IOException("Too many pattern stars: " + starCount);
+        }
+        int[] binStart = index.getBinStart();
+        int[] vertices = index.getVertices();
+
+        ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + 4 * starCount + 4 * binStart.length
+                + 2 * vertices.length).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(MAGIC);
+        file.putShort(VERSION);
+        file.putShort((short) 0);
+        file.putInt(catalog.size());
+        file.putLong(fingerprint(catalog));
+        file.putInt(starCount);
+        file.putInt(index.getTriangleCount());
+        file.putInt(index.getRatioBins());
+        file.putDouble(index.getMaxEdgeDegrees());
+        for (int star : index.getCatalogIndices()) {
+            file.putInt(star);
+        }
+        for (int start : binStart) {
+            file.putInt(start);
+        }
+        for (int vertex : vertices) {
+            file.putShort((short) vertex);
+        }
+        out.write(file.array());
+    }
+
+    /**
+     * Hash of the catalog positions and magnitudes, in record order
+     */
+    static long fingerprint(StarCatalog catalog) {
+        double[] rightAscension = catalog.getRightAscension();
+        double[] declination = catalog.getDeclination();
+        float[] magnitude = catalog.getMagnitude();
+        long hash = 1125899906842597L;
+        for (int i = 0; i < catalog.size(); i++) {
+            hash = 31 * hash + Double.doubleToLongBits(rightAscension[i]);
+            hash = 31 * hash + Double.doubleToLongBits(declination[i]);
+            hash = 31 * hash + Float.floatToIntBits(magnitude[i]);
+        }
+        return hash;
+    }
+}
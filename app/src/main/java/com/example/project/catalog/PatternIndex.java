@@ -0,0 +1,286 @@
+package com.example.project.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Geometric hash of star triangles for identifying stars without a pose.
+ *
+ * Pattern stars are the catalog stars bright enough to be among the first few
+ * detections in a frame. Every triangle of pattern stars whose sides all lie
+ * between MIN_EDGE_DEGREES and the maximum edge is stored once, with its
+ * vertices ordered by the side opposite them (shortest first). The side ratios
+ * shortest / longest and middle / longest do not change with rotation or plate
+ * scale, so they are the hash key: triangles are grouped by a grid of ratio bins
+ * (counting sort at build time), and a lookup only reads the bins within the
+ * ratio tolerance of the query.
+ */
+public final class PatternIndex {
+    public static final float DEFAULT_MAX_MAGNITUDE = 3.5f;
+    public static final double DEFAULT_MAX_EDGE_DEGREES = 30.0;
+    public static final int DEFAULT_RATIO_BINS = 50;
+    // Shorter sides make the ratios too sensitive to centroid and lens errors
+    public static final double MIN_EDGE_DEGREES = 1.0;
+
+    private final int[] catalogIndex;  // catalog index of each pattern star
+    private final double[] unitX;      // unit vector of each pattern star (equatorial frame)
+    private final double[] unitY;
+    private final double[] unitZ;
+    private final double maxEdgeDegrees;
+    private final int ratioBins;       // bins per ratio axis
+    private final int[] binStart;      // offsets into vertices / 3, length ratioBins^2 + 1
+    private final int[] vertices;      // three pattern stars per triangle, grouped by bin
+
+    PatternIndex(StarCatalog catalog, int[] catalogIndex, double maxEdgeDegrees, int ratioBins,
+                 int[] binStart, int[] vertices) {
+        this.catalogIndex = catalogIndex;
+        this.maxEdgeDegrees = maxEdgeDegrees;
+        this.ratioBins = ratioBins;
+        this.binStart = binStart;
+        this.vertices = vertices;
+
+        // Copy the pattern stars' vectors so lookups stay within a few small arrays
+        int count = catalogIndex.length;
+        unitX = new double[count];
+        unitY = new double[count];
+        unitZ = new double[count];
+        for (int i = 0; i < count; i++) {
+            int star = catalogIndex[i];
+            unitX[i] = catalog.getUnitX()[star];
+            unitY[i] = catalog.getUnitY()[star];
+            unitZ[i] = catalog.getUnitZ()[star];
+        }
+    }
+
+    /**
+     * Builds the index from a catalog
+     *
+     * @param maxMagnitude Faintest star used in patterns
+     * @param maxEdgeDegrees Longest triangle side to store (degrees); keep it below the field of view
+     * @param ratioBins Number of hash bins per ratio axis
+     */
+    public static PatternIndex build(StarCatalog catalog, float maxMagnitude, double maxEdgeDegrees,
+                                     int ratioBins) {
+        // Pattern stars, brightest first
+        float[] magnitude = catalog.getMagnitude();
+        Integer[] bright = new Integer[catalog.size()];
+        int count = 0;
+        for (int i = 0; i < catalog.size(); i++) {
+            if (magnitude[i] <= maxMagnitude) {
+                bright[count++] = i;
+            }
+        }
+        bright = Arrays.copyOf(bright, count);
+        Arrays.sort(bright, (a, b) -> Float.compare(magnitude[a], magnitude[b]));
+        int[] catalogIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            catalogIndex[i] = bright[i];
+        }
+
+        double[] x = catalog.getUnitX();
+        double[] y = catalog.getUnitY();
+        double[] z = catalog.getUnitZ();
+        double minCos = Math.cos(Math.toRadians(maxEdgeDegrees));
+        double maxCos = Math.cos(Math.toRadians(MIN_EDGE_DEGREES));
+
+        // Neighbours of each pattern star, then every triangle of mutual neighbours,
+        // generated once from its lowest vertex
+        int[][] neighbours = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int[] found = new int[count];
+            int foundCount = 0;
+            for (int j = 0; j < count; j++) {
+                double cos = dot(x, y, z, catalogIndex[i], catalogIndex[j]);
+                if (j != i && cos >= minCos && cos <= maxCos) {
+                    found[foundCount++] = j;
+                }
+            }
+            neighbours[i] = Arrays.copyOf(found, foundCount);
+        }
+
+        int[] triangles = new int[3 * 1024];
+        int[] triangleBin = new int[1024];
+        int triangleCount = 0;
+        double[] edges = new double[3];
+        int[] ordered = new int[3];
+        for (int a = 0; a < count; a++) {
+            for (int b : neighbours[a]) {
+                for (int c : neighbours[a]) {
+                    if (b <= a || c <= b) {
+                        continue;
+                    }
+                    double cos = dot(x, y, z, catalogIndex[b], catalogIndex[c]);
+                    if (cos < minCos || cos > maxCos) {
+                        continue;
+                    }
+                    if (triangleCount == triangleBin.length) {
+                        triangles = Arrays.copyOf(triangles, triangles.length * 2);
+                        triangleBin = Arrays.copyOf(triangleBin, triangleBin.length * 2);
+                    }
+                    orderTriangle(x, y, z, catalogIndex, a, b, c, edges, ordered);
+                    System.arraycopy(ordered, 0, triangles, 3 * triangleCount, 3);
+                    triangleBin[triangleCount] = bin(edges[0] / edges[2], ratioBins) * ratioBins
+                            + bin(edges[1] / edges[2], ratioBins);
+                    triangleCount++;
+                }
+            }
+        }
+
+        // Counting sort of the triangles by bin
+        int[] binStart = new int[ratioBins * ratioBins + 1];
+        for (int t = 0; t < triangleCount; t++) {
+            binStart[triangleBin[t] + 1]++;
+        }
+        for (int b = 0; b < ratioBins * ratioBins; b++) {
+            binStart[b + 1] += binStart[b];
+        }
+        int[] vertices = new int[3 * triangleCount];
+        int[] fill = Arrays.copyOf(binStart, binStart.length - 1);
+        for (int t = 0; t < triangleCount; t++) {
+            int slot = fill[triangleBin[t]]++;
+            System.arraycopy(triangles, 3 * t, vertices, 3 * slot, 3);
+        }
+        return new PatternIndex(catalog, catalogIndex, maxEdgeDegrees, ratioBins, binStart, vertices);
+    }
+
+    public static PatternIndex build(StarCatalog catalog) {
+        return build(catalog, DEFAULT_MAX_MAGNITUDE, DEFAULT_MAX_EDGE_DEGREES, DEFAULT_RATIO_BINS);
+    }
+
+    private static double dot(double[] x, double[] y, double[] z, int i, int j) {
+        return x[i] * x[j] + y[i] * y[j] + z[i] * z[j];
+    }
+
+    /**
+     * Orders the vertices of a pattern triangle by the side opposite them, shortest first
+     *
+     * @param edges Receives the sides (radians), shortest first
+     * @param ordered Receives the pattern stars, ordered[k] opposite edges[k]
+     */
+    private static void orderTriangle(double[] x, double[] y, double[] z, int[] catalogIndex,
+                                      int a, int b, int c, double[] edges, int[] ordered) {
+        double[] opposite = {
+                Math.acos(Math.min(dot(x, y, z, catalogIndex[b], catalogIndex[c]), 1)),
+                Math.acos(Math.min(dot(x, y, z, catalogIndex[a], catalogIndex[c]), 1)),
+                Math.acos(Math.min(dot(x, y, z, catalogIndex[a], catalogIndex[b]), 1))};
+        int[] star = {a, b, c};
+        orderBySide(opposite, star, edges, ordered);
+    }
+
+    /**
+     * Sorts three vertices by the length of the side opposite each one
+     *
+     * @param opposite Side opposite each vertex
+     * @param vertex The vertices
+     * @param edges Receives the sides, shortest first
+     * @param ordered Receives the vertices, ordered[k] opposite edges[k]
+     */
+    public static void orderBySide(double[] opposite, int[] vertex, double[] edges, int[] ordered) {
+        int shortest = 0;
+        int longest = 0;
+        for (int k = 1; k < 3; k++) {
+            if (opposite[k] < opposite[shortest]) {
+                shortest = k;
+            }
+            if (opposite[k] >= opposite[longest]) {
+                longest = k;
+            }
+        }
+        int middle = 3 - shortest - longest;
+        edges[0] = opposite[shortest];
+        edges[1] = opposite[middle];
+        edges[2] = opposite[longest];
+        ordered[0] = vertex[shortest];
+        ordered[1] = vertex[middle];
+        ordered[2] = vertex[longest];
+    }
+
+    private static int bin(double ratio, int bins) {
+        return Math.min((int) (ratio * bins), bins - 1);
+    }
+
+    /**
+     * Collects the triangles whose side ratios may lie within tolerance of the query.
+     * Bins are coarser than the tolerance, so callers check the exact ratios.
+     *
+     * @param shortRatio Shortest side / longest side
+     * @param middleRatio Middle side / longest side
+     * @param tolerance Allowed difference in each ratio
+     * @param out Receives triangle ids
+     * @return Number of triangles found, which may exceed out.length (extra ids are not stored)
+     */
+    public int lookup(double shortRatio, double middleRatio, double tolerance, int[] out) {
+        int found = 0;
+        int firstShort = bin(Math.max(shortRatio - tolerance, 0), ratioBins);
+        int lastShort = bin(shortRatio + tolerance, ratioBins);
+        int firstMiddle = bin(Math.max(middleRatio - tolerance, 0), ratioBins);
+        int lastMiddle = bin(middleRatio + tolerance, ratioBins);
+        for (int s = firstShort; s <= lastShort; s++) {
+            for (int m = firstMiddle; m <= lastMiddle; m++) {
+                int b = s * ratioBins + m;
+                for (int t = binStart[b]; t < binStart[b + 1]; t++) {
+                    if (found < out.length) {
+                        out[found] = t;
+                    }
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param triangle Triangle id
+     * @param k 0 for the vertex opposite the shortest side, 1 middle, 2 longest
+     * @return Pattern star at that vertex
+     */
+    public int getVertex(int triangle, int k) {
+        return vertices[3 * triangle + k];
+    }
+
+    public int getTriangleCount() {
+        return vertices.length / 3;
+    }
+
+    public int getStarCount() {
+        return catalogIndex.length;
+    }
+
+    /**
+     * @return Catalog index of a pattern star
+     */
+    public int getCatalogIndex(int patternStar) {
+        return catalogIndex[patternStar];
+    }
+
+    public double[] getUnitX() {
+        return unitX;
+    }
+
+    public double[] getUnitY() {
+        return unitY;
+    }
+
+    public double[] getUnitZ() {
+        return unitZ;
+    }
+
+    public double getMaxEdgeDegrees() {
+        return maxEdgeDegrees;
+    }
+
+    int getRatioBins() {
+        return ratioBins;
+    }
+
+    int[] getCatalogIndices() {
+        return catalogIndex;
+    }
+
+    int[] getBinStart() {
+        return binStart;
+    }
+
+    int[] getVertices() {
+        return vertices;
+    }
+}
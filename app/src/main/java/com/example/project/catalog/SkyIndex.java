@@ -0,0 +1,306 @@
+package com.example.project.catalog;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index over the celestial sphere.
+ *
+ * The sky is cut into declination zones of fixed height, and every zone is cut
+ * into right ascension cells whose count shrinks with cos(dec), so all cells
+ * cover roughly the same solid angle. Star indices are stored grouped by cell
+ * (counting sort at build time), which lets a field-of-view query touch only
+ * the cells that overlap the requested box instead of the whole catalog.
+ *
+ * Within a cell stars are ordered brightest first, so a query with a faint
+ * magnitude limit stops reading a cell at the first star that is too faint.
+ */
+public final class SkyIndex {
+    public static final double DEFAULT_ZONE_HEIGHT = 2.0; // degrees
+
+    public interface Visitor {
+        void visit(int starIndex);
+    }
+
+    private final double[] rightAscension; // hours, indexed by star
+    private final double[] declination;    // degrees, indexed by star
+    private final float[] magnitude;       // apparent magnitude, indexed by star
+    private final double zoneHeight;
+    private final int zoneCount;
+    private final int[] zoneFirstCell;     // id of the first cell of each zone
+    private final int[] zoneCellCount;     // number of RA cells in each zone
+    private final int[] cellStart;         // offsets into entries, length cellCount + 1
+    private final int[] entries;           // star indices grouped by cell
+
+    /**
+     * Builds the index for the given catalog positions
+     *
+     * @param rightAscension Right ascension of each star (hours)
+     * @param declination Declination of each star (degrees)
+     * @param magnitude Apparent magnitude of each star
+     * @param zoneHeight Height of a declination zone (degrees)
+     */
+    public SkyIndex(double[] rightAscension, double[] declination, float[] magnitude,
+                    double zoneHeight) {
+        if (rightAscension.length != declination.length || rightAscension.length != magnitude.length) {
+            throw new IllegalArgumentException("RA, Dec and magnitude arrays differ in length");
+        }
+        this.rightAscension = rightAscension;
+        this.declination = declination;
+        this.magnitude = magnitude;
+        this.zoneHeight = zoneHeight;
+        this.zoneCount = (int) Math.ceil(180.0 / zoneHeight);
+        zoneFirstCell = new int[zoneCount];
+        zoneCellCount = new int[zoneCount];
+        int cellCount = layoutZones(zoneHeight, zoneFirstCell, zoneCellCount);
+
+        // Counting sort of the stars by cell id
+        int starCount = rightAscension.length;
+        int[] starCell = new int[starCount];
+        cellStart = new int[cellCount + 1];
+        for (int i = 0; i < starCount; i++) {
+            starCell[i] = cellOf(rightAscension[i], declination[i]);
+            cellStart[starCell[i] + 1]++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+
+        // Filling cells in global brightness order leaves every cell sorted brightest first
+        int[] byMagnitude = sortByMagnitude(magnitude);
+        entries = new int[starCount];
+        int[] fill = new int[cellCount];
+        for (int star : byMagnitude) {
+            int cell = starCell[star];
+            entries[cellStart[cell] + fill[cell]++] = star;
+        }
+    }
+
+    public SkyIndex(double[] rightAscension, double[] declination, float[] magnitude) {
+        this(rightAscension, declination, magnitude, DEFAULT_ZONE_HEIGHT);
+    }
+
+    /**
+     * Wraps an index prebuilt by the catalog builder. The stars must already be
+     * stored in cell order, brightest first within each cell.
+     *
+     * @param rightAscension Right ascension of each star (hours)
+     * @param declination Declination of each star (degrees)
+     * @param magnitude Apparent magnitude of each star
+     * @param zoneHeight Zone height the index was built with (degrees)
+     * @param cellStart Offset of the first star of each cell, length cellCount + 1
+     * @throws IllegalArgumentException If the prebuilt cells do not match the zone layout
+     */
+    public SkyIndex(double[] rightAscension, double[] declination, float[] magnitude,
+                    double zoneHeight, int[] cellStart) {
+        int starCount = rightAscension.length;
+        if (declination.length != starCount || magnitude.length != starCount) {
+            throw new IllegalArgumentException("RA, Dec and magnitude arrays differ in length");
+        }
+        this.rightAscension = rightAscension;
+        this.declination = declination;
+        this.magnitude = magnitude;
+        this.zoneHeight = zoneHeight;
+        this.zoneCount = (int) Math.ceil(180.0 / zoneHeight);
+        zoneFirstCell = new int[zoneCount];
+        zoneCellCount = new int[zoneCount];
+        int cellCount = layoutZones(zoneHeight, zoneFirstCell, zoneCellCount);
+        if (cellStart.length != cellCount + 1 || cellStart[0] != 0 || cellStart[cellCount] != starCount) {
+            throw new IllegalArgumentException("Prebuilt index does not match the zone layout");
+        }
+
+        this.cellStart = cellStart;
+        entries = new int[starCount];
+        for (int i = 0; i < starCount; i++) {
+            entries[i] = i;
+        }
+    }
+
+    /**
+     * Splits the sky into zones and RA cells
+     *
+     * @return Total number of cells
+     */
+    private static int layoutZones(double zoneHeight, int[] zoneFirstCell, int[] zoneCellCount) {
+        int cellCount = 0;
+        for (int zone = 0; zone < zoneFirstCell.length; zone++) {
+            double zoneCenterDec = -90.0 + (zone + 0.5) * zoneHeight;
+            int cells = (int) Math.round(360.0 * Math.cos(Math.toRadians(zoneCenterDec)) / zoneHeight);
+            zoneFirstCell[zone] = cellCount;
+            zoneCellCount[zone] = Math.max(1, cells);
+            cellCount += zoneCellCount[zone];
+        }
+        return cellCount;
+    }
+
+    /**
+     * Orders star indices by ascending magnitude without boxing: each key packs
+     * an order-preserving int form of the magnitude above the star index.
+     */
+    private static int[] sortByMagnitude(float[] magnitude) {
+        long[] keys = new long[magnitude.length];
+        for (int i = 0; i < magnitude.length; i++) {
+            int bits = Float.floatToIntBits(magnitude[i]);
+            int ordered = bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+            keys[i] = ((long) ordered << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[magnitude.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    public int getCellCount() {
+        return cellStart.length - 1;
+    }
+
+    public int getStarCount() {
+        return entries.length;
+    }
+
+    public double getZoneHeight() {
+        return zoneHeight;
+    }
+
+    /**
+     * @return Offset of the first entry of each cell, length cellCount + 1. Not a copy.
+     */
+    public int[] getCellStart() {
+        return cellStart;
+    }
+
+    /**
+     * @return Star indices in cell order, brightest first within each cell. Not a copy.
+     */
+    public int[] getEntries() {
+        return entries;
+    }
+
+    /**
+     * Visits every star inside an RA/Dec box
+     *
+     * @param minRA Lower RA bound in [0, 24) hours
+     * @param maxRA Upper RA bound in [0, 24] hours; smaller than minRA when the box wraps through 0h
+     * @param minDec Lower declination bound (degrees)
+     * @param maxDec Upper declination bound (degrees)
+     * @param maxMagnitude Faintest magnitude to include
+     * @param visitor Receives the catalog index of every star in the box
+     * @return Number of stars visited
+     */
+    public int forEachInBox(double minRA, double maxRA, double minDec, double maxDec,
+                            double maxMagnitude, Visitor visitor) {
+        return query(minRA, maxRA, minDec, maxDec, maxMagnitude, null, visitor);
+    }
+
+    /**
+     * Writes the catalog index of every star inside an RA/Dec box into a caller-owned array.
+     * Does not allocate.
+     *
+     * @param minRA Lower RA bound in [0, 24) hours
+     * @param maxRA Upper RA bound in [0, 24] hours; smaller than minRA when the box wraps through 0h
+     * @param minDec Lower declination bound (degrees)
+     * @param maxDec Upper declination bound (degrees)
+     * @param maxMagnitude Faintest magnitude to include
+     * @param out Receives star indices; matches beyond its length are counted but not stored
+     * @return Number of stars in the box, which may exceed out.length
+     */
+    public int collectInBox(double minRA, double maxRA, double minDec, double maxDec,
+                            double maxMagnitude, int[] out) {
+        return query(minRA, maxRA, minDec, maxDec, maxMagnitude, out, null);
+    }
+
+    private int query(double minRA, double maxRA, double minDec, double maxDec, double maxMagnitude,
+                      int[] out, Visitor visitor) {
+        if (minDec > maxDec) {
+            return 0;
+        }
+        boolean raWraps = minRA > maxRA;
+        int firstZone = zoneOf(minDec);
+        int lastZone = zoneOf(maxDec);
+        int found = 0;
+
+        for (int zone = firstZone; zone <= lastZone; zone++) {
+            int cells = zoneCellCount[zone];
+            int base = zoneFirstCell[zone];
+            int firstCell = raCellOf(minRA, cells);
+            int lastCell = raCellOf(maxRA, cells);
+
+            // Only zones crossed by a dec bound need the per-star dec test
+            boolean checkDec = zone == firstZone || zone == lastZone;
+
+            if (raWraps && lastCell >= firstCell) {
+                // Both ends of the wrapped range share a cell, so the whole zone is covered
+                found = scanCells(base, base + cells - 1, minRA, maxRA, true,
+                        checkDec, minDec, maxDec, maxMagnitude, out, found, visitor);
+            } else if (raWraps) {
+                found = scanCells(base + firstCell, base + cells - 1, minRA, maxRA, true,
+                        checkDec, minDec, maxDec, maxMagnitude, out, found, visitor);
+                found = scanCells(base, base + lastCell, minRA, maxRA, true,
+                        checkDec, minDec, maxDec, maxMagnitude, out, found, visitor);
+            } else {
+                found = scanCells(base + firstCell, base + lastCell, minRA, maxRA, false,
+                        checkDec, minDec, maxDec, maxMagnitude, out, found, visitor);
+            }
+        }
+        return found;
+    }
+
+    private int scanCells(int fromCell, int toCell, double minRA, double maxRA, boolean raWraps,
+                          boolean checkDec, double minDec, double maxDec, double maxMagnitude,
+                          int[] out, int found, Visitor visitor) {
+        for (int cell = fromCell; cell <= toCell; cell++) {
+            found = scanCell(cell, minRA, maxRA, raWraps, checkDec, minDec, maxDec, maxMagnitude,
+                    out, found, visitor);
+        }
+        return found;
+    }
+
+    private int scanCell(int cell, double minRA, double maxRA, boolean raWraps,
+                         boolean checkDec, double minDec, double maxDec, double maxMagnitude,
+                         int[] out, int found, Visitor visitor) {
+        int end = cellStart[cell + 1];
+        for (int e = cellStart[cell]; e < end; e++) {
+            int star = entries[e];
+            if (magnitude[star] > maxMagnitude) {
+                // Everything after this in the cell is fainter still
+                break;
+            }
+            if (checkDec) {
+                double dec = declination[star];
+                if (dec < minDec || dec > maxDec) {
+                    continue;
+                }
+            }
+            double ra = rightAscension[star];
+            boolean inRARange = raWraps
+                    ? (ra >= minRA || ra <= maxRA)
+                    : (ra >= minRA && ra <= maxRA);
+            if (inRARange) {
+                if (out == null) {
+                    visitor.visit(star);
+                } else if (found < out.length) {
+                    out[found] = star;
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int cellOf(double ra, double dec) {
+        int zone = zoneOf(dec);
+        double normalizedRA = ((ra % 24) + 24) % 24;
+        return zoneFirstCell[zone] + raCellOf(normalizedRA, zoneCellCount[zone]);
+    }
+
+    private int zoneOf(double dec) {
+        int zone = (int) Math.floor((dec + 90.0) / zoneHeight);
+        return Math.min(Math.max(zone, 0), zoneCount - 1);
+    }
+
+    private static int raCellOf(double ra, int cells) {
+        int cell = (int) (ra / 24.0 * cells);
+        return Math.min(Math.max(cell, 0), cells - 1);
+    }
+}
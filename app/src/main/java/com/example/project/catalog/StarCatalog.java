@@ -0,0 +1,120 @@
+package com.example.project.catalog;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-memory star catalog decoded from the binary catalog format.
+ *
+ * Stars are stored as parallel primitive arrays indexed by star: RA, Dec,
+ * magnitude and the unit vector of each position. Names live in a separate
+ * table of unique strings that stars refer to by id; they stay as UTF-8 bytes
+ * until first asked for, so loading does no per-star string work and
+ * duplicate names are decoded once.
+ */
+public final class StarCatalog {
+    private final double[] rightAscension; // hours
+    private final double[] declination;    // degrees
+    private final float[] magnitude;       // apparent magnitude
+    private final double[] unitX;          // unit vector towards each star (equatorial frame)
+    private final double[] unitY;
+    private final double[] unitZ;
+    private final int[] nameId;            // id in the name table, -1 if unnamed
+    private final byte[] nameTable;        // length-prefixed UTF-8 names
+    private final int[] nameStart;         // offset of each name id in nameTable
+    private final String[] names;          // decoded names by id, filled on demand
+    private double indexZoneHeight;        // zone height of the prebuilt index
+    private int[] indexCellStart;          // prebuilt index cells, null if the file had none
+
+    public StarCatalog(double[] rightAscension, double[] declination, float[] magnitude,
+                       int[] nameId, byte[] nameTable, int nameCount) {
+        this.rightAscension = rightAscension;
+        this.declination = declination;
+        this.magnitude = magnitude;
+        this.nameId = nameId;
+        this.nameTable = nameTable;
+
+        int count = rightAscension.length;
+        unitX = new double[count];
+        unitY = new double[count];
+        unitZ = new double[count];
+        for (int i = 0; i < count; i++) {
+            double ra = Math.toRadians(rightAscension[i] * 15.0);
+            double dec = Math.toRadians(declination[i]);
+            double cosDec = Math.cos(dec);
+            unitX[i] = cosDec * Math.cos(ra);
+            unitY[i] = cosDec * Math.sin(ra);
+            unitZ[i] = Math.sin(dec);
+        }
+
+        // One pass over the length prefixes locates every name
+        nameStart = new int[nameCount];
+        for (int id = 0, offset = 0; id < nameCount; id++) {
+            nameStart[id] = offset;
+            offset += 1 + (nameTable[offset] & 0xFF);
+        }
+        names = new String[nameCount];
+    }
+
+    void setPrebuiltIndex(double zoneHeight, int[] cellStart) {
+        indexZoneHeight = zoneHeight;
+        indexCellStart = cellStart;
+    }
+
+    /**
+     * Returns the spatial index for this catalog, reusing the one stored in the
+     * catalog file when there is one and building it otherwise
+     */
+    public SkyIndex createIndex() {
+        if (indexCellStart != null) {
+            try {
+                return new SkyIndex(rightAscension, declination, magnitude, indexZoneHeight, indexCellStart);
+            } catch (IllegalArgumentException e) {
+                // Stored index does not match this build's layout; fall through and rebuild
+            }
+        }
+        return new SkyIndex(rightAscension, declination, magnitude);
+    }
+
+    public int size() {
+        return rightAscension.length;
+    }
+
+    public double[] getRightAscension() {
+        return rightAscension;
+    }
+
+    public double[] getDeclination() {
+        return declination;
+    }
+
+    public float[] getMagnitude() {
+        return magnitude;
+    }
+
+    public double[] getUnitX() {
+        return unitX;
+    }
+
+    public double[] getUnitY() {
+        return unitY;
+    }
+
+    public double[] getUnitZ() {
+        return unitZ;
+    }
+
+    public String getName(int index) {
+        int id = nameId[index];
+        if (id < 0) {
+            return "";
+        }
+        String name = names[id];
+        if (name == null) {
+            int offset = nameStart[id];
+            int length = nameTable[offset] & 0xFF;
+            name = new String(nameTable, offset + 1, length, StandardCharsets.UTF_8);
+            names[id] = name;
+        }
+        return name;
+    }
+}
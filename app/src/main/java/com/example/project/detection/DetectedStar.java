@@ -0,0 +1,23 @@
+package com.example.project.detection;
+
+/**
+ * A star found in an image: sub-pixel centroid and background-subtracted flux
+ */
+public final class DetectedStar {
+    public final double x;
+    public final double y;
+    public final double flux;
+
+    public DetectedStar(double x, double y, double flux) {
+        this.x = x;
+        this.y = y;
+        this.flux = flux;
+    }
+
+    /**
+     * @return -2.5 log10(flux); only differences between stars of one image are meaningful
+     */
+    public double getInstrumentalMagnitude() {
+        return StarDetector.instrumentalMagnitude(flux);
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.project.detection;
+
+import java.util.Arrays;
+
+/**
+ * Aligns a burst of 8-bit luminance frames on their stars and stacks them, so
+ * stars too faint for a single short exposure rise above the noise.
+ *
+ * Frames are added one at a time and folded into a preallocated accumulator
+ * straight away, so memory stays at the accumulator plus the caller's frame
+ * buffer however many frames are stacked. The first frame is the reference.
+ * Each later frame is mapped onto it by a rotation and a translation:
+ * <ol>
+ *   <li>the roll between the frames' device orientations gives the rotation
+ *       prior; its sign is checked against the stars, with no rotation as a
+ *       third candidate</li>
+ *   <li>for each candidate rotation, every pair of bright reference and frame
+ *       stars votes for a translation, and the most supported one wins</li>
+ *   <li>stars paired under that transform give a least-squares rigid fit,
+ *       repeated once with the tighter match radius</li>
+ * </ol>
+ * The frame is then resampled bilinearly into reference pixels. In MEAN mode
+ * each pixel keeps a running mean. In SIGMA_CLIPPED mode it also keeps the
+ * running variance (Welford), and once it has a few samples it rejects values
+ * more than CLIP_SIGMA deviations from its mean, such as satellites, planes and
+ * hot pixels.
+ *
+ * The stack has the noise of one frame divided by sqrt(n). {@link #render}
+ * stretches it by sqrt(n) about the background level, so the noise is back at
+ * single-frame level and the detector's fixed thresholds reach sqrt(n) times
+ * fainter. Instances are not thread-safe.
+ */
+public final class FrameStacker {
+    public enum Mode {
+        MEAN,
+        SIGMA_CLIPPED
+    }
+
+    public static final int MAX_FRAMES = 255;
+    public static final int MIN_ALIGNMENT_STARS = 4;
+
+    private static final int ALIGNMENT_STARS = 30;    // brightest detections used to align
+    private static final double VOTE_TOLERANCE = 3.0; // px
+    private static final double MATCH_RADIUS = 2.0;   // px, after the first fit
+    private static final double CLIP_SIGMA = 3.0;
+    private static final int MIN_CLIP_SAMPLES = 3;
+    // Floor on the clipping deviation (8-bit counts), so resampling and seeing do not clip star cores
+    private static final float MIN_CLIP_DEVIATION = 4f;
+
+    private final int width;
+    private final int height;
+    private final Mode mode;
+    private final float[] mean;
+    private final float[] m2;     // sum of squared deviations; SIGMA_CLIPPED only
+    private final byte[] samples; // samples per pixel, unsigned
+
+    private final StarDetector detector = new StarDetector();
+    private double[] referenceX;
+    private double[] referenceY;
+    private KdTree referenceTree;
+    private final double[] frameX = new double[ALIGNMENT_STARS];
+    private final double[] frameY = new double[ALIGNMENT_STARS];
+    private final double[] rotatedX = new double[ALIGNMENT_STARS];
+    private final double[] rotatedY = new double[ALIGNMENT_STARS];
+
+    private int frameCount;
+    private int rejectedCount;
+    private long clippedSamples;
+
+    // Last alignment, frame pixels to reference pixels
+    private double rotation;
+    private double shiftX;
+    private double shiftY;
+    private int matchCount;
+
+    public FrameStacker(int width, int height, Mode mode) {
+        this.width = width;
+        this.height = height;
+        this.mode = mode;
+        mean = new float[width * height];
+        m2 = mode == Mode.SIGMA_CLIPPED ? new float[width * height] : null;
+        samples = new byte[width * height];
+    }
+
+    /**
+     * Aligns a frame to the reference and adds it to the stack
+     *
+     * @param gray 8-bit luminance, width x height
+     * @param offset Index of the top-left pixel in gray
+     * @param stride Row length of gray
+     * @param rollPrior Expected rotation from this frame to the reference (radians),
+     *                  from {@link #relativeRoll}; 0 if unknown
+     * @return Whether the frame was stacked; false if it could not be aligned
+     */
+    public boolean add(byte[] gray, int offset, int stride, double rollPrior) {
+        if (frameCount == MAX_FRAMES) {
+            return false;
+        }
+        int stars = brightestStars(gray, offset, stride);
+        if (frameCount == 0) {
+            referenceX = Arrays.copyOf(frameX, stars);
+            referenceY = Arrays.copyOf(frameY, stars);
+            referenceTree = new KdTree(referenceX, referenceY, stars);
+            rotation = 0;
+            shiftX = 0;
+            shiftY = 0;
+            matchCount = stars;
+        } else if (!align(stars, rollPrior)) {
+            rejectedCount++;
+            return false;
+        }
+        accumulate(gray, offset, stride);
+        frameCount++;
+        return true;
+    }
+
+    /**
+     * Detects stars and keeps the brightest in frameX/frameY
+     */
+    private int brightestStars(byte[] gray, int offset, int stride) {
+        int count = detector.detect(gray, offset, stride, width, height);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(detector.getFlux(b), detector.getFlux(a)));
+        int kept = Math.min(count, ALIGNMENT_STARS);
+        for (int i = 0; i < kept; i++) {
+            frameX[i] = detector.getX(order[i]);
+            frameY[i] = detector.getY(order[i]);
+        }
+        return kept;
+    }
+
+    private boolean align(int stars, double rollPrior) {
+        if (stars < MIN_ALIGNMENT_STARS || referenceX.length < MIN_ALIGNMENT_STARS) {
+            return false;
+        }
+        double[] candidates = Math.abs(rollPrior) < 1e-3
+                ? new double[] {0}
+                : new double[] {rollPrior, -rollPrior, 0};
+
+        // Translation vote for each candidate rotation
+        int bestVotes = 0;
+        double bestRotation = 0;
+        double bestShiftX = 0;
+        double bestShiftY = 0;
+        for (double theta : candidates) {
+            rotate(stars, theta);
+            for (int i = 0; i < referenceX.length; i++) {
+                for (int j = 0; j < stars; j++) {
+                    double dx = referenceX[i] - rotatedX[j];
+                    double dy = referenceY[i] - rotatedY[j];
+                    int votes = countVotes(dx, dy, stars);
+                    if (votes > bestVotes) {
+                        bestVotes = votes;
+                        bestRotation = theta;
+                        bestShiftX = dx;
+                        bestShiftY = dy;
+                    }
+                }
+            }
+        }
+        if (bestVotes < MIN_ALIGNMENT_STARS) {
+            return false;
+        }
+
+        // Rigid fit to the voted pairs, then again to pairs under the fit
+        double radius = 2 * VOTE_TOLERANCE;
+        for (int iteration = 0; iteration < 2; iteration++) {
+            if (!fitRigid(stars, bestRotation, bestShiftX, bestShiftY, radius)) {
+                return false;
+            }
+            bestRotation = rotation;
+            bestShiftX = shiftX;
+            bestShiftY = shiftY;
+            radius = MATCH_RADIUS;
+        }
+        return true;
+    }
+
+    private void rotate(int stars, double theta) {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        for (int j = 0; j < stars; j++) {
+            rotatedX[j] = cos * frameX[j] - sin * frameY[j];
+            rotatedY[j] = sin * frameX[j] + cos * frameY[j];
+        }
+    }
+
+    /**
+     * Counts the star pairs whose offset agrees with (dx, dy)
+     */
+    private int countVotes(double dx, double dy, int stars) {
+        int votes = 0;
+        double toleranceSquared = VOTE_TOLERANCE * VOTE_TOLERANCE;
+        for (int i = 0; i < referenceX.length; i++) {
+            for (int j = 0; j < stars; j++) {
+                double ex = referenceX[i] - rotatedX[j] - dx;
+                double ey = referenceY[i] - rotatedY[j] - dy;
+                if (ex * ex + ey * ey <= toleranceSquared) {
+                    votes++;
+                }
+            }
+        }
+        return votes;
+    }
+
+    /**
+     * Pairs each frame star with the nearest reference star under the given
+     * transform and fits rotation and translation to the pairs by least squares.
+     * Sets rotation, shiftX, shiftY and matchCount.
+     *
+     * @return Whether enough pairs were found
+     */
+    private boolean fitRigid(int stars, double theta, double tx, double ty, double radius) {
+        rotate(stars, theta);
+        int[] pair = new int[stars];
+        int pairs = 0;
+        double frameMeanX = 0, frameMeanY = 0, refMeanX = 0, refMeanY = 0;
+        for (int j = 0; j < stars; j++) {
+            int i = referenceTree.nearest(rotatedX[j] + tx, rotatedY[j] + ty, radius, k -> true);
+            pair[j] = i;
+            if (i >= 0) {
+                pairs++;
+                frameMeanX += frameX[j];
+                frameMeanY += frameY[j];
+                refMeanX += referenceX[i];
+                refMeanY += referenceY[i];
+            }
+        }
+        if (pairs < MIN_ALIGNMENT_STARS) {
+            return false;
+        }
+        frameMeanX /= pairs;
+        frameMeanY /= pairs;
+        refMeanX /= pairs;
+        refMeanY /= pairs;
+
+        // 2D Procrustes without scale: the angle maximizing the cross-correlation of the pairs
+        double dot = 0, cross = 0;
+        for (int j = 0; j < stars; j++) {
+            int i = pair[j];
+            if (i < 0) {
+                continue;
+            }
+            double ax = frameX[j] - frameMeanX;
+            double ay = frameY[j] - frameMeanY;
+            double bx = referenceX[i] - refMeanX;
+            double by = referenceY[i] - refMeanY;
+            dot += ax * bx + ay * by;
+            cross += ax * by - ay * bx;
+        }
+        rotation = Math.atan2(cross, dot);
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        shiftX = refMeanX - (cos * frameMeanX - sin * frameMeanY);
+        shiftY = refMeanY - (sin * frameMeanX + cos * frameMeanY);
+        matchCount = pairs;
+        return true;
+    }
+
+    /**
+     * Resamples the frame into reference pixels under the last alignment and
+     * folds each sample into its pixel's statistics
+     */
+    private void accumulate(byte[] gray, int offset, int stride) {
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        for (int y = 0; y < height; y++) {
+            // Frame position of the center of reference pixel (0, y), as a sample coordinate
+            double px = 0.5 - shiftX;
+            double py = y + 0.5 - shiftY;
+            double u = cos * px + sin * py - 0.5;
+            double v = -sin * px + cos * py - 0.5;
+            for (int x = 0, i = y * width; x < width; x++, i++, u += cos, v -= sin) {
+                if (u < 0 || v < 0 || u > width - 1 || v > height - 1) {
+                    continue;
+                }
+                int x0 = (int) u;
+                int y0 = (int) v;
+                int x1 = Math.min(x0 + 1, width - 1);
+                int y1 = Math.min(y0 + 1, height - 1);
+                float fx = (float) (u - x0);
+                float fy = (float) (v - y0);
+                int row0 = offset + y0 * stride;
+                int row1 = offset + y1 * stride;
+                float top = (gray[row0 + x0] & 0xFF) + fx * ((gray[row0 + x1] & 0xFF) - (gray[row0 + x0] & 0xFF));
+                float bottom = (gray[row1 + x0] & 0xFF) + fx * ((gray[row1 + x1] & 0xFF) - (gray[row1 + x0] & 0xFF));
+                addSample(i, top + fy * (bottom - top));
+            }
+        }
+    }
+
+    private void addSample(int i, float value) {
+        int n = samples[i] & 0xFF;
+        float delta = value - mean[i];
+        if (mode == Mode.SIGMA_CLIPPED) {
+            if (n >= MIN_CLIP_SAMPLES) {
+                float deviation = Math.max((float) Math.sqrt(m2[i] / (n - 1)), MIN_CLIP_DEVIATION);
+                if (Math.abs(delta) > CLIP_SIGMA * deviation) {
+                    clippedSamples++;
+                    return;
+                }
+            }
+            n++;
+            mean[i] += delta / n;
+            m2[i] += delta * (value - mean[i]);
+        } else {
+            n++;
+            mean[i] += delta / n;
+        }
+        samples[i] = (byte) n;
+    }
+
+    /**
+     * Writes the stack as 8-bit luminance, stretched by sqrt(frames) about the
+     * median pixel. Pixels no frame covered get the median.
+     *
+     * @param out Receives width x height pixels
+     */
+    public void render(byte[] out) {
+        int[] histogram = new int[256];
+        int covered = 0;
+        for (int i = 0; i < mean.length; i++) {
+            if (samples[i] != 0) {
+                histogram[clamp(Math.round(mean[i]))]++;
+                covered++;
+            }
+        }
+        int median = 0;
+        for (int seen = 0; median < 255; median++) {
+            seen += histogram[median];
+            if (2 * seen >= covered) {
+                break;
+            }
+        }
+
+        float gain = (float) Math.sqrt(Math.max(frameCount, 1));
+        for (int i = 0; i < mean.length; i++) {
+            out[i] = samples[i] == 0 ? (byte) median
+                    : (byte) clamp(Math.round(median + (mean[i] - median) * gain));
+        }
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * Rotation about the optical axis that takes a frame's image onto the
+     * reference image, from the rotation-vector quaternions (x, y, z, w) of the
+     * device at both captures. The device roll about its screen normal turns the
+     * image the other way. The sign also depends on the camera facing, so
+     * {@link #add} tries both.
+     */
+    public static double relativeRoll(float rx, float ry, float rz, float rw,
+                                      float fx, float fy, float fz, float fw) {
+        // Rotation from the reference device frame to the frame device frame: conj(ref) * frame
+        double w = rw * fw + rx * fx + ry * fy + rz * fz;
+        double x = rw * fx - rx * fw - ry * fz + rz * fy;
+        double y = rw * fy + rx * fz - ry * fw - rz * fx;
+        double z = rw * fz - rx * fy + ry * fx - rz * fw;
+        double r10 = 2 * (x * y + w * z);
+        double r00 = 1 - 2 * (y * y + z * z);
+        return -Math.atan2(r10, r00);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return Frames that could not be aligned and were left out
+     */
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return Samples rejected by sigma clipping
+     */
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    /**
+     * @return Rotation of the last stacked frame onto the reference (radians)
+     */
+    public double getRotation() {
+        return rotation;
+    }
+
+    public double getShiftX() {
+        return shiftX;
+    }
+
+    public double getShiftY() {
+        return shiftY;
+    }
+
+    /**
+     * @return Star pairs behind the last alignment
+     */
+    public int getMatchCount() {
+        return matchCount;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.project.detection;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Static 2D KD-tree over a set of points, for nearest-neighbour and radius
+ * queries in pixel space.
+ *
+ * The tree is implicit: building reorders a permutation of point indices so that
+ * every range's middle element splits the range on alternating axes (x first).
+ * Queries need no node objects and allocate nothing. Instances are not
+ * thread-safe while querying.
+ */
+public final class KdTree {
+    private final double[] x;
+    private final double[] y;
+    private final int[] order;
+
+    // Query state, kept in fields so the recursion needs no allocation
+    private double queryX;
+    private double queryY;
+    private double bestDistanceSquared;
+    private int best;
+    private IntPredicate accept;
+    private int[] found;
+    private int foundCount;
+
+    /**
+     * @param x X coordinate of each point; not copied
+     * @param y Y coordinate of each point; not copied
+     * @param count Number of points
+     */
+    public KdTree(double[] x, double[] y, int count) {
+        this.x = x;
+        this.y = y;
+        order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        build(0, count, 0);
+    }
+
+    public int size() {
+        return order.length;
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, (depth & 1) == 0 ? x : y);
+        build(from, mid, depth + 1);
+        build(mid + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: puts the k-th smallest point by the given coordinate at order[k],
+     * with smaller-or-equal points before it and greater-or-equal after
+     */
+    private void select(int left, int right, int k, double[] coordinate) {
+        while (left < right) {
+            double pivot = coordinate[order[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate[order[i]] < pivot) {
+                    i++;
+                }
+                while (coordinate[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the nearest point that the filter accepts
+     *
+     * @param maxDistance Ignore points farther than this
+     * @param accept Filter on point index, or null to accept every point
+     * @return Index of the nearest accepted point, or -1 if none lies within maxDistance
+     */
+    public int nearest(double px, double py, double maxDistance, IntPredicate accept) {
+        queryX = px;
+        queryY = py;
+        bestDistanceSquared = maxDistance * maxDistance;
+        best = -1;
+        this.accept = accept;
+        searchNearest(0, order.length, 0);
+        this.accept = null;
+        return best;
+    }
+
+    private void searchNearest(int from, int to, int depth) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int point = order[mid];
+        double dx = x[point] - queryX;
+        double dy = y[point] - queryY;
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared < bestDistanceSquared && (accept == null || accept.test(point))) {
+            bestDistanceSquared = distanceSquared;
+            best = point;
+        }
+
+        double split = (depth & 1) == 0 ? -dx : -dy; // query minus splitting point on this axis
+        if (split < 0) {
+            searchNearest(from, mid, depth + 1);
+            if (split * split < bestDistanceSquared) {
+                searchNearest(mid + 1, to, depth + 1);
+            }
+        } else {
+            searchNearest(mid + 1, to, depth + 1);
+            if (split * split < bestDistanceSquared) {
+                searchNearest(from, mid, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Collects every point within radius of (px, py)
+     *
+     * @param out Receives point indices; only the first out.length are stored
+     * @return Total number of points found, which may exceed out.length
+     */
+    public int withinRadius(double px, double py, double radius, int[] out) {
+        queryX = px;
+        queryY = py;
+        bestDistanceSquared = radius * radius;
+        found = out;
+        foundCount = 0;
+        searchRadius(0, order.length, 0);
+        found = null;
+        return foundCount;
+    }
+
+    private void searchRadius(int from, int to, int depth) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int point = order[mid];
+        double dx = x[point] - queryX;
+        double dy = y[point] - queryY;
+        if (dx * dx + dy * dy <= bestDistanceSquared) {
+            if (foundCount < found.length) {
+                found[foundCount] = point;
+            }
+            foundCount++;
+        }
+
+        double split = (depth & 1) == 0 ? -dx : -dy;
+        if (split < 0 || split * split <= bestDistanceSquared) {
+            searchRadius(from, mid, depth + 1);
+        }
+        if (split >= 0 || split * split <= bestDistanceSquared) {
+            searchRadius(mid + 1, to, depth + 1);
+        }
+    }
+}
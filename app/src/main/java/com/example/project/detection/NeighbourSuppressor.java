@@ -0,0 +1,74 @@
+package com.example.project.detection;
+
+import java.util.Arrays;
+
+/**
+ * Greedy spacing suppression: walks candidates in order and keeps each one that
+ * lies at least minSpacing from every candidate already kept.
+ *
+ * Kept points are hashed into a uniform grid of minSpacing-sized cells, so a
+ * candidate only checks the 3x3 cells around it and the pass is linear in the
+ * candidate count. Cells live in an open hash table sized to the candidate count
+ * rather than the image, and the table is reused across calls.
+ */
+public final class NeighbourSuppressor {
+    private int[] bucketHead = new int[0]; // first kept point in each bucket, -1 if empty
+    private int[] next = new int[0];       // next kept point in the same bucket
+
+    /**
+     * Compacts the kept candidates to the front of the arrays, preserving order
+     *
+     * @return Number of candidates kept
+     */
+    public int suppress(double[] x, double[] y, double[] flux, int count, double minSpacing) {
+        int buckets = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+        if (bucketHead.length < buckets) {
+            bucketHead = new int[buckets];
+        }
+        if (next.length < count) {
+            next = new int[count];
+        }
+        int mask = buckets - 1;
+        Arrays.fill(bucketHead, 0, buckets, -1);
+
+        double minSpacingSquared = minSpacing * minSpacing;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            double px = x[i];
+            double py = y[i];
+            int cellX = (int) Math.floor(px / minSpacing);
+            int cellY = (int) Math.floor(py / minSpacing);
+
+            boolean tooClose = false;
+            for (int dy = -1; dy <= 1 && !tooClose; dy++) {
+                for (int dx = -1; dx <= 1 && !tooClose; dx++) {
+                    // Other cells can share the bucket; the distance test sorts them out
+                    for (int j = bucketHead[hash(cellX + dx, cellY + dy) & mask]; j >= 0; j = next[j]) {
+                        double ex = x[j] - px;
+                        double ey = y[j] - py;
+                        if (ex * ex + ey * ey < minSpacingSquared) {
+                            tooClose = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (tooClose) {
+                continue;
+            }
+
+            x[kept] = px;
+            y[kept] = py;
+            flux[kept] = flux[i];
+            int bucket = hash(cellX, cellY) & mask;
+            next[kept] = bucketHead[bucket];
+            bucketHead[bucket] = kept;
+            kept++;
+        }
+        return kept;
+    }
+
+    private static int hash(int cellX, int cellY) {
+        return (cellX * 73856093) ^ (cellY * 19349663);
+    }
+}
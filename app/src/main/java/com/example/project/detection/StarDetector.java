@@ -0,0 +1,509 @@
+package com.example.project.detection;
+
+import java.util.Arrays;
+
+/**
+ * Finds star-like blobs in an 8-bit grayscale image, in plain Java.
+ *
+ * Applies the same chain and heuristics as the original OpenCV detector:
+ * <ol>
+ *   <li>3x3 Gaussian blur</li>
+ *   <li>adaptive threshold: a pixel is set when it exceeds the mean of its 11x11
+ *       neighbourhood by more than 10; the mean comes from an integral image</li>
+ *   <li>8-connected components, found by a single-pass union-find labeler</li>
+ *   <li>blob filters: outer contour area in [0.8, 25], bounding box aspect ratio
+ *       at most 4</li>
+ *   <li>statistics of the blurred image in the bounding box plus a 5 px margin:
+ *       standard deviation above 10, maximum above 160, mean below 100</li>
+ * </ol>
+ * Candidates are reported in raster order of their top-left pixel.
+ * {@link NeighbourSuppressor} then keeps stars at least 8 px apart.
+ *
+ * Each star carries photometry measured on the unblurred image. Within the
+ * bounding box grown by one pixel, each pixel is weighted by how far it rises
+ * above the local background, the mean of the ROI pixels the threshold left
+ * unset. The weights give a first-moment sub-pixel centroid and the integrated
+ * flux. Pixel (x, y) covers [x, x + 1) x [y, y + 1), so its center is at
+ * x + 0.5, the same convention as the bounding box center used for the cut.
+ *
+ * An instance keeps its scratch buffers between calls, so repeated detections
+ * on same-sized images allocate nothing. Instances are not thread-safe; use one
+ * per thread.
+ */
+public final class StarDetector {
+    public static final double MIN_STAR_SPACING = 8;
+
+    private static final int BLOCK_RADIUS = 5;        // 11x11 adaptive threshold window
+    private static final int BLOCK_AREA = (2 * BLOCK_RADIUS + 1) * (2 * BLOCK_RADIUS + 1);
+    private static final int THRESHOLD_OFFSET = 10;
+    private static final double MIN_AREA = 0.8;
+    private static final double MAX_AREA = 25;
+    private static final double MAX_ASPECT_RATIO = 4;
+    private static final int ROI_MARGIN = 5;
+    private static final double MIN_ROI_STD_DEV = 10;
+    private static final int MIN_ROI_MAX = 160;
+    private static final double MAX_ROI_MEAN = 100;
+    private static final int PHOTOMETRY_MARGIN = 1;
+
+    // Neighbour offsets, counter-clockwise on screen (y down) starting east
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, -1, -1, -1, 0, 1, 1, 1};
+
+    // Scratch reused across calls
+    private byte[] blurred = new byte[0];
+    private int[] integral = new int[0];
+    private int[] previousLabels = new int[0];
+    private int[] currentLabels = new int[0];
+    private int[] parent = new int[256];
+    private int[] pixelCount = new int[256];
+    private int[] minX = new int[256];
+    private int[] maxX = new int[256];
+    private int[] minY = new int[256];
+    private int[] maxY = new int[256];
+    private int[] firstX = new int[256];
+    private int[] firstY = new int[256];
+
+    private byte[] gray;
+    private int grayOffset;
+    private int grayStride;
+    private int width;
+    private int height;
+    private int integralStride;
+
+    private final NeighbourSuppressor suppressor = new NeighbourSuppressor();
+
+    // Results
+    private int count;
+    private double[] centerX = new double[64];
+    private double[] centerY = new double[64];
+    private double[] flux = new double[64];
+
+    /**
+     * Detects candidate stars in a whole image and applies spacing suppression
+     *
+     * @param gray Row-major 8-bit luminance
+     * @return Number of stars found; read them with getX/getY
+     */
+    public int detect(byte[] gray, int width, int height) {
+        return detect(gray, 0, width, width, height);
+    }
+
+    /**
+     * Detects stars in a window of a larger image, or in an image with padded rows
+     * such as a camera plane, and applies spacing suppression
+     *
+     * @param gray 8-bit luminance of the larger image
+     * @param offset Index of the window's top-left pixel in gray
+     * @param stride Row length of the larger image
+     * @return Number of stars found; positions are relative to the window
+     */
+    public int detect(byte[] gray, int offset, int stride, int width, int height) {
+        findCandidates(gray, offset, stride, width, height);
+        count = suppressor.suppress(centerX, centerY, flux, count, MIN_STAR_SPACING);
+        return count;
+    }
+
+    /**
+     * Detects candidate stars in a window of a larger image, without spacing
+     * suppression, so windows can be merged before suppressing
+     *
+     * @param gray 8-bit luminance of the larger image
+     * @param offset Index of the window's top-left pixel in gray
+     * @param stride Row length of the larger image
+     * @param width Window width
+     * @param height Window height
+     * @return Number of candidates; positions are relative to the window
+     */
+    public int findCandidates(byte[] gray, int offset, int stride, int width, int height) {
+        this.gray = gray;
+        this.grayOffset = offset;
+        this.grayStride = stride;
+        this.width = width;
+        this.height = height;
+        count = 0;
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        ensureCapacity();
+        blur(gray, offset, stride);
+        buildIntegral();
+        int labels = labelComponents();
+
+        // Labels are created in raster order of their first pixel, so roots come out in that order too
+        for (int label = 1; label <= labels; label++) {
+            if (parent[label] == label) {
+                testComponent(label);
+            }
+        }
+        this.gray = null;
+        return count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getX(int i) {
+        return centerX[i];
+    }
+
+    public double getY(int i) {
+        return centerY[i];
+    }
+
+    /**
+     * @return Background-subtracted flux of star i, in 8-bit counts
+     */
+    public double getFlux(int i) {
+        return flux[i];
+    }
+
+    /**
+     * @return Instrumental magnitude of star i, -2.5 log10(flux)
+     */
+    public double getMagnitude(int i) {
+        return instrumentalMagnitude(flux[i]);
+    }
+
+    public static double instrumentalMagnitude(double flux) {
+        return -2.5 * Math.log10(flux);
+    }
+
+    private void ensureCapacity() {
+        int pixels = width * height;
+        if (blurred.length < pixels) {
+            blurred = new byte[pixels];
+        }
+        integralStride = width + 2 * BLOCK_RADIUS + 1;
+        int integralSize = integralStride * (height + 2 * BLOCK_RADIUS + 1);
+        if (integral.length < integralSize) {
+            integral = new int[integralSize];
+        }
+        if (previousLabels.length < width) {
+            previousLabels = new int[width];
+            currentLabels = new int[width];
+        }
+    }
+
+    /**
+     * 3x3 Gaussian ([1 2 1] x [1 2 1] / 16) with reflect-101 borders
+     */
+    private void blur(byte[] gray, int offset, int stride) {
+        for (int y = 0; y < height; y++) {
+            int above = offset + reflect(y - 1, height) * stride;
+            int row = offset + y * stride;
+            int below = offset + reflect(y + 1, height) * stride;
+            for (int x = 0; x < width; x++) {
+                int left = reflect(x - 1, width);
+                int right = reflect(x + 1, width);
+                int sum = (gray[above + left] & 0xFF) + 2 * (gray[above + x] & 0xFF) + (gray[above + right] & 0xFF)
+                        + 2 * ((gray[row + left] & 0xFF) + 2 * (gray[row + x] & 0xFF) + (gray[row + right] & 0xFF))
+                        + (gray[below + left] & 0xFF) + 2 * (gray[below + x] & 0xFF) + (gray[below + right] & 0xFF);
+                blurred[y * width + x] = (byte) ((sum + 8) >> 4);
+            }
+        }
+    }
+
+    private static int reflect(int i, int size) {
+        if (size == 1) {
+            return 0;
+        }
+        if (i < 0) {
+            return -i;
+        }
+        if (i >= size) {
+            return 2 * size - 2 - i;
+        }
+        return i;
+    }
+
+    /**
+     * Integral image of the blurred image padded by BLOCK_RADIUS on every side with
+     * replicated edges, so every pixel's window is one four-corner lookup.
+     * Sums wrap past 2^31 on large images, but window sums are small and the
+     * wrapped differences stay exact.
+     */
+    private void buildIntegral() {
+        int paddedWidth = width + 2 * BLOCK_RADIUS;
+        int paddedHeight = height + 2 * BLOCK_RADIUS;
+        Arrays.fill(integral, 0, integralStride, 0);
+        for (int py = 0; py < paddedHeight; py++) {
+            int sourceRow = Math.min(Math.max(py - BLOCK_RADIUS, 0), height - 1) * width;
+            int rowSum = 0;
+            int above = py * integralStride;
+            int here = above + integralStride;
+            integral[here] = 0;
+            for (int px = 0; px < paddedWidth; px++) {
+                int sourceX = Math.min(Math.max(px - BLOCK_RADIUS, 0), width - 1);
+                rowSum += blurred[sourceRow + sourceX] & 0xFF;
+                integral[here + px + 1] = integral[above + px + 1] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Whether the adaptive threshold sets the pixel; false outside the window
+     */
+    private boolean isSet(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int top = y * integralStride + x;
+        int bottom = top + (2 * BLOCK_RADIUS + 1) * integralStride;
+        int span = 2 * BLOCK_RADIUS + 1;
+        int sum = integral[bottom + span] - integral[top + span] - integral[bottom] + integral[top];
+        int mean = (sum + BLOCK_AREA / 2) / BLOCK_AREA;
+        return (blurred[y * width + x] & 0xFF) - mean > THRESHOLD_OFFSET;
+    }
+
+    /**
+     * One raster pass of 8-connected labeling. Equivalent labels are merged with
+     * union-find as they meet, and each root carries the running pixel count,
+     * bounding box and first pixel of its component, so no second pass is needed.
+     *
+     * @return Highest label used
+     */
+    private int labelComponents() {
+        int labels = 0;
+        Arrays.fill(previousLabels, 0, width, 0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!isSet(x, y)) {
+                    currentLabels[x] = 0;
+                    continue;
+                }
+                int label = 0;
+                if (x > 0) {
+                    label = join(label, currentLabels[x - 1]);
+                    label = join(label, previousLabels[x - 1]);
+                }
+                label = join(label, previousLabels[x]);
+                if (x + 1 < width) {
+                    label = join(label, previousLabels[x + 1]);
+                }
+                if (label == 0) {
+                    label = newLabel(++labels, x, y);
+                }
+                currentLabels[x] = label;
+                pixelCount[label]++;
+                minX[label] = Math.min(minX[label], x);
+                maxX[label] = Math.max(maxX[label], x);
+                minY[label] = Math.min(minY[label], y);
+                maxY[label] = Math.max(maxY[label], y);
+            }
+            int[] swap = previousLabels;
+            previousLabels = currentLabels;
+            currentLabels = swap;
+        }
+        return labels;
+    }
+
+    private int newLabel(int label, int x, int y) {
+        if (label >= parent.length) {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            pixelCount = Arrays.copyOf(pixelCount, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            firstX = Arrays.copyOf(firstX, capacity);
+            firstY = Arrays.copyOf(firstY, capacity);
+        }
+        parent[label] = label;
+        pixelCount[label] = 0;
+        minX[label] = x;
+        maxX[label] = x;
+        minY[label] = y;
+        maxY[label] = y;
+        firstX[label] = x;
+        firstY[label] = y;
+        return label;
+    }
+
+    private int find(int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * Merges two labels (0 meaning none) and returns the surviving root. The lower
+     * label wins, so a root's first pixel stays the component's first in raster order.
+     */
+    private int join(int a, int b) {
+        if (b == 0) {
+            return a == 0 ? 0 : find(a);
+        }
+        b = find(b);
+        if (a == 0) {
+            return b;
+        }
+        a = find(a);
+        if (a == b) {
+            return a;
+        }
+        int root = Math.min(a, b);
+        int child = Math.max(a, b);
+        parent[child] = root;
+        pixelCount[root] += pixelCount[child];
+        minX[root] = Math.min(minX[root], minX[child]);
+        maxX[root] = Math.max(maxX[root], maxX[child]);
+        minY[root] = Math.min(minY[root], minY[child]);
+        maxY[root] = Math.max(maxY[root], maxY[child]);
+        return root;
+    }
+
+    private void testComponent(int label) {
+        int rectWidth = maxX[label] - minX[label] + 1;
+        int rectHeight = maxY[label] - minY[label] + 1;
+
+        // Bounding rectangle checks
+        double aspectRatio = Math.max(rectWidth, rectHeight) / (Math.min(rectWidth, rectHeight) + 1e-5);
+        if (aspectRatio > MAX_ASPECT_RATIO) {
+            return;
+        }
+
+        // Area filter
+        double area = contourArea(firstX[label], firstY[label], pixelCount[label]);
+        if (area < MIN_AREA || area > MAX_AREA) {
+            return;
+        }
+
+        // Intensity statistics over the blob and its surroundings
+        int x1 = Math.max(minX[label] - ROI_MARGIN, 0);
+        int y1 = Math.max(minY[label] - ROI_MARGIN, 0);
+        int x2 = Math.min(maxX[label] + 1 + ROI_MARGIN, width);
+        int y2 = Math.min(maxY[label] + 1 + ROI_MARGIN, height);
+        long sum = 0;
+        long sumSquares = 0;
+        int max = 0;
+        for (int y = y1; y < y2; y++) {
+            for (int i = y * width + x1, end = y * width + x2; i < end; i++) {
+                int value = blurred[i] & 0xFF;
+                sum += value;
+                sumSquares += value * value;
+                max = Math.max(max, value);
+            }
+        }
+        int n = (x2 - x1) * (y2 - y1);
+        double mean = (double) sum / n;
+        double stdDev = Math.sqrt(Math.max(0, (double) sumSquares / n - mean * mean));
+
+        // Heuristic checks
+        if (stdDev > MIN_ROI_STD_DEV && max > MIN_ROI_MAX && mean < MAX_ROI_MEAN) {
+            measure(label, x1, y1, x2, y2);
+        }
+    }
+
+    /**
+     * Computes the centroid and flux of an accepted component and records it
+     */
+    private void measure(int label, int roiX1, int roiY1, int roiX2, int roiY2) {
+        // Local background: ROI pixels that the threshold left unset
+        long backgroundSum = 0;
+        int backgroundCount = 0;
+        for (int y = roiY1; y < roiY2; y++) {
+            int row = grayOffset + y * grayStride;
+            for (int x = roiX1; x < roiX2; x++) {
+                if (!isSet(x, y)) {
+                    backgroundSum += gray[row + x] & 0xFF;
+                    backgroundCount++;
+                }
+            }
+        }
+        double background = backgroundCount > 0 ? (double) backgroundSum / backgroundCount : 0;
+
+        // First moments of the background-subtracted signal
+        int x1 = Math.max(minX[label] - PHOTOMETRY_MARGIN, 0);
+        int y1 = Math.max(minY[label] - PHOTOMETRY_MARGIN, 0);
+        int x2 = Math.min(maxX[label] + 1 + PHOTOMETRY_MARGIN, width);
+        int y2 = Math.min(maxY[label] + 1 + PHOTOMETRY_MARGIN, height);
+        double total = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int y = y1; y < y2; y++) {
+            int row = grayOffset + y * grayStride;
+            for (int x = x1; x < x2; x++) {
+                double signal = (gray[row + x] & 0xFF) - background;
+                if (signal > 0) {
+                    total += signal;
+                    sumX += signal * (x + 0.5);
+                    sumY += signal * (y + 0.5);
+                }
+            }
+        }
+
+        if (total > 0) {
+            addCandidate(sumX / total, sumY / total, total);
+        } else {
+            // Saturated flat blob on a bright background; fall back to the box center
+            addCandidate((minX[label] + maxX[label] + 1) / 2.0, (minY[label] + maxY[label] + 1) / 2.0, 0);
+        }
+    }
+
+    /**
+     * Area of the outer contour through the boundary pixel centers, as OpenCV's
+     * findContours + contourArea measure it. Traces the 8-connected outer border
+     * from the component's first pixel (Suzuki-Abe border following) and sums the
+     * shoelace formula along the way.
+     */
+    private double contourArea(int startX, int startY, int pixels) {
+        // First neighbour clockwise from the west; the pixels before the start are all unset
+        int firstDirection = -1;
+        for (int k = 0; k < 8; k++) {
+            int d = (4 - k + 8) & 7;
+            if (isSet(startX + DX[d], startY + DY[d])) {
+                firstDirection = d;
+                break;
+            }
+        }
+        if (firstDirection < 0) {
+            return 0; // isolated pixel
+        }
+        int secondX = startX + DX[firstDirection];
+        int secondY = startY + DY[firstDirection];
+
+        int x = startX;
+        int y = startY;
+        int backDirection = firstDirection; // direction from the current pixel to the previous one
+        long twiceArea = 0;
+        // Every border pixel is visited at most four times
+        for (int step = 0, maxSteps = 4 * pixels + 8; step < maxSteps; step++) {
+            int nextX = x;
+            int nextY = y;
+            int nextDirection = backDirection;
+            for (int k = 1; k <= 8; k++) {
+                int d = (backDirection + k) & 7;
+                if (isSet(x + DX[d], y + DY[d])) {
+                    nextX = x + DX[d];
+                    nextY = y + DY[d];
+                    nextDirection = d;
+                    break;
+                }
+            }
+            twiceArea += (long) x * nextY - (long) nextX * y;
+            if (nextX == startX && nextY == startY && x == secondX && y == secondY) {
+                break;
+            }
+            backDirection = (nextDirection + 4) & 7;
+            x = nextX;
+            y = nextY;
+        }
+        return Math.abs(twiceArea) / 2.0;
+    }
+
+    private void addCandidate(double x, double y, double starFlux) {
+        if (count == centerX.length) {
+            centerX = Arrays.copyOf(centerX, count * 2);
+            centerY = Arrays.copyOf(centerY, count * 2);
+            flux = Arrays.copyOf(flux, count * 2);
+        }
+        centerX[count] = x;
+        centerY[count] = y;
+        flux[count] = starFlux;
+        count++;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.project.detection;
+
+import com.example.project.catalog.PatternIndex;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Identifies detected stars from their geometry alone, without trusting the
+ * sensor pose ("lost in space").
+ *
+ * Detections are turned into camera-frame unit vectors with a pinhole model
+ * (x right, y down, z along the boresight). Triangles of the brightest
+ * detections are looked up in the {@link PatternIndex} by their side ratios;
+ * each catalog triangle with matching ratios, scale and handedness gives an
+ * attitude hypothesis (TRIAD from two of its vertices). A hypothesis is accepted
+ * once enough of the other bright detections land on pattern stars. The accepted
+ * attitude then assigns catalog stars to every detection it can, one to one.
+ *
+ * Instances reuse scratch buffers and are not thread-safe.
+ */
+public final class StarIdentifier {
+    // Detections used to form triangles, and to vote on a hypothesis
+    private static final int PATTERN_DETECTIONS = 12;
+    private static final int VERIFY_DETECTIONS = 30;
+    private static final double RATIO_TOLERANCE = 0.01;
+    // Allowed error of the nominal field of view, as a fraction of a triangle's longest side
+    private static final double SCALE_TOLERANCE = 0.1;
+    // Farthest a detection may land from its pattern star under a hypothesis
+    private static final double MATCH_TOLERANCE_DEGREES = 1.0;
+    private static final int MIN_VERIFIED = 5;
+    // Stop searching once a hypothesis explains this many bright detections
+    private static final int CONFIDENT_VERIFIED = 10;
+
+    private final PatternIndex index;
+    private final double cosMatchTolerance = Math.cos(Math.toRadians(MATCH_TOLERANCE_DEGREES));
+    private int[] candidates = new int[256];
+    private int[] nearby = new int[256];  // pattern stars around the boresight of a hypothesis
+    private final double[] rotation = new double[9];
+
+    /**
+     * Outcome of a successful identification
+     */
+    public static final class Result {
+        /** Catalog index of each detection, or -1 if none was assigned */
+        public final int[] catalogIndex;
+        /** Number of detections with a catalog star */
+        public final int matchCount;
+        /** Row-major rotation from the camera frame (x right, y down, z forward) to the equatorial frame */
+        public final double[] cameraToSky;
+        /** Pinhole focal length in pixels, as measured by the matched pattern */
+        public final double focalLength;
+
+        Result(int[] catalogIndex, int matchCount, double[] cameraToSky, double focalLength) {
+            this.catalogIndex = catalogIndex;
+            this.matchCount = matchCount;
+            this.cameraToSky = cameraToSky;
+            this.focalLength = focalLength;
+        }
+    }
+
+    public StarIdentifier(PatternIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @param detections Detected stars, brightest first, in image pixels
+     * @param imageWidth Width of the image the pixels refer to
+     * @param imageHeight Height of the image the pixels refer to
+     * @param fovDegrees Nominal field of view across the shorter image side
+     * @return The identification, or null if no hypothesis was confirmed
+     */
+    public Result identify(List<DetectedStar> detections, int imageWidth, int imageHeight, double fovDegrees) {
+        int count = detections.size();
+        int verifyCount = Math.min(count, VERIFY_DETECTIONS);
+        int patternCount = Math.min(count, PATTERN_DETECTIONS);
+        if (patternCount < 3) {
+            return null;
+        }
+
+        // Pinhole focal length matching the converter's plate scale at the image center
+        double focal = Math.min(imageWidth, imageHeight) / Math.toRadians(fovDegrees);
+        double[] offsetX = new double[count];
+        double[] offsetY = new double[count];
+        double[] cx = new double[count];
+        double[] cy = new double[count];
+        double[] cz = new double[count];
+        for (int i = 0; i < count; i++) {
+            DetectedStar star = detections.get(i);
+            offsetX[i] = star.x - imageWidth / 2.0;
+            offsetY[i] = star.y - imageHeight / 2.0;
+        }
+        toCamera(offsetX, offsetY, count, focal, cx, cy, cz);
+        // Vectors under the focal length of the hypothesis being checked
+        double[] hx = new double[verifyCount];
+        double[] hy = new double[verifyCount];
+        double[] hz = new double[verifyCount];
+        // Pattern stars farther than this from the boresight cannot be in the frame
+        double halfDiagonal = Math.atan(Math.hypot(imageWidth, imageHeight) / 2 / focal);
+        double cosFieldRadius = Math.cos(halfDiagonal + Math.toRadians(MATCH_TOLERANCE_DEGREES));
+
+        double minEdge = Math.toRadians(PatternIndex.MIN_EDGE_DEGREES);
+        double maxEdge = Math.toRadians(index.getMaxEdgeDegrees());
+        double[] opposite = new double[3];
+        double[] edges = new double[3];
+        int[] vertex = new int[3];
+        int[] ordered = new int[3];
+        double[] best = null;
+        double bestFocal = focal;
+        int bestVerified = MIN_VERIFIED - 1;
+
+        // Triangles of the brightest detections first
+        search:
+        for (int k = 2; k < patternCount; k++) {
+            for (int j = 1; j < k; j++) {
+                for (int i = 0; i < j; i++) {
+                    vertex[0] = i;
+                    vertex[1] = j;
+                    vertex[2] = k;
+                    opposite[0] = angle(cx, cy, cz, j, k);
+                    opposite[1] = angle(cx, cy, cz, i, k);
+                    opposite[2] = angle(cx, cy, cz, i, j);
+                    PatternIndex.orderBySide(opposite, vertex, edges, ordered);
+                    if (edges[0] < minEdge || edges[2] > maxEdge * (1 + SCALE_TOLERANCE)) {
+                        continue;
+                    }
+                    double shortRatio = edges[0] / edges[2];
+                    double middleRatio = edges[1] / edges[2];
+                    double handedness = triple(cx, cy, cz, ordered);
+
+                    int found = index.lookup(shortRatio, middleRatio, RATIO_TOLERANCE, candidates);
+                    if (found > candidates.length) {
+                        candidates = new int[found];
+                        found = index.lookup(shortRatio, middleRatio, RATIO_TOLERANCE, candidates);
+                    }
+                    for (int c = 0; c < found; c++) {
+                        int triangle = candidates[c];
+                        double skyEdge = matchTriangle(triangle, edges, shortRatio, middleRatio, handedness);
+                        if (Double.isNaN(skyEdge)) {
+                            continue;
+                        }
+                        // The triangle also measures the plate scale, which the nominal FOV only guesses
+                        double hypothesisFocal = focal * edges[2] / skyEdge;
+                        toCamera(offsetX, offsetY, verifyCount, hypothesisFocal, hx, hy, hz);
+                        int a = index.getVertex(triangle, 0);
+                        int b = index.getVertex(triangle, 1);
+                        triad(hx[ordered[0]], hy[ordered[0]], hz[ordered[0]],
+                                hx[ordered[1]], hy[ordered[1]], hz[ordered[1]],
+                                index.getUnitX()[a], index.getUnitY()[a], index.getUnitZ()[a],
+                                index.getUnitX()[b], index.getUnitY()[b], index.getUnitZ()[b], rotation);
+                        int verified = verify(hx, hy, hz, verifyCount, bestVerified + 1, cosFieldRadius);
+                        if (verified > bestVerified) {
+                            bestVerified = verified;
+                            best = rotation.clone();
+                            bestFocal = hypothesisFocal;
+                            if (verified >= Math.min(CONFIDENT_VERIFIED, verifyCount)) {
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        // Assign catalog stars to every detection under the accepted attitude, brightest first
+        System.arraycopy(best, 0, rotation, 0, 9);
+        toCamera(offsetX, offsetY, count, bestFocal, cx, cy, cz);
+        int nearbyCount = collectNearby(cosFieldRadius);
+        boolean[] claimed = new boolean[index.getStarCount()];
+        int[] catalogIndex = new int[count];
+        int matchCount = 0;
+        for (int i = 0; i < count; i++) {
+            int star = nearestPatternStar(cx[i], cy[i], cz[i], nearbyCount, claimed);
+            if (star >= 0) {
+                claimed[star] = true;
+                catalogIndex[i] = index.getCatalogIndex(star);
+                matchCount++;
+            } else {
+                catalogIndex[i] = -1;
+            }
+        }
+        return new Result(catalogIndex, matchCount, best, bestFocal);
+    }
+
+    /**
+     * Turns pixel offsets from the image center into camera-frame unit vectors
+     */
+    private static void toCamera(double[] offsetX, double[] offsetY, int count, double focal,
+                                 double[] outX, double[] outY, double[] outZ) {
+        for (int i = 0; i < count; i++) {
+            double x = offsetX[i];
+            double y = offsetY[i];
+            double norm = Math.sqrt(x * x + y * y + focal * focal);
+            outX[i] = x / norm;
+            outY[i] = y / norm;
+            outZ[i] = focal / norm;
+        }
+    }
+
+    /**
+     * Checks the exact side ratios, scale and handedness of a candidate catalog triangle
+     *
+     * @return Longest side of the catalog triangle (radians), or NaN if it does not match
+     */
+    private double matchTriangle(int triangle, double[] edges, double shortRatio, double middleRatio,
+                                 double handedness) {
+        double[] x = index.getUnitX();
+        double[] y = index.getUnitY();
+        double[] z = index.getUnitZ();
+        int a = index.getVertex(triangle, 0);
+        int b = index.getVertex(triangle, 1);
+        int c = index.getVertex(triangle, 2);
+        double shortest = angle(x, y, z, b, c);
+        double middle = angle(x, y, z, a, c);
+        double longest = angle(x, y, z, a, b);
+        if (Math.abs(longest - edges[2]) > SCALE_TOLERANCE * longest
+                || Math.abs(shortest / longest - shortRatio) > RATIO_TOLERANCE
+                || Math.abs(middle / longest - middleRatio) > RATIO_TOLERANCE) {
+            return Double.NaN;
+        }
+        // A rotation keeps the orientation of the triangle; a mirrored match cannot be right
+        double skyHandedness = x[a] * (y[b] * z[c] - z[b] * y[c])
+                - y[a] * (x[b] * z[c] - z[b] * x[c])
+                + z[a] * (x[b] * y[c] - y[b] * x[c]);
+        return (skyHandedness > 0) == (handedness > 0) ? longest : Double.NaN;
+    }
+
+    /**
+     * Counts the detections that land on a pattern star under the current rotation.
+     * Gives up as soon as the count can no longer reach the target.
+     */
+    private int verify(double[] cx, double[] cy, double[] cz, int verifyCount, int target,
+                       double cosFieldRadius) {
+        int nearbyCount = collectNearby(cosFieldRadius);
+        int verified = 0;
+        for (int i = 0; i < verifyCount; i++) {
+            if (verified + (verifyCount - i) < target) {
+                break;
+            }
+            if (nearestPatternStar(cx[i], cy[i], cz[i], nearbyCount, null) >= 0) {
+                verified++;
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * Collects the pattern stars within the field radius of the current boresight
+     */
+    private int collectNearby(double cosFieldRadius) {
+        double[] x = index.getUnitX();
+        double[] y = index.getUnitY();
+        double[] z = index.getUnitZ();
+        // Boresight (0, 0, 1) in the sky frame is the third column of the rotation
+        double bx = rotation[2];
+        double by = rotation[5];
+        double bz = rotation[8];
+        int count = 0;
+        for (int s = 0; s < index.getStarCount(); s++) {
+            if (x[s] * bx + y[s] * by + z[s] * bz >= cosFieldRadius) {
+                if (count == nearby.length) {
+                    nearby = Arrays.copyOf(nearby, count * 2);
+                }
+                nearby[count++] = s;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The unclaimed nearby pattern star closest to the rotated camera vector
+     *         within the match tolerance, or -1
+     */
+    private int nearestPatternStar(double px, double py, double pz, int nearbyCount, boolean[] claimed) {
+        double sx = rotation[0] * px + rotation[1] * py + rotation[2] * pz;
+        double sy = rotation[3] * px + rotation[4] * py + rotation[5] * pz;
+        double sz = rotation[6] * px + rotation[7] * py + rotation[8] * pz;
+        double[] x = index.getUnitX();
+        double[] y = index.getUnitY();
+        double[] z = index.getUnitZ();
+        int best = -1;
+        double bestCos = cosMatchTolerance;
+        for (int n = 0; n < nearbyCount; n++) {
+            int s = nearby[n];
+            double cos = x[s] * sx + y[s] * sy + z[s] * sz;
+            if (cos > bestCos && (claimed == null || !claimed[s])) {
+                bestCos = cos;
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private static double angle(double[] x, double[] y, double[] z, int i, int j) {
+        return Math.acos(Math.min(x[i] * x[j] + y[i] * y[j] + z[i] * z[j], 1));
+    }
+
+    private static double triple(double[] x, double[] y, double[] z, int[] v) {
+        int a = v[0];
+        int b = v[1];
+        int c = v[2];
+        return x[a] * (y[b] * z[c] - z[b] * y[c])
+                - y[a] * (x[b] * z[c] - z[b] * x[c])
+                + z[a] * (x[b] * y[c] - y[b] * x[c]);
+    }
+
+    /**
+     * TRIAD: the rotation taking camera vectors (c1, c2) onto sky vectors (s1, s2),
+     * exact along the first pair
+     *
+     * @param out Receives the row-major camera-to-sky rotation
+     */
+    static void triad(double c1x, double c1y, double c1z, double c2x, double c2y, double c2z,
+                      double s1x, double s1y, double s1z, double s2x, double s2y, double s2z,
+                      double[] out) {
+        double[] camera = basis(c1x, c1y, c1z, c2x, c2y, c2z);
+        double[] sky = basis(s1x, s1y, s1z, s2x, s2y, s2z);
+        // R = S * C^T, with the basis vectors as the columns of S and C
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                out[3 * row + col] = sky[row] * camera[col]
+                        + sky[3 + row] * camera[3 + col]
+                        + sky[6 + row] * camera[6 + col];
+            }
+        }
+    }
+
+    /**
+     * Orthonormal basis {v1, v1 x v2 normalized, v1 x (v1 x v2)} packed as three vectors
+     */
+    private static double[] basis(double ax, double ay, double az, double bx, double by, double bz) {
+        double nx = ay * bz - az * by;
+        double ny = az * bx - ax * bz;
+        double nz = ax * by - ay * bx;
+        double norm = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        nx /= norm;
+        ny /= norm;
+        nz /= norm;
+        return new double[] {
+                ax, ay, az,
+                nx, ny, nz,
+                ay * nz - az * ny, az * nx - ax * nz, ax * ny - ay * nx};
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.project.detection;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matches detected stars to catalog bodies projected into the same pixel space.
+ *
+ * Bodies are indexed once in a {@link KdTree}. Each detection takes the nearest
+ * body within the match radius whose brightness rank is close to its own:
+ * detection rank r may match catalog ranks r / RANK_FACTOR - RANK_SLACK up to
+ * r * RANK_FACTOR + RANK_SLACK. Unranked bodies (planets, Sun, Moon) are always
+ * candidates. In one-to-one mode detections are assigned brightest first and a
+ * body already claimed is skipped, so two detections never share a body.
+ */
+public final class StarMatcher {
+    public static final int NO_MATCH = -1;
+    public static final int UNRANKED = -1;
+
+    private static final int RANK_FACTOR = 2;
+    private static final int RANK_SLACK = 5;
+
+    private final KdTree tree;
+    private final int[] rank;
+    private final boolean[] claimed;
+
+    /**
+     * @param x Projected X of each body; not copied
+     * @param y Projected Y of each body; not copied
+     * @param rank Brightness rank of each body (0 = brightest), or UNRANKED
+     * @param count Number of bodies
+     */
+    public StarMatcher(double[] x, double[] y, int[] rank, int count) {
+        this.tree = new KdTree(x, y, count);
+        this.rank = rank;
+        this.claimed = new boolean[count];
+    }
+
+    /**
+     * @param detections Detected stars, brightest first
+     * @param maxDistance Largest accepted distance between a detection and its body
+     * @param oneToOne Whether a body may be matched by at most one detection
+     * @return For each detection, the index of its body or NO_MATCH
+     */
+    public int[] match(List<DetectedStar> detections, double maxDistance, boolean oneToOne) {
+        Arrays.fill(claimed, false);
+        int[] matches = new int[detections.size()];
+        for (int r = 0; r < matches.length; r++) {
+            DetectedStar star = detections.get(r);
+            int firstRank = r / RANK_FACTOR - RANK_SLACK;
+            int lastRank = r * RANK_FACTOR + RANK_SLACK;
+            int body = tree.nearest(star.x, star.y, maxDistance, i ->
+                    !claimed[i] && (rank[i] == UNRANKED || (rank[i] >= firstRank && rank[i] <= lastRank)));
+            if (body != NO_MATCH && oneToOne) {
+                claimed[body] = true;
+            }
+            matches[r] = body;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.project.ephemeris;
+
+/**
+ * Positions of every body for one observer over a time window, as piecewise
+ * Chebyshev polynomials.
+ *
+ * The window is split into equal segments. In each one, right ascension and
+ * declination are series of Chebyshev polynomials of the first kind in the time
+ * scaled to [-1, 1]. Right ascension is fitted unwrapped, so a segment may cross
+ * 0 h. Segments of a few hours keep the Moon's diurnal parallax, the fastest
+ * term, well inside the fit.
+ *
+ * A set is either fitted from an {@link Ephemeris} (what the server does for the
+ * /celestial/chebyshev endpoint) or built from coefficients received from it.
+ * Evaluating one time costs a few hundred multiply-adds for all bodies.
+ *
+ * An instance reuses its result arrays and is not thread-safe; the coefficients
+ * themselves are never modified.
+ */
+public final class ChebyshevEphemeris {
+    private final long startMillis;
+    private final long segmentMillis;
+    private final int segmentCount;
+    private final int degree;
+    private final double latitude;
+    private final double longitude;
+    private final double altitude;
+    // Per body, segment after segment, degree + 1 coefficients each
+    private final double[][] raCoefficients;
+    private final double[][] decCoefficients;
+
+    private final double[] rightAscension = new double[Ephemeris.BODY_COUNT];
+    private final double[] declination = new double[Ephemeris.BODY_COUNT];
+
+    /**
+     * @param segmentMillis Length of a segment; positive
+     * @param segmentCount Number of segments; positive
+     * @param degree Highest polynomial degree per segment; not negative
+     * @param raCoefficients Per body, segmentCount * (degree + 1) coefficients of right ascension (hours)
+     * @param decCoefficients Per body, the same for declination (degrees)
+     * @throws IllegalArgumentException If the layout is invalid or the coefficients do not match it
+     */
+    public ChebyshevEphemeris(long startMillis, long segmentMillis, int segmentCount, int degree,
+                              double latitude, double longitude, double altitude,
+                              double[][] raCoefficients, double[][] decCoefficients) {
+        int length = coefficientCount(segmentMillis, segmentCount, degree);
+        if (raCoefficients == null || decCoefficients == null
+                || raCoefficients.length != Ephemeris.BODY_COUNT || decCoefficients.length != Ephemeris.BODY_COUNT) {
+            throw new IllegalArgumentException("Expected coefficients for " + Ephemeris.BODY_COUNT + " bodies");
+        }
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            if (raCoefficients[body] == null || decCoefficients[body] == null
+                    || raCoefficients[body].length != length || decCoefficients[body].length != length) {
+                throw new IllegalArgumentException("Expected " + length + " coefficients for "
+                        + Ephemeris.BODY_NAMES[body]);
+            }
+        }
+        this.startMillis = startMillis;
+        this.segmentMillis = segmentMillis;
+        this.segmentCount = segmentCount;
+        this.degree = degree;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.raCoefficients = raCoefficients;
+        this.decCoefficients = decCoefficients;
+    }
+
+    /**
+     * Fits every body over a window by sampling an ephemeris at the Chebyshev nodes
+     * of each segment
+     *
+     * @param ephemeris Engine to sample; its previous results are overwritten
+     * @param degree Highest polynomial degree per segment
+     */
+    public static ChebyshevEphemeris fit(Ephemeris ephemeris, long startMillis, long segmentMillis,
+                                         int segmentCount, int degree,
+                                         double latitude, double longitude, double altitude) {
+        int n = degree + 1;
+        int length = coefficientCount(segmentMillis, segmentCount, degree);
+        double[][] ra = new double[Ephemeris.BODY_COUNT][length];
+        double[][] dec = new double[Ephemeris.BODY_COUNT][length];
+        double[][] raSamples = new double[Ephemeris.BODY_COUNT][n];
+        double[][] decSamples = new double[Ephemeris.BODY_COUNT][n];
+
+        for (int segment = 0; segment < segmentCount; segment++) {
+            double middle = startMillis + (segment + 0.5) * segmentMillis;
+            for (int k = 0; k < n; k++) {
+                double x = Math.cos(Math.PI * (k + 0.5) / n);
+                ephemeris.compute(Math.round(middle + x * segmentMillis / 2.0), latitude, longitude, altitude);
+                for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+                    double hours = ephemeris.getRightAscension(body);
+                    if (k > 0) {
+                        // Unwrap against the previous node so the series stays smooth across 0 h
+                        hours -= 24 * Math.round((hours - raSamples[body][k - 1]) / 24);
+                    }
+                    raSamples[body][k] = hours;
+                    decSamples[body][k] = ephemeris.getDeclination(body);
+                }
+            }
+            for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+                toCoefficients(raSamples[body], ra[body], segment * n);
+                toCoefficients(decSamples[body], dec[body], segment * n);
+            }
+        }
+        return new ChebyshevEphemeris(startMillis, segmentMillis, segmentCount, degree,
+                latitude, longitude, altitude, ra, dec);
+    }
+
+    /**
+     * @return Coefficients per body for a segment layout
+     * @throws IllegalArgumentException If the layout is invalid
+     */
+    private static int coefficientCount(long segmentMillis, int segmentCount, int degree) {
+        if (segmentMillis <= 0) {
+            throw new IllegalArgumentException("Segment length must be positive: " + segmentMillis);
+        }
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("Segment count must be positive: " + segmentCount);
+        }
+        if (degree < 0) {
+            throw new IllegalArgumentException("Degree must not be negative: " + degree);
+        }
+        long length = (long) segmentCount * (degree + 1L);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many coefficients: " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Discrete Chebyshev transform of samples at the nodes cos(pi (k + 1/2) / n). The
+     * constant term is halved, so the series is the plain sum of c[j] T_j(x).
+     */
+    private static void toCoefficients(double[] samples, double[] out, int offset) {
+        int n = samples.length;
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += samples[k] * Math.cos(Math.PI * j * (k + 0.5) / n);
+            }
+            out[offset + j] = (j == 0 ? 1.0 : 2.0) * sum / n;
+        }
+    }
+
+    /**
+     * @return Whether a time lies inside the fitted window
+     */
+    public boolean covers(long epochMillis) {
+        return epochMillis >= startMillis && epochMillis <= getEndMillis();
+    }
+
+    /**
+     * Evaluates every body at a time inside the window
+     *
+     * @param epochMillis UTC time
+     * @throws IllegalArgumentException If the time is outside the window
+     */
+    public void compute(long epochMillis) {
+        if (!covers(epochMillis)) {
+            throw new IllegalArgumentException("Time " + epochMillis + " outside the fitted window");
+        }
+        int segment = (int) Math.min((epochMillis - startMillis) / segmentMillis, segmentCount - 1);
+        double x = 2.0 * (epochMillis - startMillis - segment * segmentMillis) / segmentMillis - 1;
+        int offset = segment * (degree + 1);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            double hours = evaluate(raCoefficients[body], offset, x) % 24;
+            rightAscension[body] = hours < 0 ? hours + 24 : hours;
+            declination[body] = evaluate(decCoefficients[body], offset, x);
+        }
+    }
+
+    /**
+     * Sums a Chebyshev series by Clenshaw's recurrence
+     */
+    private double evaluate(double[] coefficients, int offset, double x) {
+        double b1 = 0;
+        double b2 = 0;
+        for (int j = degree; j >= 1; j--) {
+            double b = 2 * x * b1 - b2 + coefficients[offset + j];
+            b2 = b1;
+            b1 = b;
+        }
+        return x * b1 - b2 + coefficients[offset];
+    }
+
+    /**
+     * @return J2000 right ascension of a body from the last evaluation (hours)
+     */
+    public double getRightAscension(int body) {
+        return rightAscension[body];
+    }
+
+    /**
+     * @return J2000 declination of a body from the last evaluation (degrees)
+     */
+    public double getDeclination(int body) {
+        return declination[body];
+    }
+
+    public long getStartMillis() { return startMillis; }
+    public long getEndMillis() { return startMillis + segmentCount * segmentMillis; }
+    public long getSegmentMillis() { return segmentMillis; }
+    public int getSegmentCount() { return segmentCount; }
+    public int getDegree() { return degree; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getAltitude() { return altitude; }
+
+    /**
+     * @return Right ascension coefficients of a body, segment after segment; not a copy
+     */
+    public double[] getRaCoefficients(int body) { return raCoefficients[body]; }
+
+    /**
+     * @return Declination coefficients of a body, segment after segment; not a copy
+     */
+    public double[] getDecCoefficients(int body) { return decCoefficients[body]; }
+}
@@ -0,0 +1,329 @@
+package com.example.project.ephemeris;
+
+/**
+ * Positions of the Sun, Moon and planets, computed on the device.
+ *
+ * Planets come from the JPL approximate Keplerian elements with linear rates
+ * (Standish, valid 1800-2050): each orbit is solved from Kepler's equation in
+ * the J2000 ecliptic, made geocentric by subtracting the Earth-Moon barycenter,
+ * and corrected for light time. The Sun is the negated barycenter. The Moon is
+ * the main periodic terms of Meeus' lunar theory (chapter 47), from the ecliptic
+ * of date brought back to J2000 by the general precession in longitude.
+ *
+ * Results are astrometric J2000 right ascension and declination, the frame of
+ * the star catalog. Diurnal parallax for the observer is applied, which moves
+ * the Moon by up to a degree. Typical errors are under an arcminute for the Sun
+ * and inner planets and a few arcminutes for the Moon and outer planets, far
+ * below a pixel-matching radius.
+ *
+ * An instance reuses its result arrays, so a computation allocates nothing.
+ * Instances are not thread-safe.
+ */
+public final class Ephemeris {
+    public static final int SUN = 0;
+    public static final int MOON = 1;
+    public static final int MERCURY = 2;
+    public static final int VENUS = 3;
+    public static final int MARS = 4;
+    public static final int JUPITER = 5;
+    public static final int SATURN = 6;
+    public static final int URANUS = 7;
+    public static final int NEPTUNE = 8;
+    public static final int BODY_COUNT = 9;
+
+    // Names used by the /celestial endpoint
+    public static final String[] BODY_NAMES = {
+            "sun", "moon", "mercury", "venus", "mars", "jupiter", "saturn", "uranus", "neptune"};
+
+    // TT - UT, seconds; close enough for the 2020s given the model errors
+    public static final double DELTA_T_SECONDS = 69.2;
+
+    private static final double J2000 = 2451545.0;
+    private static final double DAYS_PER_CENTURY = 36525.0;
+    private static final double OBLIQUITY_J2000 = Math.toRadians(23.43928);
+    private static final double LIGHT_DAYS_PER_AU = 0.0057755183;
+    private static final double KM_PER_AU = 149597870.7;
+    private static final double EARTH_EQUATORIAL_RADIUS_KM = 6378.137;
+    private static final double EARTH_FLATTENING = 1 / 298.257223563;
+    // General precession in longitude, degrees per Julian century
+    private static final double PRECESSION_DEGREES_PER_CENTURY = 1.3969713;
+
+    // Elements per body and their rates per century: a (AU), e, I, L, long. perihelion, long. node (degrees)
+    private static final double[][] ELEMENTS = {
+            // Mercury
+            {0.38709927, 0.20563593, 7.00497902, 252.25032350, 77.45779628, 48.33076593,
+                    0.00000037, 0.00001906, -0.00594749, 149472.67411175, 0.16047689, -0.12534081},
+            // Venus
+            {0.72333566, 0.00677672, 3.39467605, 181.97909950, 131.60246718, 76.67984255,
+                    0.00000390, -0.00004107, -0.00078890, 58517.81538729, 0.00268329, -0.27769418},
+            // Earth-Moon barycenter
+            {1.00000261, 0.01671123, -0.00001531, 100.46457166, 102.93768193, 0.0,
+                    0.00000562, -0.00004392, -0.01294668, 35999.37244981, 0.32327364, 0.0},
+            // Mars
+            {1.52371034, 0.09339410, 1.84969142, -4.55343205, -23.94362959, 49.55953891,
+                    0.00001847, 0.00007882, -0.00813131, 19140.30268499, 0.44441088, -0.29257343},
+            // Jupiter
+            {5.20288700, 0.04838624, 1.30439695, 34.39644051, 14.72847983, 100.47390909,
+                    -0.00011607, -0.00013253, -0.00183714, 3034.74612775, 0.21252668, 0.20469106},
+            // Saturn
+            {9.53667594, 0.05386179, 2.48599187, 49.95424423, 92.59887831, 113.66242448,
+                    -0.00125060, -0.00050991, 0.00193609, 1222.49362201, -0.41897216, -0.28867794},
+            // Uranus
+            {19.18916464, 0.04725744, 0.77263783, 313.23810451, 170.95427630, 74.01692503,
+                    -0.00196176, -0.00004397, -0.00242939, 428.48202785, 0.40805281, 0.04240589},
+            // Neptune
+            {30.06992276, 0.00859048, 1.77004347, -55.12002969, 44.96476227, 131.78422574,
+                    0.00026291, 0.00005105, 0.00035372, 218.45945325, -0.32241464, -0.00508664},
+    };
+    private static final int EARTH_ELEMENTS = 2;
+    // Row of ELEMENTS for each planet body
+    private static final int[] PLANET_ELEMENTS = {-1, -1, 0, 1, 3, 4, 5, 6, 7};
+
+    private final double[] rightAscension = new double[BODY_COUNT]; // hours
+    private final double[] declination = new double[BODY_COUNT];    // degrees
+    private final double[] distance = new double[BODY_COUNT];       // AU from the observer
+
+    // Scratch
+    private final double[] earth = new double[3];
+    private final double[] planet = new double[3];
+    private final double[] body = new double[3];
+    private final double[] observer = new double[3];
+
+    /**
+     * Computes every body as seen by an observer
+     *
+     * @param epochMillis UTC time
+     * @param latitude Geodetic latitude (degrees)
+     * @param longitude East longitude (degrees)
+     * @param altitude Height above the ellipsoid (meters)
+     */
+    public void compute(long epochMillis, double latitude, double longitude, double altitude) {
+        double julianDayUt = julianDay(epochMillis);
+        observerPosition(julianDayUt, latitude, longitude, altitude, observer);
+        compute(julianDayUt + DELTA_T_SECONDS / 86400.0, observer);
+    }
+
+    /**
+     * Computes every body as seen from the center of the Earth
+     *
+     * @param julianDayTt Julian day in Terrestrial Time
+     */
+    public void computeGeocentric(double julianDayTt) {
+        observer[0] = 0;
+        observer[1] = 0;
+        observer[2] = 0;
+        compute(julianDayTt, observer);
+    }
+
+    private void compute(double julianDayTt, double[] observer) {
+        double t = (julianDayTt - J2000) / DAYS_PER_CENTURY;
+        heliocentric(ELEMENTS[EARTH_ELEMENTS], t, earth);
+
+        // The Sun does not move in the heliocentric frame, so needs no light-time iteration
+        body[0] = -earth[0];
+        body[1] = -earth[1];
+        body[2] = -earth[2];
+        store(SUN, body, observer);
+
+        moon(t, body);
+        store(MOON, body, observer);
+
+        for (int b = MERCURY; b < BODY_COUNT; b++) {
+            double[] elements = ELEMENTS[PLANET_ELEMENTS[b]];
+            heliocentric(elements, t, planet);
+            double lightDays = LIGHT_DAYS_PER_AU * Math.sqrt(square(planet[0] - earth[0])
+                    + square(planet[1] - earth[1]) + square(planet[2] - earth[2]));
+            // Where the planet was when the light left it
+            heliocentric(elements, t - lightDays / DAYS_PER_CENTURY, planet);
+            body[0] = planet[0] - earth[0];
+            body[1] = planet[1] - earth[1];
+            body[2] = planet[2] - earth[2];
+            store(b, body, observer);
+        }
+    }
+
+    /**
+     * Heliocentric position from Keplerian elements, J2000 ecliptic, AU
+     */
+    private static void heliocentric(double[] elements, double t, double[] out) {
+        double a = elements[0] + elements[6] * t;
+        double e = elements[1] + elements[7] * t;
+        double inclination = Math.toRadians(elements[2] + elements[8] * t);
+        double meanLongitude = elements[3] + elements[9] * t;
+        double perihelion = elements[4] + elements[10] * t;
+        double node = Math.toRadians(elements[5] + elements[11] * t);
+        double argument = Math.toRadians(perihelion) - node;
+        double meanAnomaly = Math.toRadians(normalizeDegrees(meanLongitude - perihelion));
+
+        // Kepler's equation by Newton's method
+        double eccentricAnomaly = meanAnomaly + e * Math.sin(meanAnomaly);
+        for (int i = 0; i < 8; i++) {
+            double step = (eccentricAnomaly - e * Math.sin(eccentricAnomaly) - meanAnomaly)
+                    / (1 - e * Math.cos(eccentricAnomaly));
+            eccentricAnomaly -= step;
+            if (Math.abs(step) < 1e-12) {
+                break;
+            }
+        }
+        double orbitX = a * (Math.cos(eccentricAnomaly) - e);
+        double orbitY = a * Math.sqrt(1 - e * e) * Math.sin(eccentricAnomaly);
+
+        double cosW = Math.cos(argument), sinW = Math.sin(argument);
+        double cosN = Math.cos(node), sinN = Math.sin(node);
+        double cosI = Math.cos(inclination), sinI = Math.sin(inclination);
+        out[0] = (cosW * cosN - sinW * sinN * cosI) * orbitX + (-sinW * cosN - cosW * sinN * cosI) * orbitY;
+        out[1] = (cosW * sinN + sinW * cosN * cosI) * orbitX + (-sinW * sinN + cosW * cosN * cosI) * orbitY;
+        out[2] = sinW * sinI * orbitX + cosW * sinI * orbitY;
+    }
+
+    /**
+     * Geocentric Moon from the main terms of Meeus' lunar theory, J2000 ecliptic, AU
+     */
+    private static void moon(double t, double[] out) {
+        double meanLongitude = 218.3164477 + 481267.88123421 * t;
+        double d = Math.toRadians(normalizeDegrees(297.8501921 + 445267.1114034 * t));
+        double m = Math.toRadians(normalizeDegrees(357.5291092 + 35999.0502909 * t));
+        double mp = Math.toRadians(normalizeDegrees(134.9633964 + 477198.8675055 * t));
+        double f = Math.toRadians(normalizeDegrees(93.2720950 + 483202.0175233 * t));
+        // Terms with the Sun's anomaly shrink as the Earth's orbit becomes less eccentric
+        double eccentricity = 1 - 0.002516 * t;
+
+        double longitude = meanLongitude
+                + 6.288774 * Math.sin(mp)
+                + 1.274027 * Math.sin(2 * d - mp)
+                + 0.658314 * Math.sin(2 * d)
+                + 0.213618 * Math.sin(2 * mp)
+                - 0.185116 * eccentricity * Math.sin(m)
+                - 0.114332 * Math.sin(2 * f)
+                + 0.058793 * Math.sin(2 * d - 2 * mp)
+                + 0.057066 * eccentricity * Math.sin(2 * d - m - mp)
+                + 0.053322 * Math.sin(2 * d + mp)
+                + 0.045758 * eccentricity * Math.sin(2 * d - m)
+                - 0.040923 * eccentricity * Math.sin(m - mp)
+                - 0.034720 * Math.sin(d)
+                - 0.030383 * eccentricity * Math.sin(m + mp)
+                + 0.015327 * Math.sin(2 * d - 2 * f)
+                - 0.012528 * Math.sin(mp + 2 * f)
+                + 0.010980 * Math.sin(mp - 2 * f)
+                + 0.010675 * Math.sin(4 * d - mp)
+                + 0.010034 * Math.sin(3 * mp)
+                + 0.008548 * Math.sin(4 * d - 2 * mp)
+                - 0.007888 * eccentricity * Math.sin(2 * d + m - mp)
+                - 0.006766 * eccentricity * Math.sin(2 * d + m)
+                - 0.005163 * Math.sin(d - mp);
+        double latitude = 5.128122 * Math.sin(f)
+                + 0.280602 * Math.sin(mp + f)
+                + 0.277693 * Math.sin(mp - f)
+                + 0.173237 * Math.sin(2 * d - f)
+                + 0.055413 * Math.sin(2 * d - mp + f)
+                + 0.046271 * Math.sin(2 * d - mp - f)
+                + 0.032573 * Math.sin(2 * d + f)
+                + 0.017198 * Math.sin(2 * mp + f)
+                + 0.009266 * Math.sin(2 * d + mp - f)
+                + 0.008822 * Math.sin(2 * mp - f);
+        double distanceKm = 385000.56
+                - 20905.355 * Math.cos(mp)
+                - 3699.111 * Math.cos(2 * d - mp)
+                - 2955.968 * Math.cos(2 * d)
+                - 569.925 * Math.cos(2 * mp)
+                + 48.888 * eccentricity * Math.cos(m)
+                - 3.149 * Math.cos(2 * f)
+                + 246.158 * Math.cos(2 * d - 2 * mp)
+                - 152.138 * eccentricity * Math.cos(2 * d - m - mp)
+                - 170.733 * Math.cos(2 * d + mp)
+                - 204.586 * eccentricity * Math.cos(2 * d - m)
+                - 129.620 * eccentricity * Math.cos(m - mp)
+                + 108.743 * Math.cos(d)
+                + 104.755 * eccentricity * Math.cos(m + mp)
+                + 10.321 * Math.cos(2 * d - 2 * f)
+                + 79.661 * Math.cos(mp - 2 * f)
+                - 34.782 * Math.cos(4 * d - mp)
+                - 23.210 * Math.cos(3 * mp)
+                - 21.636 * Math.cos(4 * d - 2 * mp)
+                + 24.208 * eccentricity * Math.cos(2 * d + m - mp)
+                + 30.824 * eccentricity * Math.cos(2 * d + m)
+                - 8.379 * Math.cos(d - mp);
+
+        double lambda = Math.toRadians(longitude - PRECESSION_DEGREES_PER_CENTURY * t);
+        double beta = Math.toRadians(latitude);
+        double r = distanceKm / KM_PER_AU;
+        out[0] = r * Math.cos(beta) * Math.cos(lambda);
+        out[1] = r * Math.cos(beta) * Math.sin(lambda);
+        out[2] = r * Math.sin(beta);
+    }
+
+    /**
+     * Geocentric observer position, equatorial, AU. The equator of date is used as
+     * J2000; the difference is negligible at the scale of the parallax.
+     */
+    private static void observerPosition(double julianDayUt, double latitude, double longitude,
+                                         double altitude, double[] out) {
+        double days = julianDayUt - J2000;
+        double t = days / DAYS_PER_CENTURY;
+        double siderealDegrees = 280.46061837 + 360.98564736629 * days + 0.000387933 * t * t + longitude;
+        double lst = Math.toRadians(normalizeDegrees(siderealDegrees));
+        double phi = Math.toRadians(latitude);
+
+        double cosPhi = Math.cos(phi), sinPhi = Math.sin(phi);
+        double axisRatio = 1 - EARTH_FLATTENING;
+        double c = 1 / Math.sqrt(cosPhi * cosPhi + axisRatio * axisRatio * sinPhi * sinPhi);
+        double s = axisRatio * axisRatio * c;
+        double heightKm = altitude / 1000;
+        double equatorial = (EARTH_EQUATORIAL_RADIUS_KM * c + heightKm) * cosPhi / KM_PER_AU;
+        out[0] = equatorial * Math.cos(lst);
+        out[1] = equatorial * Math.sin(lst);
+        out[2] = (EARTH_EQUATORIAL_RADIUS_KM * s + heightKm) * sinPhi / KM_PER_AU;
+    }
+
+    /**
+     * Rotates a geocentric ecliptic vector to the equator, removes the observer
+     * offset and stores the body's spherical coordinates
+     */
+    private void store(int b, double[] ecliptic, double[] observer) {
+        double cosE = Math.cos(OBLIQUITY_J2000), sinE = Math.sin(OBLIQUITY_J2000);
+        double x = ecliptic[0] - observer[0];
+        double y = ecliptic[1] * cosE - ecliptic[2] * sinE - observer[1];
+        double z = ecliptic[1] * sinE + ecliptic[2] * cosE - observer[2];
+        double r = Math.sqrt(x * x + y * y + z * z);
+        rightAscension[b] = normalizeDegrees(Math.toDegrees(Math.atan2(y, x))) / 15.0;
+        declination[b] = Math.toDegrees(Math.asin(z / r));
+        distance[b] = r;
+    }
+
+    /**
+     * @return Julian day of a UTC time
+     */
+    public static double julianDay(long epochMillis) {
+        return 2440587.5 + epochMillis / 86400000.0;
+    }
+
+    private static double normalizeDegrees(double degrees) {
+        double normalized = degrees % 360.0;
+        return normalized < 0 ? normalized + 360.0 : normalized;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * @return J2000 right ascension of a body from the last computation (hours)
+     */
+    public double getRightAscension(int body) {
+        return rightAscension[body];
+    }
+
+    /**
+     * @return J2000 declination of a body from the last computation (degrees)
+     */
+    public double getDeclination(int body) {
+        return declination[body];
+    }
+
+    /**
+     * @return Distance of a body from the observer in the last computation (AU)
+     */
+    public double getDistance(int body) {
+        return distance[body];
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.project;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the batch projections of PixelToCelestialConverter against the
+ * per-point celestialToPixel.
+ */
+public class PixelToCelestialConverterTest {
+    private static final int POINTS = 2000;
+    private static final double TOLERANCE_PIXELS = 1e-6;
+
+    private PixelToCelestialConverter converter;
+    private double[] ra;
+    private double[] dec;
+
+    @Before
+    public void setUp() {
+        // 66 degrees across the short side, rotated by 25 degrees, with radial distortion
+        double scale = 66.0 / 3000;
+        double angle = Math.toRadians(25);
+        converter = new PixelToCelestialConverter(4000, 3000, 150.0, 30.0,
+                -scale * Math.cos(angle), scale * Math.sin(angle),
+                -scale * Math.sin(angle), -scale * Math.cos(angle), 0.1, 0.02);
+
+        // Points all over the sky, so some are behind the camera
+        Random random = new Random(5);
+        ra = new double[POINTS];
+        dec = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            ra[i] = random.nextDouble() * 24;
+            dec[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+        }
+        // And the reference point itself and a point near it
+        ra[0] = 10.0;
+        dec[0] = 30.0;
+        ra[1] = 9.5;
+        dec[1] = 35.0;
+    }
+
+    @Test
+    public void batchMatchesScalar() {
+        double[] x = new double[POINTS];
+        double[] y = new double[POINTS];
+        converter.celestialToPixel(ra, dec, POINTS, x, y);
+
+        int visible = 0;
+        for (int i = 0; i < POINTS; i++) {
+            double[] expected = converter.celestialToPixel(ra[i], dec[i]);
+            assertPixel(i, expected, x[i], y[i]);
+            if (!Double.isNaN(expected[0])) {
+                visible++;
+            }
+        }
+        // Half the sky is in front of the camera
+        assertTrue(visible > POINTS / 3 && visible < 2 * POINTS / 3);
+    }
+
+    @Test
+    public void referencePointProjectsToImageCenter() {
+        double[] x = new double[1];
+        double[] y = new double[1];
+        converter.celestialToPixel(new double[] {10.0}, new double[] {30.0}, 1, x, y);
+        assertEquals(2000, x[0], TOLERANCE_PIXELS);
+        assertEquals(1500, y[0], TOLERANCE_PIXELS);
+    }
+
+    @Test
+    public void batchWritesOnlyCountPoints() {
+        double[] x = new double[POINTS];
+        double[] y = new double[POINTS];
+        Arrays.fill(x, -1);
+        Arrays.fill(y, -1);
+        converter.celestialToPixel(ra, dec, 10, x, y);
+        for (int i = 10; i < POINTS; i++) {
+            assertEquals(-1, x[i], 0);
+            assertEquals(-1, y[i], 0);
+        }
+    }
+
+    @Test
+    public void unitVectorsMatchScalar() {
+        double[] unitX = new double[POINTS];
+        double[] unitY = new double[POINTS];
+        double[] unitZ = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double raRad = Math.toRadians(ra[i] * 15);
+            double decRad = Math.toRadians(dec[i]);
+            unitX[i] = Math.cos(decRad) * Math.cos(raRad);
+            unitY[i] = Math.cos(decRad) * Math.sin(raRad);
+            unitZ[i] = Math.sin(decRad);
+        }
+
+        // Every third star, in reverse, to exercise the indirection
+        int count = POINTS / 3;
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = POINTS - 1 - 3 * i;
+        }
+        double[] x = new double[count];
+        double[] y = new double[count];
+        converter.unitVectorsToPixel(unitX, unitY, unitZ, indices, count, x, y);
+
+        for (int i = 0; i < count; i++) {
+            int star = indices[i];
+            assertPixel(star, converter.celestialToPixel(ra[star], dec[star]), x[i], y[i]);
+        }
+    }
+
+    private static void assertPixel(int point, double[] expected, double x, double y) {
+        if (Double.isNaN(expected[0])) {
+            assertTrue("point " + point + " should not be visible", Double.isNaN(x) && Double.isNaN(y));
+        } else {
+            assertEquals("x of point " + point, expected[0], x, TOLERANCE_PIXELS);
+            assertEquals("y of point " + point, expected[1], y, TOLERANCE_PIXELS);
+        }
+    }
+}
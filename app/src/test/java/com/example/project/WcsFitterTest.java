@@ -0,0 +1,160 @@
+package com.example.project;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fits WCS solutions to pairs generated from a known converter.
+ */
+public class WcsFitterTest {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final int PAIRS = 60;
+
+    private PixelToCelestialConverter truth;
+    private PixelToCelestialConverter initial;
+    private double[] ra;
+    private double[] dec;
+    private double[] x;
+    private double[] y;
+
+    @Before
+    public void setUp() {
+        truth = converter(150.0, 30.0, 66.0, 25, 0.08, 0.01);
+        // A sensor guess a couple of degrees and 10 degrees of roll off, with the default distortion
+        initial = converter(152.5, 28.5, 70.0, 35, PixelToCelestialConverter.DEFAULT_DISTORTION, 0);
+
+        Random random = new Random(41);
+        ra = new double[PAIRS];
+        dec = new double[PAIRS];
+        x = new double[PAIRS];
+        y = new double[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            double px = 100 + random.nextDouble() * (WIDTH - 200);
+            double py = 100 + random.nextDouble() * (HEIGHT - 200);
+            double[] position = truth.pixelToCelestial(px, py);
+            ra[i] = position[0];
+            dec[i] = position[1];
+            // Centroids are good to a fraction of a pixel
+            x[i] = px + random.nextGaussian() * 0.3;
+            y[i] = py + random.nextGaussian() * 0.3;
+        }
+    }
+
+    @Test
+    public void recoversKnownSolution() {
+        WcsFitter.Fit fit = WcsFitter.fit(initial, ra, dec, x, y, PAIRS);
+        assertNotNull(fit);
+        assertEquals(PAIRS, fit.pairCount);
+        assertTrue("rms " + fit.rms, fit.rms < 0.6);
+        assertMatchesTruth(fit.converter, 1.0);
+    }
+
+    @Test
+    public void flagsWrongMatchesAsOutliers() {
+        Random random = new Random(42);
+        boolean[] wrong = new boolean[PAIRS];
+        for (int i = 0; i < PAIRS; i += 10) {
+            // Matched to the wrong catalog star, tens to hundreds of pixels away
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = 30 + random.nextDouble() * 200;
+            x[i] += distance * Math.cos(angle);
+            y[i] += distance * Math.sin(angle);
+            wrong[i] = true;
+        }
+
+        WcsFitter.Fit fit = WcsFitter.fit(initial, ra, dec, x, y, PAIRS);
+        assertNotNull(fit);
+        for (int i = 0; i < PAIRS; i++) {
+            assertEquals("pair " + i, !wrong[i], fit.inlier[i]);
+        }
+        assertEquals(PAIRS - PAIRS / 10, fit.pairCount);
+        assertTrue("rms " + fit.rms, fit.rms < 0.6);
+        assertMatchesTruth(fit.converter, 1.0);
+    }
+
+    @Test
+    public void solutionIsFittedToTheKeptPairsOnly() {
+        // Outliers nested so that each rejection round only catches the worst one left
+        double[] offsets = {1500, 300, 60, 12};
+        for (int i = 0; i < offsets.length; i++) {
+            x[i] += offsets[i];
+        }
+
+        WcsFitter.Fit fit = WcsFitter.fit(initial, ra, dec, x, y, PAIRS);
+        assertNotNull(fit);
+        assertFalse(fit.inlier[0]);
+        // A least-squares solution leaves no net shift over the pairs it was fitted to
+        double sum = 0;
+        int kept = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            if (fit.inlier[i]) {
+                sum += fit.converter.celestialToPixel(ra[i], dec[i])[0] - x[i];
+                kept++;
+            }
+        }
+        assertEquals(fit.pairCount, kept);
+        assertEquals(0, sum / kept, 0.1);
+    }
+
+    @Test
+    public void exactPairsFitExactly() {
+        for (int i = 0; i < PAIRS; i++) {
+            double[] pixel = truth.celestialToPixel(ra[i], dec[i]);
+            x[i] = pixel[0];
+            y[i] = pixel[1];
+        }
+        WcsFitter.Fit fit = WcsFitter.fit(initial, ra, dec, x, y, PAIRS);
+        assertNotNull(fit);
+        assertEquals(PAIRS, fit.pairCount);
+        assertTrue("rms " + fit.rms, fit.rms < 1e-3);
+        assertMatchesTruth(fit.converter, 1e-2);
+        assertEquals(truth.getCrval1(), fit.converter.getCrval1(), 1e-4);
+        assertEquals(truth.getCrval2(), fit.converter.getCrval2(), 1e-4);
+    }
+
+    @Test
+    public void fewPairsFitWithoutDistortion() {
+        // Below the distortion threshold only CRVAL and the CD matrix are fitted
+        int count = 6;
+        WcsFitter.Fit fit = WcsFitter.fit(initial, ra, dec, x, y, count);
+        assertNotNull(fit);
+        assertEquals(initial.getDistortion1(), fit.converter.getDistortion1(), 0);
+        assertEquals(initial.getDistortion2(), fit.converter.getDistortion2(), 0);
+        assertEquals(count, fit.inlier.length);
+    }
+
+    @Test
+    public void tooFewPairs() {
+        assertNull(WcsFitter.fit(initial, ra, dec, x, y, WcsFitter.MIN_PAIRS - 1));
+    }
+
+    private static PixelToCelestialConverter converter(double crval1, double crval2, double fovDegrees,
+                                                       double rollDegrees, double distortion1,
+                                                       double distortion2) {
+        double scale = fovDegrees / Math.min(WIDTH, HEIGHT);
+        double angle = Math.toRadians(rollDegrees);
+        return new PixelToCelestialConverter(WIDTH, HEIGHT, crval1, crval2,
+                -scale * Math.cos(angle), scale * Math.sin(angle),
+                -scale * Math.sin(angle), -scale * Math.cos(angle), distortion1, distortion2);
+    }
+
+    /**
+     * Projects a grid of sky positions from the true solution with both converters
+     */
+    private void assertMatchesTruth(PixelToCelestialConverter fitted, double tolerancePixels) {
+        for (int gx = 1; gx < 10; gx++) {
+            for (int gy = 1; gy < 10; gy++) {
+                double[] position = truth.pixelToCelestial(WIDTH * gx / 10.0, HEIGHT * gy / 10.0);
+                double[] expected = truth.celestialToPixel(position[0], position[1]);
+                double[] actual = fitted.celestialToPixel(position[0], position[1]);
+                assertEquals("x at grid " + gx + "," + gy, expected[0], actual[0], tolerancePixels);
+                assertEquals("y at grid " + gx + "," + gy, expected[1], actual[1], tolerancePixels);
+            }
+        }
+    }
+}
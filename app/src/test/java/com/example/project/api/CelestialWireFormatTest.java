@@ -0,0 +1,203 @@
+package com.example.project.api;
+
+import com.example.project.ephemeris.Ephemeris;
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encodes positions with CelestialWireFormat and decodes them back, and checks
+ * that the JSON form converts to the same positions.
+ */
+public class CelestialWireFormatTest {
+    // 2024-03-15T21:00:00Z
+    private static final long EPOCH_MILLIS = 1_710_536_400_000L;
+    private static final double LATITUDE = -33.9;
+    private static final double LONGITUDE = 151.2;
+    private static final double ALTITUDE = 50;
+
+    private Ephemeris ephemeris;
+    private CelestialPositions positions;
+
+    @Before
+    public void setUp() {
+        ephemeris = new Ephemeris();
+        ephemeris.compute(EPOCH_MILLIS, LATITUDE, LONGITUDE, ALTITUDE);
+        positions = new CelestialPositions();
+        positions.set(ephemeris, EPOCH_MILLIS / 1000, LATITUDE, LONGITUDE, ALTITUDE);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] bytes = encode(positions);
+        assertEquals(202, bytes.length);
+        assertEquals(CelestialWireFormat.size(positions), bytes.length);
+
+        CelestialPositions decoded = new CelestialPositions();
+        CelestialWireFormat.read(ByteBuffer.wrap(bytes), decoded);
+        assertSamePositions(positions, decoded);
+    }
+
+    @Test
+    public void readsFromTheBufferPosition() throws IOException {
+        byte[] bytes = encode(positions);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 7);
+        buffer.position(7);
+        buffer.put(bytes);
+        buffer.position(7);
+
+        CelestialPositions decoded = new CelestialPositions();
+        CelestialWireFormat.read(buffer, decoded);
+        assertSamePositions(positions, decoded);
+        // The caller's buffer is left alone
+        assertEquals(7, buffer.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+    }
+
+    @Test
+    public void refillingReplacesEverything() throws IOException {
+        CelestialPositions few = new CelestialPositions();
+        few.reset(12345, 1, 2, 3);
+        few.add(Ephemeris.MARS, 23.999, -89.5);
+
+        CelestialPositions decoded = new CelestialPositions();
+        CelestialWireFormat.read(ByteBuffer.wrap(encode(positions)), decoded);
+        CelestialWireFormat.read(ByteBuffer.wrap(encode(few)), decoded);
+        assertSamePositions(few, decoded);
+    }
+
+    @Test
+    public void manyBodiesGrowTheArrays() throws IOException {
+        CelestialPositions many = new CelestialPositions();
+        many.reset(0, 0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            many.add(i % Ephemeris.BODY_COUNT, i * 0.2, i - 50.0);
+        }
+        CelestialPositions decoded = new CelestialPositions();
+        CelestialWireFormat.read(ByteBuffer.wrap(encode(many)), decoded);
+        assertSamePositions(many, decoded);
+    }
+
+    @Test
+    public void rejectsTruncatedBuffers() throws IOException {
+        byte[] bytes = encode(positions);
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows("length " + length, IOException.class,
+                    () -> CelestialWireFormat.read(ByteBuffer.wrap(truncated), new CelestialPositions()));
+        }
+    }
+
+    @Test
+    public void rejectsOtherContent() throws IOException {
+        // JSON sent where the binary form was expected
+        byte[] json = new Gson().toJson(CelestialResponse.fromEphemeris(ephemeris, EPOCH_MILLIS,
+                LATITUDE, LONGITUDE, ALTITUDE)).getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class,
+                () -> CelestialWireFormat.read(ByteBuffer.wrap(json), new CelestialPositions()));
+
+        byte[] otherVersion = encode(positions);
+        ByteBuffer.wrap(otherVersion).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort(4, (short) (CelestialWireFormat.VERSION + 1));
+        assertThrows(IOException.class,
+                () -> CelestialWireFormat.read(ByteBuffer.wrap(otherVersion), new CelestialPositions()));
+    }
+
+    @Test
+    public void rejectsTooManyBodiesOnWrite() {
+        CelestialPositions tooMany = new CelestialPositions();
+        tooMany.reset(0, 0, 0, 0);
+        for (int i = 0; i <= CelestialWireFormat.MAX_BODIES; i++) {
+            tooMany.add(Ephemeris.SUN, 0, 0);
+        }
+        assertThrows(IOException.class, () -> encode(tooMany));
+    }
+
+    @Test
+    public void jsonConvertsToTheSamePositions() {
+        Gson gson = new Gson();
+        String json = gson.toJson(CelestialResponse.fromEphemeris(ephemeris, EPOCH_MILLIS,
+                LATITUDE, LONGITUDE, ALTITUDE));
+        CelestialPositions fromJson = gson.fromJson(json, CelestialResponse.class).toPositions();
+        assertSamePositions(positions, fromJson);
+    }
+
+    @Test
+    public void jsonWithUnknownBodies() {
+        String json = "{\"timestamp\":\"2024-03-15T21:00:00Z\","
+                + "\"observer\":{\"latitude\":1.5,\"longitude\":2.5,\"altitude\":3.5},"
+                + "\"celestial_bodies\":{"
+                + "\"pluto\":{\"ra\":{\"hours\":1.0},\"dec\":{\"degrees\":2.0}},"
+                + "\"venus\":{\"ra\":{\"hours\":3.0},\"dec\":{\"degrees\":-4.0}}}}";
+        CelestialPositions converted = new Gson().fromJson(json, CelestialResponse.class).toPositions();
+        assertEquals(EPOCH_MILLIS / 1000, converted.getTimestamp());
+        assertEquals(1.5, converted.getLatitude(), 0);
+        assertEquals(1, converted.getCount());
+        assertEquals(Ephemeris.VENUS, converted.getBody(0));
+        assertEquals(3.0, converted.getRightAscension(0), 0);
+        assertEquals(-4.0, converted.getDeclination(0), 0);
+    }
+
+    @Test
+    public void incompleteJsonIsRejected() {
+        CelestialResponse response = new Gson().fromJson("{\"timestamp\":\"2024-03-15T21:00:00Z\"}",
+                CelestialResponse.class);
+        assertThrows(IllegalArgumentException.class, response::toPositions);
+    }
+
+    @Test
+    public void timestampVariants() {
+        long seconds = EPOCH_MILLIS / 1000;
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T21:00:00Z"));
+        // Fractions are dropped, not rounded
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T21:00:00.9Z"));
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T21:00:00.123456Z"));
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T21:00:00+00:00"));
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T21:00:00.250+00:00"));
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-16T02:30:00+05:30"));
+        assertEquals(seconds, CelestialResponse.parseTimestamp("2024-03-15T16:00:00-0500"));
+    }
+
+    @Test
+    public void missingOrBadTimestampIsRejected() {
+        String body = "\"observer\":{\"latitude\":1.5,\"longitude\":2.5,\"altitude\":3.5},"
+                + "\"celestial_bodies\":{\"venus\":{\"ra\":{\"hours\":3.0},\"dec\":{\"degrees\":-4.0}}}";
+        CelestialResponse missing = new Gson().fromJson("{" + body + "}", CelestialResponse.class);
+        assertThrows(IllegalArgumentException.class, missing::toPositions);
+        for (String timestamp : new String[] {"", "2024-03-15", "2024-03-15T21:00:00", "2024-03-15 21:00:00Z",
+                "2024-03-15T21:00Z", "2024-02-30T21:00:00Z", "1710536400", "2024-03-15T21:00:00Zjunk"}) {
+            CelestialResponse bad = new Gson().fromJson("{\"timestamp\":\"" + timestamp + "\"," + body + "}",
+                    CelestialResponse.class);
+            assertThrows(timestamp, IllegalArgumentException.class, bad::toPositions);
+        }
+    }
+
+    private static byte[] encode(CelestialPositions positions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CelestialWireFormat.write(out, positions);
+        return out.toByteArray();
+    }
+
+    private static void assertSamePositions(CelestialPositions expected, CelestialPositions actual) {
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+        assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+        assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+        assertEquals(expected.getCount(), actual.getCount());
+        for (int i = 0; i < expected.getCount(); i++) {
+            assertEquals(expected.getBody(i), actual.getBody(i));
+            assertEquals(expected.getRightAscension(i), actual.getRightAscension(i), 0);
+            assertEquals(expected.getDeclination(i), actual.getDeclination(i), 0);
+        }
+    }
+}
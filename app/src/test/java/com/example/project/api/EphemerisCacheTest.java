@@ -0,0 +1,274 @@
+package com.example.project.api;
+
+import com.example.project.ephemeris.Ephemeris;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exercises EphemerisCache with a fetcher that counts its calls, in a temporary
+ * directory.
+ */
+public class EphemerisCacheTest {
+    private static final double LATITUDE = 48.2;
+    private static final double LONGITUDE = 16.4;
+    private static final double ALTITUDE = 200;
+    private static final long BUCKET_SECONDS = 60;
+    private static final long TTL_MILLIS = 3600 * 1000L;
+    // 2024-03-15T00:00:00Z; buckets may lie in the past, as the TTL runs from the fetch
+    private static final long T0 = 1_710_460_800_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private int fetches;
+    private EphemerisCache.Fetcher fetcher;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("ephemeris");
+        fetches = 0;
+        // The Sun moves 0.1 h per bucket and crosses 0 h between the first two buckets
+        fetcher = (latitude, longitude, altitude, epochSeconds) -> {
+            fetches++;
+            long bucket = (epochSeconds * 1000 - T0) / (BUCKET_SECONDS * 1000);
+            CelestialPositions positions = new CelestialPositions();
+            positions.reset(epochSeconds, latitude, longitude, altitude);
+            double ra = 23.95 + 0.1 * bucket;
+            positions.add(Ephemeris.SUN, ra - 24 * Math.floor(ra / 24), -2.0 + bucket);
+            positions.add(Ephemeris.MOON, 10.0, 20.0);
+            return positions;
+        };
+    }
+
+    @Test
+    public void secondLookupHitsMemory() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        CelestialPositions first = cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0 + 10_000, fetcher);
+        CelestialPositions second = cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0 + 50_000, fetcher);
+        assertEquals(1, fetches);
+        assertNotSame(first, second);
+        assertEquals(first.getCount(), second.getCount());
+        assertEquals(first.getRightAscension(0), second.getRightAscension(0), 0);
+        // Fetched for the bucket start
+        assertEquals(T0 / 1000, first.getTimestamp());
+
+        EphemerisCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.memoryHits);
+        assertEquals(0, stats.diskHits);
+    }
+
+    @Test
+    public void nearbyObserversShareACell() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        cache.getOrFetch(LATITUDE + 0.01, LONGITUDE - 0.01, ALTITUDE, T0, fetcher);
+        assertEquals(1, fetches);
+        cache.getOrFetch(LATITUDE + 0.1, LONGITUDE, ALTITUDE, T0, fetcher);
+        assertEquals(2, fetches);
+    }
+
+    @Test
+    public void interpolatesBetweenCachedBuckets() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0 + BUCKET_SECONDS * 1000, fetcher);
+        assertEquals(2, fetches);
+
+        // A quarter of the way through the first bucket; the Sun goes from 23.95 h to 0.05 h
+        CelestialPositions quarter = cache.lookup(LATITUDE, LONGITUDE, T0 + BUCKET_SECONDS * 250);
+        assertNotNull(quarter);
+        int sun = quarter.indexOf(Ephemeris.SUN);
+        assertEquals(23.975, quarter.getRightAscension(sun), 1e-9);
+        assertEquals(-1.75, quarter.getDeclination(sun), 1e-9);
+        int moon = quarter.indexOf(Ephemeris.MOON);
+        assertEquals(10.0, quarter.getRightAscension(moon), 1e-9);
+        assertEquals(1, cache.getStats().interpolations);
+
+        // Past the wrap
+        CelestialPositions later = cache.lookup(LATITUDE, LONGITUDE, T0 + BUCKET_SECONDS * 750);
+        assertEquals(0.025, later.getRightAscension(later.indexOf(Ephemeris.SUN)), 1e-9);
+
+        // Only the second bucket is cached beyond it, so that entry is used as is
+        CelestialPositions last = cache.lookup(LATITUDE, LONGITUDE, T0 + BUCKET_SECONDS * 1500);
+        assertEquals(0.05, last.getRightAscension(last.indexOf(Ephemeris.SUN)), 1e-9);
+        assertEquals(2, cache.getStats().interpolations);
+    }
+
+    @Test
+    public void missesWhenTheBucketIsNotCached() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0 + BUCKET_SECONDS * 1000, fetcher);
+        // The next bucket alone does not answer a lookup
+        assertNull(cache.lookup(LATITUDE, LONGITUDE, T0 + 30_000));
+        assertEquals(2, cache.getStats().misses);
+    }
+
+    @Test
+    public void entriesSurviveOnDisk() throws IOException {
+        cache(8, 8).getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+
+        EphemerisCache reopened = cache(8, 8);
+        CelestialPositions positions = reopened.lookup(LATITUDE, LONGITUDE, T0 + 1000);
+        assertNotNull(positions);
+        assertEquals(2, positions.getCount());
+        assertEquals(23.95, positions.getRightAscension(positions.indexOf(Ephemeris.SUN)), 1e-12);
+        assertEquals(1, reopened.getStats().diskHits);
+
+        // Promoted to memory
+        reopened.lookup(LATITUDE, LONGITUDE, T0 + 2000);
+        assertEquals(1, reopened.getStats().memoryHits);
+    }
+
+    @Test
+    public void ttlRunsFromTheFetchNotTheFileTime() throws IOException {
+        cache(8, 8).getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        File file = onlyFile();
+
+        // Fetched two TTLs ago but used just now
+        Gson gson = new Gson();
+        JsonObject entry;
+        try (Reader reader = new FileReader(file)) {
+            entry = gson.fromJson(reader, JsonObject.class);
+        }
+        entry.addProperty("fetchedAt", System.currentTimeMillis() - 2 * TTL_MILLIS);
+        try (Writer writer = new FileWriter(file)) {
+            gson.toJson(entry, writer);
+        }
+        assertTrue(file.setLastModified(System.currentTimeMillis()));
+
+        EphemerisCache reopened = cache(8, 8);
+        assertNull(reopened.lookup(LATITUDE, LONGITUDE, T0));
+        assertFalse(file.exists());
+        assertEquals(1, reopened.getStats().diskEvictions);
+
+        reopened.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        assertEquals(2, fetches);
+    }
+
+    @Test
+    public void fileTimeDoesNotExpireEntries() throws IOException {
+        cache(8, 8).getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        File file = onlyFile();
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 2 * TTL_MILLIS));
+
+        assertNotNull(cache(8, 8).lookup(LATITUDE, LONGITUDE, T0));
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void unreadableAndOldFormatFilesAreDropped() throws IOException {
+        cache(8, 8).getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        File file = onlyFile();
+
+        // A bare /celestial response, as the cache stored it before entries carried their fetch time
+        write(file, "{\"timestamp\":\"2024-03-15T00:00:00Z\",\"bodies\":{}}");
+        assertNull(cache(8, 8).lookup(LATITUDE, LONGITUDE, T0));
+        assertFalse(file.exists());
+
+        write(file, "not json");
+        assertNull(cache(8, 8).lookup(LATITUDE, LONGITUDE, T0));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void evictsBeyondCapacity() throws IOException {
+        EphemerisCache cache = cache(2, 3);
+        // Buckets far apart, so no lookup interpolates
+        for (int i = 0; i < 5; i++) {
+            cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0 + i * 10 * BUCKET_SECONDS * 1000, fetcher);
+        }
+        assertEquals(5, fetches);
+        assertEquals(3, directory.listFiles().length);
+        assertEquals(2, cache.getStats().diskEvictions);
+        assertEquals(3, cache.getStats().memoryEvictions);
+
+        // The last two buckets are still in memory, the first only on disk if at all
+        cache.lookup(LATITUDE, LONGITUDE, T0 + 4 * 10 * BUCKET_SECONDS * 1000);
+        cache.lookup(LATITUDE, LONGITUDE, T0 + 3 * 10 * BUCKET_SECONDS * 1000);
+        assertEquals(2, cache.getStats().memoryHits);
+        cache.lookup(LATITUDE, LONGITUDE, T0);
+        assertEquals(2, cache.getStats().memoryHits);
+    }
+
+    @Test
+    public void callersCannotChangeCachedEntries() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        CelestialPositions fetched = cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        fetched.reset(0, 0, 0, 0);
+        CelestialPositions cached = cache.lookup(LATITUDE, LONGITUDE, T0);
+        assertEquals(2, cached.getCount());
+        assertEquals(T0 / 1000, cached.getTimestamp());
+
+        cached.reset(0, 0, 0, 0);
+        cached.add(Ephemeris.MARS, 1.0, 2.0);
+        CelestialPositions again = cache.lookup(LATITUDE, LONGITUDE, T0);
+        assertEquals(2, again.getCount());
+        assertEquals(23.95, again.getRightAscension(again.indexOf(Ephemeris.SUN)), 1e-12);
+        assertEquals(-1, again.indexOf(Ephemeris.MARS));
+    }
+
+    @Test
+    public void emptyResponsesAreNotCached() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        EphemerisCache.Fetcher empty = (latitude, longitude, altitude, epochSeconds) -> {
+            fetches++;
+            return new CelestialPositions();
+        };
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, empty);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, empty);
+        assertEquals(2, fetches);
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void fetchFailuresPropagate() {
+        EphemerisCache cache = cache(8, 8);
+        assertThrows(IOException.class, () -> cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0,
+                (latitude, longitude, altitude, epochSeconds) -> {
+                    throw new IOException("offline");
+                }));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void clearDropsBothLevels() throws IOException {
+        EphemerisCache cache = cache(8, 8);
+        cache.getOrFetch(LATITUDE, LONGITUDE, ALTITUDE, T0, fetcher);
+        cache.clear();
+        assertEquals(0, directory.listFiles().length);
+        assertNull(cache.lookup(LATITUDE, LONGITUDE, T0));
+    }
+
+    private EphemerisCache cache(int memoryEntries, int diskEntries) {
+        return new EphemerisCache(directory, EphemerisCache.DEFAULT_CELL_DEGREES, BUCKET_SECONDS, TTL_MILLIS,
+                memoryEntries, diskEntries);
+    }
+
+    private File onlyFile() {
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static void write(File file, String text) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(text);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.project.api;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bucketing and percentiles of LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+    private static final long[] BOUNDS_MS = {5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void boundsBelongToTheirBucket() {
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            LatencyHistogram atBound = new LatencyHistogram();
+            atBound.record(BOUNDS_MS[i]);
+            assertEquals(BOUNDS_MS[i], atBound.getPercentileMillis(1));
+
+            LatencyHistogram pastBound = new LatencyHistogram();
+            pastBound.record(BOUNDS_MS[i] + 1);
+            long expected = i + 1 < BOUNDS_MS.length ? BOUNDS_MS[i + 1] : BOUNDS_MS[i] + 1;
+            assertEquals(expected, pastBound.getPercentileMillis(1));
+        }
+        histogram.record(0);
+        assertEquals(5, histogram.getPercentileMillis(1));
+    }
+
+    @Test
+    public void percentiles() {
+        for (long millis : new long[] {45, 8, 3, 1500, 45, 15, 8, 90, 45, 400}) {
+            histogram.record(millis);
+        }
+        assertEquals(10, histogram.getCount());
+        // Fastest call
+        assertEquals(5, histogram.getPercentileMillis(0));
+        // Fifth call of ten: 3, 8, 8, 15, then the 45s
+        assertEquals(50, histogram.getPercentileMillis(0.5));
+        assertEquals(100, histogram.getPercentileMillis(0.8));
+        assertEquals(2000, histogram.getPercentileMillis(1));
+        assertEquals(1500, histogram.getMaxMillis());
+        assertEquals(215.9, histogram.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    public void fractionZeroSkipsEmptyBuckets() {
+        histogram.record(700);
+        histogram.record(800);
+        assertEquals(1000, histogram.getPercentileMillis(0));
+        assertEquals(1000, histogram.getPercentileMillis(0.5));
+    }
+
+    @Test
+    public void slowestBucketReportsTheMaximum() {
+        histogram.record(12);
+        histogram.record(31_000);
+        histogram.record(45_000);
+        assertEquals(45_000, histogram.getMaxMillis());
+        assertEquals(45_000, histogram.getPercentileMillis(1));
+        assertEquals(45_000, histogram.getPercentileMillis(0.5));
+        assertEquals(20, histogram.getPercentileMillis(0));
+    }
+
+    @Test
+    public void emptyAndFailures() {
+        assertEquals(0, histogram.getPercentileMillis(0));
+        assertEquals(0, histogram.getPercentileMillis(0.5));
+        assertEquals(0, histogram.getPercentileMillis(1));
+        assertEquals(0, histogram.getMeanMillis(), 0);
+
+        histogram.recordFailure();
+        histogram.recordFailure();
+        assertEquals(2, histogram.getFailureCount());
+        // Failures have no latency
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(1));
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.project.catalog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes catalogs with CatalogFormat and reads them back.
+ */
+public class CatalogFormatTest {
+    private static final int STARS = 3000;
+
+    private double[] rightAscension;
+    private double[] declination;
+    private float[] magnitude;
+    private String[] names;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(3);
+        rightAscension = new double[STARS];
+        declination = new double[STARS];
+        magnitude = new float[STARS];
+        names = new String[STARS];
+        for (int i = 0; i < STARS; i++) {
+            rightAscension[i] = random.nextDouble() * 24;
+            declination[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            magnitude[i] = (float) (-1.5 + random.nextDouble() * 8);
+        }
+        names[0] = "Sirius";
+        names[1] = "Rigil Kentaurus";
+        names[2] = "Sirius"; // shares the name table entry
+        names[3] = "α Centauri";
+        names[STARS - 1] = "Polaris";
+    }
+
+    @Test
+    public void plainRoundTrip() throws IOException {
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(write()));
+
+        assertEquals(STARS, catalog.size());
+        assertArrayEquals(rightAscension, catalog.getRightAscension(), 0);
+        assertArrayEquals(declination, catalog.getDeclination(), 0);
+        assertArrayEquals(magnitude, catalog.getMagnitude(), 0);
+        for (int i = 0; i < STARS; i++) {
+            assertEquals(names[i] == null ? "" : names[i], catalog.getName(i));
+        }
+    }
+
+    @Test
+    public void unitVectorsMatchPositions() throws IOException {
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(write()));
+        for (int i = 0; i < STARS; i += 97) {
+            double ra = Math.toRadians(rightAscension[i] * 15);
+            double dec = Math.toRadians(declination[i]);
+            assertEquals(Math.cos(dec) * Math.cos(ra), catalog.getUnitX()[i], 1e-12);
+            assertEquals(Math.cos(dec) * Math.sin(ra), catalog.getUnitY()[i], 1e-12);
+            assertEquals(Math.sin(dec), catalog.getUnitZ()[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void indexedRoundTripKeepsEveryStar() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogFormat.writeIndexed(out, rightAscension, declination, magnitude, names, SkyIndex.DEFAULT_ZONE_HEIGHT);
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(out.toByteArray()));
+
+        // Records come back in cell order, so compare them as multisets
+        assertEquals(STARS, catalog.size());
+        Map<String, Integer> expected = new HashMap<>();
+        Map<String, Integer> actual = new HashMap<>();
+        for (int i = 0; i < STARS; i++) {
+            expected.merge(describe(rightAscension[i], declination[i], magnitude[i],
+                    names[i] == null ? "" : names[i]), 1, Integer::sum);
+            actual.merge(describe(catalog.getRightAscension()[i], catalog.getDeclination()[i],
+                    catalog.getMagnitude()[i], catalog.getName(i)), 1, Integer::sum);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void prebuiltIndexAnswersLikeAFreshOne() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogFormat.writeIndexed(out, rightAscension, declination, magnitude, names, SkyIndex.DEFAULT_ZONE_HEIGHT);
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(out.toByteArray()));
+        SkyIndex prebuilt = catalog.createIndex();
+        SkyIndex fresh = new SkyIndex(catalog.getRightAscension(), catalog.getDeclination(), catalog.getMagnitude());
+        assertEquals(fresh.getCellCount(), prebuilt.getCellCount());
+        assertArrayEquals(fresh.getCellStart(), prebuilt.getCellStart());
+
+        Random random = new Random(4);
+        for (int i = 0; i < 200; i++) {
+            double minRA = random.nextDouble() * 24;
+            double maxRA = random.nextDouble() * 24;
+            double minDec = -90 + random.nextDouble() * 150;
+            double maxDec = minDec + random.nextDouble() * 30;
+            double maxMagnitude = random.nextDouble() * 7;
+            assertArrayEquals(query(fresh, minRA, maxRA, minDec, maxDec, maxMagnitude),
+                    query(prebuilt, minRA, maxRA, minDec, maxDec, maxMagnitude));
+        }
+    }
+
+    @Test
+    public void emptyCatalog() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogFormat.write(out, new double[0], new double[0], new float[0], new String[0]);
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(0, catalog.size());
+        assertEquals(0, catalog.createIndex().collectInBox(0, 24, -90, 90, 99, new int[1]));
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        byte[] bytes = new byte[CatalogFormat.HEADER_SIZE];
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(bytes)));
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(new byte[8])));
+    }
+
+    @Test
+    public void rejectsOtherVersions() throws IOException {
+        byte[] bytes = write();
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putShort(4, (short) (CatalogFormat.VERSION + 1));
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void rejectsTruncatedFiles() throws IOException {
+        byte[] bytes = write();
+        int recordsEnd = CatalogFormat.HEADER_SIZE + STARS * CatalogFormat.RECORD_SIZE;
+        assertThrows(IOException.class,
+                () -> CatalogFormat.read(ByteBuffer.wrap(Arrays.copyOf(bytes, recordsEnd - 1))));
+        // Cut inside the name table, which follows the records
+        assertThrows(IOException.class,
+                () -> CatalogFormat.read(ByteBuffer.wrap(Arrays.copyOf(bytes, recordsEnd + 1))));
+    }
+
+    @Test
+    public void rejectsCorruptNameTables() throws IOException {
+        byte[] bytes = write();
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int nameCount = header.getInt(28);
+        int namesLength = header.getInt(24);
+
+        // A name id past the table
+        byte[] badId = bytes.clone();
+        ByteBuffer.wrap(badId).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(CatalogFormat.HEADER_SIZE + 20, nameCount);
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(badId)));
+        byte[] negativeId = bytes.clone();
+        ByteBuffer.wrap(negativeId).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(CatalogFormat.HEADER_SIZE + 20, -2);
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(negativeId)));
+
+        // The last name's length prefix runs past the end of the table
+        byte[] shortTable = bytes.clone();
+        ByteBuffer.wrap(shortTable).order(ByteOrder.LITTLE_ENDIAN).putInt(24, namesLength - 1);
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(shortTable)));
+
+        // More names than the table holds
+        byte[] extraName = bytes.clone();
+        ByteBuffer.wrap(extraName).order(ByteOrder.LITTLE_ENDIAN).putInt(28, nameCount + 1);
+        assertThrows(IOException.class, () -> CatalogFormat.read(ByteBuffer.wrap(extraName)));
+    }
+
+    @Test
+    public void rejectsOverlongNames() {
+        char[] name = new char[CatalogFormat.MAX_NAME_LENGTH + 1];
+        Arrays.fill(name, 'x');
+        names[5] = new String(name);
+        assertThrows(IOException.class, this::write);
+    }
+
+    private byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogFormat.write(out, rightAscension, declination, magnitude, names);
+        return out.toByteArray();
+    }
+
+    private static int[] query(SkyIndex index, double minRA, double maxRA, double minDec, double maxDec,
+                               double maxMagnitude) {
+        int[] found = new int[STARS];
+        int count = index.collectInBox(minRA, maxRA, minDec, maxDec, maxMagnitude, found);
+        int[] result = Arrays.copyOf(found, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static String describe(double ra, double dec, float magnitude, String name) {
+        return ra + "/" + dec + "/" + magnitude + "/" + name;
+    }
+}
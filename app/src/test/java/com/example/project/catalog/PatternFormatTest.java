@@ -0,0 +1,139 @@
+package com.example.project.catalog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes a pattern index with PatternFormat and reads it back, against the
+ * catalog it was built from and against others.
+ */
+public class PatternFormatTest {
+    private static final int STARS = 3000;
+
+    private double[] rightAscension;
+    private double[] declination;
+    private float[] magnitude;
+    private StarCatalog catalog;
+    private PatternIndex index;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(5);
+        rightAscension = new double[STARS];
+        declination = new double[STARS];
+        magnitude = new float[STARS];
+        for (int i = 0; i < STARS; i++) {
+            rightAscension[i] = random.nextDouble() * 24;
+            declination[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            // Roughly the magnitude distribution of the real sky, 5% brighter than 3.5
+            magnitude[i] = (float) (6.5 + 2.3 * Math.log10(1.0 - random.nextDouble()));
+        }
+        catalog = catalog(rightAscension, declination, magnitude);
+        index = PatternIndex.build(catalog);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        assertTrue(index.getTriangleCount() > 1000);
+        PatternIndex read = PatternFormat.read(ByteBuffer.wrap(write(index, catalog)), catalog);
+
+        assertEquals(index.getStarCount(), read.getStarCount());
+        assertEquals(index.getTriangleCount(), read.getTriangleCount());
+        assertEquals(index.getMaxEdgeDegrees(), read.getMaxEdgeDegrees(), 0);
+        assertEquals(index.getRatioBins(), read.getRatioBins());
+        assertArrayEquals(index.getCatalogIndices(), read.getCatalogIndices());
+        assertArrayEquals(index.getBinStart(), read.getBinStart());
+        assertArrayEquals(index.getVertices(), read.getVertices());
+        // Star vectors come from the catalog
+        assertArrayEquals(index.getUnitX(), read.getUnitX(), 0);
+        assertArrayEquals(index.getUnitZ(), read.getUnitZ(), 0);
+
+        int[] expected = new int[index.getTriangleCount()];
+        int[] actual = new int[index.getTriangleCount()];
+        int found = index.lookup(0.4, 0.8, 0.01, expected);
+        assertTrue(found > 0);
+        assertEquals(found, read.lookup(0.4, 0.8, 0.01, actual));
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void rejectsOtherCatalogs() throws IOException {
+        byte[] bytes = write(index, catalog);
+
+        StarCatalog smaller = catalog(Arrays.copyOf(rightAscension, STARS - 1),
+                Arrays.copyOf(declination, STARS - 1), Arrays.copyOf(magnitude, STARS - 1));
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(bytes), smaller));
+
+        // Same size, one star slightly brighter
+        float[] changed = magnitude.clone();
+        changed[STARS / 2] -= 0.01f;
+        StarCatalog other = catalog(rightAscension, declination, changed);
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(bytes), other));
+    }
+
+    @Test
+    public void rejectsOutOfRangeStars() throws IOException {
+        byte[] bytes = write(index, catalog);
+        int starCount = index.getStarCount();
+        int binCount = index.getBinStart().length;
+
+        // A triangle vertex past the pattern stars
+        byte[] badVertex = bytes.clone();
+        int vertices = PatternFormat.HEADER_SIZE + 4 * starCount + 4 * binCount;
+        ByteBuffer.wrap(badVertex).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort(vertices + 2 * 7, (short) starCount);
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(badVertex), catalog));
+
+        // A pattern star past the catalog
+        byte[] badStar = bytes.clone();
+        ByteBuffer.wrap(badStar).order(ByteOrder.LITTLE_ENDIAN).putInt(PatternFormat.HEADER_SIZE + 4, STARS);
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(badStar), catalog));
+
+        // Bin offsets that do not cover the triangles
+        byte[] badBins = bytes.clone();
+        ByteBuffer.wrap(badBins).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(PatternFormat.HEADER_SIZE + 4 * starCount, 1);
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(badBins), catalog));
+    }
+
+    @Test
+    public void rejectsTruncatedAndOtherFiles() throws IOException {
+        byte[] bytes = write(index, catalog);
+        for (int length : new int[] {0, PatternFormat.HEADER_SIZE - 1, PatternFormat.HEADER_SIZE,
+                bytes.length / 2, bytes.length - 1}) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows("length " + length, IOException.class,
+                    () -> PatternFormat.read(ByteBuffer.wrap(truncated), catalog));
+        }
+
+        byte[] otherVersion = bytes.clone();
+        ByteBuffer.wrap(otherVersion).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort(4, (short) (PatternFormat.VERSION + 1));
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(otherVersion), catalog));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CatalogFormat.write(out, rightAscension, declination, magnitude, new String[STARS]);
+        assertThrows(IOException.class, () -> PatternFormat.read(ByteBuffer.wrap(out.toByteArray()), catalog));
+    }
+
+    private static StarCatalog catalog(double[] rightAscension, double[] declination, float[] magnitude) {
+        int[] nameId = new int[magnitude.length];
+        Arrays.fill(nameId, -1);
+        return new StarCatalog(rightAscension, declination, magnitude, nameId, new byte[0], 0);
+    }
+
+    private static byte[] write(PatternIndex index, StarCatalog catalog) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatternFormat.write(out, index, catalog);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.project.catalog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks SkyIndex box queries against a linear scan of the same catalog.
+ */
+public class SkyIndexTest {
+    private static final int STARS = 20000;
+
+    private double[] rightAscension;
+    private double[] declination;
+    private float[] magnitude;
+    private SkyIndex index;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(1);
+        rightAscension = new double[STARS];
+        declination = new double[STARS];
+        magnitude = new float[STARS];
+        for (int i = 0; i < STARS; i++) {
+            // Uniform over the sphere, so the polar zones get their share of stars
+            rightAscension[i] = random.nextDouble() * 24;
+            declination[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            magnitude[i] = (float) (-1 + random.nextDouble() * 9);
+        }
+        index = new SkyIndex(rightAscension, declination, magnitude);
+    }
+
+    @Test
+    public void boxMatchesLinearScan() {
+        assertBox(5.0, 7.5, -10, 25, 6);
+        assertBox(0.0, 24.0, -90, 90, 99);
+        assertBox(12.0, 12.1, 44.3, 44.9, 99);
+    }
+
+    @Test
+    public void boxWrappingThroughZeroHours() {
+        assertBox(22.5, 1.5, -30, 30, 99);
+        assertBox(23.9, 0.1, 10, 12, 99);
+        // Both ends land in the same cell of the coarse polar zones
+        assertBox(0.2, 0.1, 80, 90, 99);
+    }
+
+    @Test
+    public void boxesAroundThePoles() {
+        assertBox(0.0, 24.0, 85, 90, 99);
+        assertBox(0.0, 24.0, -90, -84, 99);
+        assertBox(3.0, 9.0, 88, 90, 99);
+        assertBox(20.0, 4.0, -90, -75, 5);
+    }
+
+    @Test
+    public void randomBoxesMatchLinearScan() {
+        Random random = new Random(2);
+        for (int i = 0; i < 500; i++) {
+            double minRA = random.nextDouble() * 24;
+            double maxRA = random.nextDouble() * 24;
+            double dec = -90 + random.nextDouble() * 180;
+            double height = random.nextDouble() * 40;
+            assertBox(minRA, maxRA, Math.max(-90, dec - height / 2), Math.min(90, dec + height / 2),
+                    random.nextDouble() * 10 - 1);
+        }
+    }
+
+    @Test
+    public void emptyWhenDecRangeIsInverted() {
+        assertEquals(0, index.collectInBox(1, 2, 30, 20, 99, new int[16]));
+    }
+
+    @Test
+    public void collectCountsMatchesBeyondOutputLength() {
+        int[] all = new int[STARS];
+        int total = index.collectInBox(0, 24, -90, 90, 99, all);
+        assertEquals(STARS, total);
+
+        int[] few = new int[10];
+        assertEquals(total, index.collectInBox(0, 24, -90, 90, 99, few));
+        assertArrayEquals(Arrays.copyOf(all, 10), few);
+    }
+
+    @Test
+    public void visitorSeesTheSameStarsAsCollect() {
+        List<Integer> visited = new ArrayList<>();
+        int count = index.forEachInBox(22.0, 2.0, -20, 20, 4, visited::add);
+        assertEquals(visited.size(), count);
+
+        int[] collected = new int[count];
+        assertEquals(count, index.collectInBox(22.0, 2.0, -20, 20, 4, collected));
+        int[] fromVisitor = new int[count];
+        for (int i = 0; i < count; i++) {
+            fromVisitor[i] = visited.get(i);
+        }
+        assertArrayEquals(collected, fromVisitor);
+    }
+
+    @Test
+    public void entriesAreBrightestFirstWithinEachCell() {
+        int[] cellStart = index.getCellStart();
+        int[] entries = index.getEntries();
+        assertEquals(STARS, cellStart[index.getCellCount()]);
+        for (int cell = 0; cell < index.getCellCount(); cell++) {
+            for (int e = cellStart[cell] + 1; e < cellStart[cell + 1]; e++) {
+                assertTrue(magnitude[entries[e - 1]] <= magnitude[entries[e]]);
+            }
+        }
+    }
+
+    private void assertBox(double minRA, double maxRA, double minDec, double maxDec, double maxMagnitude) {
+        int[] found = new int[STARS];
+        int count = index.collectInBox(minRA, maxRA, minDec, maxDec, maxMagnitude, found);
+        int[] actual = Arrays.copyOf(found, count);
+        Arrays.sort(actual);
+
+        int[] expected = linearScan(minRA, maxRA, minDec, maxDec, maxMagnitude);
+        assertArrayEquals(String.format("box RA %.3f-%.3f Dec %.3f-%.3f mag %.2f",
+                minRA, maxRA, minDec, maxDec, maxMagnitude), expected, actual);
+    }
+
+    private int[] linearScan(double minRA, double maxRA, double minDec, double maxDec, double maxMagnitude) {
+        boolean raWraps = minRA > maxRA;
+        int[] found = new int[STARS];
+        int count = 0;
+        for (int i = 0; i < STARS; i++) {
+            double ra = rightAscension[i];
+            boolean inRA = raWraps ? (ra >= minRA || ra <= maxRA) : (ra >= minRA && ra <= maxRA);
+            if (inRA && declination[i] >= minDec && declination[i] <= maxDec && magnitude[i] <= maxMagnitude) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
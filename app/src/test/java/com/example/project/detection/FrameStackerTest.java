@@ -0,0 +1,176 @@
+package com.example.project.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stacks synthetic frames that are rotated and shifted copies of one star field.
+ */
+public class FrameStackerTest {
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 360;
+    private static final int STARS = 40;
+    private static final double ROLL = 0.05;   // radians, 30 px at the far corner
+    private static final double SHIFT_X = 12.3;
+    private static final double SHIFT_Y = -7.8;
+
+    private SyntheticStarField reference;
+
+    @Before
+    public void setUp() {
+        // A wide margin keeps every star inside the rotated and shifted frames
+        reference = SyntheticStarField.scattered(WIDTH, HEIGHT, STARS, 20, 40, 21);
+    }
+
+    @Test
+    public void recoversRotationAndShift() {
+        for (int sign : new int[] {1, -1}) {
+            double roll = sign * ROLL;
+            FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, FrameStacker.Mode.MEAN);
+            assertTrue(stacker.add(reference.gray, 0, WIDTH, 0));
+            // The prior only knows the size of the roll; the stacker has to find its sign
+            assertTrue("sign " + sign, stacker.add(moved(roll, SHIFT_X, SHIFT_Y, 22), 0, WIDTH, ROLL));
+            assertEquals("sign " + sign, roll, stacker.getRotation(), 1e-3);
+            assertEquals("sign " + sign, SHIFT_X, stacker.getShiftX(), 0.2);
+            assertEquals("sign " + sign, SHIFT_Y, stacker.getShiftY(), 0.2);
+            assertTrue(stacker.getMatchCount() >= STARS / 2);
+            assertEquals(2, stacker.getFrameCount());
+        }
+    }
+
+    @Test
+    public void framesWithoutStarsAreRejected() {
+        FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, FrameStacker.Mode.MEAN);
+        assertTrue(stacker.add(reference.gray, 0, WIDTH, 0));
+        byte[] empty = new byte[WIDTH * HEIGHT];
+        Arrays.fill(empty, (byte) 25);
+        assertFalse(stacker.add(empty, 0, WIDTH, 0));
+        assertEquals(1, stacker.getFrameCount());
+        assertEquals(1, stacker.getRejectedCount());
+    }
+
+    @Test
+    public void sigmaClippingRejectsAStreak() {
+        int streakY = HEIGHT / 2;
+        byte[] mean = stackWithStreak(FrameStacker.Mode.MEAN, streakY);
+        byte[] clipped = stackWithStreak(FrameStacker.Mode.SIGMA_CLIPPED, streakY);
+
+        int meanBright = 0;
+        int clippedBright = 0;
+        for (int x = 60; x < WIDTH - 60; x++) {
+            int i = streakY * WIDTH + x;
+            // Stars on the row are bright in both
+            if (distanceToStar(x + 0.5, streakY + 0.5) < 6) {
+                continue;
+            }
+            if ((mean[i] & 0xFF) > 100) {
+                meanBright++;
+            }
+            if ((clipped[i] & 0xFF) > 100) {
+                clippedBright++;
+            }
+        }
+        // The streak survives the mean along its whole length and is gone from the clipped stack
+        assertTrue("mean kept " + meanBright, meanBright > WIDTH - 160);
+        assertEquals(0, clippedBright);
+    }
+
+    @Test
+    public void renderStretchesAboutTheMedian() {
+        int frames = 4;
+        FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, FrameStacker.Mode.MEAN);
+        for (int f = 0; f < frames; f++) {
+            assertTrue(stacker.add(reference.gray, 0, WIDTH, 0));
+        }
+        // Identical frames align exactly, so the stack is the frame itself
+        assertEquals(0, stacker.getRotation(), 0);
+        assertEquals(0, stacker.getShiftX(), 1e-9);
+        assertEquals(0, stacker.getShiftY(), 1e-9);
+
+        int median = median(reference.gray);
+        byte[] out = new byte[WIDTH * HEIGHT];
+        stacker.render(out);
+        double gain = Math.sqrt(frames);
+        for (int i = 0; i < out.length; i++) {
+            int value = reference.gray[i] & 0xFF;
+            int expected = (int) Math.max(0, Math.min(255, Math.round(median + (value - median) * gain)));
+            assertEquals("pixel " + i, expected, out[i] & 0xFF, 1);
+        }
+    }
+
+    @Test
+    public void emptyStackRendersTheMedianOfNothing() {
+        // The reference frame covers every pixel, so only an empty stack has uncovered ones
+        FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, FrameStacker.Mode.SIGMA_CLIPPED);
+        byte[] out = new byte[WIDTH * HEIGHT];
+        Arrays.fill(out, (byte) 99);
+        stacker.render(out);
+        for (byte value : out) {
+            assertEquals(0, value);
+        }
+    }
+
+    /**
+     * Stacks six aligned frames of the reference field; the fourth has a bright
+     * two-pixel streak across one row
+     */
+    private byte[] stackWithStreak(FrameStacker.Mode mode, int streakY) {
+        FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, mode);
+        for (int f = 0; f < 6; f++) {
+            byte[] frame = moved(0, 0, 0, 100 + f);
+            if (f == 3) {
+                for (int x = 0; x < WIDTH; x++) {
+                    frame[streakY * WIDTH + x] = (byte) 255;
+                    frame[(streakY + 1) * WIDTH + x] = (byte) 255;
+                }
+            }
+            assertTrue(mode + " frame " + f, stacker.add(frame, 0, WIDTH, 0));
+        }
+        assertEquals(mode == FrameStacker.Mode.SIGMA_CLIPPED, stacker.getClippedSamples() > 0);
+        byte[] out = new byte[WIDTH * HEIGHT];
+        stacker.render(out);
+        return out;
+    }
+
+    /**
+     * Renders the reference stars as a frame that maps onto the reference by
+     * rotating by roll about the pixel origin and then shifting
+     */
+    private byte[] moved(double roll, double shiftX, double shiftY, long seed) {
+        double cos = Math.cos(roll);
+        double sin = Math.sin(roll);
+        double[] x = new double[STARS];
+        double[] y = new double[STARS];
+        for (int i = 0; i < STARS; i++) {
+            double dx = reference.x[i] - shiftX;
+            double dy = reference.y[i] - shiftY;
+            x[i] = cos * dx + sin * dy;
+            y[i] = -sin * dx + cos * dy;
+        }
+        return new SyntheticStarField(WIDTH, HEIGHT, x, y, reference.amplitude, reference.sigma, seed).gray;
+    }
+
+    private double distanceToStar(double px, double py) {
+        int star = reference.nearest(px, py);
+        return Math.hypot(reference.x[star] - px, reference.y[star] - py);
+    }
+
+    private static int median(byte[] gray) {
+        int[] histogram = new int[256];
+        for (byte value : gray) {
+            histogram[value & 0xFF]++;
+        }
+        int seen = 0;
+        for (int value = 0; value < 256; value++) {
+            seen += histogram[value];
+            if (2 * seen >= gray.length) {
+                return value;
+            }
+        }
+        return 255;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.project.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks KdTree queries against a brute-force scan of the same points.
+ */
+public class KdTreeTest {
+    private static final int POINTS = 5000;
+    private static final int QUERIES = 2000;
+
+    private double[] x;
+    private double[] y;
+    private KdTree tree;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = new Random(31);
+        x = new double[POINTS];
+        y = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = random.nextDouble() * 4000;
+            y[i] = random.nextDouble() * 3000;
+        }
+        // Duplicates and points on shared coordinates exercise equal keys in the split
+        for (int i = 0; i < 200; i++) {
+            x[POINTS - 1 - i] = x[i];
+            y[POINTS - 1 - 2 * i] = 1500;
+        }
+        tree = new KdTree(x, y, POINTS);
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        for (int q = 0; q < QUERIES; q++) {
+            double px = random.nextDouble() * 4200 - 100;
+            double py = random.nextDouble() * 3200 - 100;
+            assertNearest(px, py, Double.POSITIVE_INFINITY, null);
+        }
+    }
+
+    @Test
+    public void nearestHonoursMaxDistance() {
+        for (int q = 0; q < QUERIES; q++) {
+            double px = random.nextDouble() * 4000;
+            double py = random.nextDouble() * 3000;
+            assertNearest(px, py, random.nextDouble() * 40, null);
+        }
+        // Far outside the points
+        assertEquals(-1, tree.nearest(-1000, -1000, 100, null));
+    }
+
+    @Test
+    public void nearestHonoursFilter() {
+        boolean[] used = new boolean[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            used[i] = random.nextInt(4) != 0;
+        }
+        IntPredicate unused = i -> !used[i];
+        for (int q = 0; q < QUERIES; q++) {
+            double px = random.nextDouble() * 4000;
+            double py = random.nextDouble() * 3000;
+            assertNearest(px, py, 200, unused);
+        }
+        assertEquals(-1, tree.nearest(2000, 1500, Double.POSITIVE_INFINITY, i -> false));
+    }
+
+    @Test
+    public void withinRadiusMatchesBruteForce() {
+        int[] out = new int[POINTS];
+        for (int q = 0; q < QUERIES; q++) {
+            double px = random.nextDouble() * 4000;
+            double py = random.nextDouble() * 3000;
+            double radius = random.nextDouble() * 150;
+            int count = tree.withinRadius(px, py, radius, out);
+
+            int[] actual = Arrays.copyOf(out, count);
+            Arrays.sort(actual);
+            assertArrayEquals(bruteForceWithin(px, py, radius), actual);
+        }
+    }
+
+    @Test
+    public void withinRadiusCountsBeyondOutputLength() {
+        int[] all = new int[POINTS];
+        int total = tree.withinRadius(2000, 1500, 300, all);
+        assertTrue(total > 10);
+
+        int[] few = new int[10];
+        assertEquals(total, tree.withinRadius(2000, 1500, 300, few));
+        assertArrayEquals(Arrays.copyOf(all, 10), few);
+        assertEquals(total, tree.withinRadius(2000, 1500, 300, new int[0]));
+    }
+
+    @Test
+    public void pointsOnTheRadiusAreIncluded() {
+        double[] px = {0, 3, 0, 5};
+        double[] py = {0, 4, 5, 0};
+        KdTree small = new KdTree(px, py, 4);
+        assertEquals(4, small.withinRadius(0, 0, 5, new int[4]));
+        assertEquals(1, small.withinRadius(0, 0, 4.99, new int[4]));
+    }
+
+    @Test
+    public void emptyAndSingletonTrees() {
+        KdTree empty = new KdTree(new double[0], new double[0], 0);
+        assertEquals(0, empty.size());
+        assertEquals(-1, empty.nearest(0, 0, Double.POSITIVE_INFINITY, null));
+        assertEquals(0, empty.withinRadius(0, 0, 100, new int[1]));
+
+        KdTree single = new KdTree(new double[] {1, 99}, new double[] {2, 99}, 1);
+        assertEquals(1, single.size());
+        assertEquals(0, single.nearest(50, 50, Double.POSITIVE_INFINITY, null));
+    }
+
+    private void assertNearest(double px, double py, double maxDistance, IntPredicate accept) {
+        int expected = -1;
+        double expectedDistance = maxDistance;
+        for (int i = 0; i < POINTS; i++) {
+            double distance = Math.hypot(x[i] - px, y[i] - py);
+            if (distance < expectedDistance && (accept == null || accept.test(i))) {
+                expected = i;
+                expectedDistance = distance;
+            }
+        }
+
+        int actual = tree.nearest(px, py, maxDistance, accept);
+        String query = String.format("query (%.3f, %.3f) within %.3f", px, py, maxDistance);
+        if (expected < 0) {
+            assertEquals(query, -1, actual);
+            return;
+        }
+        assertTrue(query, actual >= 0);
+        assertTrue(query, accept == null || accept.test(actual));
+        // Duplicates tie, so compare distances rather than indices
+        assertEquals(query, expectedDistance, Math.hypot(x[actual] - px, y[actual] - py), 1e-9);
+    }
+
+    private int[] bruteForceWithin(double px, double py, double radius) {
+        int[] found = new int[POINTS];
+        int count = 0;
+        for (int i = 0; i < POINTS; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            if (dx * dx + dy * dy <= radius * radius) {
+                found[count++] = i;
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+}
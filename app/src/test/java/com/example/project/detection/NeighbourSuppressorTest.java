@@ -0,0 +1,131 @@
+package com.example.project.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks NeighbourSuppressor against a quadratic greedy suppression.
+ */
+public class NeighbourSuppressorTest {
+    private NeighbourSuppressor suppressor;
+
+    @Before
+    public void setUp() {
+        suppressor = new NeighbourSuppressor();
+    }
+
+    @Test
+    public void denseRandomPointsMatchBruteForce() {
+        Random random = new Random(21);
+        for (int round = 0; round < 20; round++) {
+            int count = 1 + random.nextInt(3000);
+            double size = 50 + random.nextDouble() * 1000;
+            double[] x = new double[count];
+            double[] y = new double[count];
+            double[] flux = new double[count];
+            for (int i = 0; i < count; i++) {
+                x[i] = random.nextDouble() * size;
+                y[i] = random.nextDouble() * size;
+                flux[i] = i;
+            }
+            assertSuppression(x, y, flux, count, 1 + random.nextDouble() * 15);
+        }
+    }
+
+    @Test
+    public void negativeCoordinatesAndCellBorders() {
+        // Points exactly on cell borders and on both sides of zero
+        double[] x = {-8, 0, 8, -0.5, 7.99, 16, -16, 4, 12, -4};
+        double[] y = {0, 0, 0, 7.9, -7.9, 0, 8, 8, -8, -8};
+        double[] flux = new double[x.length];
+        assertSuppression(x, y, flux, x.length, 8);
+    }
+
+    @Test
+    public void pointsExactlyMinSpacingApartAreKept() {
+        double[] x = {0, 8, 16, 24};
+        double[] y = {0, 0, 0, 0};
+        double[] flux = {1, 2, 3, 4};
+        assertEquals(4, suppressor.suppress(x, y, flux, 4, 8));
+    }
+
+    @Test
+    public void onlyCountCandidatesAreRead() {
+        double[] x = {0, 100, 1, 1};
+        double[] y = {0, 100, 1, 1};
+        double[] flux = {1, 2, 3, 4};
+        assertEquals(2, suppressor.suppress(x, y, flux, 2, 8));
+        assertEquals(0, suppressor.suppress(x, y, flux, 0, 8));
+    }
+
+    @Test
+    public void detectorCandidatesOnASyntheticField() {
+        // Stars as close as 5 px, so many of them suppress a neighbour
+        SyntheticStarField field = SyntheticStarField.scattered(400, 300, 300, 5, 6, 22);
+        StarDetector detector = new StarDetector();
+        int count = detector.findCandidates(field.gray, 0, 400, 400, 300);
+        assertTrue(count > 100);
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] flux = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = detector.getX(i);
+            y[i] = detector.getY(i);
+            flux[i] = detector.getFlux(i);
+        }
+        int kept = assertSuppression(x, y, flux, count, StarDetector.MIN_STAR_SPACING);
+        assertTrue(kept < count);
+
+        // detect() is findCandidates followed by the same suppression
+        assertEquals(kept, detector.detect(field.gray, 400, 300));
+        for (int i = 0; i < kept; i++) {
+            assertEquals(x[i], detector.getX(i), 0);
+            assertEquals(y[i], detector.getY(i), 0);
+            assertEquals(flux[i], detector.getFlux(i), 0);
+        }
+    }
+
+    /**
+     * Suppresses copies of the points with both implementations and compares the
+     * kept points, leaving the suppressed arrays in x, y and flux
+     *
+     * @return Number of points kept
+     */
+    private int assertSuppression(double[] x, double[] y, double[] flux, int count, double minSpacing) {
+        int[] expected = bruteForce(x, y, count, minSpacing);
+        double[] originalX = x.clone();
+        double[] originalY = y.clone();
+        double[] originalFlux = flux.clone();
+
+        int kept = suppressor.suppress(x, y, flux, count, minSpacing);
+        assertEquals(expected.length, kept);
+        for (int i = 0; i < kept; i++) {
+            assertEquals(originalX[expected[i]], x[i], 0);
+            assertEquals(originalY[expected[i]], y[i], 0);
+            assertEquals(originalFlux[expected[i]], flux[i], 0);
+        }
+        return kept;
+    }
+
+    private static int[] bruteForce(double[] x, double[] y, int count, double minSpacing) {
+        int[] kept = new int[count];
+        int keptCount = 0;
+        for (int i = 0; i < count; i++) {
+            boolean tooClose = false;
+            for (int k = 0; k < keptCount && !tooClose; k++) {
+                double dx = x[kept[k]] - x[i];
+                double dy = y[kept[k]] - y[i];
+                tooClose = dx * dx + dy * dy < minSpacing * minSpacing;
+            }
+            if (!tooClose) {
+                kept[keptCount++] = i;
+            }
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.project.detection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs StarDetector on synthetic star fields whose true star positions are known.
+ */
+public class StarDetectorTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int STARS = 80;
+    private static final double TOLERANCE_PIXELS = 0.25;
+
+    private SyntheticStarField field;
+    private StarDetector detector;
+
+    @Before
+    public void setUp() {
+        field = SyntheticStarField.scattered(WIDTH, HEIGHT, STARS, 20, 10, 11);
+        detector = new StarDetector();
+    }
+
+    @Test
+    public void everyStarIsFoundNearItsTruePosition() {
+        assertEquals(STARS, detector.detect(field.gray, WIDTH, HEIGHT));
+        boolean[] matched = new boolean[STARS];
+        for (int i = 0; i < STARS; i++) {
+            int star = field.nearest(detector.getX(i), detector.getY(i));
+            assertFalse("star " + star + " found twice", matched[star]);
+            matched[star] = true;
+            assertEquals("x of star " + star, field.x[star], detector.getX(i), TOLERANCE_PIXELS);
+            assertEquals("y of star " + star, field.y[star], detector.getY(i), TOLERANCE_PIXELS);
+            assertTrue(detector.getFlux(i) > 0);
+            assertEquals(-2.5 * Math.log10(detector.getFlux(i)), detector.getMagnitude(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void candidatesComeInRasterOrder() {
+        int count = detector.findCandidates(field.gray, 0, WIDTH, WIDTH, HEIGHT);
+        assertEquals(STARS, count);
+        for (int i = 1; i < count; i++) {
+            // Top rows of neighbouring candidates are at most a star's height apart out of order
+            assertTrue(detector.getY(i) > detector.getY(i - 1) - 4);
+        }
+    }
+
+    @Test
+    public void emptySkyHasNoStars() {
+        Random random = new Random(12);
+        byte[] gray = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) (20 + random.nextInt(10));
+        }
+        assertEquals(0, detector.detect(gray, WIDTH, HEIGHT));
+        assertEquals(0, detector.detect(gray, 0, WIDTH, 0, HEIGHT));
+    }
+
+    @Test
+    public void windowOfPaddedImageMatchesPlainImage() {
+        // The same image with 16 bytes of padding per row and 3 rows above the window
+        int stride = WIDTH + 16;
+        int offset = 3 * stride;
+        byte[] padded = new byte[offset + HEIGHT * stride];
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(field.gray, y * WIDTH, padded, offset + y * stride, WIDTH);
+        }
+        int count = detector.detect(field.gray, WIDTH, HEIGHT);
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = detector.getX(i);
+            y[i] = detector.getY(i);
+        }
+
+        assertEquals(count, detector.detect(padded, offset, stride, WIDTH, HEIGHT));
+        for (int i = 0; i < count; i++) {
+            assertEquals(x[i], detector.getX(i), 0);
+            assertEquals(y[i], detector.getY(i), 0);
+        }
+    }
+
+    @Test
+    public void reusedDetectorGivesTheSameResult() {
+        SyntheticStarField small = SyntheticStarField.scattered(200, 150, 10, 20, 10, 13);
+        int first = detector.detect(field.gray, WIDTH, HEIGHT);
+        double firstX = detector.getX(first - 1);
+        // A smaller image in between must not leave stale scratch behind
+        assertEquals(10, detector.detect(small.gray, 200, 150));
+        assertEquals(first, detector.detect(field.gray, WIDTH, HEIGHT));
+        assertEquals(firstX, detector.getX(first - 1), 0);
+    }
+
+    @Test
+    public void closeStarsAreSuppressed() {
+        double[] x = {50.5, 56.0, 120.3};
+        double[] y = {40.5, 40.5, 90.7};
+        double[] amplitude = {500, 300, 400};
+        double[] sigma = {0.9, 0.9, 0.9};
+        SyntheticStarField pair = new SyntheticStarField(200, 150, x, y, amplitude, sigma, 14);
+
+        assertEquals(3, detector.findCandidates(pair.gray, 0, 200, 200, 150));
+        assertEquals(2, detector.detect(pair.gray, 200, 150));
+        // The first in raster order wins
+        assertEquals(50.5, detector.getX(0), TOLERANCE_PIXELS);
+        assertEquals(120.3, detector.getX(1), TOLERANCE_PIXELS);
+    }
+
+    @Test
+    public void brighterStarHasMoreFlux() {
+        double[] x = {50.5, 120.5};
+        double[] y = {60.5, 60.5};
+        double[] amplitude = {250, 600};
+        double[] sigma = {1.0, 1.0};
+        SyntheticStarField pair = new SyntheticStarField(200, 150, x, y, amplitude, sigma, 15);
+
+        assertEquals(2, detector.detect(pair.gray, 200, 150));
+        assertTrue(detector.getFlux(1) > detector.getFlux(0));
+        assertTrue(detector.getMagnitude(1) < detector.getMagnitude(0));
+    }
+}
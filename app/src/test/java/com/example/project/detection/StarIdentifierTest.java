@@ -0,0 +1,189 @@
+package com.example.project.detection;
+
+import com.example.project.catalog.PatternIndex;
+import com.example.project.catalog.StarCatalog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Identifies fields projected from a synthetic all-sky catalog at random
+ * attitudes, with centroid noise, missed stars, false detections and a nominal
+ * field of view that is off by 3%.
+ */
+public class StarIdentifierTest {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final double FOV_DEGREES = 66.0;
+    private static final double TRUE_FOV_DEGREES = FOV_DEGREES * 1.03;
+    private static final int STARS = 9000;
+    private static final int SPURIOUS = 3;
+
+    private StarCatalog catalog;
+    private StarIdentifier identifier;
+    private Random random;
+
+    /**
+     * A projected field and the catalog star behind each detection, -1 for false ones
+     */
+    private static final class Field {
+        final List<DetectedStar> detections = new ArrayList<>();
+        final List<Integer> truth = new ArrayList<>();
+        double[] cameraToSky;
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(42);
+        double[] ra = new double[STARS];
+        double[] dec = new double[STARS];
+        float[] magnitude = new float[STARS];
+        int[] nameId = new int[STARS];
+        for (int i = 0; i < STARS; i++) {
+            ra[i] = random.nextDouble() * 24.0;
+            dec[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            magnitude[i] = (float) (6.5 + 2.0 * Math.log10(1.0 - random.nextDouble()));
+            nameId[i] = -1;
+        }
+        catalog = new StarCatalog(ra, dec, magnitude, nameId, new byte[0], 0);
+        identifier = new StarIdentifier(PatternIndex.build(catalog));
+    }
+
+    @Test
+    public void identifiesFieldsAtRandomAttitudes() {
+        double trueFocal = Math.min(WIDTH, HEIGHT) / Math.toRadians(TRUE_FOV_DEGREES);
+        for (int f = 0; f < 8; f++) {
+            Field field = project(randomRotation(random), 0.1, SPURIOUS);
+            StarIdentifier.Result result = identifier.identify(field.detections, WIDTH, HEIGHT, FOV_DEGREES);
+            assertNotNull("field " + f, result);
+
+            int correct = 0;
+            int wrong = 0;
+            int real = 0;
+            for (int i = 0; i < field.detections.size(); i++) {
+                int expected = field.truth.get(i);
+                int actual = result.catalogIndex[i];
+                if (expected >= 0) {
+                    real++;
+                }
+                if (actual >= 0 && actual == expected) {
+                    correct++;
+                } else if (actual >= 0) {
+                    wrong++;
+                }
+            }
+            // Only pattern stars are assigned, so the faint detections stay unmatched
+            assertTrue("field " + f + ": " + correct + " correct", correct >= 10);
+            assertTrue("field " + f + ": " + wrong + " wrong of " + real, wrong <= 1);
+            assertEquals(correct + wrong, result.matchCount);
+
+            // The matched triangle measures the true plate scale, not the nominal one
+            assertEquals("field " + f, trueFocal, result.focalLength, trueFocal * 0.015);
+            // The attitude comes from one triangle and is not refined, so it is good to a fraction of a degree
+            assertTrue("field " + f, attitudeError(field.cameraToSky, result.cameraToSky) < 0.5);
+        }
+    }
+
+    @Test
+    public void toleratesMissingStarsAndFalseDetections() {
+        double[] rotation = randomRotation(random);
+        StarIdentifier.Result clean = identifier.identify(project(rotation, 0, 0).detections,
+                WIDTH, HEIGHT, FOV_DEGREES);
+        Field noisy = project(rotation, 0.2, 6);
+        StarIdentifier.Result result = identifier.identify(noisy.detections, WIDTH, HEIGHT, FOV_DEGREES);
+        assertNotNull(clean);
+        assertNotNull(result);
+        assertTrue(attitudeError(noisy.cameraToSky, clean.cameraToSky) < 0.5);
+        assertTrue(attitudeError(noisy.cameraToSky, result.cameraToSky) < 0.5);
+        for (int i = 0; i < noisy.detections.size(); i++) {
+            if (noisy.truth.get(i) < 0) {
+                assertEquals("false detection " + i, -1, result.catalogIndex[i]);
+            }
+        }
+    }
+
+    @Test
+    public void tooFewDetections() {
+        List<DetectedStar> two = Arrays.asList(new DetectedStar(100, 100, 10), new DetectedStar(900, 700, 5));
+        assertNull(identifier.identify(two, WIDTH, HEIGHT, FOV_DEGREES));
+        assertNull(identifier.identify(new ArrayList<>(), WIDTH, HEIGHT, FOV_DEGREES));
+    }
+
+    /**
+     * Projects the catalog through a pinhole camera with the true field of view
+     *
+     * @param missed Fraction of stars brighter than magnitude 5 left out
+     * @param spurious Number of bright false detections added
+     */
+    private Field project(double[] cameraToSky, double missed, int spurious) {
+        double focal = Math.min(WIDTH, HEIGHT) / Math.toRadians(TRUE_FOV_DEGREES);
+        float[] magnitude = catalog.getMagnitude();
+        List<double[]> stars = new ArrayList<>();
+        double[] r = cameraToSky;
+        for (int i = 0; i < STARS; i++) {
+            double sx = catalog.getUnitX()[i];
+            double sy = catalog.getUnitY()[i];
+            double sz = catalog.getUnitZ()[i];
+            // Sky to camera is the transpose of the camera-to-sky rotation
+            double cx = r[0] * sx + r[3] * sy + r[6] * sz;
+            double cy = r[1] * sx + r[4] * sy + r[7] * sz;
+            double cz = r[2] * sx + r[5] * sy + r[8] * sz;
+            if (magnitude[i] > 5.0 || cz <= 0.1 || random.nextDouble() < missed) {
+                continue;
+            }
+            double x = WIDTH / 2.0 + focal * cx / cz + random.nextGaussian();
+            double y = HEIGHT / 2.0 + focal * cy / cz + random.nextGaussian();
+            if (x >= 0 && y >= 0 && x < WIDTH && y < HEIGHT) {
+                stars.add(new double[] {x, y, Math.pow(10, -0.4 * magnitude[i]) * (1 + 0.2 * random.nextGaussian()), i});
+            }
+        }
+        for (int s = 0; s < spurious; s++) {
+            stars.add(new double[] {random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT,
+                    Math.pow(10, -0.4 * (1.5 + 3 * random.nextDouble())), -1});
+        }
+        stars.sort((a, b) -> Double.compare(b[2], a[2]));
+
+        Field field = new Field();
+        field.cameraToSky = cameraToSky;
+        for (double[] star : stars) {
+            field.detections.add(new DetectedStar(star[0], star[1], star[2]));
+            field.truth.add((int) star[3]);
+        }
+        return field;
+    }
+
+    /**
+     * @return Angle of the rotation between two camera-to-sky rotations, roll included (degrees)
+     */
+    private static double attitudeError(double[] expected, double[] actual) {
+        // Trace of expected^T * actual
+        double trace = 0;
+        for (int i = 0; i < 9; i++) {
+            trace += expected[i] * actual[i];
+        }
+        return Math.toDegrees(Math.acos(Math.max(-1, Math.min((trace - 1) / 2, 1))));
+    }
+
+    private static double[] randomRotation(Random random) {
+        double w = random.nextGaussian();
+        double x = random.nextGaussian();
+        double y = random.nextGaussian();
+        double z = random.nextGaussian();
+        double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+        w /= norm;
+        x /= norm;
+        y /= norm;
+        z /= norm;
+        return new double[] {
+                1 - 2 * (y * y + z * z), 2 * (x * y - z * w), 2 * (x * z + y * w),
+                2 * (x * y + z * w), 1 - 2 * (x * x + z * z), 2 * (y * z - x * w),
+                2 * (x * z - y * w), 2 * (y * z + x * w), 1 - 2 * (x * x + y * y)};
+    }
+}
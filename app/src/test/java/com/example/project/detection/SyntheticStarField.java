@@ -0,0 +1,98 @@
+package com.example.project.detection;
+
+import java.util.Random;
+
+/**
+ * Gaussian stars at known positions on a noisy sky background, like the tools
+ * module's renderer but keeping the true centers for the tests to compare with.
+ * Positions follow the detector's convention: pixel (x, y) has its center at
+ * (x + 0.5, y + 0.5).
+ */
+final class SyntheticStarField {
+    final int width;
+    final int height;
+    final byte[] gray;
+    final double[] x;
+    final double[] y;
+    final double[] amplitude;
+    final double[] sigma;
+
+    /**
+     * Renders stars at given positions
+     *
+     * @param sigma Gaussian width of each star in pixels
+     */
+    SyntheticStarField(int width, int height, double[] x, double[] y, double[] amplitude, double[] sigma,
+                       long seed) {
+        this.width = width;
+        this.height = height;
+        this.x = x;
+        this.y = y;
+        this.amplitude = amplitude;
+        this.sigma = sigma;
+        Random random = new Random(seed);
+        double[] image = new double[width * height];
+        for (int i = 0; i < width * height; i++) {
+            image[i] = 20 + random.nextInt(10);
+        }
+        for (int i = 0; i < x.length; i++) {
+            int reach = (int) Math.ceil(4 * sigma[i]);
+            int cx = (int) x[i];
+            int cy = (int) y[i];
+            for (int py = Math.max(cy - reach, 0); py <= Math.min(cy + reach, height - 1); py++) {
+                for (int px = Math.max(cx - reach, 0); px <= Math.min(cx + reach, width - 1); px++) {
+                    double dx = px + 0.5 - x[i];
+                    double dy = py + 0.5 - y[i];
+                    image[py * width + px] += amplitude[i] * Math.exp(-(dx * dx + dy * dy) / (2 * sigma[i] * sigma[i]));
+                }
+            }
+        }
+        gray = new byte[width * height];
+        for (int i = 0; i < width * height; i++) {
+            gray[i] = (byte) Math.min(255, (int) Math.round(image[i]));
+        }
+    }
+
+    /**
+     * Scatters stars of random brightness and width over the image
+     *
+     * @param stars Stars to place, at least spacing apart and margin from every edge
+     */
+    static SyntheticStarField scattered(int width, int height, int stars, double spacing, int margin, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[stars];
+        double[] y = new double[stars];
+        double[] amplitude = new double[stars];
+        double[] sigma = new double[stars];
+        for (int i = 0; i < stars; i++) {
+            boolean placed = false;
+            while (!placed) {
+                x[i] = margin + random.nextDouble() * (width - 2 * margin);
+                y[i] = margin + random.nextDouble() * (height - 2 * margin);
+                placed = true;
+                for (int j = 0; j < i && placed; j++) {
+                    placed = Math.hypot(x[i] - x[j], y[i] - y[j]) >= spacing;
+                }
+            }
+            amplitude[i] = 350 + random.nextDouble() * 300;
+            sigma[i] = 0.8 + random.nextDouble() * 0.4;
+        }
+        return new SyntheticStarField(width, height, x, y, amplitude, sigma, random.nextLong());
+    }
+
+    /**
+     * @return Index of the true star nearest to a point
+     */
+    int nearest(double px, double py) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < x.length; i++) {
+            double distance = Math.hypot(x[i] - px, y[i] - py);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
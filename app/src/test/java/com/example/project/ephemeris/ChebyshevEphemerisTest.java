@@ -0,0 +1,163 @@
+package com.example.project.ephemeris;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares fitted ChebyshevEphemeris segments with direct Ephemeris computations.
+ */
+public class ChebyshevEphemerisTest {
+    private static final long HOUR = 3600 * 1000L;
+    // The layout ChebyshevStore requests: 12-hour segments of degree 8
+    private static final long SEGMENT_MILLIS = 12 * HOUR;
+    private static final int DEGREE = 8;
+    private static final int SEGMENTS = 6;
+    private static final double LATITUDE = 48.2;
+    private static final double LONGITUDE = 16.4;
+    private static final double ALTITUDE = 200;
+
+    private long start;
+    private Ephemeris ephemeris;
+    private ChebyshevEphemeris segments;
+
+    @Before
+    public void setUp() {
+        start = Instant.parse("2024-03-15T00:00:00Z").toEpochMilli();
+        ephemeris = new Ephemeris();
+        segments = ChebyshevEphemeris.fit(ephemeris, start, SEGMENT_MILLIS, SEGMENTS, DEGREE,
+                LATITUDE, LONGITUDE, ALTITUDE);
+    }
+
+    @Test
+    public void fitMatchesDirectComputation() {
+        // A step that falls off the nodes and the segment boundaries
+        assertMatchesDirect(segments, 7 * 60 * 1000L + 13, 0.1);
+    }
+
+    @Test
+    public void sunCrossingZeroHours() {
+        // The March equinox of 2024 falls on the 20th at 03:06 UTC
+        long equinoxStart = Instant.parse("2024-03-19T12:00:00Z").toEpochMilli();
+        ChebyshevEphemeris crossing = ChebyshevEphemeris.fit(ephemeris, equinoxStart, SEGMENT_MILLIS, 2, DEGREE,
+                LATITUDE, LONGITUDE, ALTITUDE);
+        crossing.compute(equinoxStart);
+        assertTrue(crossing.getRightAscension(Ephemeris.SUN) > 23.9);
+        crossing.compute(crossing.getEndMillis());
+        assertTrue(crossing.getRightAscension(Ephemeris.SUN) < 0.1);
+        assertMatchesDirect(crossing, 60 * 1000L, 0.1);
+    }
+
+    @Test
+    public void lowerDegreeIsLessAccurate() {
+        ChebyshevEphemeris coarse = ChebyshevEphemeris.fit(ephemeris, start, SEGMENT_MILLIS, SEGMENTS, 3,
+                LATITUDE, LONGITUDE, ALTITUDE);
+        // The Moon's parallax needs the higher terms, but a cubic still stays within a pixel-matching radius
+        double error = assertMatchesDirect(coarse, 11 * 60 * 1000L, 60);
+        assertTrue(error > 0.1);
+    }
+
+    @Test
+    public void coefficientsRebuildTheSameSegments() {
+        double[][] ra = new double[Ephemeris.BODY_COUNT][];
+        double[][] dec = new double[Ephemeris.BODY_COUNT][];
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            ra[body] = segments.getRaCoefficients(body);
+            dec[body] = segments.getDecCoefficients(body);
+        }
+        ChebyshevEphemeris rebuilt = new ChebyshevEphemeris(start, SEGMENT_MILLIS, SEGMENTS, DEGREE,
+                LATITUDE, LONGITUDE, ALTITUDE, ra, dec);
+        long t = start + 30 * HOUR + 12345;
+        segments.compute(t);
+        rebuilt.compute(t);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            assertEquals(segments.getRightAscension(body), rebuilt.getRightAscension(body), 0);
+            assertEquals(segments.getDeclination(body), rebuilt.getDeclination(body), 0);
+        }
+    }
+
+    @Test
+    public void window() {
+        assertEquals(start + SEGMENTS * SEGMENT_MILLIS, segments.getEndMillis());
+        assertTrue(segments.covers(start));
+        assertTrue(segments.covers(segments.getEndMillis()));
+        assertFalse(segments.covers(start - 1));
+        assertFalse(segments.covers(segments.getEndMillis() + 1));
+        assertThrows(IllegalArgumentException.class, () -> segments.compute(start - 1));
+        assertThrows(IllegalArgumentException.class, () -> segments.compute(segments.getEndMillis() + 1));
+    }
+
+    @Test
+    public void rejectsInvalidLayouts() {
+        double[][] ra = coefficients(SEGMENTS * (DEGREE + 1));
+        double[][] dec = coefficients(SEGMENTS * (DEGREE + 1));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, 0, SEGMENTS, DEGREE,
+                LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS, 0, DEGREE,
+                LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                SEGMENTS, -1, LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                Integer.MAX_VALUE, Integer.MAX_VALUE - 1, LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        // Coefficients that do not match the layout
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                SEGMENTS + 1, DEGREE, LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                SEGMENTS, DEGREE, LATITUDE, LONGITUDE, ALTITUDE, ra, null));
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                SEGMENTS, DEGREE, LATITUDE, LONGITUDE, ALTITUDE, ra, new double[Ephemeris.BODY_COUNT - 1][]));
+        dec[Ephemeris.NEPTUNE] = null;
+        assertThrows(IllegalArgumentException.class, () -> new ChebyshevEphemeris(start, SEGMENT_MILLIS,
+                SEGMENTS, DEGREE, LATITUDE, LONGITUDE, ALTITUDE, ra, dec));
+        // fit() checks the layout before allocating
+        assertThrows(IllegalArgumentException.class, () -> ChebyshevEphemeris.fit(ephemeris, start,
+                SEGMENT_MILLIS, SEGMENTS, -1, LATITUDE, LONGITUDE, ALTITUDE));
+    }
+
+    /**
+     * Samples a set across its window and compares every body with Ephemeris
+     *
+     * @return Largest error over all bodies (arcseconds)
+     */
+    private double assertMatchesDirect(ChebyshevEphemeris fitted, long step, double arcseconds) {
+        double worst = 0;
+        for (long t = fitted.getStartMillis(); t <= fitted.getEndMillis(); t += step) {
+            ephemeris.compute(t, LATITUDE, LONGITUDE, ALTITUDE);
+            fitted.compute(t);
+            for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+                double error = separation(ephemeris.getRightAscension(body), ephemeris.getDeclination(body),
+                        fitted.getRightAscension(body), fitted.getDeclination(body));
+                assertTrue(Ephemeris.BODY_NAMES[body] + " off by " + error + " arcsec at " + t, error < arcseconds);
+                double hours = fitted.getRightAscension(body);
+                assertTrue(hours >= 0 && hours < 24);
+                worst = Math.max(worst, error);
+            }
+        }
+        return worst;
+    }
+
+    private static double[][] coefficients(int length) {
+        double[][] coefficients = new double[Ephemeris.BODY_COUNT][];
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            coefficients[body] = new double[length];
+        }
+        return coefficients;
+    }
+
+    /**
+     * @return Angle between two places (arcseconds)
+     */
+    private static double separation(double ra1Hours, double dec1, double ra2Hours, double dec2) {
+        double ra1 = Math.toRadians(ra1Hours * 15);
+        double ra2 = Math.toRadians(ra2Hours * 15);
+        double d1 = Math.toRadians(dec1);
+        double d2 = Math.toRadians(dec2);
+        double x = Math.cos(d1) * Math.cos(ra1) - Math.cos(d2) * Math.cos(ra2);
+        double y = Math.cos(d1) * Math.sin(ra1) - Math.cos(d2) * Math.sin(ra2);
+        double z = Math.sin(d1) - Math.sin(d2);
+        return Math.toDegrees(2 * Math.asin(Math.sqrt(x * x + y * y + z * z) / 2)) * 3600;
+    }
+}
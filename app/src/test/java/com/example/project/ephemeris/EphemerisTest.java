@@ -0,0 +1,158 @@
+package com.example.project.ephemeris;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares Ephemeris with the worked examples of Meeus, Astronomical Algorithms
+ * (2nd ed.).
+ *
+ * The examples give apparent places, referred to the true equator and equinox
+ * of date, while Ephemeris returns J2000 places. The tests precess the J2000
+ * result to the date and leave nutation and aberration, each under half an
+ * arcminute, to the tolerance.
+ */
+public class EphemerisTest {
+    private static final double KM_PER_AU = 149597870.7;
+
+    private Ephemeris ephemeris;
+
+    @Before
+    public void setUp() {
+        ephemeris = new Ephemeris();
+    }
+
+    @Test
+    public void julianDayMatchesExample7a() {
+        // Example 7.a: launch of Sputnik 1, 1957 October 4.81
+        assertEquals(2436116.31, Ephemeris.julianDay(millis("1957-10-04T19:26:24Z")), 1e-6);
+        // Table in section 7
+        assertEquals(2451545.0, Ephemeris.julianDay(millis("2000-01-01T12:00:00Z")), 0);
+        assertEquals(2446822.5, Ephemeris.julianDay(millis("1987-01-27T00:00:00Z")), 0);
+        assertEquals(2447332.0, Ephemeris.julianDay(millis("1988-06-19T12:00:00Z")), 0);
+        assertEquals(2305812.5, Ephemeris.julianDay(millis("1600-12-31T00:00:00Z")), 0);
+    }
+
+    @Test
+    public void sunMatchesExample25a() {
+        // 1992 October 13.0 TD: 13h 13m 31.4s, -7 deg 47' 06"
+        ephemeris.computeGeocentric(2448908.5);
+        assertApparentPlace(Ephemeris.SUN, 2448908.5, hours(13, 13, 31.4), degrees(-7, 47, 6), 0.5);
+        assertEquals(0.99760775, ephemeris.getDistance(Ephemeris.SUN), 1e-4);
+    }
+
+    @Test
+    public void moonMatchesExample47a() {
+        // 1992 April 12.0 TD: 134.688470, +13.768368 deg, 368409.7 km
+        ephemeris.computeGeocentric(2448724.5);
+        assertApparentPlace(Ephemeris.MOON, 2448724.5, 134.688470, 13.768368, 2.0);
+        assertEquals(368409.7, ephemeris.getDistance(Ephemeris.MOON) * KM_PER_AU, 100);
+    }
+
+    @Test
+    public void venusMatchesExample33a() {
+        // 1992 December 20.0 TD: 21h 04m 41.454s, -18 deg 53' 16.84", 0.910947 AU
+        ephemeris.computeGeocentric(2448976.5);
+        assertApparentPlace(Ephemeris.VENUS, 2448976.5, hours(21, 4, 41.454), degrees(-18, 53, 16.84), 0.5);
+        assertEquals(0.910947, ephemeris.getDistance(Ephemeris.VENUS), 1e-4);
+    }
+
+    @Test
+    public void parallaxMovesTheMoonButHardlyTheSun() {
+        long epochMillis = millis("2024-03-15T21:00:00Z");
+        ephemeris.computeGeocentric(Ephemeris.julianDay(epochMillis) + Ephemeris.DELTA_T_SECONDS / 86400);
+        double[] sun = place(Ephemeris.SUN);
+        double[] moon = place(Ephemeris.MOON);
+        double moonDistance = ephemeris.getDistance(Ephemeris.MOON);
+
+        ephemeris.compute(epochMillis, 48.2, 16.4, 200);
+        // Horizontal parallax: 8.8" for the Sun, about a degree for the Moon
+        assertTrue(separation(sun, place(Ephemeris.SUN)) < 9.0 / 60);
+        double moonShift = separation(moon, place(Ephemeris.MOON));
+        assertTrue("moon moved " + moonShift + " arcmin", moonShift > 5 && moonShift < 62);
+        assertEquals(moonDistance, ephemeris.getDistance(Ephemeris.MOON), 6400 / KM_PER_AU);
+    }
+
+    @Test
+    public void placesStayInRange() {
+        long start = millis("2020-01-01T00:00:00Z");
+        for (int day = 0; day < 3650; day += 7) {
+            ephemeris.compute(start + day * 86400000L, -33.9, 151.2, 50);
+            for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+                double ra = ephemeris.getRightAscension(body);
+                double dec = ephemeris.getDeclination(body);
+                assertTrue(Ephemeris.BODY_NAMES[body], ra >= 0 && ra < 24);
+                assertTrue(Ephemeris.BODY_NAMES[body], dec >= -90 && dec <= 90);
+                assertTrue(Ephemeris.BODY_NAMES[body], ephemeris.getDistance(body) > 0);
+            }
+        }
+    }
+
+    /**
+     * Precesses a body's J2000 place to the date and compares it with a place of date
+     *
+     * @param ra Expected right ascension of date (degrees)
+     * @param dec Expected declination of date (degrees)
+     */
+    private void assertApparentPlace(int body, double julianDay, double ra, double dec, double arcminutes) {
+        double[] ofDate = precessFromJ2000(place(body), julianDay);
+        double error = separation(new double[] {ra, dec}, ofDate);
+        assertTrue(Ephemeris.BODY_NAMES[body] + " off by " + error + " arcmin", error < arcminutes);
+    }
+
+    /**
+     * @return Right ascension and declination of a body from the last computation (degrees)
+     */
+    private double[] place(int body) {
+        return new double[] {ephemeris.getRightAscension(body) * 15, ephemeris.getDeclination(body)};
+    }
+
+    /**
+     * Rigorous precession from J2000 to the equinox of a date (Meeus 21.2 and 21.4)
+     */
+    private static double[] precessFromJ2000(double[] place, double julianDay) {
+        double t = (julianDay - 2451545.0) / 36525;
+        double zeta = Math.toRadians((2306.2181 * t + 0.30188 * t * t + 0.017998 * t * t * t) / 3600);
+        double z = Math.toRadians((2306.2181 * t + 1.09468 * t * t + 0.018203 * t * t * t) / 3600);
+        double theta = Math.toRadians((2004.3109 * t - 0.42665 * t * t - 0.041833 * t * t * t) / 3600);
+        double ra0 = Math.toRadians(place[0]);
+        double dec0 = Math.toRadians(place[1]);
+
+        double a = Math.cos(dec0) * Math.sin(ra0 + zeta);
+        double b = Math.cos(theta) * Math.cos(dec0) * Math.cos(ra0 + zeta) - Math.sin(theta) * Math.sin(dec0);
+        double c = Math.sin(theta) * Math.cos(dec0) * Math.cos(ra0 + zeta) + Math.cos(theta) * Math.sin(dec0);
+        return new double[] {Math.toDegrees(Math.atan2(a, b) + z), Math.toDegrees(Math.asin(c))};
+    }
+
+    /**
+     * @return Angle between two places given in degrees (arcminutes)
+     */
+    private static double separation(double[] first, double[] second) {
+        double ra1 = Math.toRadians(first[0]);
+        double dec1 = Math.toRadians(first[1]);
+        double ra2 = Math.toRadians(second[0]);
+        double dec2 = Math.toRadians(second[1]);
+        double x = Math.cos(dec1) * Math.cos(ra1) - Math.cos(dec2) * Math.cos(ra2);
+        double y = Math.cos(dec1) * Math.sin(ra1) - Math.cos(dec2) * Math.sin(ra2);
+        double z = Math.sin(dec1) - Math.sin(dec2);
+        double chord = Math.sqrt(x * x + y * y + z * z);
+        return Math.toDegrees(2 * Math.asin(chord / 2)) * 60;
+    }
+
+    private static double hours(int hours, int minutes, double seconds) {
+        return (hours + minutes / 60.0 + seconds / 3600) * 15;
+    }
+
+    private static double degrees(int degrees, int minutes, double seconds) {
+        double magnitude = Math.abs(degrees) + minutes / 60.0 + seconds / 3600;
+        return degrees < 0 ? -magnitude : magnitude;
+    }
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.tools;
+
+import com.example.project.ephemeris.Ephemeris;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Topocentric positions of the Sun, Moon and all planets for one instant, as
+ * computed for every detection with planets enabled
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EphemerisBenchmark {
+    private final Ephemeris ephemeris = new Ephemeris();
+    private long time = 1_700_000_000_000L;
+
+    @Benchmark
+    public double computeAll() {
+        // Step the clock so nothing can be hoisted out of the loop
+        time += 60_000L;
+        ephemeris.compute(time, 48.85, 2.35, 35);
+        return ephemeris.getRightAscension(Ephemeris.MOON);
+    }
+}
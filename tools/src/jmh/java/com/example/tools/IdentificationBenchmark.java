@@ -0,0 +1,112 @@
+package com.example.tools;
+
+import com.example.project.catalog.PatternIndex;
+import com.example.project.catalog.StarCatalog;
+import com.example.project.detection.DetectedStar;
+import com.example.project.detection.StarIdentifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lost-in-space identification of a 66 degree field: a synthetic all-sky catalog,
+ * frames at random attitudes with centroid noise, missed stars and a few false
+ * detections, and a field of view that is off by 3%
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IdentificationBenchmark {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final double FOV_DEGREES = 66.0;
+    private static final int FRAMES = 32;
+
+    private StarIdentifier identifier;
+    private final List<List<DetectedStar>> frames = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int size = 9000;
+        double[] ra = new double[size];
+        double[] dec = new double[size];
+        float[] mag = new float[size];
+        int[] nameId = new int[size];
+        for (int i = 0; i < size; i++) {
+            ra[i] = random.nextDouble() * 24.0;
+            dec[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            mag[i] = (float) (6.5 + 2.0 * Math.log10(1.0 - random.nextDouble()));
+            nameId[i] = -1;
+        }
+        StarCatalog catalog = new StarCatalog(ra, dec, mag, nameId, new byte[0], 0);
+        identifier = new StarIdentifier(PatternIndex.build(catalog));
+
+        double focal = Math.min(WIDTH, HEIGHT) / Math.toRadians(FOV_DEGREES * 1.03);
+        for (int f = 0; f < FRAMES; f++) {
+            double[] r = randomRotation(random);
+            List<double[]> stars = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                double sx = catalog.getUnitX()[i];
+                double sy = catalog.getUnitY()[i];
+                double sz = catalog.getUnitZ()[i];
+                // Sky to camera is the transpose of the camera-to-sky rotation
+                double cx = r[0] * sx + r[3] * sy + r[6] * sz;
+                double cy = r[1] * sx + r[4] * sy + r[7] * sz;
+                double cz = r[2] * sx + r[5] * sy + r[8] * sz;
+                if (mag[i] > 5.0 || cz <= 0.1 || random.nextDouble() < 0.1) {
+                    continue;
+                }
+                double x = WIDTH / 2.0 + focal * cx / cz + random.nextGaussian();
+                double y = HEIGHT / 2.0 + focal * cy / cz + random.nextGaussian();
+                if (x >= 0 && y >= 0 && x < WIDTH && y < HEIGHT) {
+                    stars.add(new double[] {x, y, Math.pow(10, -0.4 * mag[i]) * (1 + 0.2 * random.nextGaussian())});
+                }
+            }
+            for (int s = 0; s < 3; s++) {
+                stars.add(new double[] {random.nextDouble() * WIDTH, random.nextDouble() * HEIGHT,
+                        Math.pow(10, -0.4 * 1.5)});
+            }
+            stars.sort((a, b) -> Double.compare(b[2], a[2]));
+            List<DetectedStar> frame = new ArrayList<>();
+            for (double[] star : stars) {
+                frame.add(new DetectedStar(star[0], star[1], star[2]));
+            }
+            frames.add(frame);
+        }
+    }
+
+    private static double[] randomRotation(Random random) {
+        double w = random.nextGaussian();
+        double x = random.nextGaussian();
+        double y = random.nextGaussian();
+        double z = random.nextGaussian();
+        double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+        w /= norm;
+        x /= norm;
+        y /= norm;
+        z /= norm;
+        return new double[] {
+                1 - 2 * (y * y + z * z), 2 * (x * y - z * w), 2 * (x * z + y * w),
+                2 * (x * y + z * w), 1 - 2 * (x * x + z * z), 2 * (y * z - x * w),
+                2 * (x * z - y * w), 2 * (y * z + x * w), 1 - 2 * (x * x + y * y)};
+    }
+
+    @Benchmark
+    public StarIdentifier.Result identify() {
+        List<DetectedStar> frame = frames.get(next);
+        next = (next + 1) % FRAMES;
+        return identifier.identify(frame, WIDTH, HEIGHT, FOV_DEGREES);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.tools;
+
+import com.example.project.detection.DetectedStar;
+import com.example.project.detection.StarMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KD-tree matching of detections to projected catalog bodies against a scan over
+ * every body, on a 12 MP frame with detections jittered around the bodies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchingBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int bodies;
+
+    private double[] x;
+    private double[] y;
+    private int[] rank;
+    private final List<DetectedStar> detections = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        x = new double[bodies];
+        y = new double[bodies];
+        rank = new int[bodies];
+        detections.clear();
+        for (int i = 0; i < bodies; i++) {
+            x[i] = random.nextDouble() * 4000;
+            y[i] = random.nextDouble() * 3000;
+            rank[i] = StarMatcher.UNRANKED;
+            detections.add(new DetectedStar(x[i] + random.nextGaussian() * 20,
+                    y[i] + random.nextGaussian() * 20, bodies - i));
+        }
+    }
+
+    @Benchmark
+    public int[] kdTree() {
+        return new StarMatcher(x, y, rank, bodies).match(detections, 400, true);
+    }
+
+    @Benchmark
+    public int[] linearScan() {
+        boolean[] claimed = new boolean[bodies];
+        int[] matches = new int[detections.size()];
+        for (int r = 0; r < matches.length; r++) {
+            DetectedStar star = detections.get(r);
+            int best = StarMatcher.NO_MATCH;
+            double bestDistance = 400;
+            for (int i = 0; i < bodies; i++) {
+                double distance = Math.hypot(x[i] - star.x, y[i] - star.y);
+                if (!claimed[i] && distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            if (best != StarMatcher.NO_MATCH) {
+                claimed[best] = true;
+            }
+            matches[r] = best;
+        }
+        return matches;
+    }
+}
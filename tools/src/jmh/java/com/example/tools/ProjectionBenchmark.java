@@ -0,0 +1,75 @@
+package com.example.tools;
+
+import com.example.project.AstronomicalCalculator;
+import com.example.project.PixelToCelestialConverter;
+import com.example.project.catalog.StarCatalog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar celestialToPixel against the batch RA/Dec and unit-vector entry points
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+    @Param({"1000", "100000"})
+    public int points;
+
+    private PixelToCelestialConverter converter;
+    private StarCatalog catalog;
+    private int[] indices;
+    private double[] outX;
+    private double[] outY;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        double[] ra = new double[points];
+        double[] dec = new double[points];
+        indices = new int[points];
+        for (int i = 0; i < points; i++) {
+            ra[i] = random.nextDouble() * 24.0;
+            dec[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            indices[i] = i;
+        }
+        catalog = new StarCatalog(ra, dec, new float[points], new int[points], new byte[] {0}, 1);
+        converter = new PixelToCelestialConverter(4000, 3000,
+                new AstronomicalCalculator.CelestialCoordinates(5.5, 20.0, 37.0, 40.0), 66.0);
+        outX = new double[points];
+        outY = new double[points];
+    }
+
+    @Benchmark
+    public void scalar(Blackhole blackhole) {
+        double[] ra = catalog.getRightAscension();
+        double[] dec = catalog.getDeclination();
+        for (int i = 0; i < points; i++) {
+            blackhole.consume(converter.celestialToPixel(ra[i], dec[i]));
+        }
+    }
+
+    @Benchmark
+    public double[] batch() {
+        converter.celestialToPixel(catalog.getRightAscension(), catalog.getDeclination(), points, outX, outY);
+        return outX;
+    }
+
+    @Benchmark
+    public double[] batchUnitVectors() {
+        converter.unitVectorsToPixel(catalog.getUnitX(), catalog.getUnitY(), catalog.getUnitZ(),
+                indices, points, outX, outY);
+        return outX;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.tools;
+
+import com.example.project.detection.FrameStacker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aligning and stacking an 8-frame burst at the stacking resolution. Frames are
+ * windows of one larger synthetic field, so each is shifted against the reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StackingBenchmark {
+    private static final int WIDTH = 2048;
+    private static final int HEIGHT = 1536;
+    private static final int MARGIN = 32;
+    private static final int FRAMES = 8;
+
+    @Param({"MEAN", "SIGMA_CLIPPED"})
+    public FrameStacker.Mode mode;
+
+    private int stride;
+    private byte[] field;
+    private final byte[] stacked = new byte[WIDTH * HEIGHT];
+
+    @Setup
+    public void setUp() {
+        stride = WIDTH + MARGIN;
+        field = SyntheticStarField.render(stride, HEIGHT + MARGIN, WIDTH * HEIGHT / 4000, 42);
+    }
+
+    @Benchmark
+    public byte[] stackBurst() {
+        FrameStacker stacker = new FrameStacker(WIDTH, HEIGHT, mode);
+        for (int f = 0; f < FRAMES; f++) {
+            int shift = (f * 7) % MARGIN;
+            stacker.add(field, shift * stride + shift / 2, stride, 0);
+        }
+        stacker.render(stacked);
+        return stacked;
+    }
+}
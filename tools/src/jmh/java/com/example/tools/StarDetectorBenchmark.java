@@ -0,0 +1,43 @@
+package com.example.tools;
+
+import com.example.project.detection.StarDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-frame star detection on synthetic frames; the detector is reused, as on device
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StarDetectorBenchmark {
+    @Param({"1000x750", "4000x3000"})
+    public String size;
+
+    private int width;
+    private int height;
+    private byte[] gray;
+    private final StarDetector detector = new StarDetector();
+
+    @Setup
+    public void setUp() {
+        String[] parts = size.split("x");
+        width = Integer.parseInt(parts[0]);
+        height = Integer.parseInt(parts[1]);
+        gray = SyntheticStarField.render(width, height, width * height / 4000, 42);
+    }
+
+    @Benchmark
+    public int detect() {
+        return detector.detect(gray, width, height);
+    }
+}
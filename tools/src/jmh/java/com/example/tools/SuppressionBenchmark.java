@@ -0,0 +1,87 @@
+package com.example.tools;
+
+import com.example.project.detection.NeighbourSuppressor;
+import com.example.project.detection.StarDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grid-hashed spacing suppression against the pairwise loop it replaced, over
+ * candidates scattered across a 12 MP frame
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SuppressionBenchmark {
+    @Param({"100", "1000", "10000", "50000"})
+    public int candidates;
+
+    private double[] sourceX;
+    private double[] sourceY;
+    private double[] sourceFlux;
+    private double[] x;
+    private double[] y;
+    private double[] flux;
+    private final NeighbourSuppressor suppressor = new NeighbourSuppressor();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        sourceX = new double[candidates];
+        sourceY = new double[candidates];
+        sourceFlux = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            sourceX[i] = random.nextDouble() * 4000;
+            sourceY[i] = random.nextDouble() * 3000;
+            sourceFlux[i] = random.nextDouble() * 1000;
+        }
+        x = new double[candidates];
+        y = new double[candidates];
+        flux = new double[candidates];
+    }
+
+    private void reset() {
+        System.arraycopy(sourceX, 0, x, 0, candidates);
+        System.arraycopy(sourceY, 0, y, 0, candidates);
+        System.arraycopy(sourceFlux, 0, flux, 0, candidates);
+    }
+
+    @Benchmark
+    public int grid() {
+        reset();
+        return suppressor.suppress(x, y, flux, candidates, StarDetector.MIN_STAR_SPACING);
+    }
+
+    @Benchmark
+    public int pairwise() {
+        reset();
+        double minSpacing = StarDetector.MIN_STAR_SPACING;
+        int kept = 0;
+        for (int i = 0; i < candidates; i++) {
+            boolean tooClose = false;
+            for (int j = 0; j < kept; j++) {
+                if (Math.hypot(x[i] - x[j], y[i] - y[j]) < minSpacing) {
+                    tooClose = true;
+                    break;
+                }
+            }
+            if (!tooClose) {
+                x[kept] = x[i];
+                y[kept] = y[i];
+                flux[kept] = flux[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.tools;
+
+import com.example.project.api.CelestialPositions;
+import com.example.project.api.CelestialResponse;
+import com.example.project.api.CelestialWireFormat;
+import com.example.project.ephemeris.Ephemeris;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding one /celestial response as JSON through Gson against the binary wire
+ * format, both on to the CelestialPositions the app consumes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+    private final Gson gson = new Gson();
+    private final CelestialPositions positions = new CelestialPositions();
+    private byte[] json;
+    private ByteBuffer binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        long time = 1_700_000_000_000L;
+        Ephemeris ephemeris = new Ephemeris();
+        json = gson.toJson(CelestialResponse.fromEphemeris(ephemeris, time, 48.85, 2.35, 35))
+                .getBytes(StandardCharsets.UTF_8);
+        CelestialPositions encoded = new CelestialPositions();
+        encoded.set(ephemeris, time / 1000, 48.85, 2.35, 35);
+        binary = ByteBuffer.wrap(CelestialStandInServer.encode(encoded));
+    }
+
+    @Benchmark
+    public CelestialResponse decodeJson() {
+        // As the Gson converter reads it, from the body's bytes
+        return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8),
+                CelestialResponse.class);
+    }
+
+    @Benchmark
+    public CelestialPositions decodeJsonToPositions() {
+        return decodeJson().toPositions();
+    }
+
+    @Benchmark
+    public CelestialPositions decodeBinary() throws IOException {
+        CelestialWireFormat.read(binary, positions);
+        return positions;
+    }
+}
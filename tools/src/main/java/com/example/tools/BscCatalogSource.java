@@ -0,0 +1,45 @@
+package com.example.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Yale Bright Star Catalogue, 5th revised edition (bsc5.dat fixed-width records).
+ * Uses the J2000 position (bytes 76-90) and V magnitude (bytes 103-107).
+ */
+public class BscCatalogSource implements CatalogSource {
+
+    @Override
+    public int read(BufferedReader in, StarSink sink) throws IOException {
+        int skipped = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            // Entries removed from the catalog (novae, non-stellar objects) have no position
+            if (line.length() < 107 || line.substring(75, 77).trim().isEmpty()) {
+                skipped++;
+                continue;
+            }
+            try {
+                double raHours = Integer.parseInt(line.substring(75, 77).trim())
+                        + Integer.parseInt(line.substring(77, 79).trim()) / 60.0
+                        + Double.parseDouble(line.substring(79, 83).trim()) / 3600.0;
+                double decDegrees = Integer.parseInt(line.substring(84, 86).trim())
+                        + Integer.parseInt(line.substring(86, 88).trim()) / 60.0
+                        + Integer.parseInt(line.substring(88, 90).trim()) / 3600.0;
+                if (line.charAt(83) == '-') {
+                    decDegrees = -decDegrees;
+                }
+                float magnitude = Float.parseFloat(line.substring(102, 107).trim());
+
+                String name = line.substring(4, 14).trim();
+                if (name.isEmpty()) {
+                    name = "HR " + line.substring(0, 4).trim();
+                }
+                sink.accept(raHours, decDegrees, magnitude, name);
+            } catch (NumberFormatException e) {
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.tools;
+
+import com.example.project.catalog.CatalogFormat;
+import com.example.project.catalog.SkyIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Builds the app's binary star catalog (with its prebuilt sky index) from a
+ * standard source catalog.
+ *
+ * Usage:
+ * <pre>
+ *   CatalogBuilder --format bsc|csv|json --input FILE --output FILE
+ *                  [--max-mag M] [--min-dec D] [--max-dec D] [--zone-height H]
+ * </pre>
+ */
+public class CatalogBuilder {
+
+    /**
+     * Growable primitive arrays the filtered stars are streamed into
+     */
+    private static class StarBuffer implements StarSink {
+        private final double maxMagnitude;
+        private final double minDec;
+        private final double maxDec;
+
+        int read;
+        int count;
+        double[] rightAscension = new double[1024];
+        double[] declination = new double[1024];
+        float[] magnitude = new float[1024];
+        String[] names = new String[1024];
+
+        StarBuffer(double maxMagnitude, double minDec, double maxDec) {
+            this.maxMagnitude = maxMagnitude;
+            this.minDec = minDec;
+            this.maxDec = maxDec;
+        }
+
+        @Override
+        public void accept(double ra, double dec, float mag, String name) {
+            read++;
+            if (mag > maxMagnitude || dec < minDec || dec > maxDec) {
+                return;
+            }
+            if (count == rightAscension.length) {
+                int capacity = count * 2;
+                rightAscension = Arrays.copyOf(rightAscension, capacity);
+                declination = Arrays.copyOf(declination, capacity);
+                magnitude = Arrays.copyOf(magnitude, capacity);
+                names = Arrays.copyOf(names, capacity);
+            }
+            rightAscension[count] = ((ra % 24) + 24) % 24;
+            declination[count] = dec;
+            magnitude[count] = mag;
+            names[count] = name;
+            count++;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String format = null;
+        Path input = null;
+        Path output = null;
+        double maxMagnitude = Double.POSITIVE_INFINITY;
+        double minDec = -90;
+        double maxDec = 90;
+        double zoneHeight = SkyIndex.DEFAULT_ZONE_HEIGHT;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--format":
+                    format = value;
+                    break;
+                case "--input":
+                    input = Paths.get(value);
+                    break;
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--max-mag":
+                    maxMagnitude = Double.parseDouble(value);
+                    break;
+                case "--min-dec":
+                    minDec = Double.parseDouble(value);
+                    break;
+                case "--max-dec":
+                    maxDec = Double.parseDouble(value);
+                    break;
+                case "--zone-height":
+                    zoneHeight = Double.parseDouble(value);
+                    break;
+                default:
+                    usage("Unknown option " + args[i]);
+            }
+        }
+        if (format == null || input == null || output == null) {
+            usage("--format, --input and --output are required");
+        }
+
+        CatalogSource source = sourceFor(format);
+        StarBuffer stars = new StarBuffer(maxMagnitude, minDec, maxDec);
+
+        long start = System.nanoTime();
+        int skipped;
+        // JSON is UTF-8; the fixed-width and CSV catalogs are plain ASCII/Latin-1
+        Charset charset = "json".equals(format) ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        try (BufferedReader reader = Files.newBufferedReader(input, charset)) {
+            skipped = source.read(reader, stars);
+        }
+        long parsed = System.nanoTime();
+
+        int count = stars.count;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            CatalogFormat.writeIndexed(out,
+                    Arrays.copyOf(stars.rightAscension, count),
+                    Arrays.copyOf(stars.declination, count),
+                    Arrays.copyOf(stars.magnitude, count),
+                    Arrays.copyOf(stars.names, count),
+                    zoneHeight);
+        }
+        long written = System.nanoTime();
+
+        double parseSeconds = (parsed - start) / 1e9;
+        double totalSeconds = (written - start) / 1e9;
+        System.out.printf("Read %d stars (%d unusable entries) from %s (%.1f MB)%n",
+                stars.read, skipped, input, Files.size(input) / 1e6);
+        System.out.printf("Kept %d stars with mag <= %s and dec in [%s, %s]%n",
+                count, maxMagnitude, minDec, maxDec);
+        System.out.printf("Wrote %s (%d bytes)%n", output, Files.size(output));
+        System.out.printf("Parse %.3f s (%.0f stars/s), total %.3f s (%.0f stars/s)%n",
+                parseSeconds, stars.read / parseSeconds, totalSeconds, stars.read / totalSeconds);
+    }
+
+    private static CatalogSource sourceFor(String format) {
+        switch (format) {
+            case "bsc":
+                return new BscCatalogSource();
+            case "csv":
+                return new CsvCatalogSource();
+            case "json":
+                return new JsonCatalogSource();
+            default:
+                usage("Unknown format " + format);
+                return null;
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: CatalogBuilder --format bsc|csv|json --input FILE --output FILE"
+                + " [--max-mag M] [--min-dec D] [--max-dec D] [--zone-height H]");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * A source catalog format the builder can stream
+ */
+public interface CatalogSource {
+    /**
+     * Streams every star of the source into the sink
+     *
+     * @param in Source catalog text
+     * @param sink Receives RA (hours), Dec (degrees), magnitude and name of each star
+     * @return Number of source lines or entries that could not be used
+     */
+    int read(BufferedReader in, StarSink sink) throws IOException;
+}
@@ -0,0 +1,178 @@
+package com.example.tools;
+
+import com.example.project.api.CelestialPositions;
+import com.example.project.api.CelestialRequest;
+import com.example.project.api.CelestialResponse;
+import com.example.project.api.CelestialWireFormat;
+import com.example.project.api.ChebyshevRequest;
+import com.example.project.api.ChebyshevResponse;
+import com.example.project.ephemeris.ChebyshevEphemeris;
+import com.example.project.ephemeris.Ephemeris;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the celestial server, answering from the on-device
+ * ephemeris, for benchmarking the app's network path without the real one.
+ *
+ * Serves POST /celestial as JSON, or in {@link CelestialWireFormat} when the
+ * Accept header asks for it, POST /celestial/chebyshev and GET /health.
+ * Responses are gzipped when the client accepts it, as OkHttp always does. On
+ * start it prints the size of a /celestial response in both forms.
+ *
+ * Usage: CelestialStandInServer [--port 5000]
+ */
+public class CelestialStandInServer {
+    private static final int DEFAULT_PORT = 5000;
+    private static final int THREADS = 4;
+    private static final long MAX_SPAN_SECONDS = 7 * 24 * 3600;
+    private static final long MIN_SEGMENT_SECONDS = 3600;
+    private static final int MAX_DEGREE = 20;
+
+    private static final Gson GSON = new Gson();
+    private static final ThreadLocal<Ephemeris> EPHEMERIS = ThreadLocal.withInitial(Ephemeris::new);
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Usage: CelestialStandInServer [--port " + DEFAULT_PORT + "]");
+                System.exit(2);
+            }
+        }
+
+        printPayloadSizes();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/celestial", CelestialStandInServer::handle);
+        server.createContext("/health", exchange -> respond(exchange, 200, "application/json",
+                "{\"status\":\"ok\",\"message\":\"stand-in server\"}".getBytes(StandardCharsets.UTF_8)));
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+        System.out.println("Listening on port " + port);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respondError(exchange, 405, "POST only");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if ("/celestial".equals(path)) {
+                handleCelestial(exchange);
+            } else if ("/celestial/chebyshev".equals(path)) {
+                handleChebyshev(exchange);
+            } else {
+                respondError(exchange, 404, "Unknown endpoint " + path);
+            }
+        } catch (JsonParseException | IllegalArgumentException e) {
+            respondError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void handleCelestial(HttpExchange exchange) throws IOException {
+        CelestialRequest request = readJson(exchange, CelestialRequest.class);
+        Ephemeris ephemeris = EPHEMERIS.get();
+        long timestamp = request.getTimestamp();
+        ephemeris.compute(timestamp * 1000, request.getLatitude(), request.getLongitude(), request.getAltitude());
+
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept != null && accept.contains(CelestialWireFormat.MEDIA_TYPE)) {
+            CelestialPositions positions = new CelestialPositions();
+            positions.set(ephemeris, timestamp, request.getLatitude(), request.getLongitude(), request.getAltitude());
+            respond(exchange, 200, CelestialWireFormat.MEDIA_TYPE, encode(positions));
+        } else {
+            CelestialResponse response = CelestialResponse.fromEphemeris(ephemeris, timestamp * 1000,
+                    request.getLatitude(), request.getLongitude(), request.getAltitude());
+            respond(exchange, 200, "application/json", GSON.toJson(response).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void handleChebyshev(HttpExchange exchange) throws IOException {
+        ChebyshevRequest request = readJson(exchange, ChebyshevRequest.class);
+        long span = request.getSpanSeconds();
+        long segment = request.getSegmentSeconds();
+        if (span <= 0 || span > MAX_SPAN_SECONDS || segment < MIN_SEGMENT_SECONDS
+                || request.getDegree() < 1 || request.getDegree() > MAX_DEGREE) {
+            throw new IllegalArgumentException("Window, segment length or degree out of range");
+        }
+        int segments = (int) ((span + segment - 1) / segment);
+        ChebyshevEphemeris fitted = ChebyshevEphemeris.fit(EPHEMERIS.get(), request.getStart() * 1000,
+                segment * 1000, segments, request.getDegree(),
+                request.getLatitude(), request.getLongitude(), request.getAltitude());
+        respond(exchange, 200, "application/json",
+                GSON.toJson(ChebyshevResponse.from(fitted)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static <T> T readJson(HttpExchange exchange, Class<T> type) throws IOException {
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            T value = GSON.fromJson(reader, type);
+            if (value == null) {
+                throw new IllegalArgumentException("Empty request body");
+            }
+            return value;
+        }
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        String body = "{\"error\":" + GSON.toJson(String.valueOf(message)) + "}";
+        respond(exchange, status, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static byte[] encode(CelestialPositions positions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(CelestialWireFormat.size(positions));
+        CelestialWireFormat.write(out, positions);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static void printPayloadSizes() throws IOException {
+        long time = 1_700_000_000_000L;
+        Ephemeris ephemeris = new Ephemeris();
+        byte[] json = GSON.toJson(CelestialResponse.fromEphemeris(ephemeris, time, 48.85, 2.35, 35))
+                .getBytes(StandardCharsets.UTF_8);
+        CelestialPositions positions = new CelestialPositions();
+        positions.set(ephemeris, time / 1000, 48.85, 2.35, 35);
+        byte[] binary = encode(positions);
+        System.out.printf("/celestial payload: JSON %d bytes (%d gzipped), binary %d bytes (%d gzipped)%n",
+                json.length, gzip(json).length, binary.length, gzip(binary).length);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Comma separated catalogs with a header row, such as Hipparcos exports from
+ * VizieR or the HYG database. Columns are found by name (case-insensitive):
+ * <ul>
+ *   <li>RA in degrees: RAdeg, RA_deg, RAICRS; or in hours: ra, RAhours</li>
+ *   <li>Dec in degrees: DEdeg, DE_deg, DEICRS, dec</li>
+ *   <li>Magnitude: Vmag, mag, Hpmag</li>
+ *   <li>Optional name: proper, name; otherwise "HIP n" from a HIP column</li>
+ * </ul>
+ * Fields may be quoted, in which case they can contain commas and doubled
+ * quotes ("Alpha ""A"", Centauri"). A quoted field cannot span lines.
+ */
+public class CsvCatalogSource implements CatalogSource {
+
+    @Override
+    public int read(BufferedReader in, StarSink sink) throws IOException {
+        String header = in.readLine();
+        if (header == null) {
+            throw new IOException("Empty CSV catalog");
+        }
+        String[] columns = split(header);
+        int raDegrees = find(columns, "radeg", "ra_deg", "raicrs");
+        int raHours = find(columns, "ra", "rahours");
+        int dec = find(columns, "dedeg", "de_deg", "deicrs", "dec");
+        int magnitude = find(columns, "vmag", "mag", "hpmag");
+        int name = find(columns, "proper", "name");
+        int hip = find(columns, "hip");
+        if ((raDegrees < 0 && raHours < 0) || dec < 0 || magnitude < 0) {
+            throw new IOException("CSV catalog needs RA, Dec and magnitude columns, found: " + header);
+        }
+
+        int skipped = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] fields = split(line);
+            try {
+                double ra = raDegrees >= 0
+                        ? Double.parseDouble(fields[raDegrees]) / 15.0
+                        : Double.parseDouble(fields[raHours]);
+                double decDegrees = Double.parseDouble(fields[dec]);
+                float mag = Float.parseFloat(fields[magnitude]);
+
+                String starName = name >= 0 ? fields[name] : "";
+                if (starName.isEmpty() && hip >= 0 && !fields[hip].isEmpty()) {
+                    starName = "HIP " + fields[hip];
+                }
+                sink.accept(ra, decDegrees, mag, starName.isEmpty() ? null : starName);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                skipped++;
+            }
+        }
+        return skipped;
+    }
+
+    private static int find(String[] columns, String... names) {
+        for (String wanted : names) {
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].toLowerCase(Locale.ROOT).equals(wanted)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a line into fields, honouring quotes
+     *
+     * @return The fields, trimmed and with their quotes removed
+     */
+    private static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+}
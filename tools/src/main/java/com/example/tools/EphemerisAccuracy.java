@@ -0,0 +1,127 @@
+package com.example.tools;
+
+import com.example.project.ephemeris.ChebyshevEphemeris;
+import com.example.project.ephemeris.Ephemeris;
+
+/**
+ * Compares the on-device ephemeris with reference positions and times it.
+ *
+ * References are the worked examples of Meeus, Astronomical Algorithms (2nd ed.):
+ * geocentric apparent places referred to the equinox of date. The engine gives
+ * astrometric J2000 places, so they are precessed to the date (Meeus 21.3-21.4)
+ * before comparing. Nutation and aberration, together under 40 arcseconds, are
+ * not applied and count towards the reported error.
+ *
+ * Also reports how far Chebyshev segments, fitted the way the server fits them,
+ * stray from the direct computation over a day, and what evaluating them costs.
+ */
+public class EphemerisAccuracy {
+    private static final int TIMING_RUNS = 200_000;
+    private static final long SEGMENT_MILLIS = 12 * 3600 * 1000L;
+    private static final int SEGMENT_COUNT = 2;
+    private static final int SEGMENT_DEGREE = 8;
+    private static final long SEGMENT_CHECK_STEP_MILLIS = 137_000L;
+
+    // body, Julian day (TT), right ascension (degrees), declination (degrees), source
+    private static final Object[][] REFERENCES = {
+            {Ephemeris.SUN, 2448908.5, 198.38083, -7.78507, "Meeus example 25.a"},
+            {Ephemeris.MOON, 2448724.5, 134.688470, 13.768368, "Meeus example 47.a"},
+            {Ephemeris.VENUS, 2448976.5, 316.172725, -18.888010, "Meeus example 33.a"},
+    };
+
+    public static void main(String[] args) {
+        Ephemeris ephemeris = new Ephemeris();
+
+        System.out.printf("%-8s %12s %14s %14s %12s  %s%n",
+                "body", "JD (TT)", "RA error \"", "Dec error \"", "sep. '", "reference");
+        for (Object[] reference : REFERENCES) {
+            int body = (Integer) reference[0];
+            double julianDay = (Double) reference[1];
+            ephemeris.computeGeocentric(julianDay);
+            double[] ofDate = precessFromJ2000(ephemeris.getRightAscension(body) * 15,
+                    ephemeris.getDeclination(body), julianDay);
+
+            double refRa = (Double) reference[2];
+            double refDec = (Double) reference[3];
+            double raError = wrapDegrees(ofDate[0] - refRa) * Math.cos(Math.toRadians(refDec)) * 3600;
+            double decError = (ofDate[1] - refDec) * 3600;
+            System.out.printf("%-8s %12.1f %14.1f %14.1f %12.2f  %s%n",
+                    Ephemeris.BODY_NAMES[body], julianDay, raError, decError,
+                    separation(ofDate[0], ofDate[1], refRa, refDec) * 60, reference[4]);
+        }
+
+        // Warm up, then time a full computation of every body for an observer
+        long time = 1_700_000_000_000L;
+        double checksum = 0;
+        for (int i = 0; i < TIMING_RUNS; i++) {
+            ephemeris.compute(time + i * 60_000L, 48.85, 2.35, 35);
+            checksum += ephemeris.getDeclination(Ephemeris.MOON);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMING_RUNS; i++) {
+            ephemeris.compute(time + i * 60_000L, 48.85, 2.35, 35);
+            checksum += ephemeris.getDeclination(Ephemeris.MOON);
+        }
+        double microseconds = (System.nanoTime() - start) / 1e3 / TIMING_RUNS;
+        System.out.printf("%nAll %d bodies: %.2f us per computation (checksum %.3f)%n",
+                Ephemeris.BODY_COUNT, microseconds, checksum);
+
+        ChebyshevEphemeris segments = ChebyshevEphemeris.fit(ephemeris, time, SEGMENT_MILLIS, SEGMENT_COUNT,
+                SEGMENT_DEGREE, 48.85, 2.35, 35);
+        double[] worst = new double[Ephemeris.BODY_COUNT];
+        for (long t = time; t <= segments.getEndMillis(); t += SEGMENT_CHECK_STEP_MILLIS) {
+            ephemeris.compute(t, 48.85, 2.35, 35);
+            segments.compute(t);
+            for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+                worst[body] = Math.max(worst[body], separation(
+                        ephemeris.getRightAscension(body) * 15, ephemeris.getDeclination(body),
+                        segments.getRightAscension(body) * 15, segments.getDeclination(body)) * 3600);
+            }
+        }
+        System.out.printf("%nChebyshev segments (%d h, degree %d), worst error over %d h:%n",
+                SEGMENT_MILLIS / 3600000, SEGMENT_DEGREE, SEGMENT_COUNT * SEGMENT_MILLIS / 3600000);
+        for (int body = 0; body < Ephemeris.BODY_COUNT; body++) {
+            System.out.printf("%-8s %10.4f\"%n", Ephemeris.BODY_NAMES[body], worst[body]);
+        }
+        long span = segments.getEndMillis() - time;
+        start = System.nanoTime();
+        for (int i = 0; i < TIMING_RUNS; i++) {
+            segments.compute(time + i * span / TIMING_RUNS);
+            checksum += segments.getDeclination(Ephemeris.MOON);
+        }
+        microseconds = (System.nanoTime() - start) / 1e3 / TIMING_RUNS;
+        System.out.printf("All %d bodies: %.2f us per evaluation (checksum %.3f)%n",
+                Ephemeris.BODY_COUNT, microseconds, checksum);
+    }
+
+    /**
+     * Precesses J2000 equatorial coordinates to the mean equinox of a date
+     *
+     * @return {right ascension, declination} in degrees
+     */
+    static double[] precessFromJ2000(double raDegrees, double decDegrees, double julianDay) {
+        double t = (julianDay - 2451545.0) / 36525.0;
+        double zeta = Math.toRadians((2306.2181 * t + 0.30188 * t * t + 0.017998 * t * t * t) / 3600);
+        double z = Math.toRadians((2306.2181 * t + 1.09468 * t * t + 0.018203 * t * t * t) / 3600);
+        double theta = Math.toRadians((2004.3109 * t - 0.42665 * t * t - 0.041833 * t * t * t) / 3600);
+
+        double ra = Math.toRadians(raDegrees);
+        double dec = Math.toRadians(decDegrees);
+        double a = Math.cos(dec) * Math.sin(ra + zeta);
+        double b = Math.cos(theta) * Math.cos(dec) * Math.cos(ra + zeta) - Math.sin(theta) * Math.sin(dec);
+        double c = Math.sin(theta) * Math.cos(dec) * Math.cos(ra + zeta) + Math.cos(theta) * Math.sin(dec);
+        double precessedRa = Math.toDegrees(Math.atan2(a, b) + z);
+        return new double[] {(precessedRa % 360 + 360) % 360, Math.toDegrees(Math.asin(c))};
+    }
+
+    private static double separation(double ra1, double dec1, double ra2, double dec2) {
+        double d1 = Math.toRadians(dec1), d2 = Math.toRadians(dec2);
+        double cos = Math.sin(d1) * Math.sin(d2)
+                + Math.cos(d1) * Math.cos(d2) * Math.cos(Math.toRadians(ra1 - ra2));
+        return Math.toDegrees(Math.acos(Math.min(1, cos)));
+    }
+
+    private static double wrapDegrees(double degrees) {
+        return ((degrees + 540) % 360) - 180;
+    }
+}
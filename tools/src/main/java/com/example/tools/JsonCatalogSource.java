@@ -0,0 +1,57 @@
+package com.example.tools;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * The hand-made JSON star list: an array of {"Ra": hours, "Dec": degrees,
+ * "Mag": magnitude, "Name": name} objects. Streamed entry by entry.
+ */
+public class JsonCatalogSource implements CatalogSource {
+
+    @Override
+    public int read(BufferedReader in, StarSink sink) throws IOException {
+        int skipped = 0;
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                double ra = Double.NaN;
+                double dec = Double.NaN;
+                float magnitude = 0;
+                String name = null;
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "Ra":
+                            ra = reader.nextDouble(); // RA is already in hours in the JSON
+                            break;
+                        case "Dec":
+                            dec = reader.nextDouble();
+                            break;
+                        case "Mag":
+                            magnitude = (float) reader.nextDouble();
+                            break;
+                        case "Name":
+                            name = reader.nextString();
+                            break;
+                        default:
+                            reader.skipValue();
+                            break;
+                    }
+                }
+                reader.endObject();
+
+                if (Double.isNaN(ra) || Double.isNaN(dec)) {
+                    skipped++;
+                } else {
+                    sink.accept(ra, dec, magnitude, name);
+                }
+            }
+            reader.endArray();
+        }
+        return skipped;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.tools;
+
+import com.example.project.catalog.CatalogFormat;
+import com.example.project.catalog.PatternFormat;
+import com.example.project.catalog.PatternIndex;
+import com.example.project.catalog.StarCatalog;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds the star pattern index asset from a binary star catalog. Rerun it
+ * whenever the catalog asset is rebuilt, since the index refers to catalog
+ * records by position.
+ *
+ * Usage:
+ * <pre>
+ *   PatternIndexBuilder --catalog FILE --output FILE
+ *                       [--max-mag M] [--max-edge DEGREES] [--bins N]
+ * </pre>
+ */
+public class PatternIndexBuilder {
+
+    public static void main(String[] args) throws IOException {
+        Path catalogPath = null;
+        Path output = null;
+        float maxMagnitude = PatternIndex.DEFAULT_MAX_MAGNITUDE;
+        double maxEdge = PatternIndex.DEFAULT_MAX_EDGE_DEGREES;
+        int bins = PatternIndex.DEFAULT_RATIO_BINS;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--catalog":
+                    catalogPath = Paths.get(value);
+                    break;
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--max-mag":
+                    maxMagnitude = Float.parseFloat(value);
+                    break;
+                case "--max-edge":
+                    maxEdge = Double.parseDouble(value);
+                    break;
+                case "--bins":
+                    bins = Integer.parseInt(value);
+                    break;
+                default:
+                    usage("Unknown option " + args[i]);
+            }
+        }
+        if (catalogPath == null || output == null) {
+            usage("--catalog and --output are required");
+        }
+
+        StarCatalog catalog = CatalogFormat.read(ByteBuffer.wrap(Files.readAllBytes(catalogPath)));
+        long start = System.nanoTime();
+        PatternIndex index = PatternIndex.build(catalog, maxMagnitude, maxEdge, bins);
+        long built = System.nanoTime();
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            PatternFormat.write(out, index, catalog);
+        }
+
+        System.out.printf("Indexed %d triangles of %d stars with mag <= %s and sides up to %s deg%n",
+                index.getTriangleCount(), index.getStarCount(), maxMagnitude, maxEdge);
+        System.out.printf("Wrote %s (%d bytes) in %.3f s%n",
+                output, Files.size(output), (built - start) / 1e9);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: PatternIndexBuilder --catalog FILE --output FILE"
+                + " [--max-mag M] [--max-edge DEGREES] [--bins N]");
+        System.exit(1);
+    }
+}
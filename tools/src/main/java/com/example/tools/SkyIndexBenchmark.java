@@ -0,0 +1,103 @@
+package com.example.tools;
+
+import com.example.project.catalog.SkyIndex;
+
+import java.util.Random;
+
+/**
+ * Compares field-of-view query latency of the SkyIndex against a linear scan
+ * for synthetic catalogs of increasing size.
+ */
+public class SkyIndexBenchmark {
+    private static final int[] CATALOG_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int QUERIES = 2_000;
+    private static final double FOV_WIDTH = 66.0;  // degrees
+    private static final double FOV_HEIGHT = 49.5; // degrees, 4:3 sensor
+    private static final double FAINT_LIMIT = 9.0;
+    private static final double BRIGHT_LIMIT = 4.0;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %12s %14s %14s %10s %15s%n",
+                "stars", "build ms", "scan us/query", "index us/query", "speedup", "bright us/query");
+
+        for (int size : CATALOG_SIZES) {
+            Random random = new Random(42);
+            double[] ra = new double[size];
+            double[] dec = new double[size];
+            float[] mag = new float[size];
+            for (int i = 0; i < size; i++) {
+                // Uniform on the sphere, star counts growing ~10^(0.5 m) up to the faint limit
+                ra[i] = random.nextDouble() * 24.0;
+                dec[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                mag[i] = (float) (FAINT_LIMIT + 2.0 * Math.log10(1.0 - random.nextDouble()));
+            }
+
+            long buildStart = System.nanoTime();
+            SkyIndex index = new SkyIndex(ra, dec, mag);
+            double buildMs = (System.nanoTime() - buildStart) / 1e6;
+
+            double[][] boxes = randomBoxes(new Random(7));
+
+            // Warm up both paths before timing them
+            runScan(ra, dec, boxes);
+            runIndex(index, boxes, FAINT_LIMIT);
+            runIndex(index, boxes, BRIGHT_LIMIT);
+
+            double scanUs = runScan(ra, dec, boxes) / 1e3 / QUERIES;
+            double indexUs = runIndex(index, boxes, FAINT_LIMIT) / 1e3 / QUERIES;
+            double brightUs = runIndex(index, boxes, BRIGHT_LIMIT) / 1e3 / QUERIES;
+
+            System.out.printf("%10d %12.2f %14.2f %14.2f %9.1fx %15.2f%n",
+                    size, buildMs, scanUs, indexUs, scanUs / indexUs, brightUs);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static double[][] randomBoxes(Random random) {
+        double[][] boxes = new double[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            double centerRA = random.nextDouble() * 24.0;
+            double centerDec = random.nextDouble() * 140.0 - 70.0;
+            double widthHours = FOV_WIDTH / 15.0;
+            boxes[q] = new double[] {
+                    ((centerRA - widthHours / 2.0) % 24 + 24) % 24,
+                    ((centerRA + widthHours / 2.0) % 24 + 24) % 24,
+                    centerDec - FOV_HEIGHT / 2.0,
+                    centerDec + FOV_HEIGHT / 2.0
+            };
+        }
+        return boxes;
+    }
+
+    private static long runScan(double[] ra, double[] dec, double[][] boxes) {
+        long start = System.nanoTime();
+        for (double[] box : boxes) {
+            boolean raWraps = box[0] > box[1];
+            int found = 0;
+            for (int i = 0; i < ra.length; i++) {
+                if (dec[i] < box[2] || dec[i] > box[3]) {
+                    continue;
+                }
+                boolean inRARange = raWraps
+                        ? (ra[i] >= box[0] || ra[i] <= box[1])
+                        : (ra[i] >= box[0] && ra[i] <= box[1]);
+                if (inRARange) {
+                    found++;
+                }
+            }
+            sink += found;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runIndex(SkyIndex index, double[][] boxes, double maxMagnitude) {
+        int[] matches = new int[index.getStarCount()];
+        long start = System.nanoTime();
+        for (double[] box : boxes) {
+            sink += index.collectInBox(box[0], box[1], box[2], box[3], maxMagnitude, matches);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.tools;
+
+/**
+ * Receives stars one at a time as a source catalog is streamed
+ */
+public interface StarSink {
+    void accept(double rightAscension, double declination, float magnitude, String name);
+}
@@ -0,0 +1,47 @@
+package com.example.tools;
+
+import java.util.Random;
+
+/**
+ * Renders 8-bit grayscale night-sky frames with Gaussian stars on a noisy
+ * background, for exercising the star detector off-device
+ */
+public final class SyntheticStarField {
+    private SyntheticStarField() {
+    }
+
+    /**
+     * @param width Frame width in pixels
+     * @param height Frame height in pixels
+     * @param stars Number of stars to render
+     * @param seed Random seed, so runs are repeatable
+     * @return Row-major luminance
+     */
+    public static byte[] render(int width, int height, int stars, long seed) {
+        Random random = new Random(seed);
+        byte[] gray = new byte[width * height];
+        for (int i = 0; i < gray.length; i++) {
+            gray[i] = (byte) (20 + random.nextInt(10));
+        }
+        for (int s = 0; s < stars; s++) {
+            double centerX = random.nextDouble() * width;
+            double centerY = random.nextDouble() * height;
+            double amplitude = 100 + random.nextDouble() * 700;
+            double sigma = 0.7 + random.nextDouble() * 0.8;
+            int x0 = Math.max((int) centerX - 5, 0);
+            int y0 = Math.max((int) centerY - 5, 0);
+            int x1 = Math.min((int) centerX + 5, width - 1);
+            int y1 = Math.min((int) centerY + 5, height - 1);
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    double dx = x - centerX;
+                    double dy = y - centerY;
+                    int value = (gray[y * width + x] & 0xFF)
+                            + (int) (amplitude * Math.exp(-(dx * dx + dy * dy) / (2 * sigma * sigma)));
+                    gray[y * width + x] = (byte) Math.min(255, value);
+                }
+            }
+        }
+        return gray;
+    }
+}